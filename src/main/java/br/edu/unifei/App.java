@@ -2,6 +2,8 @@ package br.edu.unifei;
 
 import br.edu.unifei.gui.coap.CoapApp;
 import br.edu.unifei.gui.mqtt.MqttClientApp;
+import br.edu.unifei.servicos.ServicoAlphaVantageAPI;
+import br.edu.unifei.tratamento.TratadorMensagemFactory;
 import br.edu.unifei.utils.LogUtils;
 import com.github.weisj.darklaf.LafManager;
 import com.github.weisj.darklaf.theme.DarculaTheme;
@@ -28,9 +30,22 @@ public class App {
             LogUtils.logError("Erro na criação do painel inicial: %s", e.getMessage());
         }
 
+        iniciarServicos();
         SwingUtilities.invokeLater(App::criarInterfaceDeSelecao);
     }
 
+    /**
+     * Cria e inicia o {@link ServicoAlphaVantageAPI}, uma única vez para toda a execução, e registra os tratadores
+     * das consultas que o usam. O serviço é fechado quando a JVM encerra, concluindo as gravações pendentes do armazém
+     * de cotações e das séries.
+     */
+    private static void iniciarServicos() {
+        ServicoAlphaVantageAPI servicoAlphaVantageAPI = new ServicoAlphaVantageAPI();
+        servicoAlphaVantageAPI.iniciar();
+        Runtime.getRuntime().addShutdownHook(new Thread(servicoAlphaVantageAPI::close, "encerramento-servicos"));
+        TratadorMensagemFactory.registrarConsultas(servicoAlphaVantageAPI);
+    }
+
     /**
      * Cria e exibe a interface de seleção inicial, onde o usuário pode escolher entre os protocolos CoAP e MQTT ou
      * encerrar a aplicação.
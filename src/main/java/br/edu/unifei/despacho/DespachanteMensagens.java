@@ -0,0 +1,294 @@
+package br.edu.unifei.despacho;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+import br.edu.unifei.utils.ConfigLoader;
+import br.edu.unifei.utils.LogUtils;
+import com.google.gson.JsonObject;
+
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estágio de despacho das mensagens recebidas pelos protocolos. As mensagens são colocadas em uma fila limitada e
+ * processadas por um conjunto de threads de trabalho, liberando a thread do protocolo assim que a mensagem é
+ * enfileirada. Quando a fila está cheia, a {@link PoliticaTransbordo} configurada decide o destino da mensagem.
+ * <p>
+ * Mensagens com a mesma chave (normalmente a origem) são processadas na ordem de chegada, enquanto mensagens de
+ * chaves diferentes são processadas em paralelo através do {@link ExecutorPorChave}.
+ * </p>
+ */
+public class DespachanteMensagens {
+
+    private final ThreadPoolExecutor executor;
+    private final ExecutorPorChave executorPorChave;
+    private final Semaphore vagas;
+    private final int capacidadeFila;
+    private final PoliticaTransbordo politica;
+    private final AtomicLong rejeitadas = new AtomicLong();
+    private final AtomicLong descartadas = new AtomicLong();
+
+    /**
+     * @param threads         Quantidade de threads de trabalho.
+     * @param threadsVirtuais Indica se devem ser usadas threads virtuais, quando a JVM oferecer suporte.
+     * @param capacidadeFila  Quantidade máxima de mensagens aguardando ou em processamento.
+     * @param politica        A {@link PoliticaTransbordo} aplicada quando a fila estiver cheia.
+     */
+    public DespachanteMensagens(int threads, boolean threadsVirtuais, int capacidadeFila, PoliticaTransbordo politica) {
+        this.capacidadeFila = capacidadeFila;
+        this.politica = politica;
+        this.vagas = new Semaphore(capacidadeFila);
+        // A fila do executor guarda no máximo uma entrada por chave ativa, e cada chave ativa ocupa ao menos uma
+        // vaga, então ela também fica limitada pela capacidade.
+        this.executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                criarFabricaDeThreads(threadsVirtuais)
+        );
+        this.executor.prestartAllCoreThreads();
+        this.executorPorChave = new ExecutorPorChave(executor, tarefa -> ((TarefaDespachada) tarefa).recusar());
+    }
+
+    /**
+     * Retorna o despachante compartilhado pelos protocolos CoAP e MQTT, criado a partir das chaves
+     * {@code despacho.*} do arquivo {@code config.properties}.
+     *
+     * @return A instância compartilhada de {@code DespachanteMensagens}.
+     */
+    public static DespachanteMensagens getInstancia() {
+        return InstanciaCompartilhada.INSTANCIA;
+    }
+
+    /**
+     * Enfileira uma tarefa para processamento assíncrono. Tarefas com a mesma chave são executadas na ordem em que
+     * foram despachadas.
+     *
+     * @param chave      A chave que define a ordem de processamento, normalmente a origem da mensagem.
+     * @param tarefa     A tarefa que processa a mensagem.
+     * @param aoRejeitar Ação executada caso a tarefa seja rejeitada ou descartada.
+     */
+    public void despachar(String chave, Runnable tarefa, Runnable aoRejeitar) {
+        TarefaDespachada tarefaDespachada = new TarefaDespachada(tarefa, aoRejeitar);
+        if (reservarVaga()) {
+            try {
+                executorPorChave.executar(chave == null ? "" : chave, tarefaDespachada);
+            } catch (RejectedExecutionException e) {
+                // As tarefas da chave já foram recusadas pelo ExecutorPorChave, devolvendo as vagas
+                LogUtils.logWarn("Mensagem recusada pelas threads de trabalho: %s", e.getMessage());
+            }
+        } else {
+            tarefaDespachada.rejeitar();
+        }
+    }
+
+    /**
+     * Gera a mensagem de erro enviada à origem quando uma consulta não pode ser processada por sobrecarga.
+     *
+     * @param mensagem A {@link Mensagem} rejeitada.
+     * @return Uma {@link Mensagem} de resposta com o campo {@code erro} preenchido.
+     */
+    public static Mensagem gerarRespostaDeRejeicao(Mensagem mensagem) {
+        JsonObject conteudo = mensagem.getConteudo();
+        JsonObject respostaErro = new JsonObject();
+        respostaErro.add("metadata", conteudo != null && conteudo.has("metadata")
+                ? conteudo.getAsJsonObject("metadata")
+                : new JsonObject());
+        respostaErro.addProperty("erro", "Servidor sobrecarregado, tente novamente mais tarde.");
+
+        return new Mensagem(
+                "RESULTADO_" + mensagem.getAcao(),
+                mensagem.getDestino(),
+                mensagem.getOrigem(),
+                respostaErro
+        );
+    }
+
+    /**
+     * @return a quantidade de mensagens aguardando ou em processamento.
+     */
+    public int getTamanhoFila() {
+        return capacidadeFila - vagas.availablePermits();
+    }
+
+    /**
+     * @param chave A chave consultada.
+     * @return a quantidade de mensagens da chave aguardando processamento.
+     */
+    public int getProfundidadeFila(String chave) {
+        return executorPorChave.getProfundidadeFila(chave);
+    }
+
+    /**
+     * @return um retrato da quantidade de mensagens aguardando processamento para cada chave ativa.
+     */
+    public Map<String, Integer> getProfundidadesPorChave() {
+        return executorPorChave.getProfundidadesPorChave();
+    }
+
+    /**
+     * @return a quantidade de chaves com mensagens pendentes ou em processamento.
+     */
+    public int getChavesAtivas() {
+        return executorPorChave.getChavesAtivas();
+    }
+
+    /**
+     * @return o total de mensagens rejeitadas por falta de espaço na fila.
+     */
+    public long getRejeitadas() {
+        return rejeitadas.get();
+    }
+
+    /**
+     * @return o total de mensagens descartadas para abrir espaço para mensagens mais novas.
+     */
+    public long getDescartadas() {
+        return descartadas.get();
+    }
+
+    /**
+     * Encerra as threads de trabalho, aguardando brevemente as mensagens em andamento. Mensagens despachadas depois
+     * disso são rejeitadas. As aplicações chamam este método ao fechar a janela, antes de desligar o protocolo; ao
+     * voltar para a seleção de protocolo o despachante continua ativo, pois é compartilhado.
+     */
+    public void encerrar() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reserva uma vaga na fila, aplicando a {@link PoliticaTransbordo} caso ela esteja cheia.
+     *
+     * @return {@code true} se a nova tarefa pode ser enfileirada.
+     */
+    private boolean reservarVaga() {
+        if (executor.isShutdown()) {
+            return false;
+        }
+        if (vagas.tryAcquire()) {
+            return true;
+        }
+
+        switch (politica) {
+            case BLOQUEAR:
+                try {
+                    vagas.acquire();
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            case DESCARTAR_MAIS_ANTIGA:
+                Runnable maisAntiga = executorPorChave.removerMaisAntigaDaMaiorFila();
+                if (maisAntiga != null) {
+                    // A vaga da tarefa descartada é repassada para a nova tarefa
+                    descartadas.incrementAndGet();
+                    ((TarefaDespachada) maisAntiga).rejeitar();
+                    return true;
+                }
+                rejeitadas.incrementAndGet();
+                return false;
+            case REJEITAR:
+            default:
+                rejeitadas.incrementAndGet();
+                return false;
+        }
+    }
+
+    /**
+     * Cria a fábrica de threads de trabalho. Threads virtuais só existem a partir do Java 21, por isso são obtidas
+     * por reflexão; em JVMs anteriores, são usadas threads de plataforma.
+     *
+     * @param threadsVirtuais Indica se devem ser usadas threads virtuais.
+     * @return A {@link ThreadFactory} das threads de trabalho.
+     */
+    private static ThreadFactory criarFabricaDeThreads(boolean threadsVirtuais) {
+        if (threadsVirtuais) {
+            try {
+                Object construtor = Thread.class.getMethod("ofVirtual").invoke(null);
+                Class<?> classeConstrutor = Class.forName("java.lang.Thread$Builder");
+                construtor = classeConstrutor.getMethod("name", String.class, long.class)
+                        .invoke(construtor, "despacho-", 1L);
+                return (ThreadFactory) classeConstrutor.getMethod("factory").invoke(construtor);
+            } catch (ReflectiveOperationException e) {
+                LogUtils.logWarn("Threads virtuais indisponíveis nesta JVM, usando threads de plataforma.");
+            }
+        }
+
+        AtomicInteger contador = new AtomicInteger();
+        return tarefa -> {
+            Thread thread = new Thread(tarefa, "despacho-" + contador.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Associa uma tarefa à ação executada caso ela seja rejeitada e devolve a vaga ocupada ao terminar.
+     */
+    private final class TarefaDespachada implements Runnable {
+        private final Runnable tarefa;
+        private final Runnable aoRejeitar;
+
+        private TarefaDespachada(Runnable tarefa, Runnable aoRejeitar) {
+            this.tarefa = tarefa;
+            this.aoRejeitar = aoRejeitar;
+        }
+
+        @Override
+        public void run() {
+            try {
+                tarefa.run();
+            } catch (RuntimeException e) {
+                LogUtils.logError("Erro ao processar mensagem despachada: %s", e.getMessage());
+            } finally {
+                vagas.release();
+            }
+        }
+
+        /**
+         * Rejeita uma tarefa que ocupava vaga, mas que as threads de trabalho recusaram executar.
+         */
+        private void recusar() {
+            rejeitadas.incrementAndGet();
+            vagas.release();
+            rejeitar();
+        }
+
+        private void rejeitar() {
+            try {
+                aoRejeitar.run();
+            } catch (RuntimeException e) {
+                LogUtils.logError("Erro ao tratar mensagem rejeitada: %s", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Inicialização tardia da instância compartilhada.
+     */
+    private static final class InstanciaCompartilhada {
+        private static final DespachanteMensagens INSTANCIA = new DespachanteMensagens(
+                Integer.parseInt(ConfigLoader.getConfigValue("despacho.threads")),
+                Boolean.parseBoolean(ConfigLoader.getConfigValue("despacho.threads_virtuais")),
+                Integer.parseInt(ConfigLoader.getConfigValue("despacho.capacidade_fila")),
+                PoliticaTransbordo.valueOf(ConfigLoader.getConfigValue("despacho.politica_transbordo"))
+        );
+    }
+}
@@ -0,0 +1,207 @@
+package br.edu.unifei.despacho;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Executor que serializa as tarefas de uma mesma chave e executa tarefas de chaves diferentes em paralelo sobre um
+ * {@link Executor} compartilhado. Cada chave ativa ocupa no máximo uma thread por vez e, ao terminar uma tarefa, volta
+ * para o fim da fila do executor, evitando que uma chave muito ativa monopolize as threads.
+ * <p>
+ * Uma chave só existe no mapa interno enquanto possui tarefas pendentes ou em execução, portanto chaves ociosas não
+ * ocupam memória.
+ * </p>
+ * <p>
+ * Se o executor recusar agendar uma chave, a chave sai do mapa e as tarefas pendentes dela são entregues à ação de
+ * recusa, para que a próxima tarefa da mesma chave volte a ser agendada em vez de ficar presa atrás de uma fila que
+ * nunca anda.
+ * </p>
+ */
+public class ExecutorPorChave {
+
+    private final Executor executor;
+    private final Consumer<Runnable> aoRecusar;
+    private final ConcurrentHashMap<String, FilaDaChave> filas = new ConcurrentHashMap<>();
+
+    /**
+     * @param executor O {@link Executor} que fornece as threads de trabalho.
+     */
+    public ExecutorPorChave(Executor executor) {
+        this(executor, tarefa -> {
+        });
+    }
+
+    /**
+     * @param executor  O {@link Executor} que fornece as threads de trabalho.
+     * @param aoRecusar Recebe cada tarefa pendente de uma chave que o executor recusou agendar.
+     */
+    public ExecutorPorChave(Executor executor, Consumer<Runnable> aoRecusar) {
+        this.executor = executor;
+        this.aoRecusar = aoRecusar;
+    }
+
+    /**
+     * Enfileira uma tarefa para a chave informada. A tarefa só é executada depois de todas as tarefas enfileiradas
+     * anteriormente para a mesma chave.
+     *
+     * @param chave  A chave que define a ordem de execução.
+     * @param tarefa A tarefa a ser executada.
+     * @throws RejectedExecutionException Se o executor recusar agendar a chave. A tarefa e as demais pendentes da
+     *                                    chave já terão sido entregues à ação de recusa.
+     */
+    public void executar(String chave, Runnable tarefa) {
+        boolean[] agendar = new boolean[1];
+        filas.compute(chave, (k, fila) -> {
+            if (fila == null) {
+                fila = new FilaDaChave();
+                agendar[0] = true;
+            }
+            fila.adicionar(tarefa);
+            return fila;
+        });
+
+        if (agendar[0]) {
+            agendar(chave);
+        }
+    }
+
+    /**
+     * Remove a tarefa pendente mais antiga da chave com a maior fila, sem afetar a tarefa em execução. Assim, uma
+     * origem que envia mensagens em excesso perde as próprias mensagens antes de afetar as demais.
+     *
+     * @return A tarefa removida, ou {@code null} se nenhuma chave tiver tarefas aguardando.
+     */
+    public Runnable removerMaisAntigaDaMaiorFila() {
+        String maiorChave = null;
+        int maiorProfundidade = 0;
+        for (Map.Entry<String, FilaDaChave> entrada : filas.entrySet()) {
+            int profundidade = entrada.getValue().getProfundidade();
+            if (profundidade > maiorProfundidade) {
+                maiorChave = entrada.getKey();
+                maiorProfundidade = profundidade;
+            }
+        }
+
+        if (maiorChave == null) {
+            return null;
+        }
+
+        Runnable[] removida = new Runnable[1];
+        filas.computeIfPresent(maiorChave, (k, fila) -> {
+            removida[0] = fila.remover();
+            return fila;
+        });
+        return removida[0];
+    }
+
+    /**
+     * @param chave A chave consultada.
+     * @return a quantidade de tarefas aguardando execução para a chave.
+     */
+    public int getProfundidadeFila(String chave) {
+        FilaDaChave fila = filas.get(chave);
+        return fila == null ? 0 : fila.getProfundidade();
+    }
+
+    /**
+     * @return um retrato da quantidade de tarefas aguardando execução para cada chave ativa.
+     */
+    public Map<String, Integer> getProfundidadesPorChave() {
+        Map<String, Integer> profundidades = new HashMap<>();
+        filas.forEach((chave, fila) -> profundidades.put(chave, fila.getProfundidade()));
+        return profundidades;
+    }
+
+    /**
+     * @return a quantidade de chaves com tarefas pendentes ou em execução.
+     */
+    public int getChavesAtivas() {
+        return filas.size();
+    }
+
+    /**
+     * Agenda no executor a execução da próxima tarefa da chave. Se o executor recusar, a chave é removida do mapa e
+     * suas tarefas pendentes vão para a ação de recusa.
+     *
+     * @param chave A chave cuja próxima tarefa será executada.
+     * @throws RejectedExecutionException Se o executor recusar a tarefa.
+     */
+    private void agendar(String chave) {
+        try {
+            executor.execute(() -> executarProxima(chave));
+        } catch (RejectedExecutionException e) {
+            FilaDaChave fila = filas.remove(chave);
+            if (fila != null) {
+                for (Runnable tarefa = fila.remover(); tarefa != null; tarefa = fila.remover()) {
+                    aoRecusar.accept(tarefa);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Executa a próxima tarefa da chave e, se houver mais tarefas pendentes, agenda a seguinte. Quando a fila fica
+     * vazia, a chave é removida do mapa.
+     *
+     * @param chave A chave cuja próxima tarefa será executada.
+     */
+    private void executarProxima(String chave) {
+        Runnable[] proxima = new Runnable[1];
+        filas.computeIfPresent(chave, (k, fila) -> {
+            proxima[0] = fila.remover();
+            return fila;
+        });
+
+        try {
+            if (proxima[0] != null) {
+                proxima[0].run();
+            }
+        } finally {
+            boolean[] reagendar = new boolean[1];
+            filas.computeIfPresent(chave, (k, fila) -> {
+                if (fila.getProfundidade() == 0) {
+                    return null;
+                }
+                reagendar[0] = true;
+                return fila;
+            });
+
+            if (reagendar[0]) {
+                agendar(chave);
+            }
+        }
+    }
+
+    /**
+     * Tarefas pendentes de uma chave. Todas as alterações acontecem dentro de operações atômicas do
+     * {@link ConcurrentHashMap}; o contador permite consultar a profundidade sem bloquear.
+     */
+    private static final class FilaDaChave {
+        private final ArrayDeque<Runnable> pendentes = new ArrayDeque<>();
+        private final AtomicInteger profundidade = new AtomicInteger();
+
+        private void adicionar(Runnable tarefa) {
+            pendentes.addLast(tarefa);
+            profundidade.incrementAndGet();
+        }
+
+        private Runnable remover() {
+            Runnable tarefa = pendentes.pollFirst();
+            if (tarefa != null) {
+                profundidade.decrementAndGet();
+            }
+            return tarefa;
+        }
+
+        private int getProfundidade() {
+            return profundidade.get();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package br.edu.unifei.despacho;
+
+/**
+ * Define o que o {@link DespachanteMensagens} deve fazer quando uma nova mensagem chega e a fila de processamento já
+ * está cheia.
+ */
+public enum PoliticaTransbordo {
+
+    /**
+     * Bloqueia a thread que recebeu a mensagem até que haja espaço na fila. Nenhuma mensagem é perdida, mas a pressão
+     * é propagada para o protocolo de origem.
+     */
+    BLOQUEAR,
+
+    /**
+     * Rejeita a nova mensagem, respondendo à origem com uma mensagem de erro quando a ação espera uma resposta.
+     */
+    REJEITAR,
+
+    /**
+     * Descarta a mensagem mais antiga ainda na fila para abrir espaço para a nova. A mensagem descartada é tratada
+     * como rejeitada.
+     */
+    DESCARTAR_MAIS_ANTIGA
+}
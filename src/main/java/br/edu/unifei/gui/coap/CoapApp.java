@@ -1,5 +1,6 @@
 package br.edu.unifei.gui.coap;
 
+import br.edu.unifei.despacho.DespachanteMensagens;
 import br.edu.unifei.gui.GUIComponents;
 import br.edu.unifei.modelos.mensagem.Mensagem;
 import br.edu.unifei.utils.ConfigLoader;
@@ -58,8 +59,12 @@ public class CoapApp extends GUIComponents {
         }
     }
 
+    /**
+     * Conclui as mensagens já despachadas antes de parar o servidor, para que as respostas ainda sejam enviadas.
+     */
     @Override
     protected void customWindowClosingBehavior() {
+        DespachanteMensagens.getInstancia().encerrar();
         try {
             coapHandler.stop();
         } catch (IOException e) {
@@ -1,6 +1,10 @@
 package br.edu.unifei.gui.coap;
 
+import br.edu.unifei.despacho.DespachanteMensagens;
+import br.edu.unifei.modelos.mensagem.FormatoMensagem;
 import br.edu.unifei.modelos.mensagem.Mensagem;
+import br.edu.unifei.tratamento.TratadorConsulta;
+import br.edu.unifei.tratamento.TratadorConsultaParcial;
 import br.edu.unifei.tratamento.TratadorMensagem;
 import br.edu.unifei.tratamento.TratadorMensagemFactory;
 import br.edu.unifei.utils.LogTextAreaUtils;
@@ -10,7 +14,6 @@ import com.mbed.coap.packet.CoapRequest;
 import com.mbed.coap.packet.CoapResponse;
 import com.mbed.coap.packet.Code;
 
-import java.nio.charset.StandardCharsets;
 import java.util.concurrent.CompletableFuture;
 
 import static com.mbed.coap.packet.CoapResponse.coapResponse;
@@ -22,6 +25,7 @@ public class CoapCallbackHandler {
 
     private final LogTextAreaUtils logTextArea;
     private final CoapHandler coapHandler;
+    private final DespachanteMensagens despachante;
 
     /**
      * @param logTextArea Utilitário para registrar logs na interface.
@@ -30,46 +34,109 @@ public class CoapCallbackHandler {
     public CoapCallbackHandler(LogTextAreaUtils logTextArea, CoapHandler coapHandler) {
         this.logTextArea = logTextArea;
         this.coapHandler = coapHandler;
+        this.despachante = DespachanteMensagens.getInstancia();
     }
 
     /**
-     * Método para lidar com requisições CoAP recebidas.
+     * Método para lidar com requisições CoAP recebidas. A mensagem é enfileirada no {@link DespachanteMensagens}
+     * compartilhado e a resposta CoAP é concluída quando o processamento termina, sem ocupar a thread do servidor
+     * CoAP. Mensagens de uma mesma origem são processadas na ordem de chegada. Requisições com content-format
+     * {@code application/cbor} são lidas em CBOR e respondidas no mesmo formato; as demais usam JSON.
      *
      * @param req Requisição CoAP que contém a mensagem a ser processada.
      * @return Um {@link CompletableFuture} com a resposta CoAP.
      */
     public CompletableFuture<CoapResponse> handleRequest(CoapRequest req) {
+        FormatoMensagem formato = CoapHandler.getFormato(req.options().getContentFormat());
+        Mensagem mensagemRecebida;
         try {
-            String payload = new String(req.getPayload().getBytes(), StandardCharsets.UTF_8);
-            LogUtils.logInfo("Mensagem recebida via CoAP: %s", payload);
+            mensagemRecebida = formato.decodificar(req.getPayload().getBytes());
+            LogUtils.logInfo("Mensagem recebida via CoAP: %s", mensagemRecebida);
+        } catch (Exception e) {
+            registrarErro(e);
+            return coapResponse(Code.C500_INTERNAL_SERVER_ERROR).toFuture();
+        }
 
-            Mensagem mensagemRecebida = Mensagem.fromJson(payload);
-            mensagemRecebida.adicionarAoMetadata("timestamp_servidor_msg_recebida",
-                    new JsonPrimitive(System.currentTimeMillis()));
+        CompletableFuture<CoapResponse> resposta = new CompletableFuture<>();
+        despachante.despachar(mensagemRecebida.getOrigem(), () -> {
+            try {
+                processarMensagem(mensagemRecebida, formato);
+                resposta.complete(coapResponse(Code.C204_CHANGED).build());
+            } catch (Exception e) {
+                registrarErro(e);
+                resposta.complete(coapResponse(Code.C500_INTERNAL_SERVER_ERROR).build());
+            }
+        }, () -> {
+            rejeitarMensagem(mensagemRecebida, formato);
+            resposta.complete(coapResponse(Code.C503_SERVICE_UNAVAILABLE).build());
+        });
+        return resposta;
+    }
 
-            String acao = mensagemRecebida.getAcao();
+    /**
+     * Processa uma mensagem recebida em uma thread de trabalho do {@link DespachanteMensagens}.
+     *
+     * @param mensagemRecebida A {@link Mensagem} recebida.
+     * @param formato          O formato em que a mensagem foi recebida, usado também na resposta.
+     */
+    private void processarMensagem(Mensagem mensagemRecebida, FormatoMensagem formato) {
+        mensagemRecebida.adicionarAoMetadata("timestamp_servidor_msg_recebida",
+                new JsonPrimitive(System.currentTimeMillis()));
 
-            TratadorMensagem tratador = TratadorMensagemFactory.getTratador(acao);
+        String acao = mensagemRecebida.getAcao();
 
-            if (acao.contains("CONSULTAR")) {
-                String resposta = tratador.processar(mensagemRecebida);
-                coapHandler.sendMessage(resposta);
+        TratadorMensagem tratador = TratadorMensagemFactory.getTratador(acao);
 
-                String logResposta = String.format("Resposta gerada para %s:%s", mensagemRecebida.getOrigem(), resposta);
-                LogUtils.logInfo(logResposta);
-                logTextArea.adicionarLog(logResposta + "\n");
+        if (acao.contains("CONSULTAR")) {
+            String resposta;
+            if (tratador instanceof TratadorConsulta) {
+                Mensagem mensagemResposta = tratador instanceof TratadorConsultaParcial
+                        ? ((TratadorConsultaParcial) tratador).consultar(mensagemRecebida,
+                                parcial -> coapHandler.sendMessage(parcial, formato))
+                        : ((TratadorConsulta) tratador).consultar(mensagemRecebida);
+                coapHandler.sendMessage(mensagemResposta, formato);
+                resposta = mensagemResposta.toString();
             } else {
-                String textoRecebimento = tratador.processar(mensagemRecebida);
-                LogUtils.logInfo(textoRecebimento);
-                logTextArea.adicionarLog(textoRecebimento + "\n");
+                resposta = tratador.processar(mensagemRecebida);
+                coapHandler.sendMessage(resposta);
             }
 
-            return coapResponse(Code.C204_CHANGED).toFuture();
-        } catch (Exception e) {
-            String logErroProcessarMensagem = String.format("Erro ao processar mensagem recebida: %s", e.getMessage());
-            LogUtils.logError(logErroProcessarMensagem);
-            logTextArea.adicionarLog(logErroProcessarMensagem + "\n");
-            return coapResponse(Code.C500_INTERNAL_SERVER_ERROR).toFuture();
+            String logResposta = String.format("Resposta gerada para %s:%s", mensagemRecebida.getOrigem(), resposta);
+            LogUtils.logInfo(logResposta);
+            logTextArea.adicionarLog(logResposta + "\n");
+        } else {
+            String textoRecebimento = tratador.processar(mensagemRecebida);
+            LogUtils.logInfo(textoRecebimento);
+            logTextArea.adicionarLog(textoRecebimento + "\n");
         }
     }
+
+    /**
+     * Trata uma mensagem que não coube na fila do {@link DespachanteMensagens}. Consultas recebem uma resposta de
+     * erro para que a origem não fique aguardando indefinidamente.
+     *
+     * @param mensagemRejeitada A {@link Mensagem} rejeitada.
+     * @param formato           O formato em que a mensagem foi recebida, usado também na resposta.
+     */
+    private void rejeitarMensagem(Mensagem mensagemRejeitada, FormatoMensagem formato) {
+        String logRejeicao = String.format("Mensagem %s de %s rejeitada por sobrecarga.",
+                mensagemRejeitada.getAcao(), mensagemRejeitada.getOrigem());
+        LogUtils.logWarn(logRejeicao);
+        logTextArea.adicionarLog(logRejeicao + "\n");
+
+        if (mensagemRejeitada.getAcao().contains("CONSULTAR")) {
+            coapHandler.sendMessage(DespachanteMensagens.gerarRespostaDeRejeicao(mensagemRejeitada), formato);
+        }
+    }
+
+    /**
+     * Registra no log e na interface um erro ocorrido no processamento de uma mensagem.
+     *
+     * @param e A exceção lançada durante o processamento.
+     */
+    private void registrarErro(Exception e) {
+        String logErroProcessarMensagem = String.format("Erro ao processar mensagem recebida: %s", e.getMessage());
+        LogUtils.logError(logErroProcessarMensagem);
+        logTextArea.adicionarLog(logErroProcessarMensagem + "\n");
+    }
 }
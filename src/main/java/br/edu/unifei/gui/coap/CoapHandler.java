@@ -1,5 +1,7 @@
 package br.edu.unifei.gui.coap;
 
+import br.edu.unifei.modelos.mensagem.FormatoMensagem;
+import br.edu.unifei.modelos.mensagem.Mensagem;
 import br.edu.unifei.utils.ConfigLoader;
 import br.edu.unifei.utils.LogTextAreaUtils;
 import br.edu.unifei.utils.LogUtils;
@@ -8,6 +10,7 @@ import com.mbed.coap.packet.BlockSize;
 import com.mbed.coap.packet.CoapRequest;
 import com.mbed.coap.packet.CoapResponse;
 import com.mbed.coap.packet.MediaTypes;
+import com.mbed.coap.packet.Opaque;
 import com.mbed.coap.server.CoapServer;
 import com.mbed.coap.server.RouterService;
 import com.mbed.coap.transport.udp.DatagramSocketTransport;
@@ -80,6 +83,53 @@ public class CoapHandler {
         }
     }
 
+    /**
+     * Envia uma mensagem CoAP para o barramento de serviço no formato indicado, informando o content-format
+     * correspondente.
+     *
+     * @param mensagem A {@link Mensagem} a ser enviada.
+     * @param formato  O formato de codificação da mensagem.
+     */
+    public void sendMessage(Mensagem mensagem, FormatoMensagem formato) {
+        try {
+            CompletableFuture<CoapResponse> responseFuture = coapClient.send(
+                    CoapRequest.post(SERVICE_BUS_ENDPOINT)
+                            .payload(Opaque.of(formato.codificar(mensagem)), getContentFormat(formato))
+            );
+
+            responseFuture.thenAccept(response -> {
+                String payload = response.getPayloadString();
+                LogUtils.logInfo("Resposta recebida do servidor CoAP: %s", payload);
+            }).exceptionally(e -> {
+                LogUtils.logError("Erro ao enviar mensagem CoAP: %s", e.getMessage());
+                return null;
+            });
+        } catch (Exception e) {
+            LogUtils.logError("Erro ao enviar mensagem CoAP: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Identifica o formato de uma mensagem a partir do content-format da requisição. Requisições sem content-format
+     * são tratadas como JSON.
+     *
+     * @param contentFormat O content-format da requisição, ou {@code null}.
+     * @return O {@link FormatoMensagem} correspondente.
+     */
+    static FormatoMensagem getFormato(Short contentFormat) {
+        return contentFormat != null && contentFormat == MediaTypes.CT_APPLICATION_CBOR
+                ? FormatoMensagem.CBOR
+                : FormatoMensagem.JSON;
+    }
+
+    /**
+     * @param formato O formato de codificação da mensagem.
+     * @return O content-format CoAP correspondente ao formato.
+     */
+    static short getContentFormat(FormatoMensagem formato) {
+        return formato == FormatoMensagem.CBOR ? MediaTypes.CT_APPLICATION_CBOR : MediaTypes.CT_APPLICATION_JSON;
+    }
+
     /**
      * Interrompe o servidor e o cliente CoAP, liberando recursos.
      *
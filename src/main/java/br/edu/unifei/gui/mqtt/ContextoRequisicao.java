@@ -0,0 +1,61 @@
+package br.edu.unifei.gui.mqtt;
+
+/**
+ * Dados de uma requisição recebida que vêm fora do corpo da mensagem, nas propriedades do MQTT 5: o tópico e os dados
+ * de correlação que a origem pediu na resposta, e a origem, lida sem decodificar o corpo.
+ * <p>
+ * No MQTT 3.1.1 não há propriedades, e o contexto tem apenas o instante de recebimento.
+ * </p>
+ */
+public final class ContextoRequisicao {
+
+    private final String topicoResposta;
+    private final byte[] dadosCorrelacao;
+    private final String origem;
+    private final long recebidaEm;
+
+    /**
+     * @param topicoResposta  O tópico em que a origem espera a resposta, ou {@code null}.
+     * @param dadosCorrelacao Os dados que identificam a requisição na resposta, ou {@code null}.
+     * @param origem          A origem da requisição, ou {@code null} se não veio nas propriedades.
+     * @param recebidaEm      O instante de recebimento, em milissegundos desde a época.
+     */
+    public ContextoRequisicao(String topicoResposta, byte[] dadosCorrelacao, String origem, long recebidaEm) {
+        this.topicoResposta = topicoResposta;
+        this.dadosCorrelacao = dadosCorrelacao;
+        this.origem = origem;
+        this.recebidaEm = recebidaEm;
+    }
+
+    /**
+     * @return um contexto sem propriedades, recebido agora.
+     */
+    public static ContextoRequisicao semPropriedades() {
+        return new ContextoRequisicao(null, null, null, System.currentTimeMillis());
+    }
+
+    /**
+     * @return o tópico em que a origem espera a resposta, ou {@code null} para o tópico do barramento.
+     */
+    public String getTopicoResposta() {
+        return topicoResposta;
+    }
+
+    /**
+     * @return os dados que identificam a requisição na resposta, ou {@code null}.
+     */
+    public byte[] getDadosCorrelacao() {
+        return dadosCorrelacao;
+    }
+
+    /**
+     * @return a origem da requisição, ou {@code null} se for preciso decodificar o corpo para conhecê-la.
+     */
+    public String getOrigem() {
+        return origem;
+    }
+
+    public long getRecebidaEm() {
+        return recebidaEm;
+    }
+}
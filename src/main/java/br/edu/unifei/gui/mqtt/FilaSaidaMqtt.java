@@ -0,0 +1,393 @@
+package br.edu.unifei.gui.mqtt;
+
+import br.edu.unifei.utils.LogTextAreaUtils;
+import br.edu.unifei.utils.LogUtils;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fila de saída e reconexão dos clientes MQTT assíncronos, comum ao {@link MqttPahoAsyncClient} e ao
+ * {@link MqttPahoV5Client}.
+ * <p>
+ * As publicações esperam, na ordem de chegada, em uma fila limitada e saem dela enquanto houver conexão e vaga na
+ * janela de mensagens aguardando a confirmação do broker. Com a fila cheia, a mensagem mais antiga é descartada e o
+ * resultado dela falha com {@link RejectedExecutionException}. Mensagens cuja regra de publicação tem expiração e que
+ * não saem da fila antes de expirar são descartadas sem envio, e o resultado falha com {@link TimeoutException}.
+ * </p>
+ * <p>
+ * Quando a conexão cai, ou a primeira conexão falha, a fila agenda tentativas de reconexão com esperas que dobram a
+ * cada falha, até um máximo, sorteadas entre a metade e o total para que vários servidores não reconectem todos ao
+ * mesmo tempo. Depois de reconectar, as mensagens acumuladas são enviadas na ordem, e a taxa dessa drenagem é
+ * registrada.
+ * </p>
+ *
+ * @param <M> A mensagem do cliente Paho, já montada para o envio.
+ */
+final class FilaSaidaMqtt<M> {
+
+    /**
+     * Operações do cliente Paho usadas pela fila.
+     *
+     * @param <M> A mensagem do cliente Paho.
+     */
+    interface Cliente<M> {
+
+        /**
+         * Entrega a mensagem ao Paho sem aguardar a confirmação, que o cliente repassa a
+         * {@link FilaSaidaMqtt#concluir}. Chamado com o monitor da fila.
+         *
+         * @param pendente A mensagem que saiu da fila.
+         * @throws Exception Se o Paho recusar a mensagem.
+         */
+        void enviar(Pendente<M> pendente) throws Exception;
+
+        /**
+         * @param erro A recusa lançada por {@link #enviar}.
+         * @return se a recusa indica que a conexão caiu antes de o aviso chegar; nesse caso a mensagem volta para o
+         * início da fila.
+         */
+        boolean semConexao(Exception erro);
+
+        /**
+         * Inicia uma tentativa de reconexão, que deve terminar em {@link FilaSaidaMqtt#aoConectar} ou em
+         * {@link FilaSaidaMqtt#agendarReconexao}.
+         */
+        void reconectar();
+    }
+
+    private final LogTextAreaUtils logTextArea;
+    private final int maxEmVoo;
+    private final int capacidade;
+    private final long esperaInicialMillis;
+    private final long esperaMaximaMillis;
+    private final ScheduledExecutorService agendador;
+    private final Cliente<M> cliente;
+
+    // Estado protegido pelo monitor da fila
+    private final ArrayDeque<Pendente<M>> fila = new ArrayDeque<>();
+    private int emVoo;
+    private boolean conectado;
+    private boolean encerrado;
+    private int tentativas;
+    private long reconexoes;
+    private long descartadas;
+    private int aDrenar;
+    private int drenagemTotal;
+    private long inicioDrenagem;
+    private double taxaDrenagem;
+
+    /**
+     * @param clientId            O ID do cliente, usado no nome da thread de reconexão.
+     * @param maxEmVoo            Quantidade máxima de publicações aguardando a confirmação do broker.
+     * @param capacidade          Quantidade máxima de publicações aguardando envio, com ou sem conexão.
+     * @param esperaInicialMillis Espera máxima antes da primeira tentativa de reconexão, em milissegundos.
+     * @param esperaMaximaMillis  Limite da espera entre as tentativas de reconexão, em milissegundos.
+     * @param logTextArea         Utilitário para registrar logs na interface.
+     * @param cliente             O cliente Paho que envia as mensagens e reconecta.
+     * @throws IllegalArgumentException Se a janela ou a capacidade não forem positivas.
+     */
+    FilaSaidaMqtt(String clientId, int maxEmVoo, int capacidade, long esperaInicialMillis, long esperaMaximaMillis,
+                  LogTextAreaUtils logTextArea, Cliente<M> cliente) {
+        if (maxEmVoo <= 0 || capacidade <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "A janela e a fila de saída devem ser positivas: %d e %d", maxEmVoo, capacidade));
+        }
+        this.logTextArea = logTextArea;
+        this.maxEmVoo = maxEmVoo;
+        this.capacidade = capacidade;
+        this.esperaInicialMillis = Math.max(1, esperaInicialMillis);
+        this.esperaMaximaMillis = Math.max(this.esperaInicialMillis, esperaMaximaMillis);
+        this.cliente = cliente;
+        this.agendador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "mqtt-reconexao-" + clientId);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Coloca a mensagem na fila e a envia, na ordem, assim que houver conexão e vaga na janela.
+     *
+     * @param topico   O tópico no qual a mensagem será publicada.
+     * @param mensagem A mensagem do cliente Paho.
+     * @param regra    Os parâmetros de publicação.
+     * @return Concluído quando o broker confirmar o recebimento, ou com falha se a mensagem for descartada.
+     */
+    CompletableFuture<Void> publicar(String topico, M mensagem, PoliticaPublicacao.Regra regra) {
+        Pendente<M> pendente = new Pendente<>(topico, mensagem, regra);
+        Pendente<M> descartada = null;
+        synchronized (fila) {
+            if (encerrado) {
+                pendente.resultado.completeExceptionally(new IllegalStateException("Cliente MQTT desconectado"));
+                return pendente.resultado;
+            }
+            if (fila.size() >= capacidade) {
+                descartada = fila.pollFirst();
+                descartadas++;
+                if (aDrenar > 0) {
+                    aDrenar--;
+                }
+            }
+            fila.addLast(pendente);
+        }
+        if (descartada != null) {
+            descartada.resultado.completeExceptionally(new RejectedExecutionException(
+                    "Fila de saída cheia, mensagem mais antiga descartada"));
+        }
+        bombear();
+        return pendente.resultado;
+    }
+
+    /**
+     * Envia as mensagens da fila, na ordem, enquanto houver conexão e vaga na janela. A entrega ao Paho acontece com o
+     * monitor da fila, para que duas threads bombeando ao mesmo tempo não invertam a ordem das mensagens na conexão.
+     */
+    private void bombear() {
+        while (true) {
+            Pendente<M> expirada;
+            synchronized (fila) {
+                if (!conectado || emVoo >= maxEmVoo || fila.isEmpty()) {
+                    return;
+                }
+                Pendente<M> proxima = fila.pollFirst();
+                contarDrenagem();
+                if (proxima.expirou()) {
+                    expirada = proxima;
+                } else {
+                    emVoo++;
+                    iniciarEnvio(proxima);
+                    continue;
+                }
+            }
+            expirada.resultado.completeExceptionally(new TimeoutException("Mensagem expirada antes do envio"));
+        }
+    }
+
+    /**
+     * Entrega a mensagem ao cliente Paho. Chamado com o monitor da fila.
+     */
+    private void iniciarEnvio(Pendente<M> pendente) {
+        try {
+            cliente.enviar(pendente);
+        } catch (Exception e) {
+            emVoo--;
+            if (cliente.semConexao(e)) {
+                conectado = false;
+                fila.addFirst(pendente);
+            } else {
+                pendente.resultado.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Libera a vaga da mensagem na janela e conclui o resultado dela.
+     *
+     * @param pendente A mensagem confirmada pelo broker ou recusada de vez.
+     * @param erro     A causa da recusa, ou {@code null} se o broker confirmou o recebimento.
+     */
+    void concluir(Pendente<M> pendente, Throwable erro) {
+        synchronized (fila) {
+            emVoo--;
+        }
+        if (erro != null) {
+            pendente.resultado.completeExceptionally(erro);
+        } else {
+            pendente.resultado.complete(null);
+        }
+        bombear();
+    }
+
+    /**
+     * Conta as mensagens que saem da fila depois de uma reconexão, até enviar todas as que se acumularam sem conexão.
+     * Chamado com o monitor da fila.
+     */
+    private void contarDrenagem() {
+        if (aDrenar == 0 || --aDrenar > 0) {
+            return;
+        }
+        long duracao = Math.max(1, System.nanoTime() - inicioDrenagem);
+        taxaDrenagem = drenagemTotal / (duracao / 1e9);
+        String logDrenagem = String.format("Fila de saída drenada: %d mensagens em %d ms (%.0f msg/s)",
+                drenagemTotal, TimeUnit.NANOSECONDS.toMillis(duracao), taxaDrenagem);
+        LogUtils.logInfo(logDrenagem);
+        logTextArea.adicionarLog(logDrenagem);
+    }
+
+    /**
+     * Marca a fila como conectada e começa a enviar as mensagens acumuladas.
+     *
+     * @param sessaoPresente Se o broker manteve a sessão anterior do cliente.
+     * @param reconexao      Se a conexão substitui uma que caiu ou uma primeira tentativa que falhou.
+     */
+    void aoConectar(boolean sessaoPresente, boolean reconexao) {
+        int pendentes;
+        synchronized (fila) {
+            if (encerrado) {
+                return;
+            }
+            conectado = true;
+            tentativas = 0;
+            pendentes = fila.size();
+            if (reconexao) {
+                reconexoes++;
+                aDrenar = pendentes;
+                drenagemTotal = pendentes;
+                inicioDrenagem = System.nanoTime();
+            }
+        }
+        if (reconexao) {
+            String logReconexao = String.format("Cliente MQTT reconectado (%s), %d mensagens na fila de saída",
+                    sessaoPresente ? "sessão mantida" : "inscrições refeitas", pendentes);
+            LogUtils.logInfo(logReconexao);
+            logTextArea.adicionarLog(logReconexao);
+        }
+        bombear();
+    }
+
+    /**
+     * Suspende o envio e agenda a reconexão.
+     */
+    void aoPerderConexao() {
+        synchronized (fila) {
+            conectado = false;
+        }
+        agendarReconexao();
+    }
+
+    /**
+     * Agenda uma tentativa de reconexão. A espera máxima dobra a cada tentativa sem sucesso, até o limite
+     * configurado, e a espera efetiva é sorteada entre a metade e o total dela.
+     */
+    void agendarReconexao() {
+        int tentativa;
+        synchronized (fila) {
+            if (encerrado) {
+                return;
+            }
+            tentativa = tentativas++;
+        }
+        long limite = Math.min(esperaMaximaMillis, esperaInicialMillis << Math.min(tentativa, 20));
+        long espera = limite / 2 + ThreadLocalRandom.current().nextLong(limite - limite / 2 + 1);
+        try {
+            agendador.schedule(cliente::reconectar, espera, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Cliente desconectado
+        }
+    }
+
+    /**
+     * Interrompe as tentativas de reconexão e faz falhar as mensagens ainda na fila.
+     */
+    void encerrar() {
+        ArrayDeque<Pendente<M>> abandonadas;
+        synchronized (fila) {
+            encerrado = true;
+            conectado = false;
+            abandonadas = new ArrayDeque<>(fila);
+            fila.clear();
+        }
+        agendador.shutdownNow();
+        for (Pendente<M> pendente : abandonadas) {
+            pendente.resultado.completeExceptionally(new IllegalStateException("Cliente MQTT desconectado"));
+        }
+    }
+
+    boolean isEncerrado() {
+        synchronized (fila) {
+            return encerrado;
+        }
+    }
+
+    boolean isConectado() {
+        synchronized (fila) {
+            return conectado;
+        }
+    }
+
+    int getEmVoo() {
+        synchronized (fila) {
+            return emVoo;
+        }
+    }
+
+    int getProfundidade() {
+        synchronized (fila) {
+            return fila.size();
+        }
+    }
+
+    long getReconexoes() {
+        synchronized (fila) {
+            return reconexoes;
+        }
+    }
+
+    long getDescartadas() {
+        synchronized (fila) {
+            return descartadas;
+        }
+    }
+
+    double getTaxaDrenagem() {
+        synchronized (fila) {
+            return taxaDrenagem;
+        }
+    }
+
+    /**
+     * Publicação aguardando conexão, vaga na janela ou confirmação do broker.
+     *
+     * @param <M> A mensagem do cliente Paho.
+     */
+    static final class Pendente<M> {
+        private final String topico;
+        private final M mensagem;
+        private final PoliticaPublicacao.Regra regra;
+        private final long expiraEm;
+        private final CompletableFuture<Void> resultado = new CompletableFuture<>();
+
+        private Pendente(String topico, M mensagem, PoliticaPublicacao.Regra regra) {
+            this.topico = topico;
+            this.mensagem = mensagem;
+            this.regra = regra;
+            this.expiraEm = regra.getExpiracaoSegundos() > 0
+                    ? System.nanoTime() + TimeUnit.SECONDS.toNanos(regra.getExpiracaoSegundos()) : 0;
+        }
+
+        private boolean expirou() {
+            return expiraEm != 0 && System.nanoTime() - expiraEm > 0;
+        }
+
+        String getTopico() {
+            return topico;
+        }
+
+        M getMensagem() {
+            return mensagem;
+        }
+
+        PoliticaPublicacao.Regra getRegra() {
+            return regra;
+        }
+
+        /**
+         * @return os segundos que faltam para a mensagem expirar, arredondados para cima, ou {@code 0} se a regra não
+         * tiver expiração.
+         */
+        long getExpiracaoRestanteSegundos() {
+            if (expiraEm == 0) {
+                return 0;
+            }
+            long restante = Math.max(1, expiraEm - System.nanoTime());
+            return (restante + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+        }
+    }
+}
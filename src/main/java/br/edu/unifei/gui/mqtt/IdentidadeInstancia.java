@@ -0,0 +1,98 @@
+package br.edu.unifei.gui.mqtt;
+
+import br.edu.unifei.utils.ConfigLoader;
+
+/**
+ * Identidade da instância do servidor no broker MQTT: o ID do cliente e os filtros usados nas inscrições.
+ * <p>
+ * Fora do modo cluster, o servidor se conecta com o ID fixo de {@code mqtt.cliente.id} e se inscreve diretamente nos
+ * tópicos, e só uma instância pode rodar: uma segunda, com o mesmo ID, derruba a primeira do broker, e com outro ID
+ * recebe cópias de todas as requisições. Com {@code mqtt.cluster.ativo}, cada instância acrescenta ao ID o nome de
+ * {@code mqtt.cluster.instancia} e se inscreve em {@code $share/<grupo>/<tópico>}, e o broker entrega cada requisição
+ * a apenas uma das instâncias do grupo. A ordem de processamento das requisições de uma mesma origem passa a valer
+ * apenas dentro de cada instância.
+ * </p>
+ * <p>
+ * No modo cluster, o nome da instância é obrigatório. Como a sessão no broker não é limpa, um nome gerado a cada
+ * execução, como o da máquina com o PID, deixaria para trás uma sessão órfã no grupo a cada reinício, e o broker
+ * continuaria reservando a ela parte das requisições compartilhadas.
+ * </p>
+ */
+public final class IdentidadeInstancia {
+
+    private static final String PREFIXO_COMPARTILHADA = "$share/";
+
+    private final String clientId;
+    private final String grupo;
+
+    /**
+     * @param idBase    O ID do cliente fora do modo cluster.
+     * @param grupo     O grupo da inscrição compartilhada, ou {@code null} fora do modo cluster.
+     * @param instancia O nome da instância no grupo, ignorado fora do modo cluster.
+     * @throws IllegalArgumentException Se o grupo ou o nome da instância forem inválidos.
+     */
+    IdentidadeInstancia(String idBase, String grupo, String instancia) {
+        if (grupo == null) {
+            this.clientId = idBase;
+            this.grupo = null;
+            return;
+        }
+        if (grupo.isEmpty() || grupo.contains("/") || grupo.contains("+") || grupo.contains("#")) {
+            throw new IllegalArgumentException("Grupo de inscrição compartilhada inválido: '" + grupo + "'");
+        }
+        if (instancia == null || instancia.isEmpty()) {
+            throw new IllegalArgumentException("O modo cluster exige um nome de instância");
+        }
+        this.clientId = idBase + "-" + instancia;
+        this.grupo = grupo;
+    }
+
+    /**
+     * @return a identidade definida no {@code config.properties}.
+     * @throws IllegalArgumentException Se o modo cluster estiver ativo sem {@code mqtt.cluster.instancia}.
+     */
+    public static IdentidadeInstancia daConfiguracao() {
+        return daConfiguracao(ConfigLoader.getConfigValue("mqtt.cliente.id"),
+                Boolean.parseBoolean(ConfigLoader.getConfigValue("mqtt.cluster.ativo")),
+                ConfigLoader.getConfigValue("mqtt.cluster.grupo"),
+                ConfigLoader.getConfigValue("mqtt.cluster.instancia"));
+    }
+
+    static IdentidadeInstancia daConfiguracao(String idBase, boolean cluster, String grupo, String instancia) {
+        if (!cluster) {
+            return new IdentidadeInstancia(idBase, null, null);
+        }
+        if (instancia == null || instancia.trim().isEmpty()) {
+            throw new IllegalArgumentException("Com mqtt.cluster.ativo=true, defina em mqtt.cluster.instancia um nome "
+                    + "fixo e único para esta instância");
+        }
+        return new IdentidadeInstancia(idBase, grupo.trim(), instancia.trim());
+    }
+
+    /**
+     * @return o ID do cliente MQTT, único por instância no modo cluster.
+     */
+    public String getClientId() {
+        return clientId;
+    }
+
+    /**
+     * @return se a instância faz parte de um grupo de inscrição compartilhada.
+     */
+    public boolean isCluster() {
+        return grupo != null;
+    }
+
+    /**
+     * @param topico O tópico em que o servidor recebe as requisições.
+     * @return O filtro da inscrição: o próprio tópico ou, no modo cluster, a inscrição compartilhada do grupo.
+     */
+    public String filtroInscricao(String topico) {
+        return grupo == null ? topico : PREFIXO_COMPARTILHADA + grupo + "/" + topico;
+    }
+
+    @Override
+    public String toString() {
+        return grupo == null ? clientId : clientId + " (grupo " + grupo + ")";
+    }
+}
@@ -1,8 +1,13 @@
 package br.edu.unifei.gui.mqtt;
 
+import br.edu.unifei.despacho.DespachanteMensagens;
+import br.edu.unifei.modelos.mensagem.FormatoMensagem;
 import br.edu.unifei.modelos.mensagem.Mensagem;
+import br.edu.unifei.tratamento.TratadorConsulta;
+import br.edu.unifei.tratamento.TratadorConsultaParcial;
 import br.edu.unifei.tratamento.TratadorMensagem;
 import br.edu.unifei.tratamento.TratadorMensagemFactory;
+import br.edu.unifei.utils.ConfigLoader;
 import br.edu.unifei.utils.LogTextAreaUtils;
 import br.edu.unifei.utils.LogUtils;
 import com.google.gson.JsonPrimitive;
@@ -10,21 +15,50 @@ import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * Classe responsável por gerenciar as chamadas de retorno (callbacks) do cliente MQTT.
+ * <p>
+ * Mensagens recebidas em tópicos terminados pelo sufixo configurado em {@code mqtt.formato.sufixo_cbor} são lidas
+ * em CBOR, e as respostas às consultas são publicadas em CBOR no tópico do barramento com o mesmo sufixo. Nos demais
+ * tópicos é usado JSON.
+ * </p>
+ * <p>
+ * O QoS, a retenção e a expiração de cada resposta seguem a regra da {@link PoliticaPublicacao} para a ação da
+ * resposta.
+ * </p>
+ * <p>
+ * As respostas levam no metadata, em {@code instancia_servidor}, o ID do cliente MQTT da instância que as gerou, para
+ * identificar quem respondeu quando várias instâncias dividem as requisições (ver {@link IdentidadeInstancia}).
+ * </p>
+ * <p>
+ * Clientes MQTT 5 entregam as requisições por {@link #receber}, com as propriedades no {@link ContextoRequisicao}.
+ * Quando a origem vem nas propriedades, o corpo só é decodificado na thread de trabalho, e a resposta segue para o
+ * tópico de resposta pedido, com os dados de correlação recebidos.
+ * </p>
  */
 public class MqttCallbackHandler implements MqttCallback {
 
+    static final String SUFIXO_CBOR = ConfigLoader.getConfigValue("mqtt.formato.sufixo_cbor");
+    private static final String TOPICO_BARRAMENTO = "topico/barramento";
+    private static final PoliticaPublicacao POLITICA = PoliticaPublicacao.daConfiguracao();
+
     private final LogTextAreaUtils logTextArea;
-    private final MqttPahoClient mqttClient;
+    private final MqttClientStrategy mqttClient;
+    private final JsonPrimitive instancia;
+    private final DespachanteMensagens despachante;
 
     /**
      * @param logTextArea Utilitário para registrar logs na interface.
      * @param mqttClient  O cliente MQTT associado a este handler.
+     * @param clientId    O ID do cliente MQTT, que identifica a instância nas respostas.
      */
-    public MqttCallbackHandler(LogTextAreaUtils logTextArea, MqttPahoClient mqttClient) {
+    public MqttCallbackHandler(LogTextAreaUtils logTextArea, MqttClientStrategy mqttClient, String clientId) {
         this.logTextArea = logTextArea;
         this.mqttClient = mqttClient;
+        this.instancia = new JsonPrimitive(clientId);
+        this.despachante = DespachanteMensagens.getInstancia();
     }
 
     /**
@@ -39,49 +73,159 @@ public class MqttCallbackHandler implements MqttCallback {
     }
 
     /**
-     * Chamado quando uma mensagem chega ao cliente MQTT.
+     * Chamado quando uma mensagem chega ao cliente MQTT. A mensagem é apenas enfileirada no
+     * {@link DespachanteMensagens}, liberando a thread de callback do Paho para a próxima mensagem. Mensagens de uma
+     * mesma origem são processadas, e respondidas, na ordem de chegada.
      *
      * @param topico   O tópico por onde a mensagem foi recebida.
      * @param mensagem A mensagem recebida.
-     * @throws InterruptedException Se a thread for interrompida.
      */
     @Override
-    public void messageArrived(String topico, MqttMessage mensagem) throws InterruptedException {
-        Thread.sleep(50);
+    public void messageArrived(String topico, MqttMessage mensagem) {
+        receber(topico, mensagem.getPayload(), ContextoRequisicao.semPropriedades());
+    }
+
+    /**
+     * Enfileira uma mensagem recebida no {@link DespachanteMensagens}. Se a origem veio nas propriedades da
+     * requisição, a decodificação do corpo também fica para a thread de trabalho.
+     *
+     * @param topico     O tópico por onde a mensagem foi recebida.
+     * @param payload    O corpo da mensagem.
+     * @param requisicao O contexto da requisição.
+     */
+    void receber(String topico, byte[] payload, ContextoRequisicao requisicao) {
+        FormatoMensagem formato = topico.endsWith(SUFIXO_CBOR) ? FormatoMensagem.CBOR : FormatoMensagem.JSON;
+        if (requisicao.getOrigem() != null) {
+            despachante.despachar(requisicao.getOrigem(),
+                    () -> {
+                        Mensagem mensagemRecebida = decodificar(payload, formato);
+                        if (mensagemRecebida != null) {
+                            processarMensagem(mensagemRecebida, formato, requisicao);
+                        }
+                    },
+                    () -> {
+                        Mensagem mensagemRecebida = decodificar(payload, formato);
+                        if (mensagemRecebida != null) {
+                            rejeitarMensagem(mensagemRecebida, formato, requisicao);
+                        }
+                    });
+            return;
+        }
+
+        Mensagem mensagemRecebida = decodificar(payload, formato);
+        if (mensagemRecebida == null) {
+            return;
+        }
+        despachante.despachar(mensagemRecebida.getOrigem(),
+                () -> processarMensagem(mensagemRecebida, formato, requisicao),
+                () -> rejeitarMensagem(mensagemRecebida, formato, requisicao));
+    }
+
+    /**
+     * @return a mensagem decodificada, ou {@code null} se o corpo for inválido, o que é registrado no log.
+     */
+    private Mensagem decodificar(byte[] payload, FormatoMensagem formato) {
+        try {
+            return formato.decodificar(payload);
+        } catch (Exception e) {
+            String logErroProcessarMensagem = String.format("Erro ao processar mensagem recebida: %s", e.getMessage());
+            LogUtils.logError(logErroProcessarMensagem);
+            logTextArea.adicionarLog(logErroProcessarMensagem + "\n");
+            return null;
+        }
+    }
+
+    /**
+     * Processa uma mensagem recebida em uma thread de trabalho do {@link DespachanteMensagens}.
+     *
+     * @param mensagemRecebida A {@link Mensagem} recebida.
+     * @param formato          O formato em que a mensagem foi recebida, usado também na resposta.
+     * @param requisicao       O contexto da requisição.
+     */
+    private void processarMensagem(Mensagem mensagemRecebida, FormatoMensagem formato,
+                                   ContextoRequisicao requisicao) {
+        try {
+            mensagemRecebida.adicionarAoMetadata("timestamp_servidor_msg_recebida",
+                    new JsonPrimitive(System.currentTimeMillis()));
 
-        Mensagem mensagemRecebida = Mensagem.fromJson(mensagem.toString());
-        mensagemRecebida.adicionarAoMetadata("timestamp_servidor_msg_recebida",
-                new JsonPrimitive(System.currentTimeMillis()));
+            String acao = mensagemRecebida.getAcao();
 
-        String acao = mensagemRecebida.getAcao();
+            TratadorMensagem tratador = TratadorMensagemFactory.getTratador(acao);
 
-        TratadorMensagem tratador = TratadorMensagemFactory.getTratador(acao);
+            if (acao.contains("CONSULTAR")) {
+                String resposta;
+                if (tratador instanceof TratadorConsulta) {
+                    Mensagem mensagemResposta = tratador instanceof TratadorConsultaParcial
+                            ? ((TratadorConsultaParcial) tratador).consultar(mensagemRecebida,
+                                    parcial -> publicarResposta(parcial, formato, requisicao))
+                            : ((TratadorConsulta) tratador).consultar(mensagemRecebida);
+                    publicarResposta(mensagemResposta, formato, requisicao);
+                    resposta = mensagemResposta.toString();
+                } else {
+                    resposta = tratador.processar(mensagemRecebida);
+                    mqttClient.publishResposta(TOPICO_BARRAMENTO, null, resposta.getBytes(StandardCharsets.UTF_8),
+                            POLITICA.regraPara(acao), requisicao);
+                }
 
-        if (acao.contains("CONSULTAR")) {
-            String resposta = tratador.processar(mensagemRecebida);
-            mqttClient.publish("topico/barramento", resposta);
+                String logResposta = String.format("Resposta gerada para %s: %s", mensagemRecebida.getOrigem(), resposta);
+                LogUtils.logInfo(logResposta);
+                logTextArea.adicionarLog(logResposta + "\n");
+            } else {
+                String textoRecebimento = tratador.processar(mensagemRecebida);
+                LogUtils.logInfo(textoRecebimento);
+                logTextArea.adicionarLog(textoRecebimento + "\n");
+            }
+        } catch (Exception e) {
+            String logErroProcessarMensagem = String.format("Erro ao processar mensagem recebida: %s", e.getMessage());
+            LogUtils.logError(logErroProcessarMensagem);
+            logTextArea.adicionarLog(logErroProcessarMensagem + "\n");
+        }
+    }
 
-            String logResposta = String.format("Resposta gerada para %s: %s", mensagemRecebida.getOrigem(), resposta);
-            LogUtils.logInfo(logResposta);
-            logTextArea.adicionarLog(logResposta + "\n");
-        } else {
-            String textoRecebimento = tratador.processar(mensagemRecebida);
-            LogUtils.logInfo(textoRecebimento);
-            logTextArea.adicionarLog(textoRecebimento + "\n");
+    /**
+     * Trata uma mensagem que não coube na fila do {@link DespachanteMensagens}. Consultas recebem uma resposta de
+     * erro para que a origem não fique aguardando indefinidamente.
+     *
+     * @param mensagemRejeitada A {@link Mensagem} rejeitada.
+     * @param formato           O formato em que a mensagem foi recebida, usado também na resposta.
+     * @param requisicao        O contexto da requisição.
+     */
+    private void rejeitarMensagem(Mensagem mensagemRejeitada, FormatoMensagem formato,
+                                  ContextoRequisicao requisicao) {
+        String logRejeicao = String.format("Mensagem %s de %s rejeitada por sobrecarga.",
+                mensagemRejeitada.getAcao(), mensagemRejeitada.getOrigem());
+        LogUtils.logWarn(logRejeicao);
+        logTextArea.adicionarLog(logRejeicao + "\n");
+
+        if (mensagemRejeitada.getAcao().contains("CONSULTAR")) {
+            publicarResposta(DespachanteMensagens.gerarRespostaDeRejeicao(mensagemRejeitada), formato, requisicao);
         }
     }
 
     /**
-     * Chamado quando a entrega da mensagem é concluída.
+     * Publica uma resposta no tópico do barramento, codificada no formato da mensagem recebida e identificada com a
+     * instância que a gerou.
+     *
+     * @param resposta   A {@link Mensagem} de resposta.
+     * @param formato    O formato da resposta.
+     * @param requisicao O contexto da requisição respondida.
+     */
+    private void publicarResposta(Mensagem resposta, FormatoMensagem formato, ContextoRequisicao requisicao) {
+        resposta.adicionarAoMetadata("instancia_servidor", instancia);
+        String topico = formato == FormatoMensagem.CBOR ? TOPICO_BARRAMENTO + SUFIXO_CBOR : TOPICO_BARRAMENTO;
+        mqttClient.publishResposta(topico, resposta, formato.codificar(resposta),
+                POLITICA.regraPara(resposta.getAcao()), requisicao);
+    }
+
+    /**
+     * Chamado quando a entrega da mensagem é concluída. O resultado de cada publicação é informado pelo
+     * {@link java.util.concurrent.CompletableFuture} devolvido por {@link MqttClientStrategy#publish}; aqui a entrega
+     * é apenas registrada em nível DEBUG, para não escrever uma linha no log por resposta enviada.
      *
      * @param token O token que identifica a entrega da mensagem.
      */
     @Override
     public void deliveryComplete(IMqttDeliveryToken token) {
-        try {
-            LogUtils.logInfo("Entrega de mensagem completa! Token: " + token.toString());
-        } catch (Exception e) {
-            LogUtils.logError("Falha ao registrar entrega completa: ", e.getMessage());
-        }
+        LogUtils.logDebug("Entrega de mensagem completa! Token: %s", token);
     }
 }
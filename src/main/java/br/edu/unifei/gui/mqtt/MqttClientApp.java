@@ -1,5 +1,6 @@
 package br.edu.unifei.gui.mqtt;
 
+import br.edu.unifei.despacho.DespachanteMensagens;
 import br.edu.unifei.gui.GUIComponents;
 import br.edu.unifei.modelos.mensagem.Mensagem;
 import br.edu.unifei.utils.ConfigLoader;
@@ -13,8 +14,12 @@ public class MqttClientApp extends GUIComponents {
 
     private static final String SERVICE_BUS_TOPIC = ConfigLoader.getConfigValue("mqtt.barramento.topico");
     private static final String MQTT_BROKER_URL = ConfigLoader.getConfigValue("mqtt.broker.url");
-    private static final String CLIENT_ID = ConfigLoader.getConfigValue("mqtt.cliente.id");
     private static final String CLIENT_TOPIC = ConfigLoader.getConfigValue("mqtt.cliente.topico");
+    private static final boolean CLIENTE_ASSINCRONO =
+            Boolean.parseBoolean(ConfigLoader.getConfigValue("mqtt.cliente.assincrono"));
+    private static final int VERSAO_MQTT = Integer.parseInt(ConfigLoader.getConfigValue("mqtt.versao"));
+    private static final PoliticaPublicacao POLITICA = PoliticaPublicacao.daConfiguracao();
+    private static final IdentidadeInstancia IDENTIDADE = IdentidadeInstancia.daConfiguracao();
 
     private final MqttClientStrategy mqttClient;
 
@@ -23,27 +28,44 @@ public class MqttClientApp extends GUIComponents {
      */
     public MqttClientApp() {
         super();
-        frame.setTitle("Aplicação Servidor - MQTT");
+        frame.setTitle(IDENTIDADE.isCluster()
+                ? "Aplicação Servidor - MQTT - " + IDENTIDADE.getClientId()
+                : "Aplicação Servidor - MQTT");
         origemField.setText("topico/servidor");
 
         mqttClient = getMqttClient();
-        mqttClient.subscribe(CLIENT_TOPIC);
+        mqttClient.subscribe(IDENTIDADE.filtroInscricao(CLIENT_TOPIC));
+        mqttClient.subscribe(IDENTIDADE.filtroInscricao(CLIENT_TOPIC + MqttCallbackHandler.SUFIXO_CBOR));
+        if (IDENTIDADE.isCluster()) {
+            String logCluster = String.format("Instância %s recebendo requisições pela inscrição compartilhada %s",
+                    IDENTIDADE, IDENTIDADE.filtroInscricao(CLIENT_TOPIC));
+            LogUtils.logInfo(logCluster);
+            getLogTextArea().adicionarLog(logCluster);
+        }
     }
 
     /**
-     * Cria e retorna uma instância pré-configurada do {@link MqttPahoClient}.
+     * Cria e retorna uma instância pré-configurada do {@link MqttPahoV5Client}, se {@code mqtt.versao} for 5, ou, no
+     * MQTT 3.1.1, do {@link MqttPahoAsyncClient} ou, se {@code mqtt.cliente.assincrono} estiver desligado, do
+     * {@link MqttPahoClient}, com o ID do cliente da {@link IdentidadeInstancia}.
      *
      * @return Uma instância de {@link MqttClientStrategy}.
      */
     private MqttClientStrategy getMqttClient() {
-        return new MqttPahoClient(MQTT_BROKER_URL, CLIENT_ID, logTextArea);
+        if (VERSAO_MQTT == 5) {
+            return new MqttPahoV5Client(MQTT_BROKER_URL, IDENTIDADE.getClientId(), logTextArea);
+        }
+        if (CLIENTE_ASSINCRONO) {
+            return new MqttPahoAsyncClient(MQTT_BROKER_URL, IDENTIDADE.getClientId(), logTextArea);
+        }
+        return new MqttPahoClient(MQTT_BROKER_URL, IDENTIDADE.getClientId(), logTextArea);
     }
 
     @Override
     protected void customEnviarButtonAction(Mensagem mensagem) {
         mensagem.adicionarAoMetadata("timestamp_servidor_msg_enviada",
                 new JsonPrimitive(System.currentTimeMillis()));
-        mqttClient.publish(SERVICE_BUS_TOPIC, mensagem.toJson());
+        mqttClient.publish(SERVICE_BUS_TOPIC, mensagem.toJsonBytes(), POLITICA.regraPara(mensagem.getAcao()));
 
         if (mensagem.getAcao().equals("REGISTRAR_SERVICO")) {
             String logServicoEnviado = String.format("Serviço '%s' enviado para registro " +
@@ -58,8 +80,12 @@ public class MqttClientApp extends GUIComponents {
         mqttClient.disconnect();
     }
 
+    /**
+     * Conclui as mensagens já despachadas antes de desconectar, para que as respostas ainda sejam publicadas.
+     */
     @Override
     protected void customWindowClosingBehavior() {
+        DespachanteMensagens.getInstancia().encerrar();
         mqttClient.disconnect();
     }
 }
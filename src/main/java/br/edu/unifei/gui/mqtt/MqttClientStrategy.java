@@ -1,17 +1,63 @@
 package br.edu.unifei.gui.mqtt;
 
+import br.edu.unifei.modelos.mensagem.Mensagem;
+
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Define as operações básicas para um cliente MQTT.
  */
 public interface MqttClientStrategy {
 
     /**
-     * Publica uma mensagem em um tópico especificado.
+     * Publica uma mensagem em um tópico especificado, com a {@link PoliticaPublicacao.Regra#PADRAO}.
      *
      * @param topico   O tópico no qual a mensagem será publicada.
      * @param mensagem A mensagem a ser publicada.
+     * @return Concluído quando o broker confirmar o recebimento, ou com falha se a publicação não for aceita.
+     */
+    CompletableFuture<Void> publish(String topico, String mensagem);
+
+    /**
+     * Publica uma mensagem já codificada em um tópico especificado, com a {@link PoliticaPublicacao.Regra#PADRAO}.
+     *
+     * @param topico  O tópico no qual a mensagem será publicada.
+     * @param payload Os bytes da mensagem a ser publicada.
+     * @return Concluído quando o broker confirmar o recebimento, ou com falha se a publicação não for aceita.
+     */
+    default CompletableFuture<Void> publish(String topico, byte[] payload) {
+        return publish(topico, payload, PoliticaPublicacao.Regra.PADRAO);
+    }
+
+    /**
+     * Publica uma mensagem já codificada em um tópico especificado, com o QoS, a retenção e a expiração de uma regra
+     * da {@link PoliticaPublicacao}.
+     *
+     * @param topico  O tópico no qual a mensagem será publicada.
+     * @param payload Os bytes da mensagem a ser publicada.
+     * @param regra   Os parâmetros de publicação.
+     * @return Concluído quando o broker confirmar o recebimento conforme o QoS, ou com falha se a publicação não for
+     * aceita.
+     */
+    CompletableFuture<Void> publish(String topico, byte[] payload, PoliticaPublicacao.Regra regra);
+
+    /**
+     * Publica a resposta a uma requisição. Por padrão, a resposta vai para o tópico informado; clientes de versões
+     * do protocolo com propriedades podem enviá-la ao tópico de resposta pedido na requisição e identificá-la com os
+     * dados de correlação.
+     *
+     * @param topico     O tópico do barramento, usado se a requisição não pediu outro.
+     * @param resposta   A resposta, ou {@code null} se ela não for uma {@link Mensagem}.
+     * @param payload    Os bytes da resposta codificada.
+     * @param regra      Os parâmetros de publicação.
+     * @param requisicao O contexto da requisição respondida.
+     * @return Concluído quando o broker confirmar o recebimento conforme o QoS, ou com falha se a publicação não for
+     * aceita.
      */
-    void publish(String topico, String mensagem);
+    default CompletableFuture<Void> publishResposta(String topico, Mensagem resposta, byte[] payload,
+                                                    PoliticaPublicacao.Regra regra, ContextoRequisicao requisicao) {
+        return publish(topico, payload, regra);
+    }
 
     /**
      * Inscreve o cliente em um tópico especificado.
@@ -0,0 +1,332 @@
+package br.edu.unifei.gui.mqtt;
+
+import br.edu.unifei.utils.ConfigLoader;
+import br.edu.unifei.utils.LogTextAreaUtils;
+import br.edu.unifei.utils.LogUtils;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Implementação do {@link MqttClientStrategy} usando o cliente assíncrono da biblioteca Paho. As publicações não
+ * bloqueiam a thread que as chama: até {@code maxEmVoo} mensagens aguardam a confirmação do broker ao mesmo tempo, e
+ * as demais esperam, na ordem de chegada, em uma fila de saída limitada.
+ * <p>
+ * Com o cliente síncrono, cada resposta espera a troca completa de pacotes do QoS 2 (PUBLISH, PUBREC, PUBREL e
+ * PUBCOMP) antes da próxima, e a vazão fica limitada pelo tempo de ida e volta até o broker. Aqui as trocas de várias
+ * mensagens se sobrepõem na mesma conexão. As mensagens ficam apenas em memória.
+ * </p>
+ * <p>
+ * Quando a conexão cai, o cliente tenta reconectar com esperas que dobram a cada falha, até um máximo, sorteadas entre
+ * a metade e o total para que vários servidores não reconectem todos ao mesmo tempo. A sessão não é limpa: o broker
+ * mantém as inscrições, e o Paho reenvia as mensagens com QoS 1 e 2 que estavam sem confirmação. Se o broker tiver
+ * perdido a sessão, as inscrições são refeitas. As respostas publicadas sem conexão ficam na fila de saída e são
+ * enviadas, na ordem, depois de reconectar; com a fila cheia, a mais antiga é descartada. A fila e a reconexão ficam
+ * na {@link FilaSaidaMqtt}, comum ao {@link MqttPahoV5Client}.
+ * </p>
+ * <p>
+ * Mensagens cuja regra de publicação tem expiração e que não saem da fila antes de expirar são descartadas sem envio,
+ * e o resultado falha com {@link TimeoutException}.
+ * </p>
+ */
+public class MqttPahoAsyncClient implements MqttClientStrategy {
+
+    private static final long PRAZO_OPERACAO_MS = 10_000;
+
+    private final MqttAsyncClient client;
+    private final MqttConnectOptions opcoes;
+    private final MqttCallbackHandler callbackHandler;
+    private final FilaSaidaMqtt<MqttMessage> fila;
+    private final Set<String> topicos = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Cria o cliente com a janela de mensagens em voo, a fila de saída e as esperas de reconexão do
+     * {@code config.properties}.
+     *
+     * @param broker      O URL do broker MQTT.
+     * @param clientId    O ID do cliente.
+     * @param logTextArea Utilitário para registrar logs na interface.
+     */
+    public MqttPahoAsyncClient(String broker, String clientId, LogTextAreaUtils logTextArea) {
+        this(broker, clientId,
+                Integer.parseInt(ConfigLoader.getConfigValue("mqtt.publicacao.max_em_voo")),
+                Integer.parseInt(ConfigLoader.getConfigValue("mqtt.fila_saida.capacidade")),
+                Long.parseLong(ConfigLoader.getConfigValue("mqtt.reconexao.espera_inicial_ms")),
+                Long.parseLong(ConfigLoader.getConfigValue("mqtt.reconexao.espera_maxima_ms")),
+                logTextArea);
+    }
+
+    /**
+     * @param broker              O URL do broker MQTT.
+     * @param clientId            O ID do cliente.
+     * @param maxEmVoo            Quantidade máxima de publicações aguardando a confirmação do broker.
+     * @param capacidadeFila      Quantidade máxima de publicações aguardando envio, com ou sem conexão.
+     * @param esperaInicialMillis Espera máxima antes da primeira tentativa de reconexão, em milissegundos.
+     * @param esperaMaximaMillis  Limite da espera entre as tentativas de reconexão, em milissegundos.
+     * @param logTextArea         Utilitário para registrar logs na interface.
+     */
+    MqttPahoAsyncClient(String broker, String clientId, int maxEmVoo, int capacidadeFila, long esperaInicialMillis,
+                        long esperaMaximaMillis, LogTextAreaUtils logTextArea) {
+        this.fila = new FilaSaidaMqtt<>(clientId, maxEmVoo, capacidadeFila, esperaInicialMillis, esperaMaximaMillis,
+                logTextArea, new EnvioPaho());
+        this.callbackHandler = new MqttCallbackHandler(logTextArea, this, clientId);
+        this.opcoes = new MqttConnectOptions();
+        this.opcoes.setCleanSession(false);
+        this.opcoes.setMaxInflight(maxEmVoo);
+
+        MqttAsyncClient criado = null;
+        try {
+            criado = new MqttAsyncClient(broker, clientId, new MemoryPersistence());
+            criado.setCallback(new CallbackReconexao());
+        } catch (MqttException e) {
+            LogUtils.logError("Erro ao criar o cliente MQTT: %s", e.getMessage());
+        }
+        this.client = criado;
+        if (client == null) {
+            return;
+        }
+        try {
+            IMqttToken conexao = client.connect(opcoes);
+            conexao.waitForCompletion(PRAZO_OPERACAO_MS);
+            LogUtils.logInfo("Cliente MQTT assíncrono conectado com o clientid %s, até %d mensagens em voo",
+                    clientId, maxEmVoo);
+            aoConectar(conexao.getSessionPresent(), false);
+        } catch (MqttException e) {
+            LogUtils.logError("Erro de conexão: %s", e.getMessage());
+            fila.agendarReconexao();
+        }
+    }
+
+    /**
+     * Publica uma mensagem em um tópico especificado, sem aguardar a confirmação do broker.
+     *
+     * @param topico   O tópico no qual a mensagem será publicada.
+     * @param mensagem A mensagem a ser publicada.
+     * @return Concluído quando o broker confirmar o recebimento, ou com falha se a publicação não for aceita.
+     */
+    @Override
+    public CompletableFuture<Void> publish(String topico, String mensagem) {
+        return publish(topico, mensagem.getBytes(StandardCharsets.UTF_8), PoliticaPublicacao.Regra.PADRAO);
+    }
+
+    /**
+     * Publica uma mensagem já codificada em um tópico especificado, com os parâmetros de uma regra da
+     * {@link PoliticaPublicacao}. A mensagem entra na fila de saída e é enviada, na ordem, assim que houver conexão e
+     * vaga na janela de mensagens em voo.
+     *
+     * @param topico  O tópico no qual a mensagem será publicada.
+     * @param payload Os bytes da mensagem a ser publicada.
+     * @param regra   Os parâmetros de publicação.
+     * @return Concluído quando o broker confirmar o recebimento conforme o QoS, ou com falha se a publicação não for
+     * aceita, se a mensagem expirar antes do envio ou se for descartada da fila de saída cheia.
+     */
+    @Override
+    public CompletableFuture<Void> publish(String topico, byte[] payload, PoliticaPublicacao.Regra regra) {
+        MqttMessage mqttMessage = new MqttMessage(payload);
+        mqttMessage.setQos(regra.getQos());
+        mqttMessage.setRetained(regra.isRetida());
+        CompletableFuture<Void> resultado = fila.publicar(topico, mqttMessage, regra);
+        resultado.whenComplete((valor, erro) -> {
+            if (erro instanceof TimeoutException || erro instanceof RejectedExecutionException) {
+                LogUtils.logWarn("Mensagem descartada no topico %s: %s", topico, erro.getMessage());
+            } else if (erro != null) {
+                LogUtils.logError("Falha ao publicar mensagem no topico %s: %s", topico, erro.getMessage());
+            } else {
+                LogUtils.logDebug("Mensagem publicada no topico %s: %d bytes", topico, payload.length);
+            }
+        });
+        return resultado;
+    }
+
+    /**
+     * Refaz as inscrições se o broker não tiver mantido a sessão e começa a enviar a fila de saída.
+     *
+     * @param sessaoPresente Se o broker manteve a sessão anterior deste cliente.
+     * @param reconexao      Se a conexão substitui uma que caiu.
+     */
+    private void aoConectar(boolean sessaoPresente, boolean reconexao) {
+        if (!sessaoPresente) {
+            for (String topico : topicos) {
+                inscrever(topico);
+            }
+        }
+        fila.aoConectar(sessaoPresente, reconexao);
+    }
+
+    /**
+     * @return se o cliente está conectado ao broker.
+     */
+    public boolean isConectado() {
+        return fila.isConectado();
+    }
+
+    /**
+     * @return a quantidade de publicações aguardando a confirmação do broker.
+     */
+    public int getEmVoo() {
+        return fila.getEmVoo();
+    }
+
+    /**
+     * @return a quantidade de publicações na fila de saída, aguardando conexão ou vaga na janela.
+     */
+    public int getProfundidadeFila() {
+        return fila.getProfundidade();
+    }
+
+    /**
+     * @return a quantidade de reconexões depois de quedas da conexão.
+     */
+    public long getReconexoes() {
+        return fila.getReconexoes();
+    }
+
+    /**
+     * @return a quantidade de publicações descartadas da fila de saída cheia.
+     */
+    public long getDescartadas() {
+        return fila.getDescartadas();
+    }
+
+    /**
+     * @return a taxa, em mensagens por segundo, com que a fila acumulada sem conexão foi enviada depois da última
+     * reconexão, ou {@code 0} se nenhuma drenagem terminou.
+     */
+    public double getTaxaDrenagem() {
+        return fila.getTaxaDrenagem();
+    }
+
+    /**
+     * Inscreve o cliente em um tópico especificado. A inscrição é refeita a cada reconexão em que o broker não tiver
+     * mantido a sessão e, se o cliente estiver sem conexão, feita assim que conectar.
+     *
+     * @param topico O tópico ao qual o cliente deseja se inscrever.
+     */
+    @Override
+    public void subscribe(String topico) {
+        topicos.add(topico);
+        if (isConectado()) {
+            inscrever(topico);
+        }
+    }
+
+    private void inscrever(String topico) {
+        try {
+            client.subscribe(topico, 1).waitForCompletion(PRAZO_OPERACAO_MS);
+            LogUtils.logInfo("Inscrito no tópico: " + topico);
+        } catch (MqttException | RuntimeException e) {
+            LogUtils.logError("Falha ao inscrever no tópico %s: %s", topico, e.getMessage());
+        }
+    }
+
+    /**
+     * Desconecta o cliente do broker MQTT, aguardando a confirmação das mensagens em voo, e interrompe as tentativas
+     * de reconexão. As mensagens ainda na fila de saída falham.
+     */
+    @Override
+    public void disconnect() {
+        fila.encerrar();
+        try {
+            if (client != null && client.isConnected()) {
+                client.disconnect(PRAZO_OPERACAO_MS).waitForCompletion(PRAZO_OPERACAO_MS);
+                LogUtils.logInfo("Cliente MQTT desconectado.");
+            }
+        } catch (MqttException e) {
+            LogUtils.logError("Falha ao desconectar do broker MQTT: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Envia as mensagens da fila de saída e reconecta pelo cliente Paho.
+     */
+    private final class EnvioPaho implements FilaSaidaMqtt.Cliente<MqttMessage> {
+
+        /**
+         * O Paho conclui o envio quando receber a confirmação do broker: o PUBCOMP no QoS 2, o PUBACK no QoS 1, ou a
+         * escrita na conexão no QoS 0.
+         */
+        @Override
+        public void enviar(FilaSaidaMqtt.Pendente<MqttMessage> pendente) throws MqttException {
+            client.publish(pendente.getTopico(), pendente.getMensagem(), null, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken token) {
+                    fila.concluir(pendente, null);
+                }
+
+                @Override
+                public void onFailure(IMqttToken token, Throwable causa) {
+                    // Sem sessão limpa, o Paho guarda as mensagens com QoS 1 e 2 que estavam sem confirmação quando a
+                    // conexão caiu ou quando uma tentativa de reconexão falhou, e informa a falha, mas as reenvia
+                    // depois de reconectar e só então informa o sucesso. A falha só é definitiva ao desconectar
+                    if (pendente.getRegra().getQos() > 0 && !fila.isEncerrado()) {
+                        return;
+                    }
+                    fila.concluir(pendente, causa);
+                }
+            });
+        }
+
+        @Override
+        public boolean semConexao(Exception erro) {
+            return erro instanceof MqttException
+                    && (((MqttException) erro).getReasonCode() == MqttException.REASON_CODE_CLIENT_NOT_CONNECTED
+                    || ((MqttException) erro).getReasonCode() == MqttException.REASON_CODE_CONNECT_IN_PROGRESS);
+        }
+
+        @Override
+        public void reconectar() {
+            try {
+                client.connect(opcoes, null, new IMqttActionListener() {
+                    @Override
+                    public void onSuccess(IMqttToken token) {
+                        aoConectar(token.getSessionPresent(), true);
+                    }
+
+                    @Override
+                    public void onFailure(IMqttToken token, Throwable causa) {
+                        LogUtils.logWarn("Falha ao reconectar ao broker MQTT: %s", causa.getMessage());
+                        fila.agendarReconexao();
+                    }
+                });
+            } catch (MqttException e) {
+                LogUtils.logWarn("Falha ao reconectar ao broker MQTT: %s", e.getMessage());
+                fila.agendarReconexao();
+            }
+        }
+    }
+
+    /**
+     * Repassa os eventos do Paho ao {@link MqttCallbackHandler} e reage às quedas de conexão.
+     */
+    private final class CallbackReconexao implements MqttCallback {
+
+        @Override
+        public void connectionLost(Throwable causa) {
+            callbackHandler.connectionLost(causa);
+            fila.aoPerderConexao();
+        }
+
+        @Override
+        public void messageArrived(String topico, MqttMessage mensagem) {
+            callbackHandler.messageArrived(topico, mensagem);
+        }
+
+        @Override
+        public void deliveryComplete(IMqttDeliveryToken token) {
+            callbackHandler.deliveryComplete(token);
+        }
+    }
+}
@@ -6,8 +6,14 @@ import org.eclipse.paho.client.mqttv3.MqttClient;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
 /**
- * Implementação do {@link MqttClientStrategy} usando a biblioteca Paho.
+ * Implementação do {@link MqttClientStrategy} usando o cliente síncrono da biblioteca Paho. Cada publicação bloqueia a
+ * thread que a chamou até o fim da troca de pacotes do QoS, e os resultados devolvidos já estão concluídos.
+ *
+ * @see MqttPahoAsyncClient
  */
 public class MqttPahoClient implements MqttClientStrategy {
     private MqttClient client;
@@ -20,7 +26,7 @@ public class MqttPahoClient implements MqttClientStrategy {
     public MqttPahoClient(String broker, String clientId, LogTextAreaUtils logTextArea) {
         try {
             this.client = new MqttClient(broker, clientId);
-            this.client.setCallback(new MqttCallbackHandler(logTextArea, this));
+            this.client.setCallback(new MqttCallbackHandler(logTextArea, this, clientId));
             this.client.connect();
             LogUtils.logInfo("Cliente MQTT conectado com o clientid %s", clientId);
         } catch (MqttException e) {
@@ -33,16 +39,51 @@ public class MqttPahoClient implements MqttClientStrategy {
      *
      * @param topico   O tópico no qual a mensagem será publicada.
      * @param mensagem A mensagem a ser publicada.
+     * @return Já concluído, com falha se a publicação não foi aceita.
+     */
+    @Override
+    public CompletableFuture<Void> publish(String topico, String mensagem) {
+        CompletableFuture<Void> resultado = enviar(topico, mensagem.getBytes(StandardCharsets.UTF_8),
+                PoliticaPublicacao.Regra.PADRAO);
+        if (!resultado.isCompletedExceptionally()) {
+            LogUtils.logInfo("Mensagem publicada no topico %s: %s", topico, mensagem);
+        }
+        return resultado;
+    }
+
+    /**
+     * Publica uma mensagem já codificada em um tópico especificado, com os parâmetros de uma regra da
+     * {@link PoliticaPublicacao}. A expiração é ignorada, porque a mensagem é enviada imediatamente.
+     *
+     * @param topico  O tópico no qual a mensagem será publicada.
+     * @param payload Os bytes da mensagem a ser publicada.
+     * @param regra   Os parâmetros de publicação.
+     * @return Já concluído, com falha se a publicação não foi aceita.
      */
     @Override
-    public void publish(String topico, String mensagem) {
+    public CompletableFuture<Void> publish(String topico, byte[] payload, PoliticaPublicacao.Regra regra) {
+        CompletableFuture<Void> resultado = enviar(topico, payload, regra);
+        if (!resultado.isCompletedExceptionally()) {
+            LogUtils.logInfo("Mensagem publicada no topico %s: %d bytes", topico, payload.length);
+        }
+        return resultado;
+    }
+
+    /**
+     * Envia os bytes ao broker com o QoS e a retenção da regra.
+     *
+     * @return Concluído, ou com a falha da publicação.
+     */
+    private CompletableFuture<Void> enviar(String topico, byte[] payload, PoliticaPublicacao.Regra regra) {
         try {
-            MqttMessage mqttMessage = new MqttMessage(mensagem.getBytes());
-            mqttMessage.setQos(2); // Qualidade de serviço 2 (garante entrega)
+            MqttMessage mqttMessage = new MqttMessage(payload);
+            mqttMessage.setQos(regra.getQos());
+            mqttMessage.setRetained(regra.isRetida());
             client.publish(topico, mqttMessage);
-            LogUtils.logInfo("Mensagem publicada no topico %s: %s", topico, mensagem);
+            return CompletableFuture.completedFuture(null);
         } catch (MqttException e) {
             LogUtils.logError("Falha ao publica mensagem: ", e.getMessage());
+            return CompletableFuture.failedFuture(e);
         }
     }
 
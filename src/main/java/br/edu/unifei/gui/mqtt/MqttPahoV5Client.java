@@ -0,0 +1,433 @@
+package br.edu.unifei.gui.mqtt;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+import br.edu.unifei.utils.ConfigLoader;
+import br.edu.unifei.utils.LogTextAreaUtils;
+import br.edu.unifei.utils.LogUtils;
+import org.eclipse.paho.mqttv5.client.IMqttToken;
+import org.eclipse.paho.mqttv5.client.MqttActionListener;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttCallback;
+import org.eclipse.paho.mqttv5.client.MqttClientException;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.client.MqttDisconnectResponse;
+import org.eclipse.paho.mqttv5.client.persist.MemoryPersistence;
+import org.eclipse.paho.mqttv5.common.MqttException;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Implementação do {@link MqttClientStrategy} usando o cliente assíncrono MQTT 5 da biblioteca Paho. É escolhida com
+ * {@code mqtt.versao=5}; o MQTT 3.1.1 continua sendo o padrão.
+ * <p>
+ * Os dados de roteamento vão nas propriedades dos pacotes, fora do corpo da mensagem:
+ * </p>
+ * <ul>
+ *     <li>requisições com a propriedade de usuário {@code origem} são despachadas sem decodificar o corpo na thread
+ *     de recebimento do Paho;</li>
+ *     <li>as respostas vão para o tópico de resposta pedido na requisição, com os mesmos dados de correlação, ou para o
+ *     tópico do barramento se a requisição não pediu outro;</li>
+ *     <li>as respostas levam nas propriedades de usuário a ação, a origem, o destino, a instância e os instantes de
+ *     recebimento e envio, que podem ser lidos sem decodificar o corpo;</li>
+ *     <li>a expiração da regra da {@link PoliticaPublicacao} vai como intervalo de expiração da mensagem, e o broker
+ *     descarta as respostas que não conseguiu entregar a tempo.</li>
+ * </ul>
+ * <p>
+ * O Paho substitui os tópicos repetidos das publicações por aliases de tópico, até o máximo anunciado pelo broker na
+ * conexão, e o cliente aceita até {@code mqtt.v5.alias_topico_maximo} aliases nas mensagens recebidas. O broker
+ * mantém a sessão por {@code mqtt.v5.sessao_expiracao_s} depois de uma queda.
+ * </p>
+ * <p>
+ * A fila de saída e a reconexão são as mesmas do {@link MqttPahoAsyncClient}, na {@link FilaSaidaMqtt}: sem conexão,
+ * as respostas esperam em uma fila limitada a {@code mqtt.fila_saida.capacidade}, que descarta a mais antiga quando
+ * cheia e as que expiram antes do envio, e as tentativas de reconexão, inclusive depois de uma primeira conexão sem
+ * sucesso, usam as esperas sorteadas de {@code mqtt.reconexao.*}. No envio, o intervalo de expiração da mensagem é
+ * reduzido do tempo que ela passou na fila.
+ * </p>
+ */
+public class MqttPahoV5Client implements MqttClientStrategy {
+
+    private static final long PRAZO_OPERACAO_MS = 10_000;
+
+    private final MqttAsyncClient client;
+    private final MqttConnectionOptions opcoes;
+    private final MqttCallbackHandler callbackHandler;
+    private final LogTextAreaUtils logTextArea;
+    private final String clientId;
+    private final FilaSaidaMqtt<MqttMessage> fila;
+    private final Set<String> topicos = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Cria o cliente com a janela de mensagens em voo, a fila de saída, as esperas de reconexão, a expiração da
+     * sessão e o máximo de aliases de tópico do {@code config.properties}.
+     *
+     * @param broker      O URL do broker MQTT.
+     * @param clientId    O ID do cliente.
+     * @param logTextArea Utilitário para registrar logs na interface.
+     */
+    public MqttPahoV5Client(String broker, String clientId, LogTextAreaUtils logTextArea) {
+        this(broker, clientId,
+                Integer.parseInt(ConfigLoader.getConfigValue("mqtt.publicacao.max_em_voo")),
+                Integer.parseInt(ConfigLoader.getConfigValue("mqtt.fila_saida.capacidade")),
+                Long.parseLong(ConfigLoader.getConfigValue("mqtt.reconexao.espera_inicial_ms")),
+                Long.parseLong(ConfigLoader.getConfigValue("mqtt.reconexao.espera_maxima_ms")),
+                Long.parseLong(ConfigLoader.getConfigValue("mqtt.v5.sessao_expiracao_s")),
+                Integer.parseInt(ConfigLoader.getConfigValue("mqtt.v5.alias_topico_maximo")),
+                logTextArea);
+    }
+
+    /**
+     * @param broker                  O URL do broker MQTT.
+     * @param clientId                O ID do cliente.
+     * @param maxEmVoo                Quantidade máxima de publicações aguardando a confirmação do broker.
+     * @param capacidadeFila          Quantidade máxima de publicações aguardando envio, com ou sem conexão.
+     * @param esperaInicialMillis     Espera máxima antes da primeira tentativa de reconexão, em milissegundos.
+     * @param esperaMaximaMillis      Limite da espera entre as tentativas de reconexão, em milissegundos.
+     * @param sessaoExpiracaoSegundos Por quanto tempo o broker mantém a sessão depois de uma queda, em segundos.
+     * @param aliasTopicoMaximo       Quantidade máxima de aliases de tópico aceitos nas mensagens recebidas.
+     * @param logTextArea             Utilitário para registrar logs na interface.
+     */
+    MqttPahoV5Client(String broker, String clientId, int maxEmVoo, int capacidadeFila, long esperaInicialMillis,
+                     long esperaMaximaMillis, long sessaoExpiracaoSegundos, int aliasTopicoMaximo,
+                     LogTextAreaUtils logTextArea) {
+        this.logTextArea = logTextArea;
+        this.clientId = clientId;
+        this.fila = new FilaSaidaMqtt<>(clientId, maxEmVoo, capacidadeFila, esperaInicialMillis, esperaMaximaMillis,
+                logTextArea, new EnvioPaho());
+        this.callbackHandler = new MqttCallbackHandler(logTextArea, this, clientId);
+
+        this.opcoes = new MqttConnectionOptions();
+        this.opcoes.setCleanStart(false);
+        this.opcoes.setSessionExpiryInterval(sessaoExpiracaoSegundos);
+        this.opcoes.setTopicAliasMaximum(aliasTopicoMaximo);
+
+        MqttAsyncClient criado = null;
+        try {
+            criado = new MqttAsyncClient(broker, clientId, new MemoryPersistence());
+            criado.setCallback(new CallbackV5());
+        } catch (MqttException e) {
+            LogUtils.logError("Erro ao criar o cliente MQTT: %s", e.getMessage());
+        }
+        this.client = criado;
+        if (client == null) {
+            return;
+        }
+        try {
+            IMqttToken conexao = client.connect(opcoes);
+            conexao.waitForCompletion(PRAZO_OPERACAO_MS);
+            MqttProperties propriedades = conexao.getResponseProperties();
+            LogUtils.logInfo("Cliente MQTT 5 conectado com o clientid %s, até %d mensagens em voo e %d aliases de "
+                            + "tópico no envio", clientId, maxEmVoo,
+                    propriedades != null && propriedades.getTopicAliasMaximum() != null
+                            ? propriedades.getTopicAliasMaximum() : 0);
+            fila.aoConectar(conexao.getSessionPresent(), false);
+        } catch (MqttException e) {
+            LogUtils.logError("Erro de conexão: %s", e.getMessage());
+            fila.agendarReconexao();
+        }
+    }
+
+    /**
+     * Publica uma mensagem em um tópico especificado, sem aguardar a confirmação do broker.
+     *
+     * @param topico   O tópico no qual a mensagem será publicada.
+     * @param mensagem A mensagem a ser publicada.
+     * @return Concluído quando o broker confirmar o recebimento, ou com falha se a publicação não for aceita.
+     */
+    @Override
+    public CompletableFuture<Void> publish(String topico, String mensagem) {
+        return publish(topico, mensagem.getBytes(StandardCharsets.UTF_8), PoliticaPublicacao.Regra.PADRAO);
+    }
+
+    /**
+     * Publica uma mensagem já codificada em um tópico especificado, com os parâmetros de uma regra da
+     * {@link PoliticaPublicacao}. A expiração da regra é enviada ao broker.
+     *
+     * @param topico  O tópico no qual a mensagem será publicada.
+     * @param payload Os bytes da mensagem a ser publicada.
+     * @param regra   Os parâmetros de publicação.
+     * @return Concluído quando o broker confirmar o recebimento conforme o QoS, ou com falha se a publicação não for
+     * aceita.
+     */
+    @Override
+    public CompletableFuture<Void> publish(String topico, byte[] payload, PoliticaPublicacao.Regra regra) {
+        return enviar(topico, payload, regra, propriedades(regra));
+    }
+
+    /**
+     * Publica a resposta no tópico de resposta da requisição, se houver, com os dados de correlação e os dados de
+     * roteamento nas propriedades de usuário.
+     *
+     * @param topico     O tópico do barramento, usado se a requisição não pediu outro.
+     * @param resposta   A resposta, ou {@code null} se ela não for uma {@link Mensagem}.
+     * @param payload    Os bytes da resposta codificada.
+     * @param regra      Os parâmetros de publicação.
+     * @param requisicao O contexto da requisição respondida.
+     * @return Concluído quando o broker confirmar o recebimento conforme o QoS, ou com falha se a publicação não for
+     * aceita.
+     */
+    @Override
+    public CompletableFuture<Void> publishResposta(String topico, Mensagem resposta, byte[] payload,
+                                                   PoliticaPublicacao.Regra regra, ContextoRequisicao requisicao) {
+        MqttProperties propriedades = propriedades(regra);
+        if (requisicao.getDadosCorrelacao() != null) {
+            propriedades.setCorrelationData(requisicao.getDadosCorrelacao());
+        }
+        List<UserProperty> usuario = new ArrayList<>();
+        if (resposta != null) {
+            usuario.add(new UserProperty("acao", resposta.getAcao()));
+            usuario.add(new UserProperty("origem", resposta.getOrigem()));
+            usuario.add(new UserProperty("destino", resposta.getDestino()));
+        }
+        usuario.add(new UserProperty("instancia_servidor", clientId));
+        usuario.add(new UserProperty("timestamp_servidor_msg_recebida", String.valueOf(requisicao.getRecebidaEm())));
+        usuario.add(new UserProperty("timestamp_servidor_msg_enviada", String.valueOf(System.currentTimeMillis())));
+        propriedades.setUserProperties(usuario);
+
+        String destino = requisicao.getTopicoResposta() != null ? requisicao.getTopicoResposta() : topico;
+        return enviar(destino, payload, regra, propriedades);
+    }
+
+    private static MqttProperties propriedades(PoliticaPublicacao.Regra regra) {
+        MqttProperties propriedades = new MqttProperties();
+        if (regra.getExpiracaoSegundos() > 0) {
+            propriedades.setMessageExpiryInterval(regra.getExpiracaoSegundos());
+        }
+        return propriedades;
+    }
+
+    private CompletableFuture<Void> enviar(String topico, byte[] payload, PoliticaPublicacao.Regra regra,
+                                           MqttProperties propriedades) {
+        if (client == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Cliente MQTT não foi criado"));
+        }
+        MqttMessage mensagem = new MqttMessage(payload);
+        mensagem.setQos(regra.getQos());
+        mensagem.setRetained(regra.isRetida());
+        mensagem.setProperties(propriedades);
+        CompletableFuture<Void> resultado = fila.publicar(topico, mensagem, regra);
+        resultado.whenComplete((nada, erro) -> {
+            if (erro instanceof TimeoutException || erro instanceof RejectedExecutionException) {
+                LogUtils.logWarn("Mensagem descartada no tópico %s: %s", topico, erro.getMessage());
+            } else if (erro != null) {
+                LogUtils.logError("Falha ao publicar no tópico %s: %s", topico, erro.getMessage());
+            } else {
+                LogUtils.logDebug("Mensagem publicada no tópico %s", topico);
+            }
+        });
+        return resultado;
+    }
+
+    /**
+     * @return se o cliente está conectado ao broker.
+     */
+    public boolean isConectado() {
+        return fila.isConectado();
+    }
+
+    /**
+     * @return a quantidade de publicações na fila de saída, aguardando conexão ou vaga na janela.
+     */
+    public int getProfundidadeFila() {
+        return fila.getProfundidade();
+    }
+
+    /**
+     * @return a quantidade de reconexões depois de quedas da conexão ou de uma primeira conexão sem sucesso.
+     */
+    public long getReconexoes() {
+        return fila.getReconexoes();
+    }
+
+    /**
+     * @return a quantidade de publicações descartadas da fila de saída cheia.
+     */
+    public long getDescartadas() {
+        return fila.getDescartadas();
+    }
+
+    /**
+     * @return a taxa, em mensagens por segundo, com que a fila acumulada sem conexão foi enviada depois da última
+     * reconexão, ou {@code 0} se nenhuma drenagem terminou.
+     */
+    public double getTaxaDrenagem() {
+        return fila.getTaxaDrenagem();
+    }
+
+    /**
+     * Inscreve o cliente em um tópico. A inscrição é refeita a cada reconexão, caso o broker tenha perdido a sessão.
+     *
+     * @param topico O tópico ao qual o cliente deseja se inscrever para receber mensagens.
+     */
+    @Override
+    public void subscribe(String topico) {
+        topicos.add(topico);
+        if (isConectado()) {
+            inscrever(topico);
+        }
+    }
+
+    private void inscrever(String topico) {
+        try {
+            client.subscribe(topico, 1).waitForCompletion(PRAZO_OPERACAO_MS);
+            LogUtils.logInfo("Inscrito no tópico: " + topico);
+        } catch (MqttException | RuntimeException e) {
+            LogUtils.logError("Falha ao inscrever no tópico %s: %s", topico, e.getMessage());
+        }
+    }
+
+    /**
+     * Desconecta o cliente do broker MQTT e interrompe as tentativas de reconexão. As mensagens ainda na fila de
+     * saída falham.
+     */
+    @Override
+    public void disconnect() {
+        fila.encerrar();
+        if (client == null) {
+            return;
+        }
+        try {
+            if (client.isConnected()) {
+                client.disconnect(PRAZO_OPERACAO_MS).waitForCompletion(PRAZO_OPERACAO_MS);
+                LogUtils.logInfo("Cliente MQTT desconectado.");
+            }
+            client.close(true);
+        } catch (MqttException e) {
+            LogUtils.logError("Falha ao desconectar do broker MQTT: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Envia as mensagens da fila de saída e reconecta pelo cliente Paho.
+     */
+    private final class EnvioPaho implements FilaSaidaMqtt.Cliente<MqttMessage> {
+
+        @Override
+        public void enviar(FilaSaidaMqtt.Pendente<MqttMessage> pendente) throws MqttException {
+            MqttMessage mensagem = pendente.getMensagem();
+            long expiracao = pendente.getExpiracaoRestanteSegundos();
+            if (expiracao > 0) {
+                mensagem.getProperties().setMessageExpiryInterval(expiracao);
+            }
+            client.publish(pendente.getTopico(), mensagem, null, new MqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken token) {
+                    fila.concluir(pendente, null);
+                }
+
+                @Override
+                public void onFailure(IMqttToken token, Throwable causa) {
+                    // Como no MqttPahoAsyncClient, o Paho reenvia depois de reconectar as mensagens com QoS 1 e 2 que
+                    // estavam sem confirmação; a falha só é definitiva ao desconectar
+                    if (pendente.getRegra().getQos() > 0 && !fila.isEncerrado()) {
+                        return;
+                    }
+                    fila.concluir(pendente, causa);
+                }
+            });
+        }
+
+        @Override
+        public boolean semConexao(Exception erro) {
+            return erro instanceof MqttException
+                    && (((MqttException) erro).getReasonCode() == MqttClientException.REASON_CODE_CLIENT_NOT_CONNECTED
+                    || ((MqttException) erro).getReasonCode() == MqttClientException.REASON_CODE_CONNECT_IN_PROGRESS);
+        }
+
+        @Override
+        public void reconectar() {
+            try {
+                client.connect(opcoes, null, new MqttActionListener() {
+                    @Override
+                    public void onSuccess(IMqttToken token) {
+                        // Na thread de callback do Paho: as inscrições não podem aguardar a confirmação aqui
+                        if (!token.getSessionPresent()) {
+                            for (String topico : topicos) {
+                                try {
+                                    client.subscribe(topico, 1);
+                                } catch (MqttException e) {
+                                    LogUtils.logError("Falha ao inscrever no tópico %s: %s", topico, e.getMessage());
+                                }
+                            }
+                        }
+                        fila.aoConectar(token.getSessionPresent(), true);
+                    }
+
+                    @Override
+                    public void onFailure(IMqttToken token, Throwable causa) {
+                        LogUtils.logWarn("Falha ao reconectar ao broker MQTT: %s", causa.getMessage());
+                        fila.agendarReconexao();
+                    }
+                });
+            } catch (MqttException e) {
+                LogUtils.logWarn("Falha ao reconectar ao broker MQTT: %s", e.getMessage());
+                fila.agendarReconexao();
+            }
+        }
+    }
+
+    /**
+     * Lê as propriedades das requisições recebidas e as entrega ao {@link MqttCallbackHandler}.
+     */
+    private final class CallbackV5 implements MqttCallback {
+
+        @Override
+        public void messageArrived(String topico, MqttMessage mensagem) {
+            MqttProperties propriedades = mensagem.getProperties();
+            String origem = null;
+            if (propriedades != null && propriedades.getUserProperties() != null) {
+                for (UserProperty propriedade : propriedades.getUserProperties()) {
+                    if (propriedade.getKey().equals("origem")) {
+                        origem = propriedade.getValue();
+                    }
+                }
+            }
+            callbackHandler.receber(topico, mensagem.getPayload(), new ContextoRequisicao(
+                    propriedades != null ? propriedades.getResponseTopic() : null,
+                    propriedades != null ? propriedades.getCorrelationData() : null,
+                    origem, System.currentTimeMillis()));
+        }
+
+        @Override
+        public void disconnected(MqttDisconnectResponse resposta) {
+            if (fila.isEncerrado()) {
+                return;
+            }
+            String logQueda = String.format("Conexão perdida: %s", resposta.getReasonString() != null
+                    ? resposta.getReasonString() : resposta.getException());
+            LogUtils.logWarn(logQueda);
+            logTextArea.adicionarLog(logQueda + "\n");
+            fila.aoPerderConexao();
+        }
+
+        @Override
+        public void mqttErrorOccurred(MqttException erro) {
+            LogUtils.logError("Erro no cliente MQTT 5: %s", erro.getMessage());
+        }
+
+        @Override
+        public void deliveryComplete(IMqttToken token) {
+            LogUtils.logDebug("Entrega de mensagem completa! Token: %s", token);
+        }
+
+        @Override
+        public void connectComplete(boolean reconexao, String broker) {
+            // A reconexão é feita pela fila de saída, que avisa o cliente em EnvioPaho.reconectar
+        }
+
+        @Override
+        public void authPacketArrived(int codigo, MqttProperties propriedades) {
+            // Sem autenticação estendida
+        }
+    }
+}
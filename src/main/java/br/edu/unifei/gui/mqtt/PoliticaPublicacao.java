@@ -0,0 +1,161 @@
+package br.edu.unifei.gui.mqtt;
+
+import br.edu.unifei.utils.ConfigLoader;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Define como as mensagens de cada ação são publicadas: o QoS, se ficam retidas no broker e por quanto tempo valem.
+ * <p>
+ * As regras são lidas das chaves {@code mqtt.publicacao.politica.<padrão>} do {@code config.properties}, com o valor
+ * no formato {@code qos,retida,expiração em segundos}. No padrão, {@code *} aceita qualquer sequência de caracteres,
+ * e entre os padrões que aceitam uma ação vale o mais específico, o que tem mais caracteres além dos curingas. Ações
+ * sem nenhuma regra são publicadas com {@link Regra#PADRAO}.
+ * </p>
+ * <p>
+ * O MQTT 3.1.1 não transmite a expiração. O cliente assíncrono a usa para descartar as mensagens que expiram antes de
+ * conseguir vaga para o envio.
+ * </p>
+ */
+public final class PoliticaPublicacao {
+
+    private static final String PREFIXO_CONFIGURACAO = "mqtt.publicacao.politica.";
+
+    private final List<PadraoRegra> padroes = new ArrayList<>();
+    private final Map<String, Regra> porAcao = new ConcurrentHashMap<>();
+
+    /**
+     * @param regras As regras indexadas pelo padrão de ação, no formato {@code qos,retida,expiração em segundos}.
+     * @throws IllegalArgumentException Se alguma regra estiver mal formada.
+     */
+    PoliticaPublicacao(Map<String, String> regras) {
+        for (Map.Entry<String, String> regra : regras.entrySet()) {
+            padroes.add(new PadraoRegra(regra.getKey().trim(), Regra.ler(regra.getKey(), regra.getValue())));
+        }
+        padroes.sort(Comparator.comparingInt((PadraoRegra padrao) -> padrao.especificidade).reversed());
+    }
+
+    /**
+     * @return a política definida no {@code config.properties}.
+     */
+    public static PoliticaPublicacao daConfiguracao() {
+        return new PoliticaPublicacao(ConfigLoader.getConfigValues(PREFIXO_CONFIGURACAO));
+    }
+
+    /**
+     * Busca a regra de publicação de uma ação. O resultado é guardado, porque o conjunto de ações é pequeno e a
+     * consulta acontece a cada mensagem publicada.
+     *
+     * @param acao A ação da mensagem publicada.
+     * @return A regra do padrão mais específico que aceita a ação, ou {@link Regra#PADRAO} se nenhum aceitar.
+     */
+    public Regra regraPara(String acao) {
+        return porAcao.computeIfAbsent(acao, this::buscar);
+    }
+
+    private Regra buscar(String acao) {
+        for (PadraoRegra padrao : padroes) {
+            if (padrao.expressao.matcher(acao).matches()) {
+                return padrao.regra;
+            }
+        }
+        return Regra.PADRAO;
+    }
+
+    private static final class PadraoRegra {
+        private final Pattern expressao;
+        private final int especificidade;
+        private final Regra regra;
+
+        private PadraoRegra(String padrao, Regra regra) {
+            StringBuilder expressao = new StringBuilder();
+            int literais = 0;
+            for (String parte : padrao.split("\\*", -1)) {
+                if (expressao.length() > 0) {
+                    expressao.append(".*");
+                }
+                if (!parte.isEmpty()) {
+                    expressao.append(Pattern.quote(parte));
+                    literais += parte.length();
+                }
+            }
+            this.expressao = Pattern.compile(expressao.toString());
+            this.especificidade = literais;
+            this.regra = regra;
+        }
+    }
+
+    /**
+     * Parâmetros de publicação de uma mensagem.
+     */
+    public static final class Regra {
+
+        /**
+         * A regra usada antes da política existir: QoS 2, não retida e sem expiração.
+         */
+        public static final Regra PADRAO = new Regra(2, false, 0);
+
+        private final int qos;
+        private final boolean retida;
+        private final long expiracaoSegundos;
+
+        /**
+         * @param qos               O nível de QoS, de 0 a 2.
+         * @param retida            Se o broker deve reter a mensagem para os próximos inscritos no tópico.
+         * @param expiracaoSegundos Por quanto tempo a mensagem vale, em segundos, ou {@code 0} se não expira.
+         */
+        public Regra(int qos, boolean retida, long expiracaoSegundos) {
+            if (qos < 0 || qos > 2) {
+                throw new IllegalArgumentException("QoS inválido: " + qos);
+            }
+            if (expiracaoSegundos < 0) {
+                throw new IllegalArgumentException("Expiração negativa: " + expiracaoSegundos);
+            }
+            this.qos = qos;
+            this.retida = retida;
+            this.expiracaoSegundos = expiracaoSegundos;
+        }
+
+        private static Regra ler(String padrao, String valor) {
+            String[] campos = valor.split(",");
+            if (campos.length != 3) {
+                throw new IllegalArgumentException(String.format(
+                        "Regra de publicação de '%s' deve ter o formato qos,retida,expiração: '%s'", padrao, valor));
+            }
+            String retida = campos[1].trim();
+            if (!retida.equalsIgnoreCase("true") && !retida.equalsIgnoreCase("false")) {
+                throw new IllegalArgumentException(String.format(
+                        "Regra de publicação de '%s' deve informar true ou false para a retenção: '%s'", padrao,
+                        valor));
+            }
+            return new Regra(Integer.parseInt(campos[0].trim()), Boolean.parseBoolean(retida),
+                    Long.parseLong(campos[2].trim()));
+        }
+
+        public int getQos() {
+            return qos;
+        }
+
+        public boolean isRetida() {
+            return retida;
+        }
+
+        /**
+         * @return por quanto tempo a mensagem vale, em segundos, ou {@code 0} se não expira.
+         */
+        public long getExpiracaoSegundos() {
+            return expiracaoSegundos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("QoS %d, %s, %s", qos, retida ? "retida" : "não retida",
+                    expiracaoSegundos > 0 ? "expira em " + expiracaoSegundos + " s" : "sem expiração");
+        }
+    }
+}
@@ -0,0 +1,586 @@
+package br.edu.unifei.modelos.mensagem;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Codificador e decodificador CBOR (RFC 8949) de {@link Mensagem}. A mensagem é escrita como um mapa com as mesmas
+ * chaves do formato JSON ({@code acao}, {@code origem}, {@code destino}, {@code conteudo} e {@code metadata}), e o
+ * conteúdo segue a mesma estrutura do JSON, com duas diferenças:
+ * <ul>
+ *     <li>os campos binários ({@code bytecode} e {@code resposta}) que contêm base64 canônico são enviados como byte
+ *     strings, sem o acréscimo de 33% do base64, e voltam a ser base64 na leitura para que os tratadores não mudem;</li>
+ *     <li>números decimais são enviados como frações decimais (tag 4), preservando a precisão dos valores
+ *     monetários.</li>
+ * </ul>
+ * A classe não possui estado e pode ser usada por várias threads ao mesmo tempo.
+ */
+public final class CodecCborMensagem {
+
+    private static final Set<String> CAMPOS_BINARIOS = Set.of("bytecode", "resposta");
+
+    private static final int TIPO_INTEIRO = 0;
+    private static final int TIPO_NEGATIVO = 1;
+    private static final int TIPO_BYTES = 2;
+    private static final int TIPO_TEXTO = 3;
+    private static final int TIPO_ARRAY = 4;
+    private static final int TIPO_MAPA = 5;
+    private static final int TIPO_TAG = 6;
+    private static final int TIPO_SIMPLES = 7;
+
+    private static final int TAG_BIGNUM_POSITIVO = 2;
+    private static final int TAG_BIGNUM_NEGATIVO = 3;
+    private static final int TAG_FRACAO_DECIMAL = 4;
+
+    private static final int FALSO = 20;
+    private static final int VERDADEIRO = 21;
+    private static final int NULO = 22;
+    private static final int INDEFINIDO = 23;
+    private static final int TAMANHO_INDEFINIDO = 31;
+    private static final int PARADA = 0xff;
+
+    private static final BigInteger MAXIMO_SEM_SINAL = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+
+    private CodecCborMensagem() {
+    }
+
+    /**
+     * Converte uma mensagem para CBOR.
+     *
+     * @param mensagem A {@link Mensagem} a ser codificada.
+     * @return Os bytes CBOR da mensagem.
+     */
+    public static byte[] paraBytes(Mensagem mensagem) {
+        JsonObject conteudo = mensagem.getConteudo();
+        int campos = 1
+                + (mensagem.getAcao() != null ? 1 : 0)
+                + (mensagem.getOrigem() != null ? 1 : 0)
+                + (mensagem.getDestino() != null ? 1 : 0)
+                + (conteudo != null ? 1 : 0);
+
+        Saida saida = new Saida(256);
+        saida.escreverCabecalho(TIPO_MAPA, campos);
+        escreverCampoTexto(saida, "acao", mensagem.getAcao());
+        escreverCampoTexto(saida, "origem", mensagem.getOrigem());
+        escreverCampoTexto(saida, "destino", mensagem.getDestino());
+        if (conteudo != null) {
+            saida.escreverTexto("conteudo");
+            escreverObjeto(saida, conteudo);
+        }
+        saida.escreverTexto("metadata");
+        escreverObjeto(saida, mensagem.getMetadata());
+        return saida.paraBytes();
+    }
+
+    /**
+     * Lê uma mensagem codificada em CBOR. Chaves desconhecidas no nível da mensagem são ignoradas.
+     *
+     * @param bytes Os bytes CBOR da mensagem.
+     * @return A {@link Mensagem} lida.
+     * @throws IllegalArgumentException Se os bytes não formarem uma mensagem CBOR válida.
+     */
+    public static Mensagem ler(byte[] bytes) {
+        Entrada entrada = new Entrada(bytes);
+        String acao = null;
+        String origem = null;
+        String destino = null;
+        JsonObject conteudo = null;
+        JsonObject metadata = null;
+
+        int inicial = entrada.lerByte();
+        if (inicial >>> 5 != TIPO_MAPA) {
+            throw entrada.erro("a mensagem deve ser um mapa");
+        }
+        long campos = entrada.lerTamanho(inicial);
+        for (long i = 0; campos < 0 ? !entrada.consumirParada() : i < campos; i++) {
+            String nome = entrada.lerTexto();
+            switch (nome) {
+                case "acao":
+                    acao = entrada.lerTextoOuNulo();
+                    break;
+                case "origem":
+                    origem = entrada.lerTextoOuNulo();
+                    break;
+                case "destino":
+                    destino = entrada.lerTextoOuNulo();
+                    break;
+                case "conteudo":
+                    conteudo = lerObjetoOuNulo(entrada);
+                    break;
+                case "metadata":
+                    metadata = lerObjetoOuNulo(entrada);
+                    break;
+                default:
+                    lerElemento(entrada);
+                    break;
+            }
+        }
+        if (entrada.posicao != bytes.length) {
+            throw entrada.erro("bytes excedentes após a mensagem");
+        }
+        return new Mensagem(acao, origem, destino, conteudo, metadata != null ? metadata : new JsonObject());
+    }
+
+    private static void escreverCampoTexto(Saida saida, String nome, String valor) {
+        if (valor != null) {
+            saida.escreverTexto(nome);
+            saida.escreverTexto(valor);
+        }
+    }
+
+    private static void escreverObjeto(Saida saida, JsonObject objeto) {
+        saida.escreverCabecalho(TIPO_MAPA, objeto.size());
+        for (Map.Entry<String, JsonElement> campo : objeto.entrySet()) {
+            saida.escreverTexto(campo.getKey());
+            JsonElement valor = campo.getValue();
+            if (CAMPOS_BINARIOS.contains(campo.getKey()) && valor.isJsonPrimitive()
+                    && valor.getAsJsonPrimitive().isString()) {
+                byte[] binario = decodificarBase64(valor.getAsString());
+                if (binario != null) {
+                    saida.escreverCabecalho(TIPO_BYTES, binario.length);
+                    saida.escrever(binario, 0, binario.length);
+                    continue;
+                }
+            }
+            escreverElemento(saida, valor);
+        }
+    }
+
+    private static void escreverElemento(Saida saida, JsonElement elemento) {
+        if (elemento == null || elemento.isJsonNull()) {
+            saida.escreverByte(TIPO_SIMPLES << 5 | NULO);
+        } else if (elemento.isJsonObject()) {
+            escreverObjeto(saida, elemento.getAsJsonObject());
+        } else if (elemento.isJsonArray()) {
+            JsonArray array = elemento.getAsJsonArray();
+            saida.escreverCabecalho(TIPO_ARRAY, array.size());
+            for (JsonElement item : array) {
+                escreverElemento(saida, item);
+            }
+        } else {
+            JsonPrimitive primitivo = elemento.getAsJsonPrimitive();
+            if (primitivo.isString()) {
+                saida.escreverTexto(primitivo.getAsString());
+            } else if (primitivo.isBoolean()) {
+                saida.escreverByte(TIPO_SIMPLES << 5 | (primitivo.getAsBoolean() ? VERDADEIRO : FALSO));
+            } else {
+                escreverNumero(saida, primitivo.getAsNumber());
+            }
+        }
+    }
+
+    /**
+     * Escreve um número preservando sua representação: inteiros como inteiros CBOR (ou bignums), {@code double} e
+     * {@code float} como ponto flutuante de 64 bits e os demais, como os números lidos de um JSON, como fração
+     * decimal exata.
+     */
+    private static void escreverNumero(Saida saida, Number numero) {
+        if (numero instanceof Long || numero instanceof Integer || numero instanceof Short || numero instanceof Byte) {
+            escreverInteiro(saida, numero.longValue());
+        } else if (numero instanceof Double || numero instanceof Float) {
+            saida.escreverByte(TIPO_SIMPLES << 5 | 27);
+            saida.escreverLong(Double.doubleToLongBits(numero.doubleValue()));
+        } else if (numero instanceof BigInteger) {
+            escreverInteiro(saida, (BigInteger) numero);
+        } else {
+            BigDecimal decimal = numero instanceof BigDecimal ? (BigDecimal) numero : new BigDecimal(numero.toString());
+            if (decimal.scale() == 0) {
+                escreverInteiro(saida, decimal.unscaledValue());
+            } else {
+                saida.escreverCabecalho(TIPO_TAG, TAG_FRACAO_DECIMAL);
+                saida.escreverCabecalho(TIPO_ARRAY, 2);
+                escreverInteiro(saida, -(long) decimal.scale());
+                escreverInteiro(saida, decimal.unscaledValue());
+            }
+        }
+    }
+
+    private static void escreverInteiro(Saida saida, long valor) {
+        if (valor >= 0) {
+            saida.escreverCabecalho(TIPO_INTEIRO, valor);
+        } else {
+            saida.escreverCabecalho(TIPO_NEGATIVO, -1 - valor);
+        }
+    }
+
+    private static void escreverInteiro(Saida saida, BigInteger valor) {
+        if (valor.bitLength() < 64) {
+            escreverInteiro(saida, valor.longValue());
+            return;
+        }
+        boolean negativo = valor.signum() < 0;
+        BigInteger magnitude = negativo ? valor.negate().subtract(BigInteger.ONE) : valor;
+        if (magnitude.compareTo(MAXIMO_SEM_SINAL) <= 0) {
+            saida.escreverCabecalho(negativo ? TIPO_NEGATIVO : TIPO_INTEIRO, magnitude.longValue());
+        } else {
+            byte[] bytes = magnitude.toByteArray();
+            int inicio = bytes[0] == 0 ? 1 : 0;
+            saida.escreverCabecalho(TIPO_TAG, negativo ? TAG_BIGNUM_NEGATIVO : TAG_BIGNUM_POSITIVO);
+            saida.escreverCabecalho(TIPO_BYTES, bytes.length - inicio);
+            saida.escrever(bytes, inicio, bytes.length - inicio);
+        }
+    }
+
+    private static JsonObject lerObjetoOuNulo(Entrada entrada) {
+        JsonElement elemento = lerElemento(entrada);
+        if (elemento.isJsonNull()) {
+            return null;
+        }
+        if (!elemento.isJsonObject()) {
+            throw entrada.erro("era esperado um mapa");
+        }
+        return elemento.getAsJsonObject();
+    }
+
+    /**
+     * Lê um item CBOR como {@link JsonElement}. Byte strings são devolvidas em base64, que é como os campos binários
+     * circulam no formato JSON.
+     */
+    private static JsonElement lerElemento(Entrada entrada) {
+        int inicial = entrada.lerByte();
+        int tipo = inicial >>> 5;
+        switch (tipo) {
+            case TIPO_INTEIRO:
+            case TIPO_NEGATIVO:
+            case TIPO_TAG:
+                entrada.posicao--;
+                return new JsonPrimitive(lerNumero(entrada));
+            case TIPO_BYTES:
+                return new JsonPrimitive(Base64.getEncoder().encodeToString(entrada.lerBytes(inicial)));
+            case TIPO_TEXTO:
+                entrada.posicao--;
+                return new JsonPrimitive(entrada.lerTexto());
+            case TIPO_ARRAY: {
+                long tamanho = entrada.lerTamanho(inicial);
+                JsonArray array = new JsonArray(tamanho < 0 ? 10 : (int) Math.min(tamanho, 1024));
+                for (long i = 0; tamanho < 0 ? !entrada.consumirParada() : i < tamanho; i++) {
+                    array.add(lerElemento(entrada));
+                }
+                return array;
+            }
+            case TIPO_MAPA: {
+                long tamanho = entrada.lerTamanho(inicial);
+                JsonObject objeto = new JsonObject();
+                for (long i = 0; tamanho < 0 ? !entrada.consumirParada() : i < tamanho; i++) {
+                    String nome = entrada.lerTexto();
+                    objeto.add(nome, lerElemento(entrada));
+                }
+                return objeto;
+            }
+            default:
+                return lerSimples(entrada, inicial & 0x1f);
+        }
+    }
+
+    private static JsonElement lerSimples(Entrada entrada, int informacao) {
+        switch (informacao) {
+            case FALSO:
+                return new JsonPrimitive(false);
+            case VERDADEIRO:
+                return new JsonPrimitive(true);
+            case NULO:
+            case INDEFINIDO:
+                return JsonNull.INSTANCE;
+            case 25:
+                return new JsonPrimitive(meiaPrecisaoParaFloat((int) entrada.lerSemSinal(2)));
+            case 26:
+                return new JsonPrimitive(Float.intBitsToFloat((int) entrada.lerSemSinal(4)));
+            case 27:
+                return new JsonPrimitive(Double.longBitsToDouble(entrada.lerSemSinal(8)));
+            default:
+                throw entrada.erro("valor simples não suportado: " + informacao);
+        }
+    }
+
+    /**
+     * Lê um inteiro, um bignum (tags 2 e 3) ou uma fração decimal (tag 4).
+     */
+    private static Number lerNumero(Entrada entrada) {
+        int inicial = entrada.lerByte();
+        int tipo = inicial >>> 5;
+        if (tipo == TIPO_INTEIRO || tipo == TIPO_NEGATIVO) {
+            long valor = entrada.lerArgumento(inicial);
+            if (valor >= 0) {
+                return tipo == TIPO_INTEIRO ? valor : -1 - valor;
+            }
+            // Argumento acima de Long.MAX_VALUE
+            BigInteger magnitude = new BigInteger(Long.toUnsignedString(valor));
+            return tipo == TIPO_INTEIRO ? magnitude : magnitude.negate().subtract(BigInteger.ONE);
+        }
+        if (tipo == TIPO_TAG) {
+            long tag = entrada.lerArgumento(inicial);
+            if (tag == TAG_BIGNUM_POSITIVO || tag == TAG_BIGNUM_NEGATIVO) {
+                int cabecalho = entrada.lerByte();
+                if (cabecalho >>> 5 != TIPO_BYTES) {
+                    throw entrada.erro("bignum deve conter uma byte string");
+                }
+                BigInteger magnitude = new BigInteger(1, entrada.lerBytes(cabecalho));
+                return tag == TAG_BIGNUM_POSITIVO ? magnitude : magnitude.negate().subtract(BigInteger.ONE);
+            }
+            if (tag == TAG_FRACAO_DECIMAL) {
+                int cabecalho = entrada.lerByte();
+                if (cabecalho >>> 5 != TIPO_ARRAY || entrada.lerTamanho(cabecalho) != 2) {
+                    throw entrada.erro("fração decimal deve ser um array de dois inteiros");
+                }
+                Number expoente = lerNumero(entrada);
+                Number mantissa = lerNumero(entrada);
+                BigInteger valor = mantissa instanceof BigInteger
+                        ? (BigInteger) mantissa : BigInteger.valueOf(mantissa.longValue());
+                return new BigDecimal(valor, Math.toIntExact(-expoente.longValue()));
+            }
+            throw entrada.erro("tag não suportada: " + tag);
+        }
+        throw entrada.erro("era esperado um número");
+    }
+
+    private static float meiaPrecisaoParaFloat(int bits) {
+        int sinal = (bits & 0x8000) << 16;
+        int expoente = (bits >>> 10) & 0x1f;
+        int fracao = bits & 0x3ff;
+        if (expoente == 0) {
+            float valor = fracao * 0x1p-24f;
+            return sinal != 0 ? -valor : valor;
+        }
+        if (expoente == 0x1f) {
+            return Float.intBitsToFloat(sinal | 0x7f800000 | fracao << 13);
+        }
+        return Float.intBitsToFloat(sinal | (expoente + 112) << 23 | fracao << 13);
+    }
+
+    /**
+     * O decodificador aceita bits de preenchimento diferentes de zero ({@code "AB=="} e {@code "AA=="} resultam no
+     * mesmo byte), então só é enviado como bytes o texto que volta idêntico ao ser codificado de novo na leitura.
+     *
+     * @return os bytes do base64, ou {@code null} se o texto não for base64 canônico e deve seguir como texto.
+     */
+    private static byte[] decodificarBase64(String texto) {
+        if (texto.length() % 4 != 0) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getDecoder().decode(texto);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return Base64.getEncoder().encodeToString(bytes).equals(texto) ? bytes : null;
+    }
+
+    /**
+     * Buffer de escrita que cresce conforme necessário.
+     */
+    private static final class Saida {
+        private byte[] buffer;
+        private int posicao;
+
+        Saida(int capacidadeInicial) {
+            this.buffer = new byte[capacidadeInicial];
+        }
+
+        void escreverByte(int valor) {
+            garantirEspaco(1);
+            buffer[posicao++] = (byte) valor;
+        }
+
+        void escrever(byte[] bytes, int inicio, int quantidade) {
+            garantirEspaco(quantidade);
+            System.arraycopy(bytes, inicio, buffer, posicao, quantidade);
+            posicao += quantidade;
+        }
+
+        void escreverLong(long valor) {
+            garantirEspaco(8);
+            for (int deslocamento = 56; deslocamento >= 0; deslocamento -= 8) {
+                buffer[posicao++] = (byte) (valor >>> deslocamento);
+            }
+        }
+
+        /**
+         * Escreve o byte inicial de um item com o menor argumento possível. O argumento é tratado como sem sinal.
+         */
+        void escreverCabecalho(int tipo, long argumento) {
+            int prefixo = tipo << 5;
+            garantirEspaco(9);
+            if (argumento >= 0 && argumento < 24) {
+                buffer[posicao++] = (byte) (prefixo | argumento);
+            } else if (argumento >= 0 && argumento <= 0xff) {
+                buffer[posicao++] = (byte) (prefixo | 24);
+                buffer[posicao++] = (byte) argumento;
+            } else if (argumento >= 0 && argumento <= 0xffff) {
+                buffer[posicao++] = (byte) (prefixo | 25);
+                buffer[posicao++] = (byte) (argumento >>> 8);
+                buffer[posicao++] = (byte) argumento;
+            } else if (argumento >= 0 && argumento <= 0xffffffffL) {
+                buffer[posicao++] = (byte) (prefixo | 26);
+                for (int deslocamento = 24; deslocamento >= 0; deslocamento -= 8) {
+                    buffer[posicao++] = (byte) (argumento >>> deslocamento);
+                }
+            } else {
+                buffer[posicao++] = (byte) (prefixo | 27);
+                escreverLong(argumento);
+            }
+        }
+
+        void escreverTexto(String texto) {
+            int tamanho = texto.length();
+            int ascii = 0;
+            while (ascii < tamanho && texto.charAt(ascii) < 0x80) {
+                ascii++;
+            }
+            if (ascii == tamanho) {
+                escreverCabecalho(TIPO_TEXTO, tamanho);
+                garantirEspaco(tamanho);
+                for (int i = 0; i < tamanho; i++) {
+                    buffer[posicao++] = (byte) texto.charAt(i);
+                }
+            } else {
+                byte[] utf8 = texto.getBytes(StandardCharsets.UTF_8);
+                escreverCabecalho(TIPO_TEXTO, utf8.length);
+                escrever(utf8, 0, utf8.length);
+            }
+        }
+
+        byte[] paraBytes() {
+            return Arrays.copyOf(buffer, posicao);
+        }
+
+        private void garantirEspaco(int quantidade) {
+            if (buffer.length - posicao < quantidade) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, posicao + quantidade));
+            }
+        }
+    }
+
+    /**
+     * Cursor de leitura sobre os bytes CBOR.
+     */
+    private static final class Entrada {
+        private final byte[] bytes;
+        private int posicao;
+
+        Entrada(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int lerByte() {
+            if (posicao >= bytes.length) {
+                throw erro("fim inesperado dos dados");
+            }
+            return bytes[posicao++] & 0xff;
+        }
+
+        long lerSemSinal(int quantidade) {
+            if (bytes.length - posicao < quantidade) {
+                throw erro("fim inesperado dos dados");
+            }
+            long valor = 0;
+            for (int i = 0; i < quantidade; i++) {
+                valor = valor << 8 | (bytes[posicao++] & 0xff);
+            }
+            return valor;
+        }
+
+        long lerArgumento(int inicial) {
+            int informacao = inicial & 0x1f;
+            if (informacao < 24) {
+                return informacao;
+            }
+            switch (informacao) {
+                case 24:
+                    return lerSemSinal(1);
+                case 25:
+                    return lerSemSinal(2);
+                case 26:
+                    return lerSemSinal(4);
+                case 27:
+                    return lerSemSinal(8);
+                default:
+                    throw erro("argumento inválido: " + informacao);
+            }
+        }
+
+        /**
+         * @return o tamanho de um array, mapa ou string, ou {@code -1} se o tamanho for indefinido.
+         */
+        long lerTamanho(int inicial) {
+            if ((inicial & 0x1f) == TAMANHO_INDEFINIDO) {
+                return -1;
+            }
+            long tamanho = lerArgumento(inicial);
+            if (tamanho < 0 || tamanho > bytes.length - posicao) {
+                throw erro("tamanho inválido: " + Long.toUnsignedString(tamanho));
+            }
+            return tamanho;
+        }
+
+        boolean consumirParada() {
+            if (posicao < bytes.length && (bytes[posicao] & 0xff) == PARADA) {
+                posicao++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Lê o conteúdo de uma byte string ou text string, juntando os pedaços quando o tamanho for indefinido.
+         */
+        byte[] lerBytes(int inicial) {
+            long tamanho = lerTamanho(inicial);
+            if (tamanho >= 0) {
+                byte[] conteudo = Arrays.copyOfRange(bytes, posicao, posicao + (int) tamanho);
+                posicao += (int) tamanho;
+                return conteudo;
+            }
+            byte[] conteudo = new byte[0];
+            while (!consumirParada()) {
+                int pedaco = lerByte();
+                if (pedaco >>> 5 != inicial >>> 5 || (pedaco & 0x1f) == TAMANHO_INDEFINIDO) {
+                    throw erro("pedaço inválido em string de tamanho indefinido");
+                }
+                byte[] parte = lerBytes(pedaco);
+                int anterior = conteudo.length;
+                conteudo = Arrays.copyOf(conteudo, anterior + parte.length);
+                System.arraycopy(parte, 0, conteudo, anterior, parte.length);
+            }
+            return conteudo;
+        }
+
+        String lerTexto() {
+            int inicial = lerByte();
+            if (inicial >>> 5 != TIPO_TEXTO) {
+                throw erro("era esperada uma text string");
+            }
+            if ((inicial & 0x1f) == TAMANHO_INDEFINIDO) {
+                return new String(lerBytes(inicial), StandardCharsets.UTF_8);
+            }
+            int tamanho = (int) lerTamanho(inicial);
+            String texto = new String(bytes, posicao, tamanho, StandardCharsets.UTF_8);
+            posicao += tamanho;
+            return texto;
+        }
+
+        String lerTextoOuNulo() {
+            if (posicao < bytes.length && (bytes[posicao] & 0xff) == (TIPO_SIMPLES << 5 | NULO)) {
+                posicao++;
+                return null;
+            }
+            return lerTexto();
+        }
+
+        IllegalArgumentException erro(String descricao) {
+            return new IllegalArgumentException(
+                    String.format("CBOR inválido na posição %d: %s.", posicao, descricao));
+        }
+    }
+}
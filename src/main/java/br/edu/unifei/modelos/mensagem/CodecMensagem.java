@@ -0,0 +1,324 @@
+package br.edu.unifei.modelos.mensagem;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Codificador e decodificador JSON de {@link Mensagem}. Usa um único {@link TypeAdapter} sem estado, seguro para uso
+ * concorrente, que lê e escreve os campos {@code acao}, {@code origem}, {@code destino}, {@code conteudo} e
+ * {@code metadata} diretamente de streams, sem montar uma {@link String} intermediária.
+ * <p>
+ * Para o roteamento, {@link #lerCabecalho(byte[])} lê apenas {@code acao}, {@code origem}, {@code destino} e
+ * {@code metadata}, guardando os limites do {@code conteudo} no array original para que ele só seja interpretado
+ * quando for acessado.
+ * </p>
+ */
+public final class CodecMensagem {
+
+    private static final TypeAdapter<JsonElement> ADAPTADOR_JSON = new Gson().getAdapter(JsonElement.class);
+    private static final TypeAdapter<Mensagem> ADAPTADOR = new AdaptadorMensagem();
+
+    private CodecMensagem() {
+    }
+
+    /**
+     * @return o {@link TypeAdapter} compartilhado de {@link Mensagem}, para registro em instâncias de Gson.
+     */
+    public static TypeAdapter<Mensagem> getAdaptador() {
+        return ADAPTADOR;
+    }
+
+    /**
+     * Lê uma mensagem a partir de um JSON codificado em UTF-8.
+     *
+     * @param bytes Os bytes do JSON.
+     * @return A {@link Mensagem} lida.
+     * @throws JsonSyntaxException Se o JSON for inválido.
+     */
+    public static Mensagem ler(byte[] bytes) {
+        try {
+            return ler(new LeitorUtf8(bytes, 0, bytes.length));
+        } catch (IOException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /**
+     * Lê apenas o cabeçalho de uma mensagem a partir de um JSON codificado em UTF-8. O {@code conteudo} é apenas
+     * delimitado, sem ser interpretado, e é convertido em {@link JsonObject} no primeiro acesso a
+     * {@link Mensagem#getConteudo()}. O array não deve ser alterado enquanto a mensagem estiver em uso.
+     *
+     * @param bytes Os bytes do JSON.
+     * @return A {@link Mensagem} com o conteúdo ainda não interpretado.
+     * @throws JsonSyntaxException Se o JSON for inválido.
+     */
+    public static Mensagem lerCabecalho(byte[] bytes) {
+        int fim = bytes.length;
+        String acao = null;
+        String origem = null;
+        String destino = null;
+        JsonObject metadata = null;
+        int inicioConteudo = -1;
+        int fimConteudo = -1;
+
+        int i = EscanerJson.pularEspacos(bytes, 0, fim);
+        i = EscanerJson.esperar(bytes, i, fim, '{');
+        i = EscanerJson.pularEspacos(bytes, i, fim);
+        boolean vazio = i < fim && bytes[i] == '}';
+
+        while (!vazio) {
+            int inicioNome = i;
+            int fimNome = EscanerJson.fimDaString(bytes, i, fim);
+            i = EscanerJson.pularEspacos(bytes, fimNome, fim);
+            i = EscanerJson.esperar(bytes, i, fim, ':');
+            int inicioValor = EscanerJson.pularEspacos(bytes, i, fim);
+            int fimValor = EscanerJson.fimDoValor(bytes, inicioValor, fim);
+
+            if (EscanerJson.nomeIgual(bytes, inicioNome, fimNome, "acao")) {
+                acao = EscanerJson.lerString(bytes, inicioValor, fimValor);
+            } else if (EscanerJson.nomeIgual(bytes, inicioNome, fimNome, "origem")) {
+                origem = EscanerJson.lerString(bytes, inicioValor, fimValor);
+            } else if (EscanerJson.nomeIgual(bytes, inicioNome, fimNome, "destino")) {
+                destino = EscanerJson.lerString(bytes, inicioValor, fimValor);
+            } else if (EscanerJson.nomeIgual(bytes, inicioNome, fimNome, "conteudo")) {
+                if (bytes[inicioValor] == '{') {
+                    inicioConteudo = inicioValor;
+                    fimConteudo = fimValor;
+                } else if (!EscanerJson.ehNulo(bytes, inicioValor, fimValor)) {
+                    throw EscanerJson.erro("o conteúdo deve ser um objeto", inicioValor);
+                }
+            } else if (EscanerJson.nomeIgual(bytes, inicioNome, fimNome, "metadata")) {
+                metadata = lerObjeto(bytes, inicioValor, fimValor);
+            }
+
+            i = EscanerJson.pularEspacos(bytes, fimValor, fim);
+            if (i < fim && bytes[i] == ',') {
+                i = EscanerJson.pularEspacos(bytes, i + 1, fim);
+            } else {
+                EscanerJson.esperar(bytes, i, fim, '}');
+                break;
+            }
+        }
+
+        return new Mensagem(acao, origem, destino, inicioConteudo >= 0 ? bytes : null, inicioConteudo,
+                fimConteudo, metadata != null ? metadata : new JsonObject());
+    }
+
+    /**
+     * Interpreta um trecho de um JSON codificado em UTF-8 como {@link JsonObject}.
+     *
+     * @param bytes  Os bytes do JSON.
+     * @param inicio A posição do primeiro byte do objeto.
+     * @param fim    A posição seguinte ao último byte do objeto.
+     * @return O objeto interpretado, ou {@code null} se o trecho for o literal {@code null}.
+     * @throws JsonSyntaxException Se o trecho não for um objeto JSON válido.
+     */
+    static JsonObject lerObjeto(byte[] bytes, int inicio, int fim) {
+        try {
+            return AdaptadorMensagem.lerObjeto(new JsonReader(new LeitorUtf8(bytes, inicio, fim)));
+        } catch (IOException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /**
+     * Lê uma mensagem a partir de um stream com um JSON codificado em UTF-8. O stream não é fechado.
+     *
+     * @param entrada O stream de entrada.
+     * @return A {@link Mensagem} lida.
+     * @throws IOException Se ocorrer um erro de leitura ou se o JSON for inválido.
+     */
+    public static Mensagem ler(InputStream entrada) throws IOException {
+        return ler(new LeitorUtf8(entrada));
+    }
+
+    /**
+     * Lê uma mensagem a partir de uma string JSON.
+     *
+     * @param json A string JSON.
+     * @return A {@link Mensagem} lida.
+     * @throws JsonSyntaxException Se o JSON for inválido.
+     */
+    public static Mensagem ler(String json) {
+        try {
+            return ler(new StringReader(json));
+        } catch (IOException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /**
+     * Escreve a mensagem como JSON codificado em UTF-8 no stream informado. O stream não é fechado.
+     *
+     * @param mensagem A {@link Mensagem} a ser escrita.
+     * @param saida    O stream de saída.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public static void escrever(Mensagem mensagem, OutputStream saida) throws IOException {
+        escrever(mensagem, new EscritorUtf8(saida));
+    }
+
+    /**
+     * Converte a mensagem para um JSON codificado em UTF-8.
+     *
+     * @param mensagem A {@link Mensagem} a ser convertida.
+     * @return Os bytes do JSON.
+     */
+    public static byte[] paraBytes(Mensagem mensagem) {
+        EscritorUtf8 escritor = new EscritorUtf8(256);
+        try {
+            escrever(mensagem, escritor);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return escritor.paraBytes();
+    }
+
+    /**
+     * Converte a mensagem para uma string JSON.
+     *
+     * @param mensagem A {@link Mensagem} a ser convertida.
+     * @return A string JSON.
+     */
+    public static String paraString(Mensagem mensagem) {
+        StringWriter writer = new StringWriter(256);
+        try {
+            escrever(mensagem, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    private static Mensagem ler(Reader reader) throws IOException {
+        JsonReader jsonReader = new JsonReader(reader);
+        Mensagem mensagem;
+        try {
+            mensagem = ADAPTADOR.read(jsonReader);
+        } catch (IllegalStateException e) {
+            // O JsonReader indica assim um valor de tipo inesperado, como um objeto no lugar da ação
+            throw new JsonSyntaxException(e);
+        }
+        if (mensagem == null) {
+            throw new JsonSyntaxException("Mensagem vazia.");
+        }
+        return mensagem;
+    }
+
+    private static void escrever(Mensagem mensagem, Writer writer) throws IOException {
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        jsonWriter.setSerializeNulls(false);
+        ADAPTADOR.write(jsonWriter, mensagem);
+        jsonWriter.flush();
+    }
+
+    /**
+     * {@link TypeAdapter} de {@link Mensagem}. Campos desconhecidos são ignorados e campos nulos não são escritos,
+     * mantendo o mesmo formato gerado anteriormente pela serialização padrão do Gson.
+     */
+    private static final class AdaptadorMensagem extends TypeAdapter<Mensagem> {
+
+        @Override
+        public void write(JsonWriter out, Mensagem mensagem) throws IOException {
+            if (mensagem == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("acao").value(mensagem.getAcao());
+            out.name("origem").value(mensagem.getOrigem());
+            out.name("destino").value(mensagem.getDestino());
+            String conteudoNaoLido = mensagem.getConteudoNaoLido();
+            if (conteudoNaoLido != null) {
+                // Conteúdo ainda não interpretado é repassado como está, sem montar a árvore JSON
+                out.name("conteudo").jsonValue(conteudoNaoLido);
+            } else {
+                escreverObjeto(out, "conteudo", mensagem.getConteudo());
+            }
+            escreverObjeto(out, "metadata", mensagem.getMetadata());
+            out.endObject();
+        }
+
+        @Override
+        public Mensagem read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            String acao = null;
+            String origem = null;
+            String destino = null;
+            JsonObject conteudo = null;
+            JsonObject metadata = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "acao":
+                        acao = lerString(in);
+                        break;
+                    case "origem":
+                        origem = lerString(in);
+                        break;
+                    case "destino":
+                        destino = lerString(in);
+                        break;
+                    case "conteudo":
+                        conteudo = lerObjeto(in);
+                        break;
+                    case "metadata":
+                        metadata = lerObjeto(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+
+            return new Mensagem(acao, origem, destino, conteudo, metadata != null ? metadata : new JsonObject());
+        }
+
+        private static void escreverObjeto(JsonWriter out, String nome, JsonObject objeto) throws IOException {
+            if (objeto != null) {
+                out.name(nome);
+                ADAPTADOR_JSON.write(out, objeto);
+            }
+        }
+
+        private static String lerString(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return in.nextString();
+        }
+
+        private static JsonObject lerObjeto(JsonReader in) throws IOException {
+            JsonElement elemento = ADAPTADOR_JSON.read(in);
+            if (elemento == null || elemento.isJsonNull()) {
+                return null;
+            }
+            if (!elemento.isJsonObject()) {
+                throw new JsonSyntaxException("Era esperado um objeto JSON, encontrado: " + elemento);
+            }
+            return elemento.getAsJsonObject();
+        }
+    }
+}
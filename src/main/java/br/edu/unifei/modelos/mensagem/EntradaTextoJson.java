@@ -0,0 +1,175 @@
+package br.edu.unifei.modelos.mensagem;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link InputStream} com o valor de uma string JSON, em UTF-8, lido diretamente do array original. As sequências de
+ * escape são decodificadas conforme a leitura avança, sem criar uma {@link String} com o valor completo. Usado para
+ * ler campos grandes, como os bytecodes em base64, em streaming.
+ */
+final class EntradaTextoJson extends InputStream {
+
+    private final byte[] bytes;
+    private final int fim;
+    private int posicao;
+
+    /**
+     * Bytes UTF-8 de uma sequência de escape já decodificada e ainda não entregues.
+     */
+    private final byte[] pendentes = new byte[4];
+    private int inicioPendentes;
+    private int fimPendentes;
+
+    /**
+     * @param bytes  O JSON original.
+     * @param inicio A posição seguinte às aspas de abertura da string.
+     * @param fim    A posição das aspas de fechamento da string.
+     */
+    EntradaTextoJson(byte[] bytes, int inicio, int fim) {
+        this.bytes = bytes;
+        this.posicao = inicio;
+        this.fim = fim;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (inicioPendentes == fimPendentes) {
+            if (posicao >= fim) {
+                return -1;
+            }
+            if (bytes[posicao] != '\\') {
+                return bytes[posicao++] & 0xff;
+            }
+            decodificarEscape();
+        }
+        return pendentes[inicioPendentes++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] destino, int deslocamento, int quantidade) throws IOException {
+        if (quantidade == 0) {
+            return 0;
+        }
+
+        int lidos = 0;
+        while (lidos < quantidade) {
+            if (inicioPendentes < fimPendentes) {
+                destino[deslocamento + lidos++] = pendentes[inicioPendentes++];
+                continue;
+            }
+            if (posicao >= fim) {
+                break;
+            }
+
+            // Copia de uma vez o trecho até a próxima sequência de escape
+            int limite = Math.min(fim, posicao + quantidade - lidos);
+            int i = posicao;
+            while (i < limite && bytes[i] != '\\') {
+                i++;
+            }
+            if (i > posicao) {
+                System.arraycopy(bytes, posicao, destino, deslocamento + lidos, i - posicao);
+                lidos += i - posicao;
+                posicao = i;
+            } else {
+                decodificarEscape();
+            }
+        }
+        return lidos == 0 ? -1 : lidos;
+    }
+
+    @Override
+    public int available() {
+        return fimPendentes - inicioPendentes + (fim - posicao);
+    }
+
+    /**
+     * Decodifica a sequência de escape na posição atual, deixando seus bytes UTF-8 em {@link #pendentes}.
+     */
+    private void decodificarEscape() throws IOException {
+        if (posicao + 1 >= fim) {
+            throw new IOException("Sequência de escape incompleta na posição " + posicao);
+        }
+        byte escape = bytes[posicao + 1];
+        posicao += 2;
+        int caractere;
+        switch (escape) {
+            case 'b':
+                caractere = '\b';
+                break;
+            case 'f':
+                caractere = '\f';
+                break;
+            case 'n':
+                caractere = '\n';
+                break;
+            case 'r':
+                caractere = '\r';
+                break;
+            case 't':
+                caractere = '\t';
+                break;
+            case 'u':
+                caractere = lerHexadecimal();
+                if (Character.isHighSurrogate((char) caractere) && posicao + 1 < fim
+                        && bytes[posicao] == '\\' && bytes[posicao + 1] == 'u') {
+                    posicao += 2;
+                    char baixo = (char) lerHexadecimal();
+                    if (Character.isLowSurrogate(baixo)) {
+                        caractere = Character.toCodePoint((char) caractere, baixo);
+                    } else {
+                        // Substituto isolado: o escape seguinte é decodificado na próxima leitura
+                        posicao -= 6;
+                    }
+                }
+                break;
+            case '"':
+            case '\\':
+            case '/':
+                caractere = escape;
+                break;
+            default:
+                throw new IOException("Sequência de escape inválida na posição " + (posicao - 2));
+        }
+        codificarUtf8(caractere);
+    }
+
+    private int lerHexadecimal() throws IOException {
+        if (posicao + 4 > fim) {
+            throw new IOException("Sequência de escape \\u incompleta na posição " + posicao);
+        }
+        int valor = 0;
+        for (int i = 0; i < 4; i++) {
+            int digito = Character.digit(bytes[posicao++], 16);
+            if (digito < 0) {
+                throw new IOException("Sequência de escape \\u inválida na posição " + (posicao - 1));
+            }
+            valor = valor << 4 | digito;
+        }
+        return valor;
+    }
+
+    private void codificarUtf8(int codigo) {
+        inicioPendentes = 0;
+        if (codigo < 0x80) {
+            pendentes[0] = (byte) codigo;
+            fimPendentes = 1;
+        } else if (codigo < 0x800) {
+            pendentes[0] = (byte) (0xc0 | codigo >> 6);
+            pendentes[1] = (byte) (0x80 | codigo & 0x3f);
+            fimPendentes = 2;
+        } else if (codigo < 0x10000) {
+            pendentes[0] = (byte) (0xe0 | codigo >> 12);
+            pendentes[1] = (byte) (0x80 | codigo >> 6 & 0x3f);
+            pendentes[2] = (byte) (0x80 | codigo & 0x3f);
+            fimPendentes = 3;
+        } else {
+            pendentes[0] = (byte) (0xf0 | codigo >> 18);
+            pendentes[1] = (byte) (0x80 | codigo >> 12 & 0x3f);
+            pendentes[2] = (byte) (0x80 | codigo >> 6 & 0x3f);
+            pendentes[3] = (byte) (0x80 | codigo & 0x3f);
+            fimPendentes = 4;
+        }
+    }
+}
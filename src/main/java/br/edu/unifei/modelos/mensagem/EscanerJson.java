@@ -0,0 +1,283 @@
+package br.edu.unifei.modelos.mensagem;
+
+import com.google.gson.JsonSyntaxException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Funções para percorrer um JSON codificado em UTF-8 diretamente sobre o array de bytes, localizando campos e os
+ * limites de seus valores sem materializá-los. Usado para ler apenas o cabeçalho das mensagens e adiar a
+ * interpretação do conteúdo.
+ */
+final class EscanerJson {
+
+    private EscanerJson() {
+    }
+
+    /**
+     * @return a posição do primeiro byte que não é espaço em branco a partir de {@code posicao}.
+     */
+    static int pularEspacos(byte[] bytes, int posicao, int fim) {
+        while (posicao < fim) {
+            byte b = bytes[posicao];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                break;
+            }
+            posicao++;
+        }
+        return posicao;
+    }
+
+    /**
+     * Verifica se o byte na posição é o esperado e retorna a posição seguinte.
+     *
+     * @throws JsonSyntaxException Se o byte encontrado for diferente do esperado.
+     */
+    static int esperar(byte[] bytes, int posicao, int fim, char esperado) {
+        if (posicao >= fim || bytes[posicao] != esperado) {
+            throw erro("era esperado '" + esperado + "'", posicao);
+        }
+        return posicao + 1;
+    }
+
+    /**
+     * Localiza o fim de um valor JSON qualquer (objeto, array, string, número ou literal).
+     *
+     * @param posicao A posição do primeiro byte do valor.
+     * @return A posição seguinte ao último byte do valor.
+     * @throws JsonSyntaxException Se o valor estiver incompleto.
+     */
+    static int fimDoValor(byte[] bytes, int posicao, int fim) {
+        if (posicao >= fim) {
+            throw erro("valor ausente", posicao);
+        }
+
+        byte primeiro = bytes[posicao];
+        if (primeiro == '"') {
+            return fimDaString(bytes, posicao, fim);
+        }
+
+        if (primeiro == '{' || primeiro == '[') {
+            int profundidade = 0;
+            int i = posicao;
+            while (i < fim) {
+                byte b = bytes[i];
+                if (b == '"') {
+                    i = fimDaString(bytes, i, fim);
+                    continue;
+                }
+                if (b == '{' || b == '[') {
+                    profundidade++;
+                } else if (b == '}' || b == ']') {
+                    profundidade--;
+                    if (profundidade == 0) {
+                        return i + 1;
+                    }
+                }
+                i++;
+            }
+            throw erro("objeto ou array incompleto", posicao);
+        }
+
+        int i = posicao;
+        while (i < fim) {
+            byte b = bytes[i];
+            if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Localiza o fim de uma string JSON.
+     *
+     * @param posicao A posição das aspas de abertura.
+     * @return A posição seguinte às aspas de fechamento.
+     * @throws JsonSyntaxException Se a string não for fechada.
+     */
+    static int fimDaString(byte[] bytes, int posicao, int fim) {
+        int i = esperar(bytes, posicao, fim, '"');
+        while (i < fim) {
+            byte b = bytes[i];
+            if (b == '"') {
+                return i + 1;
+            }
+            i += b == '\\' ? 2 : 1;
+        }
+        throw erro("string não terminada", posicao);
+    }
+
+    /**
+     * Compara o nome de um campo, sem sequências de escape, com o nome informado sem criar uma {@link String}.
+     *
+     * @param inicio A posição das aspas de abertura do nome.
+     * @param fim    A posição seguinte às aspas de fechamento do nome.
+     */
+    static boolean nomeIgual(byte[] bytes, int inicio, int fim, String nome) {
+        int tamanho = fim - inicio - 2;
+        if (tamanho != nome.length()) {
+            return false;
+        }
+        for (int i = 0; i < tamanho; i++) {
+            if (bytes[inicio + 1 + i] != nome.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param inicio A posição do primeiro byte do valor.
+     * @param fim    A posição seguinte ao último byte do valor.
+     * @return se o valor é o literal {@code null}.
+     */
+    static boolean ehNulo(byte[] bytes, int inicio, int fim) {
+        return fim - inicio == 4 && bytes[inicio] == 'n' && bytes[inicio + 1] == 'u' && bytes[inicio + 2] == 'l'
+                && bytes[inicio + 3] == 'l';
+    }
+
+    /**
+     * Localiza o valor de um campo no primeiro nível de um objeto JSON.
+     *
+     * @param inicio A posição das chaves de abertura do objeto.
+     * @param fim    A posição seguinte às chaves de fechamento do objeto.
+     * @param nome   O nome do campo procurado.
+     * @return Um array com a posição do primeiro byte do valor e a posição seguinte ao último, ou {@code null} se o
+     * campo não existir.
+     * @throws JsonSyntaxException Se o objeto for inválido.
+     */
+    static int[] localizarCampo(byte[] bytes, int inicio, int fim, String nome) {
+        int i = pularEspacos(bytes, esperar(bytes, inicio, fim, '{'), fim);
+        if (i < fim && bytes[i] == '}') {
+            return null;
+        }
+        while (true) {
+            int inicioNome = i;
+            int fimNome = fimDaString(bytes, i, fim);
+            i = pularEspacos(bytes, fimNome, fim);
+            i = esperar(bytes, i, fim, ':');
+            int inicioValor = pularEspacos(bytes, i, fim);
+            int fimValor = fimDoValor(bytes, inicioValor, fim);
+            if (nomeIgual(bytes, inicioNome, fimNome, nome)) {
+                return new int[]{inicioValor, fimValor};
+            }
+
+            i = pularEspacos(bytes, fimValor, fim);
+            if (i < fim && bytes[i] == ',') {
+                i = pularEspacos(bytes, i + 1, fim);
+            } else {
+                esperar(bytes, i, fim, '}');
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Decodifica uma string JSON, incluindo as sequências de escape.
+     *
+     * @param inicio A posição das aspas de abertura.
+     * @param fim    A posição seguinte às aspas de fechamento.
+     * @return O valor da string, ou {@code null} se o valor for o literal {@code null}.
+     * @throws JsonSyntaxException Se o valor não for uma string ou contiver uma sequência de escape inválida.
+     */
+    static String lerString(byte[] bytes, int inicio, int fim) {
+        if (ehNulo(bytes, inicio, fim)) {
+            return null;
+        }
+        if (bytes[inicio] != '"' || fim - inicio < 2 || bytes[fim - 1] != '"') {
+            throw erro("era esperada uma string", inicio);
+        }
+
+        int conteudoInicio = inicio + 1;
+        int conteudoFim = fim - 1;
+        int barra = -1;
+        for (int i = conteudoInicio; i < conteudoFim; i++) {
+            if (bytes[i] == '\\') {
+                barra = i;
+                break;
+            }
+        }
+        if (barra < 0) {
+            return new String(bytes, conteudoInicio, conteudoFim - conteudoInicio, StandardCharsets.UTF_8);
+        }
+
+        StringBuilder valor = new StringBuilder(conteudoFim - conteudoInicio);
+        valor.append(new String(bytes, conteudoInicio, barra - conteudoInicio, StandardCharsets.UTF_8));
+        int i = barra;
+        while (i < conteudoFim) {
+            int proximaBarra = i;
+            while (proximaBarra < conteudoFim && bytes[proximaBarra] != '\\') {
+                proximaBarra++;
+            }
+            valor.append(new String(bytes, i, proximaBarra - i, StandardCharsets.UTF_8));
+            if (proximaBarra >= conteudoFim) {
+                break;
+            }
+            i = proximaBarra + 1;
+            if (i >= conteudoFim) {
+                throw erro("sequência de escape incompleta", proximaBarra);
+            }
+            char escape = (char) bytes[i];
+            switch (escape) {
+                case 'b':
+                    valor.append('\b');
+                    break;
+                case 'f':
+                    valor.append('\f');
+                    break;
+                case 'n':
+                    valor.append('\n');
+                    break;
+                case 'r':
+                    valor.append('\r');
+                    break;
+                case 't':
+                    valor.append('\t');
+                    break;
+                case 'u':
+                    valor.append(lerHexadecimal(bytes, i + 1, conteudoFim));
+                    i += 4;
+                    break;
+                case '"':
+                case '\\':
+                case '/':
+                    valor.append(escape);
+                    break;
+                default:
+                    throw erro("sequência de escape inválida", proximaBarra);
+            }
+            i++;
+        }
+        return valor.toString();
+    }
+
+    /**
+     * Lê os quatro dígitos hexadecimais de uma sequência de escape Unicode. Os pares substitutos são decodificados
+     * um caractere por vez, como aparecem no JSON.
+     *
+     * @throws JsonSyntaxException Se a sequência estiver incompleta ou tiver dígitos inválidos.
+     */
+    private static char lerHexadecimal(byte[] bytes, int posicao, int fim) {
+        if (posicao + 4 > fim) {
+            throw erro("sequência de escape \\u incompleta", posicao - 2);
+        }
+        int valor = 0;
+        for (int i = posicao; i < posicao + 4; i++) {
+            int digito = Character.digit(bytes[i], 16);
+            if (digito < 0) {
+                throw erro("sequência de escape \\u inválida", posicao - 2);
+            }
+            valor = valor << 4 | digito;
+        }
+        return (char) valor;
+    }
+
+    /**
+     * Cria a exceção de erro de sintaxe com a posição em que ocorreu.
+     */
+    static JsonSyntaxException erro(String descricao, int posicao) {
+        return new JsonSyntaxException(String.format("JSON inválido na posição %d: %s.", posicao, descricao));
+    }
+}
@@ -0,0 +1,177 @@
+package br.edu.unifei.modelos.mensagem;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * {@link Writer} que codifica os caracteres em UTF-8 diretamente em um array de bytes, sem os buffers intermediários
+ * do {@link java.io.OutputStreamWriter}. Quando associado a um {@link OutputStream}, o array funciona como buffer e é
+ * descarregado no stream a cada {@link #flush()} ou quando fica cheio.
+ */
+final class EscritorUtf8 extends Writer {
+
+    private static final int TAMANHO_BLOCO = 8192;
+
+    private final OutputStream saida;
+    private char[] blocoCaracteres;
+    private byte[] bytes;
+    private int tamanho;
+    private char surrogatePendente;
+
+    /**
+     * Cria um escritor que acumula os bytes em memória, obtidos com {@link #paraBytes()}.
+     *
+     * @param capacidadeInicial A capacidade inicial do array de bytes.
+     */
+    EscritorUtf8(int capacidadeInicial) {
+        this.saida = null;
+        this.bytes = new byte[capacidadeInicial];
+    }
+
+    /**
+     * Cria um escritor que descarrega os bytes no stream informado. O stream não é fechado por este escritor.
+     *
+     * @param saida O stream de saída.
+     */
+    EscritorUtf8(OutputStream saida) {
+        this.saida = saida;
+        this.bytes = new byte[4096];
+    }
+
+    @Override
+    public void write(int caractere) throws IOException {
+        escrever((char) caractere);
+    }
+
+    @Override
+    public void write(char[] origem, int inicio, int quantidade) throws IOException {
+        int i = inicio;
+        int fim = inicio + quantidade;
+        while (i < fim) {
+            if (surrogatePendente == 0) {
+                // Caminho rápido para sequências ASCII, que ocupam um byte por caractere
+                garantirEspaco(fim - i);
+                int limiteAscii = Math.min(fim, i + bytes.length - tamanho);
+                byte[] destino = bytes;
+                int posicao = tamanho;
+                while (i < limiteAscii) {
+                    char c = origem[i];
+                    if (c >= 0x80) {
+                        break;
+                    }
+                    destino[posicao++] = (byte) c;
+                    i++;
+                }
+                tamanho = posicao;
+            }
+            if (i < fim) {
+                escrever(origem[i++]);
+            }
+        }
+    }
+
+    @Override
+    public void write(String origem, int inicio, int quantidade) throws IOException {
+        // Copia a string em blocos para um array de caracteres, cujo acesso é mais rápido que charAt
+        if (blocoCaracteres == null || blocoCaracteres.length < Math.min(quantidade, TAMANHO_BLOCO)) {
+            blocoCaracteres = new char[Math.min(quantidade, TAMANHO_BLOCO)];
+        }
+        garantirEspaco(quantidade);
+        int i = inicio;
+        int fim = inicio + quantidade;
+        while (i < fim) {
+            int tamanhoBloco = Math.min(fim - i, blocoCaracteres.length);
+            origem.getChars(i, i + tamanhoBloco, blocoCaracteres, 0);
+            write(blocoCaracteres, 0, tamanhoBloco);
+            i += tamanhoBloco;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (saida != null) {
+            saida.write(bytes, 0, tamanho);
+            tamanho = 0;
+            saida.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * @return uma cópia dos bytes escritos até o momento.
+     */
+    byte[] paraBytes() {
+        return Arrays.copyOf(bytes, tamanho);
+    }
+
+    private void escrever(char c) throws IOException {
+        if (bytes.length - tamanho < 4) {
+            abrirEspaco();
+        }
+
+        if (surrogatePendente != 0) {
+            char alto = surrogatePendente;
+            surrogatePendente = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codigo = Character.toCodePoint(alto, c);
+                bytes[tamanho++] = (byte) (0xF0 | (codigo >> 18));
+                bytes[tamanho++] = (byte) (0x80 | ((codigo >> 12) & 0x3F));
+                bytes[tamanho++] = (byte) (0x80 | ((codigo >> 6) & 0x3F));
+                bytes[tamanho++] = (byte) (0x80 | (codigo & 0x3F));
+                return;
+            }
+            bytes[tamanho++] = '?';
+            if (bytes.length - tamanho < 4) {
+                abrirEspaco();
+            }
+        }
+
+        if (c < 0x80) {
+            bytes[tamanho++] = (byte) c;
+        } else if (c < 0x800) {
+            bytes[tamanho++] = (byte) (0xC0 | (c >> 6));
+            bytes[tamanho++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            surrogatePendente = c;
+        } else if (Character.isLowSurrogate(c)) {
+            bytes[tamanho++] = '?';
+        } else {
+            bytes[tamanho++] = (byte) (0xE0 | (c >> 12));
+            bytes[tamanho++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            bytes[tamanho++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    /**
+     * Garante espaço para a quantidade de bytes informada ou, quando associado a um stream, descarrega o buffer se ele
+     * estiver cheio.
+     */
+    private void garantirEspaco(int quantidade) throws IOException {
+        if (bytes.length - tamanho >= quantidade) {
+            return;
+        }
+        if (saida != null) {
+            if (tamanho == bytes.length) {
+                abrirEspaco();
+            }
+        } else {
+            // Folga para os delimitadores escritos logo após blocos grandes, evitando uma nova cópia do array
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, tamanho + quantidade + 1024));
+        }
+    }
+
+    private void abrirEspaco() throws IOException {
+        if (saida != null) {
+            saida.write(bytes, 0, tamanho);
+            tamanho = 0;
+        } else {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, 16));
+        }
+    }
+}
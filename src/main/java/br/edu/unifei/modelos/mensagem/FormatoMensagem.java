@@ -0,0 +1,48 @@
+package br.edu.unifei.modelos.mensagem;
+
+/**
+ * Formatos de codificação de {@link Mensagem} aceitos nos protocolos. O JSON é o formato padrão; o CBOR é negociado
+ * pelo content-format no CoAP e pelo sufixo do tópico no MQTT, e envia campos binários sem base64.
+ */
+public enum FormatoMensagem {
+
+    JSON {
+        @Override
+        public byte[] codificar(Mensagem mensagem) {
+            return mensagem.toJsonBytes();
+        }
+
+        @Override
+        public Mensagem decodificar(byte[] bytes) {
+            return Mensagem.fromJson(bytes);
+        }
+    },
+
+    CBOR {
+        @Override
+        public byte[] codificar(Mensagem mensagem) {
+            return CodecCborMensagem.paraBytes(mensagem);
+        }
+
+        @Override
+        public Mensagem decodificar(byte[] bytes) {
+            return CodecCborMensagem.ler(bytes);
+        }
+    };
+
+    /**
+     * Codifica uma mensagem neste formato.
+     *
+     * @param mensagem A {@link Mensagem} a ser codificada.
+     * @return Os bytes da mensagem codificada.
+     */
+    public abstract byte[] codificar(Mensagem mensagem);
+
+    /**
+     * Decodifica uma mensagem neste formato.
+     *
+     * @param bytes Os bytes da mensagem codificada.
+     * @return A {@link Mensagem} decodificada.
+     */
+    public abstract Mensagem decodificar(byte[] bytes);
+}
@@ -0,0 +1,166 @@
+package br.edu.unifei.modelos.mensagem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * {@link Reader} que decodifica UTF-8 diretamente de um array de bytes ou de um {@link InputStream}, sem os buffers
+ * intermediários do {@link java.io.InputStreamReader}. Sequências inválidas são substituídas por {@code U+FFFD}.
+ */
+final class LeitorUtf8 extends Reader {
+
+    private static final char SUBSTITUTO = '\uFFFD';
+
+    private final InputStream entrada;
+    private byte[] bytes;
+    private int posicao;
+    private int limite;
+    private char surrogatePendente;
+
+    /**
+     * @param bytes  Os bytes codificados em UTF-8.
+     * @param inicio A posição do primeiro byte a ser lido.
+     * @param fim    A posição seguinte ao último byte a ser lido.
+     */
+    LeitorUtf8(byte[] bytes, int inicio, int fim) {
+        this.entrada = null;
+        this.bytes = bytes;
+        this.posicao = inicio;
+        this.limite = fim;
+    }
+
+    /**
+     * @param entrada O stream com os bytes codificados em UTF-8. O stream não é fechado por este leitor.
+     */
+    LeitorUtf8(InputStream entrada) {
+        this.entrada = entrada;
+        this.bytes = new byte[4096];
+    }
+
+    @Override
+    public int read(char[] destino, int inicio, int tamanho) throws IOException {
+        if (tamanho == 0) {
+            return 0;
+        }
+
+        int escritos = 0;
+        if (surrogatePendente != 0) {
+            destino[inicio + escritos++] = surrogatePendente;
+            surrogatePendente = 0;
+        }
+
+        while (escritos < tamanho) {
+            // Garante uma sequência UTF-8 completa (até 4 bytes) disponível no buffer
+            if (limite - posicao < 4 && !carregar()) {
+                if (posicao >= limite) {
+                    break;
+                }
+            }
+
+            // Caminho rápido para sequências ASCII, que ocupam um byte por caractere
+            int inicioAscii = posicao;
+            int limiteAscii = Math.min(limite, posicao + tamanho - escritos);
+            while (posicao < limiteAscii && bytes[posicao] >= 0) {
+                destino[inicio + escritos++] = (char) bytes[posicao++];
+            }
+            if (posicao != inicioAscii) {
+                continue;
+            }
+
+            int b0 = bytes[posicao] & 0xFF;
+            if (b0 < 0x80) {
+                destino[inicio + escritos++] = (char) b0;
+                posicao++;
+                continue;
+            }
+
+            int codigo;
+            int tamanhoSequencia;
+            if ((b0 & 0xE0) == 0xC0) {
+                codigo = b0 & 0x1F;
+                tamanhoSequencia = 2;
+            } else if ((b0 & 0xF0) == 0xE0) {
+                codigo = b0 & 0x0F;
+                tamanhoSequencia = 3;
+            } else if ((b0 & 0xF8) == 0xF0) {
+                codigo = b0 & 0x07;
+                tamanhoSequencia = 4;
+            } else {
+                destino[inicio + escritos++] = SUBSTITUTO;
+                posicao++;
+                continue;
+            }
+
+            if (posicao + tamanhoSequencia > limite) {
+                destino[inicio + escritos++] = SUBSTITUTO;
+                posicao = limite;
+                continue;
+            }
+
+            boolean valida = true;
+            for (int i = 1; i < tamanhoSequencia; i++) {
+                int b = bytes[posicao + i] & 0xFF;
+                if ((b & 0xC0) != 0x80) {
+                    valida = false;
+                    break;
+                }
+                codigo = (codigo << 6) | (b & 0x3F);
+            }
+            if (!valida) {
+                destino[inicio + escritos++] = SUBSTITUTO;
+                posicao++;
+                continue;
+            }
+            posicao += tamanhoSequencia;
+
+            if (codigo < 0x10000) {
+                destino[inicio + escritos++] = (char) codigo;
+            } else {
+                destino[inicio + escritos++] = Character.highSurrogate(codigo);
+                char baixo = Character.lowSurrogate(codigo);
+                if (escritos < tamanho) {
+                    destino[inicio + escritos++] = baixo;
+                } else {
+                    surrogatePendente = baixo;
+                }
+            }
+        }
+
+        return escritos == 0 ? -1 : escritos;
+    }
+
+    @Override
+    public void close() {
+        // O array ou stream de origem pertence ao chamador e não é liberado aqui
+    }
+
+    /**
+     * Move os bytes restantes para o início do buffer e completa-o com bytes do stream.
+     *
+     * @return {@code true} se algum byte novo foi lido.
+     */
+    private boolean carregar() throws IOException {
+        if (entrada == null) {
+            return false;
+        }
+        int restantes = limite - posicao;
+        System.arraycopy(bytes, posicao, bytes, 0, restantes);
+        posicao = 0;
+        limite = restantes;
+
+        boolean leu = false;
+        while (limite < bytes.length) {
+            int lidos = entrada.read(bytes, limite, bytes.length - limite);
+            if (lidos < 0) {
+                break;
+            }
+            limite += lidos;
+            leu = true;
+            if (limite - posicao >= 4) {
+                break;
+            }
+        }
+        return leu;
+    }
+}
@@ -1,19 +1,30 @@
 package br.edu.unifei.modelos.mensagem;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Classe que representa uma mensagem a ser trocada entre serviços e protocolos. Uma mensagem contém uma ação, o
  * endereço de origem, o endereço de destino e um conteúdo em formato JSON.
+ * <p>
+ * Mensagens lidas com {@link #fromJson(byte[])} interpretam apenas o cabeçalho. O conteúdo permanece como bytes
+ * até o primeiro acesso a {@link #getConteudo()}, de modo que o roteamento, o encaminhamento e o registro em log não
+ * pagam pela interpretação de conteúdos grandes.
+ * </p>
  */
 public class Mensagem {
     private final String acao;
     private final String origem;
     private final String destino;
-    private final JsonObject conteudo;
     private final JsonObject metadata;
+    private volatile JsonObject conteudo;
+    private byte[] conteudoBruto;
+    private int inicioConteudo;
+    private int fimConteudo;
 
     /**
      * Construtor que inicializa uma mensagem com os parâmetros fornecidos.
@@ -31,6 +42,45 @@ public class Mensagem {
         this.metadata = new JsonObject();
     }
 
+    /**
+     * Construtor usado na decodificação, que preserva o metadata recebido.
+     *
+     * @param acao     A ação associada a mensagem.
+     * @param origem   O identificador do remetente da mensagem.
+     * @param destino  O identificador do destinatário da mensagem.
+     * @param conteudo O conteúdo da mensagem em formato {@link JsonObject}.
+     * @param metadata O metadata da mensagem em formato {@link JsonObject}.
+     */
+    Mensagem(String acao, String origem, String destino, JsonObject conteudo, JsonObject metadata) {
+        this.acao = acao;
+        this.origem = origem;
+        this.destino = destino;
+        this.conteudo = conteudo;
+        this.metadata = metadata;
+    }
+
+    /**
+     * Construtor usado na leitura apenas do cabeçalho, que mantém o conteúdo como um trecho do JSON original.
+     *
+     * @param acao           A ação associada a mensagem.
+     * @param origem         O identificador do remetente da mensagem.
+     * @param destino        O identificador do destinatário da mensagem.
+     * @param conteudoBruto  O JSON original, ou {@code null} se a mensagem não possuir conteúdo.
+     * @param inicioConteudo A posição do primeiro byte do conteúdo no JSON original.
+     * @param fimConteudo    A posição seguinte ao último byte do conteúdo no JSON original.
+     * @param metadata       O metadata da mensagem em formato {@link JsonObject}.
+     */
+    Mensagem(String acao, String origem, String destino, byte[] conteudoBruto, int inicioConteudo, int fimConteudo,
+             JsonObject metadata) {
+        this.acao = acao;
+        this.origem = origem;
+        this.destino = destino;
+        this.conteudoBruto = conteudoBruto;
+        this.inicioConteudo = inicioConteudo;
+        this.fimConteudo = fimConteudo;
+        this.metadata = metadata;
+    }
+
     /**
      * Cria uma instância de {@code Mensagem} a partir de uma string JSON.
      *
@@ -38,8 +88,18 @@ public class Mensagem {
      * @return Uma nova instância de {@code Mensagem} a partir do JSON fornecido.
      */
     public static Mensagem fromJson(String json) {
-        Gson gson = new Gson();
-        return gson.fromJson(json, Mensagem.class);
+        return CodecMensagem.ler(json);
+    }
+
+    /**
+     * Cria uma instância de {@code Mensagem} a partir de um JSON codificado em UTF-8, sem convertê-lo antes para
+     * {@link String}. Apenas o cabeçalho é interpretado; o conteúdo é interpretado no primeiro acesso.
+     *
+     * @param json Os bytes do JSON a ser convertido em uma instância de {@code Mensagem}.
+     * @return Uma nova instância de {@code Mensagem} a partir do JSON fornecido.
+     */
+    public static Mensagem fromJson(byte[] json) {
+        return CodecMensagem.lerCabecalho(json);
     }
 
     /**
@@ -64,9 +124,79 @@ public class Mensagem {
     }
 
     /**
-     * @return o conteúdo da mensagem no formato {@link JsonObject}.
+     * @return o conteúdo da mensagem no formato {@link JsonObject}, interpretado no primeiro acesso quando a mensagem
+     * foi lida apenas com o cabeçalho.
      */
     public JsonObject getConteudo() {
+        JsonObject atual = conteudo;
+        return atual != null ? atual : interpretarConteudo();
+    }
+
+    /**
+     * Retorna o valor de um campo de texto do conteúdo. Enquanto o conteúdo não tiver sido interpretado, apenas o
+     * campo é lido do JSON original, permitindo consultar campos pequenos de mensagens grandes sem interpretá-las.
+     *
+     * @param campo O nome do campo no primeiro nível do conteúdo.
+     * @return O valor do campo, ou {@code null} se o campo não existir ou for nulo.
+     */
+    public String getCampoTexto(String campo) {
+        synchronized (this) {
+            if (conteudo == null && conteudoBruto != null) {
+                int[] valor = EscanerJson.localizarCampo(conteudoBruto, inicioConteudo, fimConteudo, campo);
+                return valor != null ? EscanerJson.lerString(conteudoBruto, valor[0], valor[1]) : null;
+            }
+        }
+        JsonObject atual = getConteudo();
+        JsonElement valor = atual != null ? atual.get(campo) : null;
+        return valor != null && !valor.isJsonNull() ? valor.getAsString() : null;
+    }
+
+    /**
+     * Abre um stream com o valor, em UTF-8, de um campo de texto do conteúdo. Enquanto o conteúdo não tiver sido
+     * interpretado, o valor é lido diretamente do JSON original, decodificando as sequências de escape durante a
+     * leitura, sem criar uma cópia do campo. É a forma indicada de ler campos grandes, como bytecodes em base64.
+     *
+     * @param campo O nome do campo no primeiro nível do conteúdo.
+     * @return Um {@link InputStream} com o valor do campo, ou {@code null} se o campo não existir ou for nulo.
+     */
+    public InputStream abrirCampoTexto(String campo) {
+        synchronized (this) {
+            if (conteudo == null && conteudoBruto != null) {
+                int[] valor = EscanerJson.localizarCampo(conteudoBruto, inicioConteudo, fimConteudo, campo);
+                if (valor == null || EscanerJson.ehNulo(conteudoBruto, valor[0], valor[1])) {
+                    return null;
+                }
+                if (conteudoBruto[valor[0]] != '"') {
+                    throw EscanerJson.erro("era esperada uma string", valor[0]);
+                }
+                return new EntradaTextoJson(conteudoBruto, valor[0] + 1, valor[1] - 1);
+            }
+        }
+        String valor = getCampoTexto(campo);
+        return valor != null ? new ByteArrayInputStream(valor.getBytes(StandardCharsets.UTF_8)) : null;
+    }
+
+    /**
+     * @return o JSON do conteúdo ainda não interpretado, ou {@code null} se o conteúdo já foi interpretado ou não
+     * existe.
+     */
+    synchronized String getConteudoNaoLido() {
+        if (conteudo != null || conteudoBruto == null) {
+            return null;
+        }
+        return new String(conteudoBruto, inicioConteudo, fimConteudo - inicioConteudo, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Interpreta o trecho do JSON original que contém o conteúdo, liberando a referência ao array original.
+     *
+     * @return o conteúdo interpretado, ou {@code null} se a mensagem não possuir conteúdo.
+     */
+    private synchronized JsonObject interpretarConteudo() {
+        if (conteudo == null && conteudoBruto != null) {
+            conteudo = CodecMensagem.lerObjeto(conteudoBruto, inicioConteudo, fimConteudo);
+            conteudoBruto = null;
+        }
         return conteudo;
     }
 
@@ -83,8 +213,25 @@ public class Mensagem {
      * @return a representação JSON desta mensagem.
      */
     public String toJson() {
-        Gson gson = new Gson();
-        return gson.toJson(this);
+        return CodecMensagem.paraString(this);
+    }
+
+    /**
+     * Converte esta mensagem para um JSON codificado em UTF-8.
+     *
+     * @return os bytes da representação JSON desta mensagem.
+     */
+    public byte[] toJsonBytes() {
+        return CodecMensagem.paraBytes(this);
+    }
+
+    /**
+     * @return a representação JSON desta mensagem, permitindo seu uso como argumento de formatação nos logs sem
+     * serializá-la quando o nível de log estiver desabilitado.
+     */
+    @Override
+    public String toString() {
+        return toJson();
     }
 
     /**
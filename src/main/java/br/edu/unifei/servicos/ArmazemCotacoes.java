@@ -0,0 +1,528 @@
+package br.edu.unifei.servicos;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Armazena em disco a última cotação de cada ação e a última taxa de cada par de moedas obtidas da API, para que o
+ * cache do {@link ServicoAlphaVantageAPI} seja recarregado quando o servidor reinicia.
+ * <p>
+ * O arquivo é mapeado em memória e formado por um cabeçalho e por registros de tamanho fixo, sempre acrescentados ao
+ * final: uma nova cotação da mesma chave não sobrescreve a anterior, e o índice em memória aponta para o registro mais
+ * recente de cada chave. Quando o arquivo enche, os registros substituídos são descartados compactando o arquivo no
+ * próprio lugar, ou o arquivo dobra de tamanho se a maior parte dos registros ainda estiver em uso.
+ * </p>
+ * <p>
+ * Cada registro traz um CRC-32 do seu conteúdo e um número de sequência. Na abertura, registros com CRC inválido, como
+ * o último de um processo interrompido no meio da gravação, são ignorados, e de uma chave com mais de um registro vale
+ * o de maior sequência, o que mantém o arquivo consistente mesmo se a compactação for interrompida. A área ainda não
+ * usada do arquivo é preenchida com zeros e marca o fim dos registros.
+ * </p>
+ * <p>
+ * As gravações são feitas em uma thread própria, fora das threads que atendem as consultas. Os valores que não cabem no
+ * registro, como preços com mais dígitos que um {@code long} ou nomes de moedas com mais de 40 bytes, não são gravados.
+ * </p>
+ */
+final class ArmazemCotacoes implements Closeable {
+
+    /**
+     * Tipo da cotação armazenada. Ações e pares de moedas ficam em chaves separadas.
+     */
+    enum Tipo {
+        ACAO,
+        CAMBIO
+    }
+
+    static final int TAMANHO_CABECALHO = 16;
+    static final int TAMANHO_REGISTRO = 160;
+
+    private static final int MAGICO = 0x434F5441;
+    private static final int VERSAO = 1;
+
+    // Disposição do registro: CRC-32 dos bytes seguintes, tipo, chave, sequência, data de obtenção e dados da cotação
+    private static final int POSICAO_TIPO = 4;
+    private static final int TAMANHO_CHAVE = 24;
+    private static final int POSICAO_SEQUENCIA = 30;
+    private static final int POSICAO_ARMAZENADO_EM = 38;
+    private static final int POSICAO_DADOS = 46;
+    private static final int TAMANHO_CODIGO = 10;
+    private static final int TAMANHO_NOME = 40;
+
+    private static final String[] PRECOS_ACAO = {"precoAtual", "precoFechamentoAnterior", "maxDia", "minDia"};
+
+    private final Path arquivo;
+    private final FileChannel canal;
+    private final FileLock trava;
+    private final ExecutorService gravador;
+    private final Map<String, Integer> indice = new HashMap<>();
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer registro = ByteBuffer.allocate(TAMANHO_REGISTRO);
+    private MappedByteBuffer mapa;
+    private int capacidade;
+    private int proximo;
+    private long proximaSequencia = 1;
+    private int descartados;
+    private long compactacoes;
+
+    /**
+     * Abre o arquivo, criando-o se não existir, e monta o índice dos registros válidos.
+     *
+     * @param arquivo           O caminho do arquivo.
+     * @param capacidadeInicial Quantidade de registros do arquivo novo.
+     * @throws IOException Se o arquivo não puder ser aberto, estiver em uso por outro armazém ou não estiver no formato
+     *                     esperado.
+     */
+    ArmazemCotacoes(Path arquivo, int capacidadeInicial) throws IOException {
+        if (capacidadeInicial <= 0) {
+            throw new IllegalArgumentException("A capacidade deve ser positiva: " + capacidadeInicial);
+        }
+        this.arquivo = arquivo;
+        Path diretorio = arquivo.toAbsolutePath().getParent();
+        if (diretorio != null) {
+            Files.createDirectories(diretorio);
+        }
+        this.canal = FileChannel.open(arquivo,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.trava = travar();
+            long tamanho = canal.size();
+            if (tamanho < TAMANHO_CABECALHO) {
+                mapear(capacidadeInicial);
+                mapa.putInt(0, MAGICO).putInt(4, VERSAO).putInt(8, TAMANHO_REGISTRO);
+            } else {
+                validarCabecalho();
+                // Um registro incompleto no final conta como um registro inteiro, completado com zeros
+                long registros = (tamanho - TAMANHO_CABECALHO + TAMANHO_REGISTRO - 1) / TAMANHO_REGISTRO;
+                mapear((int) Math.max(capacidadeInicial, registros));
+                montarIndice();
+            }
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+        this.gravador = Executors.newSingleThreadExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "armazem-cotacoes");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Grava a cotação em segundo plano.
+     *
+     * @param tipo         O tipo da cotação.
+     * @param chave        O símbolo da ação ou o par de moedas, normalizado.
+     * @param valor        Os dados da cotação, que não devem ser alterados até a gravação terminar.
+     * @param armazenadoEm Quando a cotação foi obtida da API, em milissegundos desde a época.
+     * @return Conclui com {@code true} quando o registro for gravado, com {@code false} se os dados não couberem no
+     * registro, ou com {@link IOException} se o arquivo não puder crescer ou já tiver sido fechado.
+     */
+    CompletableFuture<Boolean> gravar(Tipo tipo, String chave, JsonObject valor, long armazenadoEm) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return gravarAgora(tipo, chave, valor, armazenadoEm);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, gravador);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new IOException("O armazém de cotações foi fechado: " + arquivo));
+        }
+    }
+
+    /**
+     * Entrega as cotações armazenadas mais recentes, da gravada há mais tempo para a mais recente, como seriam
+     * inseridas em um cache LRU.
+     *
+     * @param armazenadasDesde Cotações obtidas antes deste instante, em milissegundos desde a época, não são lidas.
+     * @param maximoPorTipo    Quantidade máxima de cotações de cada tipo, normalmente a capacidade do cache: as mais
+     *                         antigas além dela nem chegam a ser lidas.
+     * @param destino          Recebe cada cotação lida.
+     * @return A quantidade de cotações entregues.
+     */
+    synchronized int carregar(long armazenadasDesde, int maximoPorTipo, Destino destino) {
+        int[] posicoes = new int[indice.size()];
+        int total = 0;
+        for (int posicao : indice.values()) {
+            posicoes[total++] = posicao;
+        }
+        Arrays.sort(posicoes);
+
+        // Seleciona das mais recentes para as mais antigas e entrega na ordem inversa
+        int[] porTipo = new int[Tipo.values().length];
+        int selecionadas = 0;
+        for (int i = total - 1; i >= 0; i--) {
+            int inicio = inicioRegistro(posicoes[i]);
+            int tipo = mapa.get(inicio + POSICAO_TIPO) - 1;
+            if (porTipo[tipo] < maximoPorTipo && mapa.getLong(inicio + POSICAO_ARMAZENADO_EM) >= armazenadasDesde) {
+                porTipo[tipo]++;
+                posicoes[total - 1 - selecionadas++] = posicoes[i];
+            }
+        }
+
+        ByteBuffer leitura = mapa.duplicate();
+        for (int i = total - selecionadas; i < total; i++) {
+            int inicio = inicioRegistro(posicoes[i]);
+            Tipo tipo = Tipo.values()[mapa.get(inicio + POSICAO_TIPO) - 1];
+            leitura.clear();
+            leitura.position(inicio + POSICAO_TIPO + 1);
+            String chave = lerTexto(leitura, TAMANHO_CHAVE);
+            leitura.position(inicio + POSICAO_DADOS);
+            destino.receber(tipo, chave, lerValor(tipo, leitura), mapa.getLong(inicio + POSICAO_ARMAZENADO_EM));
+        }
+        return selecionadas;
+    }
+
+    /**
+     * @return a quantidade de chaves armazenadas.
+     */
+    synchronized int getEntradas() {
+        return indice.size();
+    }
+
+    /**
+     * @return a quantidade de registros ocupados no arquivo, incluindo os substituídos por cotações mais recentes.
+     */
+    synchronized int getRegistros() {
+        return proximo;
+    }
+
+    /**
+     * @return a quantidade de registros do arquivo, ocupados ou não.
+     */
+    synchronized int getCapacidade() {
+        return capacidade;
+    }
+
+    /**
+     * @return a quantidade de registros com CRC inválido ignorados na abertura do arquivo.
+     */
+    synchronized int getDescartados() {
+        return descartados;
+    }
+
+    /**
+     * @return a quantidade de compactações do arquivo.
+     */
+    synchronized long getCompactacoes() {
+        return compactacoes;
+    }
+
+    /**
+     * Aguarda as gravações pendentes, força a escrita do arquivo em disco e o fecha.
+     */
+    @Override
+    public void close() throws IOException {
+        gravador.shutdown();
+        try {
+            gravador.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (!canal.isOpen()) {
+                return;
+            }
+            mapa.force();
+            trava.release();
+            canal.close();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s: %d entradas, %d de %d registros ocupados, %d descartados, %d compactações",
+                arquivo, indice.size(), proximo, capacidade, descartados, compactacoes);
+    }
+
+    /**
+     * Recebe as cotações lidas do arquivo.
+     */
+    interface Destino {
+        void receber(Tipo tipo, String chave, JsonObject valor, long armazenadoEm);
+    }
+
+    private FileLock travar() throws IOException {
+        FileLock obtida;
+        try {
+            obtida = canal.tryLock();
+        } catch (OverlappingFileLockException e) {
+            obtida = null;
+        }
+        if (obtida == null) {
+            throw new IOException("O arquivo de cotações já está em uso: " + arquivo);
+        }
+        return obtida;
+    }
+
+    private void validarCabecalho() throws IOException {
+        ByteBuffer cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO);
+        while (cabecalho.hasRemaining()) {
+            if (canal.read(cabecalho, cabecalho.position()) < 0) {
+                break;
+            }
+        }
+        if (cabecalho.getInt(0) != MAGICO || cabecalho.getInt(4) != VERSAO
+                || cabecalho.getInt(8) != TAMANHO_REGISTRO) {
+            throw new IOException("O arquivo não é um armazém de cotações compatível: " + arquivo);
+        }
+    }
+
+    private void mapear(int novaCapacidade) throws IOException {
+        mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0,
+                TAMANHO_CABECALHO + (long) novaCapacidade * TAMANHO_REGISTRO);
+        capacidade = novaCapacidade;
+    }
+
+    /**
+     * Percorre os registros até a área não usada, que começa no primeiro registro com o tipo zerado. Registros com CRC
+     * inválido são ignorados sem interromper a leitura, e de cada chave fica o registro de maior sequência.
+     */
+    private void montarIndice() {
+        ByteBuffer trecho = mapa.duplicate();
+        for (int posicao = 0; posicao < capacidade; posicao++) {
+            int inicio = inicioRegistro(posicao);
+            byte tipo = mapa.get(inicio + POSICAO_TIPO);
+            if (tipo == 0) {
+                break;
+            }
+            proximo = posicao + 1;
+            trecho.clear();
+            trecho.position(inicio + POSICAO_TIPO).limit(inicio + TAMANHO_REGISTRO);
+            crc.reset();
+            crc.update(trecho);
+            if ((int) crc.getValue() != mapa.getInt(inicio) || tipo < 0 || tipo > Tipo.values().length) {
+                descartados++;
+                continue;
+            }
+
+            trecho.clear();
+            trecho.position(inicio + POSICAO_TIPO + 1);
+            String identificador = identificador(tipo, lerTexto(trecho, TAMANHO_CHAVE));
+            long sequencia = mapa.getLong(inicio + POSICAO_SEQUENCIA);
+            Integer anterior = indice.get(identificador);
+            if (anterior == null || mapa.getLong(inicioRegistro(anterior) + POSICAO_SEQUENCIA) < sequencia) {
+                indice.put(identificador, posicao);
+            }
+            proximaSequencia = Math.max(proximaSequencia, sequencia + 1);
+        }
+    }
+
+    private synchronized boolean gravarAgora(Tipo tipo, String chave, JsonObject valor, long armazenadoEm)
+            throws IOException {
+        if (!codificar(tipo, chave, valor, armazenadoEm)) {
+            return false;
+        }
+        if (proximo == capacidade) {
+            abrirEspaco();
+        }
+        byte[] bytes = registro.array();
+        crc.reset();
+        crc.update(bytes, POSICAO_TIPO, TAMANHO_REGISTRO - POSICAO_TIPO);
+        registro.putInt(0, (int) crc.getValue());
+        escrever(proximo, bytes);
+        indice.put(identificador(tipo.ordinal() + 1, chave), proximo++);
+        proximaSequencia++;
+        return true;
+    }
+
+    /**
+     * Descarta os registros substituídos se eles forem ao menos metade do arquivo, ou dobra a capacidade.
+     */
+    private void abrirEspaco() throws IOException {
+        if (indice.size() > capacidade / 2) {
+            mapear(capacidade * 2);
+            return;
+        }
+
+        // Os registros em uso são copiados em ordem para o início do arquivo. Cada registro é lido antes que alguma
+        // cópia o sobrescreva, então uma interrupção no meio deixa apenas registros duplicados, com a mesma sequência
+        List<Map.Entry<String, Integer>> emUso = new ArrayList<>(indice.entrySet());
+        emUso.sort(Map.Entry.comparingByValue());
+        byte[] copia = new byte[TAMANHO_REGISTRO];
+        int destino = 0;
+        for (Map.Entry<String, Integer> entrada : emUso) {
+            int origem = entrada.getValue();
+            if (origem != destino) {
+                ByteBuffer leitura = mapa.duplicate();
+                leitura.position(inicioRegistro(origem));
+                leitura.get(copia);
+                escrever(destino, copia);
+            }
+            entrada.setValue(destino++);
+        }
+
+        byte[] zeros = new byte[TAMANHO_REGISTRO];
+        for (int posicao = destino; posicao < proximo; posicao++) {
+            escrever(posicao, zeros);
+        }
+        proximo = destino;
+        compactacoes++;
+    }
+
+    private void escrever(int posicao, byte[] bytes) {
+        ByteBuffer escrita = mapa.duplicate();
+        escrita.position(inicioRegistro(posicao));
+        escrita.put(bytes);
+    }
+
+    /**
+     * Monta o registro no buffer, sem o CRC.
+     *
+     * @return {@code false} se a chave ou os dados não couberem no registro ou não tiverem os campos esperados.
+     */
+    private boolean codificar(Tipo tipo, String chave, JsonObject valor, long armazenadoEm) {
+        Arrays.fill(registro.array(), (byte) 0);
+        registro.clear();
+        registro.position(POSICAO_TIPO);
+        registro.put((byte) (tipo.ordinal() + 1));
+        if (!escreverTexto(chave, TAMANHO_CHAVE)) {
+            return false;
+        }
+        registro.putLong(proximaSequencia);
+        registro.putLong(armazenadoEm);
+
+        if (tipo == Tipo.ACAO) {
+            if (valor.size() != PRECOS_ACAO.length + 1) {
+                return false;
+            }
+            for (String campo : PRECOS_ACAO) {
+                if (!escreverDecimal(valor.get(campo))) {
+                    return false;
+                }
+            }
+            BigDecimal volume = getDecimal(valor.get("volume"));
+            if (volume == null || volume.scale() > 0 || volume.unscaledValue().bitLength() > 63) {
+                return false;
+            }
+            registro.putLong(volume.longValueExact());
+            return true;
+        }
+
+        return valor.size() == 5
+                && escreverTexto(getTexto(valor.get("moedaReferenciaCodigo")), TAMANHO_CODIGO)
+                && escreverTexto(getTexto(valor.get("moedaReferenciaNome")), TAMANHO_NOME)
+                && escreverTexto(getTexto(valor.get("moedaDestinoCodigo")), TAMANHO_CODIGO)
+                && escreverTexto(getTexto(valor.get("moedaDestinoNome")), TAMANHO_NOME)
+                && escreverDecimal(valor.get("taxaDeCambio"));
+    }
+
+    /**
+     * Monta os dados da cotação com os mesmos campos, na mesma ordem, que os lidos da API.
+     */
+    private static JsonObject lerValor(Tipo tipo, ByteBuffer leitura) {
+        JsonObject valor = new JsonObject();
+        if (tipo == Tipo.ACAO) {
+            for (String campo : PRECOS_ACAO) {
+                valor.addProperty(campo, lerDecimal(leitura));
+            }
+            valor.addProperty("volume", leitura.getLong());
+        } else {
+            valor.addProperty("moedaReferenciaCodigo", lerTexto(leitura, TAMANHO_CODIGO));
+            valor.addProperty("moedaReferenciaNome", lerTexto(leitura, TAMANHO_NOME));
+            valor.addProperty("moedaDestinoCodigo", lerTexto(leitura, TAMANHO_CODIGO));
+            valor.addProperty("moedaDestinoNome", lerTexto(leitura, TAMANHO_NOME));
+            valor.addProperty("taxaDeCambio", lerDecimal(leitura));
+        }
+        return valor;
+    }
+
+    /**
+     * Escreve o texto em UTF-8 precedido do tamanho, ocupando sempre {@code tamanhoMaximo + 1} bytes.
+     */
+    private boolean escreverTexto(String texto, int tamanhoMaximo) {
+        if (texto == null) {
+            return false;
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > tamanhoMaximo) {
+            return false;
+        }
+        int inicio = registro.position();
+        registro.put((byte) bytes.length).put(bytes);
+        registro.position(inicio + 1 + tamanhoMaximo);
+        return true;
+    }
+
+    private static String lerTexto(ByteBuffer leitura, int tamanhoMaximo) {
+        int inicio = leitura.position();
+        byte[] bytes = new byte[leitura.get()];
+        leitura.get(bytes);
+        leitura.position(inicio + 1 + tamanhoMaximo);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Escreve o número decimal como o valor sem vírgula, em um {@code long}, seguido da escala, em um byte.
+     */
+    private boolean escreverDecimal(JsonElement elemento) {
+        BigDecimal decimal = getDecimal(elemento);
+        if (decimal == null) {
+            return false;
+        }
+        BigInteger semEscala = decimal.unscaledValue();
+        if (semEscala.bitLength() > 63 || decimal.scale() < Byte.MIN_VALUE || decimal.scale() > Byte.MAX_VALUE) {
+            return false;
+        }
+        registro.putLong(semEscala.longValue()).put((byte) decimal.scale());
+        return true;
+    }
+
+    private static BigDecimal lerDecimal(ByteBuffer leitura) {
+        long semEscala = leitura.getLong();
+        return BigDecimal.valueOf(semEscala, leitura.get());
+    }
+
+    private static BigDecimal getDecimal(JsonElement elemento) {
+        if (!(elemento instanceof JsonPrimitive) || !((JsonPrimitive) elemento).isNumber()) {
+            return null;
+        }
+        try {
+            return elemento.getAsBigDecimal();
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String getTexto(JsonElement elemento) {
+        return elemento instanceof JsonPrimitive && ((JsonPrimitive) elemento).isString()
+                ? elemento.getAsString()
+                : null;
+    }
+
+    private static String identificador(int codigoTipo, String chave) {
+        return codigoTipo + ":" + chave;
+    }
+
+    private static int inicioRegistro(int posicao) {
+        return TAMANHO_CABECALHO + posicao * TAMANHO_REGISTRO;
+    }
+}
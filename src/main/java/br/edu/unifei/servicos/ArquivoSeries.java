@@ -0,0 +1,567 @@
+package br.edu.unifei.servicos;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Grava em disco a série diária de cada ação em formato colunar comprimido, um arquivo por ação, para que o histórico
+ * recebido da API sobreviva ao descarte da memória e ao reinício do servidor sem ocupar o espaço do JSON.
+ * <p>
+ * O arquivo é formado por um cabeçalho, um índice esparso e blocos de tamanho fixo em dias, cada um decodificável
+ * sozinho. O índice traz, para cada bloco, a primeira e a última data, a posição, o tamanho e o CRC-32 do bloco, de
+ * modo que a leitura de um período lê e descomprime apenas os blocos que o cobrem. Dentro do bloco, as colunas são
+ * gravadas uma após a outra, em uma sequência de bits:
+ * </p>
+ * <ul>
+ *     <li>as datas como dias corridos, com a diferença entre dias consecutivos codificada pela variação em relação à
+ *     diferença anterior: um único bit quando os pregões seguem o mesmo espaçamento, poucos bits nos fins de
+ *     semana;</li>
+ *     <li>cada coluna de preço pelo XOR da representação em ponto flutuante do preço com a do dia anterior, gravando
+ *     apenas os bits significativos. Os preços vêm da série como inteiros em {@link SerieDiaria#ESCALA} e são
+ *     convertidos para {@code double} sem perda, o que deixa zerados os bits finais da mantissa;</li>
+ *     <li>o volume como inteiro de tamanho variável, em grupos de 7 bits.</li>
+ * </ul>
+ * <p>
+ * Cada gravação substitui o arquivo inteiro, escrevendo um arquivo temporário que depois é renomeado, e é feita em uma
+ * thread própria, fora das threads que atendem as consultas. Uma gravação interrompida não corrompe a série anterior.
+ * {@link #close()} aguarda as gravações pendentes.
+ * </p>
+ */
+final class ArquivoSeries implements Closeable {
+
+    private static final int MAGICO = 0x53455249;
+    private static final int VERSAO = 1;
+    private static final int TAMANHO_CABECALHO = 16;
+    private static final int TAMANHO_ENTRADA_INDICE = 20;
+    private static final String EXTENSAO = ".ser";
+
+    /**
+     * Maior preço em {@link SerieDiaria#ESCALA} representado exatamente por um {@code double}.
+     */
+    private static final long MAIOR_PRECO_EXATO = 1L << 53;
+
+    private static final Pattern SIMBOLO_VALIDO = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._^-]{0,31}");
+
+    private final Path diretorio;
+    private final int diasPorBloco;
+    private final ExecutorService gravador;
+
+    /**
+     * @param diretorio    O diretório dos arquivos, criado se não existir.
+     * @param diasPorBloco Quantidade de dias de cada bloco. Blocos menores tornam a leitura de períodos curtos mais
+     *                     rápida, ao custo de um índice maior e de uma compressão um pouco pior.
+     * @throws IOException Se o diretório não puder ser criado.
+     */
+    ArquivoSeries(Path diretorio, int diasPorBloco) throws IOException {
+        if (diasPorBloco <= 0 || diasPorBloco > 0xFFFF) {
+            throw new IllegalArgumentException("Quantidade de dias por bloco inválida: " + diasPorBloco);
+        }
+        this.diretorio = diretorio;
+        this.diasPorBloco = diasPorBloco;
+        Files.createDirectories(diretorio);
+        this.gravador = Executors.newSingleThreadExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "arquivo-series");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Grava a série em segundo plano, substituindo a gravada antes para a mesma ação.
+     *
+     * @param simbolo O símbolo normalizado da ação.
+     * @param serie   A série completa da ação.
+     * @return {@code true} quando a série for gravada, ou {@code false} se o símbolo não puder ser usado como nome de
+     * arquivo ou algum preço não puder ser representado. Conclui com {@link IOException} se a gravação falhar ou se o
+     * armazenamento já tiver sido fechado.
+     */
+    CompletableFuture<Boolean> gravar(String simbolo, SerieDiaria serie) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return gravarAgora(simbolo, serie);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, gravador);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(
+                    new IOException("O armazenamento de séries foi fechado: " + diretorio));
+        }
+    }
+
+    /**
+     * Aguarda as gravações pendentes e recusa as seguintes. As séries continuam podendo ser lidas.
+     */
+    @Override
+    public void close() {
+        gravador.shutdown();
+        try {
+            gravador.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Lê a série inteira da ação.
+     *
+     * @param simbolo O símbolo normalizado da ação.
+     * @return A série, ou {@code null} se não houver série gravada para a ação.
+     * @throws IOException Se o arquivo não puder ser lido ou estiver corrompido.
+     */
+    SerieDiaria ler(String simbolo) throws IOException {
+        return lerPeriodo(simbolo, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lê da série da ação apenas os dias do período, descomprimindo somente os blocos que o cobrem.
+     *
+     * @param simbolo    O símbolo normalizado da ação.
+     * @param dataInicio A primeira data do período, no formato {@code aaaammdd}.
+     * @param dataFim    A última data do período, no formato {@code aaaammdd}.
+     * @return Os dias do período, possivelmente nenhum, ou {@code null} se não houver série gravada para a ação.
+     * @throws IOException Se o arquivo não puder ser lido ou estiver corrompido.
+     */
+    SerieDiaria lerPeriodo(String simbolo, int dataInicio, int dataFim) throws IOException {
+        Path arquivo = getArquivo(simbolo);
+        if (arquivo == null) {
+            return null;
+        }
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            ByteBuffer cabecalho = lerTrecho(canal, 0, TAMANHO_CABECALHO);
+            if (cabecalho.getInt() != MAGICO || cabecalho.getInt() != VERSAO) {
+                throw new IOException("O arquivo não é uma série no formato esperado: " + arquivo);
+            }
+            int dias = cabecalho.getInt();
+            int blocos = cabecalho.getInt();
+            ByteBuffer indice = lerTrecho(canal, TAMANHO_CABECALHO, blocos * TAMANHO_ENTRADA_INDICE);
+
+            // O primeiro bloco que termina no período e o último que começa nele
+            int primeiro = 0;
+            while (primeiro < blocos && indice.getInt(primeiro * TAMANHO_ENTRADA_INDICE + 4) < dataInicio) {
+                primeiro++;
+            }
+            int ultimo = blocos - 1;
+            while (ultimo >= primeiro && indice.getInt(ultimo * TAMANHO_ENTRADA_INDICE) > dataFim) {
+                ultimo--;
+            }
+            if (primeiro > ultimo) {
+                return new SerieDiaria.Construtor(0).construir();
+            }
+
+            int inicioLeitura = indice.getInt(primeiro * TAMANHO_ENTRADA_INDICE + 8);
+            int fimLeitura = indice.getInt(ultimo * TAMANHO_ENTRADA_INDICE + 8)
+                    + indice.getInt(ultimo * TAMANHO_ENTRADA_INDICE + 12);
+            ByteBuffer conteudo = lerTrecho(canal, inicioLeitura, fimLeitura - inicioLeitura);
+            SerieDiaria.Construtor serie = new SerieDiaria.Construtor(
+                    Math.min(dias, (ultimo - primeiro + 1) * diasPorBloco));
+            CRC32 crc = new CRC32();
+            for (int bloco = primeiro; bloco <= ultimo; bloco++) {
+                int entrada = bloco * TAMANHO_ENTRADA_INDICE;
+                int posicao = indice.getInt(entrada + 8) - inicioLeitura;
+                int tamanho = indice.getInt(entrada + 12);
+                crc.reset();
+                crc.update(conteudo.array(), posicao, tamanho);
+                if ((int) crc.getValue() != indice.getInt(entrada + 16)) {
+                    throw new IOException(String.format("Bloco %d corrompido na série %s", bloco, arquivo));
+                }
+                decodificarBloco(new LeitorBits(conteudo.array(), posicao, tamanho), dataInicio, dataFim, serie);
+            }
+            return serie.construir();
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (RuntimeException e) {
+            // Índices e contagens inconsistentes aparecem como acessos fora dos limites ao decodificar
+            throw new IOException("Série corrompida: " + arquivo, e);
+        }
+    }
+
+    /**
+     * @return o caminho do arquivo da ação, ou {@code null} se o símbolo não puder ser usado como nome de arquivo.
+     */
+    Path getArquivo(String simbolo) {
+        return SIMBOLO_VALIDO.matcher(simbolo).matches() ? diretorio.resolve(simbolo + EXTENSAO) : null;
+    }
+
+    private boolean gravarAgora(String simbolo, SerieDiaria serie) throws IOException {
+        Path arquivo = getArquivo(simbolo);
+        if (arquivo == null || !precosRepresentaveis(serie)) {
+            return false;
+        }
+
+        int dias = serie.getTamanho();
+        int blocos = (dias + diasPorBloco - 1) / diasPorBloco;
+        ByteBuffer cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO + blocos * TAMANHO_ENTRADA_INDICE);
+        cabecalho.putInt(MAGICO).putInt(VERSAO).putInt(dias).putInt(blocos);
+        EscritorBits conteudo = new EscritorBits(Math.max(64, dias * 16));
+        CRC32 crc = new CRC32();
+        for (int bloco = 0; bloco < blocos; bloco++) {
+            int inicio = bloco * diasPorBloco;
+            int fim = Math.min(dias, inicio + diasPorBloco);
+            int posicao = conteudo.getTamanho();
+            codificarBloco(serie, inicio, fim, conteudo);
+            conteudo.alinhar();
+            int tamanho = conteudo.getTamanho() - posicao;
+            crc.reset();
+            crc.update(conteudo.getBytes(), posicao, tamanho);
+            cabecalho.putInt(serie.getDatas()[inicio])
+                    .putInt(serie.getDatas()[fim - 1])
+                    .putInt(cabecalho.capacity() + posicao)
+                    .putInt(tamanho)
+                    .putInt((int) crc.getValue());
+        }
+        cabecalho.flip();
+
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer blocosCodificados = ByteBuffer.wrap(conteudo.getBytes(), 0, conteudo.getTamanho());
+            while (cabecalho.hasRemaining() || blocosCodificados.hasRemaining()) {
+                canal.write(new ByteBuffer[]{cabecalho, blocosCodificados});
+            }
+        }
+        try {
+            Files.move(temporario, arquivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return true;
+    }
+
+    private static boolean precosRepresentaveis(SerieDiaria serie) {
+        for (long[] coluna : new long[][]{serie.getAbertura(), serie.getMaxima(), serie.getMinima(),
+                serie.getFechamento()}) {
+            for (long preco : coluna) {
+                if (preco > MAIOR_PRECO_EXATO || preco < -MAIOR_PRECO_EXATO) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void codificarBloco(SerieDiaria serie, int inicio, int fim, EscritorBits saida) {
+        saida.escrever(fim - inicio, 16);
+
+        int[] datas = serie.getDatas();
+        long diaAnterior = diaCorrido(datas[inicio]);
+        saida.escrever(diaAnterior, 32);
+        long diferencaAnterior = 0;
+        for (int i = inicio + 1; i < fim; i++) {
+            long dia = diaAnterior + diasEntre(datas[i - 1], datas[i]);
+            long diferenca = dia - diaAnterior;
+            escreverVariacao(saida, diferenca - diferencaAnterior);
+            diferencaAnterior = diferenca;
+            diaAnterior = dia;
+        }
+
+        for (long[] coluna : new long[][]{serie.getAbertura(), serie.getMaxima(), serie.getMinima(),
+                serie.getFechamento()}) {
+            codificarPrecos(coluna, inicio, fim, saida);
+        }
+
+        long[] volume = serie.getVolume();
+        for (int i = inicio; i < fim; i++) {
+            escreverVariavel(saida, (volume[i] << 1) ^ (volume[i] >> 63));
+        }
+    }
+
+    private static void decodificarBloco(LeitorBits entrada, int dataInicio, int dataFim,
+                                         SerieDiaria.Construtor serie) {
+        int dias = (int) entrada.ler(16);
+
+        int[] datas = new int[dias];
+        long dia = (int) entrada.ler(32);
+        long diferenca = 0;
+        for (int i = 0; i < dias; i++) {
+            if (i > 0) {
+                diferenca += lerVariacao(entrada);
+                dia += diferenca;
+            }
+            datas[i] = dataDoDia(dia);
+        }
+
+        long[][] precos = new long[4][];
+        for (int coluna = 0; coluna < precos.length; coluna++) {
+            precos[coluna] = decodificarPrecos(entrada, dias);
+        }
+
+        for (int i = 0; i < dias; i++) {
+            long valor = lerVariavel(entrada);
+            long volume = (valor >>> 1) ^ -(valor & 1);
+            if (datas[i] >= dataInicio && datas[i] <= dataFim) {
+                serie.adicionar(datas[i], precos[0][i], precos[1][i], precos[2][i], precos[3][i], volume);
+            }
+        }
+    }
+
+    /**
+     * Grava a variação da diferença entre datas: {@code 0} quando não muda, {@code 10}, {@code 110} e {@code 1110}
+     * seguidos de 7, 9 e 12 bits, ou {@code 1111} seguido de 32 bits.
+     */
+    private static void escreverVariacao(EscritorBits saida, long variacao) {
+        if (variacao == 0) {
+            saida.escrever(0, 1);
+        } else if (variacao >= -64 && variacao < 64) {
+            saida.escrever(0b10, 2);
+            saida.escrever(variacao, 7);
+        } else if (variacao >= -256 && variacao < 256) {
+            saida.escrever(0b110, 3);
+            saida.escrever(variacao, 9);
+        } else if (variacao >= -2048 && variacao < 2048) {
+            saida.escrever(0b1110, 4);
+            saida.escrever(variacao, 12);
+        } else {
+            saida.escrever(0b1111, 4);
+            saida.escrever(variacao, 32);
+        }
+    }
+
+    private static long lerVariacao(LeitorBits entrada) {
+        if (entrada.ler(1) == 0) {
+            return 0;
+        }
+        if (entrada.ler(1) == 0) {
+            return entrada.lerComSinal(7);
+        }
+        if (entrada.ler(1) == 0) {
+            return entrada.lerComSinal(9);
+        }
+        return entrada.ler(1) == 0 ? entrada.lerComSinal(12) : entrada.lerComSinal(32);
+    }
+
+    /**
+     * Grava a coluna de preços pelo XOR de cada valor com o anterior: {@code 0} para valores iguais; {@code 10} seguido
+     * dos bits significativos, quando cabem na janela do valor anterior; ou {@code 11} seguido da quantidade de zeros à
+     * esquerda (5 bits), da quantidade de bits significativos menos um (6 bits) e desses bits.
+     */
+    private static void codificarPrecos(long[] coluna, int inicio, int fim, EscritorBits saida) {
+        long anterior = Double.doubleToRawLongBits(coluna[inicio]);
+        saida.escrever(anterior, 64);
+        int zerosEsquerda = Integer.MAX_VALUE;
+        int zerosDireita = 0;
+        for (int i = inicio + 1; i < fim; i++) {
+            long atual = Double.doubleToRawLongBits(coluna[i]);
+            long xor = atual ^ anterior;
+            anterior = atual;
+            if (xor == 0) {
+                saida.escrever(0, 1);
+                continue;
+            }
+            int esquerda = Math.min(31, Long.numberOfLeadingZeros(xor));
+            int direita = Long.numberOfTrailingZeros(xor);
+            if (esquerda >= zerosEsquerda && direita >= zerosDireita) {
+                saida.escrever(0b10, 2);
+                saida.escrever(xor >>> zerosDireita, 64 - zerosEsquerda - zerosDireita);
+            } else {
+                int significativos = 64 - esquerda - direita;
+                saida.escrever(0b11, 2);
+                saida.escrever(esquerda, 5);
+                saida.escrever(significativos - 1, 6);
+                saida.escrever(xor >>> direita, significativos);
+                zerosEsquerda = esquerda;
+                zerosDireita = direita;
+            }
+        }
+    }
+
+    private static long[] decodificarPrecos(LeitorBits entrada, int dias) {
+        long[] precos = new long[dias];
+        long anterior = entrada.ler(64);
+        precos[0] = (long) Double.longBitsToDouble(anterior);
+        int zerosEsquerda = 0;
+        int zerosDireita = 0;
+        for (int i = 1; i < dias; i++) {
+            if (entrada.ler(1) != 0) {
+                if (entrada.ler(1) != 0) {
+                    zerosEsquerda = (int) entrada.ler(5);
+                    int significativos = (int) entrada.ler(6) + 1;
+                    zerosDireita = 64 - zerosEsquerda - significativos;
+                }
+                anterior ^= entrada.ler(64 - zerosEsquerda - zerosDireita) << zerosDireita;
+            }
+            precos[i] = (long) Double.longBitsToDouble(anterior);
+        }
+        return precos;
+    }
+
+    private static void escreverVariavel(EscritorBits saida, long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            saida.escrever((valor & 0x7F) | 0x80, 8);
+            valor >>>= 7;
+        }
+        saida.escrever(valor, 8);
+    }
+
+    private static long lerVariavel(LeitorBits entrada) {
+        long valor = 0;
+        for (int deslocamento = 0; ; deslocamento += 7) {
+            long grupo = entrada.ler(8);
+            valor |= (grupo & 0x7F) << deslocamento;
+            if ((grupo & 0x80) == 0) {
+                return valor;
+            }
+        }
+    }
+
+    private static long diasEntre(int anterior, int atual) {
+        // Os pregões quase sempre caem no mesmo mês; só na virada do mês a conversão completa é necessária
+        if (anterior / 100 == atual / 100) {
+            return atual - anterior;
+        }
+        return diaCorrido(atual) - diaCorrido(anterior);
+    }
+
+    /**
+     * Converte a data {@code aaaammdd} para dias desde 1970-01-01, como {@link LocalDate#toEpochDay()}, sem criar
+     * objetos.
+     */
+    static long diaCorrido(int data) {
+        int ano = data / 10_000;
+        int mes = data / 100 % 100;
+        int dia = data % 100;
+        // Conta os anos a partir de março, para que o dia 29 de fevereiro fique no fim do ano
+        if (mes <= 2) {
+            ano--;
+        }
+        int era = Math.floorDiv(ano, 400);
+        int anoDaEra = ano - era * 400;
+        int diaDoAno = (153 * (mes > 2 ? mes - 3 : mes + 9) + 2) / 5 + dia - 1;
+        int diaDaEra = anoDaEra * 365 + anoDaEra / 4 - anoDaEra / 100 + diaDoAno;
+        return era * 146_097L + diaDaEra - 719_468;
+    }
+
+    /**
+     * Converte dias desde 1970-01-01 para a data {@code aaaammdd}, como {@link LocalDate#ofEpochDay(long)}, sem criar
+     * objetos.
+     */
+    static int dataDoDia(long diaCorrido) {
+        long dias = diaCorrido + 719_468;
+        long era = Math.floorDiv(dias, 146_097);
+        int diaDaEra = (int) (dias - era * 146_097);
+        int anoDaEra = (diaDaEra - diaDaEra / 1_460 + diaDaEra / 36_524 - diaDaEra / 146_096) / 365;
+        int diaDoAno = diaDaEra - (365 * anoDaEra + anoDaEra / 4 - anoDaEra / 100);
+        int mesDesdeMarco = (5 * diaDoAno + 2) / 153;
+        int dia = diaDoAno - (153 * mesDesdeMarco + 2) / 5 + 1;
+        int mes = mesDesdeMarco < 10 ? mesDesdeMarco + 3 : mesDesdeMarco - 9;
+        long ano = anoDaEra + era * 400 + (mes <= 2 ? 1 : 0);
+        return (int) ano * 10_000 + mes * 100 + dia;
+    }
+
+    private static ByteBuffer lerTrecho(FileChannel canal, long posicao, int tamanho) throws IOException {
+        ByteBuffer trecho = ByteBuffer.allocate(tamanho);
+        while (trecho.hasRemaining()) {
+            if (canal.read(trecho, posicao + trecho.position()) < 0) {
+                throw new IOException("Série truncada: esperados " + (posicao + tamanho) + " bytes");
+            }
+        }
+        trecho.flip();
+        return trecho;
+    }
+
+    /**
+     * Sequência de bits gravada do bit mais significativo para o menos significativo de cada byte.
+     */
+    private static final class EscritorBits {
+        private byte[] bytes;
+        private long acumulador;
+        private int bitsAcumulados;
+        private int tamanho;
+
+        private EscritorBits(int capacidade) {
+            bytes = new byte[capacidade];
+        }
+
+        /**
+         * Grava os {@code quantidade} bits menos significativos do valor, de 0 a 64.
+         */
+        private void escrever(long valor, int quantidade) {
+            if (quantidade > 32) {
+                escrever(valor >>> 32, quantidade - 32);
+                quantidade = 32;
+            }
+            acumulador = (acumulador << quantidade) | (valor & ((1L << quantidade) - 1));
+            bitsAcumulados += quantidade;
+            while (bitsAcumulados >= 8) {
+                bitsAcumulados -= 8;
+                if (tamanho == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                }
+                bytes[tamanho++] = (byte) (acumulador >>> bitsAcumulados);
+            }
+        }
+
+        /**
+         * Completa o último byte com zeros.
+         */
+        private void alinhar() {
+            if (bitsAcumulados > 0) {
+                escrever(0, 8 - bitsAcumulados);
+            }
+        }
+
+        private byte[] getBytes() {
+            return bytes;
+        }
+
+        private int getTamanho() {
+            return tamanho;
+        }
+    }
+
+    private static final class LeitorBits {
+        private final byte[] bytes;
+        private final int fim;
+        private int posicao;
+        private long acumulador;
+        private int bitsAcumulados;
+
+        private LeitorBits(byte[] bytes, int inicio, int tamanho) {
+            this.bytes = bytes;
+            this.posicao = inicio;
+            this.fim = inicio + tamanho;
+        }
+
+        /**
+         * Lê {@code quantidade} bits, de 0 a 64, como um valor sem sinal.
+         */
+        private long ler(int quantidade) {
+            if (quantidade > 32) {
+                long altos = ler(quantidade - 32);
+                return (altos << 32) | ler(32);
+            }
+            while (bitsAcumulados < quantidade) {
+                if (posicao == fim) {
+                    throw new IllegalStateException("Fim do bloco antes do esperado");
+                }
+                acumulador = (acumulador << 8) | (bytes[posicao++] & 0xFF);
+                bitsAcumulados += 8;
+            }
+            bitsAcumulados -= quantidade;
+            return (acumulador >>> bitsAcumulados) & ((1L << quantidade) - 1);
+        }
+
+        private long lerComSinal(int quantidade) {
+            return ler(quantidade) << (64 - quantidade) >> (64 - quantidade);
+        }
+    }
+}
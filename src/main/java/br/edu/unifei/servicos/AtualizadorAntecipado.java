@@ -0,0 +1,274 @@
+package br.edu.unifei.servicos;
+
+import br.edu.unifei.utils.CacheTTL;
+import br.edu.unifei.utils.LimitadorCota;
+import br.edu.unifei.utils.LogUtils;
+import com.google.gson.JsonObject;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Atualiza em segundo plano as consultas mais frequentes pouco antes de expirarem no cache, para que os clientes dessas
+ * ações e pares de moedas não esperem pela API quando o dado vence.
+ * <p>
+ * Cada consulta recebida registra um acesso à sua chave. A frequência de acesso decai exponencialmente com a meia-vida
+ * configurada, de modo que as chaves que deixam de ser consultadas perdem prioridade e acabam descartadas. A cada
+ * ciclo, as chaves com a frequência mínima cujo dado em cache expira dentro da antecedência configurada são atualizadas
+ * da mais para a menos frequente, até o limite de chaves por ciclo.
+ * </p>
+ * <p>
+ * As atualizações só gastam a cota que sobra acima da reserva mantida para as consultas dos clientes: quando as fichas
+ * restantes no minuto ou no dia chegam à reserva, o ciclo para. Cotações de ações não são atualizadas com a bolsa
+ * fechada, nem taxas de câmbio com o mercado de câmbio fechado, pois não mudariam (ver {@link HorarioMercado}). As
+ * chaves que já saíram do cache não são atualizadas: a próxima consulta as busca normalmente.
+ * </p>
+ */
+final class AtualizadorAntecipado {
+
+    /**
+     * Abaixo desta frequência a chave é descartada: com meia-vida de 10 minutos, um único acesso leva cerca de 43
+     * minutos para chegar a ela.
+     */
+    private static final double FREQUENCIA_DESCARTE = 0.05;
+
+    private final LimitadorCota cota;
+    private final long antecedenciaMillis;
+    private final int maxChaves;
+    private final double acessosMinimos;
+    private final double meiaVidaNanos;
+    private final int reservaMinuto;
+    private final int reservaDia;
+    private final LongSupplier relogio;
+    private final Clock relogioMercado;
+    private final ConcurrentHashMap<String, Consulta> consultas = new ConcurrentHashMap<>();
+
+    private final AtomicLong atualizacoes = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+    private final AtomicLong adiadasPorCota = new AtomicLong();
+    private final AtomicLong adiadasPorHorario = new AtomicLong();
+    private ScheduledExecutorService agendador;
+
+    /**
+     * @param cota               O limitador da cota de chamadas à API, compartilhado com as consultas dos clientes.
+     * @param antecedenciaMillis Quanto tempo antes da expiração uma entrada pode ser atualizada, em milissegundos.
+     * @param maxChaves          Quantidade máxima de chaves atualizadas por ciclo.
+     * @param acessosMinimos     Frequência mínima, em acessos ponderados pela meia-vida, para uma chave ser atualizada.
+     * @param meiaVidaMillis     Meia-vida da frequência de acesso, em milissegundos.
+     * @param reservaMinuto      Fichas do minuto deixadas para as consultas dos clientes.
+     * @param reservaDia         Fichas do dia deixadas para as consultas dos clientes.
+     * @param relogio            Fonte de tempo em nanossegundos, substituível nos testes.
+     * @param relogioMercado     Relógio usado para verificar o horário dos mercados, substituível nos testes.
+     */
+    AtualizadorAntecipado(LimitadorCota cota, long antecedenciaMillis, int maxChaves, double acessosMinimos,
+                          long meiaVidaMillis, int reservaMinuto, int reservaDia, LongSupplier relogio,
+                          Clock relogioMercado) {
+        this.cota = cota;
+        this.antecedenciaMillis = antecedenciaMillis;
+        this.maxChaves = maxChaves;
+        this.acessosMinimos = acessosMinimos;
+        this.meiaVidaNanos = TimeUnit.MILLISECONDS.toNanos(meiaVidaMillis);
+        this.reservaMinuto = reservaMinuto;
+        this.reservaDia = reservaDia;
+        this.relogio = relogio;
+        this.relogioMercado = relogioMercado;
+    }
+
+    /**
+     * Inicia os ciclos de atualização em uma thread daemon, que executa até {@link #encerrar()}. Chamadas seguintes não
+     * têm efeito.
+     *
+     * @param intervaloMillis Intervalo entre o fim de um ciclo e o início do seguinte, em milissegundos.
+     */
+    synchronized void iniciar(long intervaloMillis) {
+        if (agendador != null) {
+            return;
+        }
+        agendador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "atualizacao-antecipada");
+            thread.setDaemon(true);
+            return thread;
+        });
+        agendador.scheduleWithFixedDelay(() -> {
+            try {
+                executarCiclo();
+            } catch (RuntimeException e) {
+                // Uma exceção não tratada cancelaria os ciclos seguintes
+                LogUtils.logError("Erro na atualização antecipada do cache: %s", e.getMessage());
+            }
+        }, intervaloMillis, intervaloMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Interrompe os ciclos de atualização e encerra a thread. As atualizações já iniciadas terminam normalmente.
+     */
+    synchronized void encerrar() {
+        if (agendador != null) {
+            agendador.shutdownNow();
+        }
+    }
+
+    /**
+     * Registra um acesso à consulta.
+     *
+     * @param chamadaId Identificação da consulta: a função da API e a chave normalizada.
+     * @param bolsa     {@code true} para cotações de ações, {@code false} para taxas de câmbio.
+     * @param cache     O cache em que o resultado da consulta fica armazenado.
+     * @param chave     A chave do resultado no cache.
+     * @param atualizar Consulta a API e armazena o resultado no cache.
+     */
+    void registrarAcesso(String chamadaId, boolean bolsa, CacheTTL<String, JsonObject> cache, String chave,
+                         Supplier<CompletableFuture<JsonObject>> atualizar) {
+        Consulta consulta = consultas.get(chamadaId);
+        if (consulta == null) {
+            consulta = consultas.computeIfAbsent(chamadaId,
+                    id -> new Consulta(bolsa, cache, chave, atualizar, relogio.getAsLong()));
+        }
+        consulta.registrarAcesso(relogio.getAsLong(), meiaVidaNanos);
+    }
+
+    /**
+     * Executa um ciclo de atualização: descarta as chaves esquecidas, escolhe as mais frequentes prestes a expirar e
+     * inicia a atualização delas enquanto houver cota acima da reserva.
+     */
+    void executarCiclo() {
+        long agora = relogio.getAsLong();
+        boolean bolsaAberta = HorarioMercado.bolsaAberta(relogioMercado.instant());
+        boolean cambioAberto = HorarioMercado.cambioAberto(relogioMercado.instant());
+
+        List<Candidata> candidatas = new ArrayList<>();
+        Iterator<Consulta> iterador = consultas.values().iterator();
+        while (iterador.hasNext()) {
+            Consulta consulta = iterador.next();
+            double frequencia = consulta.getFrequencia(agora, meiaVidaNanos);
+            if (frequencia < FREQUENCIA_DESCARTE) {
+                iterador.remove();
+                continue;
+            }
+            if (frequencia < acessosMinimos) {
+                continue;
+            }
+            long idade = consulta.cache.getIdadeMillis(consulta.chave);
+            if (idade < 0 || idade < consulta.cache.getTtlMillis() - antecedenciaMillis) {
+                continue;
+            }
+            if (!(consulta.bolsa ? bolsaAberta : cambioAberto)) {
+                adiadasPorHorario.incrementAndGet();
+                continue;
+            }
+            candidatas.add(new Candidata(consulta, frequencia));
+        }
+        candidatas.sort((a, b) -> Double.compare(b.frequencia, a.frequencia));
+
+        int selecionadas = Math.min(maxChaves, candidatas.size());
+        int iniciadas = 0;
+        for (Candidata candidata : candidatas.subList(0, selecionadas)) {
+            if (cota.getRestantesMinuto() <= reservaMinuto || cota.getRestantesDia() <= reservaDia) {
+                adiadasPorCota.addAndGet(selecionadas - iniciadas);
+                break;
+            }
+            iniciadas++;
+            atualizacoes.incrementAndGet();
+            candidata.consulta.atualizar.get().whenComplete((resultado, erro) -> {
+                if (erro != null) {
+                    falhas.incrementAndGet();
+                }
+            });
+        }
+
+        if (!candidatas.isEmpty()) {
+            LogUtils.logInfo("Atualização antecipada: %d de %d chaves prestes a expirar (%s)",
+                    iniciadas, candidatas.size(), cota);
+        }
+    }
+
+    /**
+     * @return a quantidade de chaves com acessos registrados.
+     */
+    int getChavesRegistradas() {
+        return consultas.size();
+    }
+
+    /**
+     * @return a quantidade de atualizações iniciadas.
+     */
+    long getAtualizacoes() {
+        return atualizacoes.get();
+    }
+
+    /**
+     * @return a quantidade de atualizações que terminaram com falha de conexão ou de cota.
+     */
+    long getFalhas() {
+        return falhas.get();
+    }
+
+    /**
+     * @return a quantidade de atualizações deixadas para o ciclo seguinte por falta de cota acima da reserva.
+     */
+    long getAdiadasPorCota() {
+        return adiadasPorCota.get();
+    }
+
+    /**
+     * @return a quantidade de atualizações não feitas por estar o mercado fechado.
+     */
+    long getAdiadasPorHorario() {
+        return adiadasPorHorario.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d chaves registradas, %d atualizações, %d falhas, %d adiadas por cota, "
+                        + "%d adiadas por horário", consultas.size(), atualizacoes.get(), falhas.get(),
+                adiadasPorCota.get(), adiadasPorHorario.get());
+    }
+
+    private static final class Consulta {
+        private final boolean bolsa;
+        private final CacheTTL<String, JsonObject> cache;
+        private final String chave;
+        private final Supplier<CompletableFuture<JsonObject>> atualizar;
+        private double frequencia;
+        private long atualizadaEm;
+
+        private Consulta(boolean bolsa, CacheTTL<String, JsonObject> cache, String chave,
+                         Supplier<CompletableFuture<JsonObject>> atualizar, long agora) {
+            this.bolsa = bolsa;
+            this.cache = cache;
+            this.chave = chave;
+            this.atualizar = atualizar;
+            this.atualizadaEm = agora;
+        }
+
+        private synchronized void registrarAcesso(long agora, double meiaVidaNanos) {
+            frequencia = getFrequencia(agora, meiaVidaNanos) + 1;
+            atualizadaEm = Math.max(atualizadaEm, agora);
+        }
+
+        private synchronized double getFrequencia(long agora, double meiaVidaNanos) {
+            long decorrido = Math.max(0, agora - atualizadaEm);
+            return frequencia * Math.pow(0.5, decorrido / meiaVidaNanos);
+        }
+    }
+
+    private static final class Candidata {
+        private final Consulta consulta;
+        private final double frequencia;
+
+        private Candidata(Consulta consulta, double frequencia) {
+            this.consulta = consulta;
+            this.frequencia = frequencia;
+        }
+    }
+}
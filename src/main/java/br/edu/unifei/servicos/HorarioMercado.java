@@ -0,0 +1,61 @@
+package br.edu.unifei.servicos;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * Horários de negociação dos mercados consultados na API AlphaVantage, no fuso de Nova York, em que a API informa as
+ * cotações das ações.
+ * <p>
+ * O pregão regular da bolsa americana vai das 9h30 às 16h, de segunda a sexta-feira. O mercado de câmbio funciona sem
+ * interrupção do domingo às 17h até a sexta-feira às 17h. Os feriados não são considerados: neles as cotações apenas
+ * não mudam.
+ * </p>
+ */
+final class HorarioMercado {
+
+    static final ZoneId FUSO = ZoneId.of("America/New_York");
+
+    private static final LocalTime ABERTURA_BOLSA = LocalTime.of(9, 30);
+    private static final LocalTime FECHAMENTO_BOLSA = LocalTime.of(16, 0);
+    private static final LocalTime VIRADA_CAMBIO = LocalTime.of(17, 0);
+
+    private HorarioMercado() {
+    }
+
+    /**
+     * @param instante O instante verificado.
+     * @return {@code true} se a bolsa estiver em pregão regular no instante.
+     */
+    static boolean bolsaAberta(Instant instante) {
+        ZonedDateTime local = instante.atZone(FUSO);
+        DayOfWeek dia = local.getDayOfWeek();
+        if (dia == DayOfWeek.SATURDAY || dia == DayOfWeek.SUNDAY) {
+            return false;
+        }
+        LocalTime hora = local.toLocalTime();
+        return !hora.isBefore(ABERTURA_BOLSA) && hora.isBefore(FECHAMENTO_BOLSA);
+    }
+
+    /**
+     * @param instante O instante verificado.
+     * @return {@code true} se o mercado de câmbio estiver aberto no instante.
+     */
+    static boolean cambioAberto(Instant instante) {
+        ZonedDateTime local = instante.atZone(FUSO);
+        LocalTime hora = local.toLocalTime();
+        switch (local.getDayOfWeek()) {
+            case SATURDAY:
+                return false;
+            case SUNDAY:
+                return !hora.isBefore(VIRADA_CAMBIO);
+            case FRIDAY:
+                return hora.isBefore(VIRADA_CAMBIO);
+            default:
+                return true;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package br.edu.unifei.servicos;
+
+/**
+ * Indicadores calculados sobre uma coluna de uma {@link SerieDiaria}, no intervalo de índices {@code [inicio, fim)}.
+ * Os valores são lidos na escala da série e as médias são devolvidas na mesma escala, sem arredondamento.
+ * <p>
+ * As médias só são definidas a partir do índice {@code periodo - 1}: os dias anteriores a {@code inicio} são usados no
+ * cálculo sempre que existirem, de modo que o valor de um dia não depende do período consultado.
+ * </p>
+ */
+final class IndicadoresSerie {
+
+    private IndicadoresSerie() {
+    }
+
+    /**
+     * Calcula a média móvel simples, mantendo a soma da janela em um {@code long}.
+     *
+     * @return A média de cada dia do intervalo, cada uma sobre o próprio dia e os {@code periodo - 1} anteriores.
+     * @throws IllegalArgumentException Se {@code inicio} for anterior ao primeiro dia com a média definida.
+     */
+    static double[] mediaMovelSimples(long[] valores, int inicio, int fim, int periodo) {
+        validar(inicio, fim, periodo);
+        double[] medias = new double[fim - inicio];
+        long soma = 0;
+        for (int i = inicio - periodo + 1; i < inicio; i++) {
+            soma += valores[i];
+        }
+        for (int i = inicio; i < fim; i++) {
+            soma += valores[i];
+            medias[i - inicio] = (double) soma / periodo;
+            soma -= valores[i - periodo + 1];
+        }
+        return medias;
+    }
+
+    /**
+     * Calcula a média móvel exponencial com fator {@code 2 / (periodo + 1)}, iniciada pela média simples dos primeiros
+     * {@code periodo} dias da série.
+     *
+     * @return A média de cada dia do intervalo.
+     * @throws IllegalArgumentException Se {@code inicio} for anterior ao primeiro dia com a média definida.
+     */
+    static double[] mediaMovelExponencial(long[] valores, int inicio, int fim, int periodo) {
+        validar(inicio, fim, periodo);
+        double[] medias = new double[fim - inicio];
+        double fator = 2.0 / (periodo + 1);
+        long soma = 0;
+        for (int i = 0; i < periodo; i++) {
+            soma += valores[i];
+        }
+        double media = (double) soma / periodo;
+        for (int i = periodo - 1; i < fim; i++) {
+            if (i >= periodo) {
+                media += fator * (valores[i] - media);
+            }
+            if (i >= inicio) {
+                medias[i - inicio] = media;
+            }
+        }
+        return medias;
+    }
+
+    /**
+     * Calcula a variação de cada dia em relação ao anterior, como fração.
+     *
+     * @return O retorno de cada dia do intervalo, ou {@link Double#NaN} nos dias em que o valor anterior é zero.
+     * @throws IllegalArgumentException Se {@code inicio} for o primeiro dia da série, que não tem dia anterior.
+     */
+    static double[] retornos(long[] valores, int inicio, int fim) {
+        validar(inicio, fim, 2);
+        double[] retornos = new double[fim - inicio];
+        for (int i = inicio; i < fim; i++) {
+            retornos[i - inicio] = retorno(valores[i - 1], valores[i]);
+        }
+        return retornos;
+    }
+
+    /**
+     * @return A variação de {@code atual} em relação a {@code anterior}, como fração, ou {@link Double#NaN} se
+     * {@code anterior} for zero, em vez do infinito da divisão.
+     */
+    static double retorno(long anterior, long atual) {
+        return anterior != 0 ? (double) atual / anterior - 1 : Double.NaN;
+    }
+
+    /**
+     * @return O índice do menor valor do intervalo; havendo empate, o primeiro.
+     */
+    static int indiceMinimo(long[] valores, int inicio, int fim) {
+        int indice = inicio;
+        for (int i = inicio + 1; i < fim; i++) {
+            if (valores[i] < valores[indice]) {
+                indice = i;
+            }
+        }
+        return indice;
+    }
+
+    /**
+     * @return O índice do maior valor do intervalo; havendo empate, o primeiro.
+     */
+    static int indiceMaximo(long[] valores, int inicio, int fim) {
+        int indice = inicio;
+        for (int i = inicio + 1; i < fim; i++) {
+            if (valores[i] > valores[indice]) {
+                indice = i;
+            }
+        }
+        return indice;
+    }
+
+    private static void validar(int inicio, int fim, int periodo) {
+        if (periodo < 1) {
+            throw new IllegalArgumentException("O período deve ser positivo: " + periodo);
+        }
+        if (inicio < periodo - 1 || inicio > fim) {
+            throw new IllegalArgumentException(String.format(
+                    "Intervalo [%d, %d) sem dias suficientes para o período %d", inicio, fim, periodo));
+        }
+    }
+}
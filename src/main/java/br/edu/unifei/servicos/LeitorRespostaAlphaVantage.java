@@ -0,0 +1,300 @@
+package br.edu.unifei.servicos;
+
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Lê as respostas da API AlphaVantage em streaming, sem montar a árvore do documento. A leitura extrai apenas os campos
+ * usados nas respostas do serviço e termina assim que eles são encontrados: de {@code TIME_SERIES_DAILY}, que traz
+ * cerca de 100 dias de cotações (ou todo o histórico com {@code outputsize=full}), só o dia mais recente é lido.
+ * <p>
+ * Os objetos devolvidos têm os mesmos campos, na mesma ordem, que os montados a partir da árvore do documento.
+ * </p>
+ * <p>
+ * Quando a série inteira é pedida, os demais dias de {@code TIME_SERIES_DAILY} também são lidos, direto para as colunas
+ * de uma {@link SerieDiaria}, ainda sem montar a árvore do documento.
+ * </p>
+ */
+final class LeitorRespostaAlphaVantage {
+
+    /**
+     * Abaixo deste tamanho o corpo é decodificado de uma vez: os buffers do {@link InputStreamReader} custariam mais
+     * do que a {@link String} inteira.
+     */
+    private static final int LIMITE_DECODIFICACAO_INTEGRAL = 8 * 1024;
+
+    private LeitorRespostaAlphaVantage() {
+    }
+
+    /**
+     * Abre o corpo de uma resposta para leitura. Corpos grandes são decodificados conforme a leitura avança, para que
+     * a parte não lida nunca seja convertida em caracteres.
+     *
+     * @param corpo Os bytes UTF-8 do corpo da resposta.
+     * @return Um {@link Reader} sobre o corpo.
+     */
+    static Reader abrir(byte[] corpo) {
+        if (corpo.length < LIMITE_DECODIFICACAO_INTEGRAL) {
+            return new StringReader(new String(corpo, StandardCharsets.UTF_8));
+        }
+        return new InputStreamReader(new ByteArrayInputStream(corpo), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lê a resposta da função {@code TIME_SERIES_DAILY} até os dados do dia mais recente.
+     *
+     * @param entrada O corpo da resposta.
+     * @return Um objeto JSON contendo os dados da ação, ou o campo {@code erro}.
+     * @throws LimiteApiExcedidoException Se a API recusou a consulta por excesso de chamadas.
+     * @throws IOException                Se a resposta não for um JSON válido ou não tiver os campos esperados.
+     */
+    static JsonObject lerDadosAcao(Reader entrada) throws IOException {
+        return lerDadosAcao(entrada, null);
+    }
+
+    /**
+     * Lê a resposta da função {@code TIME_SERIES_DAILY} até os dados do dia mais recente e, se pedido, continua até o
+     * fim da série.
+     *
+     * @param entrada      O corpo da resposta.
+     * @param destinoSerie Recebe a série completa, se a resposta tiver ao menos um dia, ou {@code null} para parar a
+     *                     leitura no dia mais recente.
+     * @return Um objeto JSON contendo os dados do dia mais recente, ou o campo {@code erro}.
+     * @throws LimiteApiExcedidoException Se a API recusou a consulta por excesso de chamadas.
+     * @throws IOException                Se a resposta não for um JSON válido ou não tiver os campos esperados.
+     */
+    static JsonObject lerDadosAcao(Reader entrada, Consumer<SerieDiaria> destinoSerie) throws IOException {
+        JsonObject respostaConteudo = new JsonObject();
+        try (JsonReader leitor = new JsonReader(entrada)) {
+            leitor.beginObject();
+            while (leitor.hasNext()) {
+                switch (leitor.nextName()) {
+                    case "Error Message":
+                        respostaConteudo.addProperty("erro", leitor.nextString());
+                        return respostaConteudo;
+                    case "Note":
+                        lerAviso(leitor, false, respostaConteudo);
+                        return respostaConteudo;
+                    case "Information":
+                        lerAviso(leitor, true, respostaConteudo);
+                        return respostaConteudo;
+                    case "Time Series (Daily)":
+                        leitor.beginObject();
+                        if (leitor.hasNext()) {
+                            // As datas vêm da mais recente para a mais antiga; sem a série, o resto não é lido
+                            String data = leitor.nextName();
+                            String[] dia = lerDia(leitor);
+                            preencherDadosAcao(respostaConteudo, dia);
+                            if (destinoSerie != null) {
+                                destinoSerie.accept(lerSerie(leitor, data, dia));
+                            }
+                            return respostaConteudo;
+                        }
+                        leitor.endObject();
+                        break;
+                    default:
+                        leitor.skipValue();
+                        break;
+                }
+            }
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Resposta inválida da API: " + e.getMessage(), e);
+        }
+
+        respostaConteudo.addProperty("erro", "Nenhum dado de ação encontrado.");
+        return respostaConteudo;
+    }
+
+    /**
+     * Lê a resposta da função {@code CURRENCY_EXCHANGE_RATE} até a taxa de câmbio.
+     *
+     * @param entrada O corpo da resposta.
+     * @return Um objeto JSON contendo as moedas e a taxa de câmbio entre elas, ou o campo {@code erro}.
+     * @throws LimiteApiExcedidoException Se a API recusou a consulta por excesso de chamadas.
+     * @throws IOException                Se a resposta não for um JSON válido ou não tiver os campos esperados.
+     */
+    static JsonObject lerDadosCotacao(Reader entrada) throws IOException {
+        JsonObject respostaConteudo = new JsonObject();
+        try (JsonReader leitor = new JsonReader(entrada)) {
+            leitor.beginObject();
+            while (leitor.hasNext()) {
+                switch (leitor.nextName()) {
+                    case "Error Message":
+                        respostaConteudo.addProperty("erro", leitor.nextString());
+                        return respostaConteudo;
+                    case "Note":
+                        lerAviso(leitor, false, respostaConteudo);
+                        return respostaConteudo;
+                    case "Information":
+                        lerAviso(leitor, true, respostaConteudo);
+                        return respostaConteudo;
+                    case "Realtime Currency Exchange Rate":
+                        lerCambio(leitor, respostaConteudo);
+                        return respostaConteudo;
+                    default:
+                        leitor.skipValue();
+                        break;
+                }
+            }
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Resposta inválida da API: " + e.getMessage(), e);
+        }
+
+        respostaConteudo.addProperty("erro", "Nenhum dado de cotação encontrado.");
+        return respostaConteudo;
+    }
+
+    /**
+     * Lê os dias restantes da série, depois do mais recente, já lido.
+     */
+    private static SerieDiaria lerSerie(JsonReader leitor, String primeiraData, String[] primeiroDia)
+            throws IOException {
+        SerieDiaria.Construtor serie = new SerieDiaria.Construtor();
+        adicionarDia(serie, primeiraData, primeiroDia);
+        while (leitor.hasNext()) {
+            String data = leitor.nextName();
+            adicionarDia(serie, data, lerDia(leitor));
+        }
+        leitor.endObject();
+        return serie.construir();
+    }
+
+    private static void adicionarDia(SerieDiaria.Construtor serie, String data, String[] dia) {
+        serie.adicionar(SerieDiaria.converterData(data),
+                SerieDiaria.converterPreco(dia[0]),
+                SerieDiaria.converterPreco(dia[1]),
+                SerieDiaria.converterPreco(dia[2]),
+                SerieDiaria.converterPreco(dia[3]),
+                Long.parseLong(dia[4]));
+    }
+
+    /**
+     * Lê os campos de um dia da série.
+     *
+     * @return A abertura, a máxima, a mínima, o fechamento e o volume, como informados pela API.
+     */
+    private static String[] lerDia(JsonReader leitor) throws IOException {
+        String abertura = null;
+        String maxima = null;
+        String minima = null;
+        String fechamento = null;
+        String volume = null;
+
+        leitor.beginObject();
+        while (leitor.hasNext()) {
+            switch (leitor.nextName()) {
+                case "1. open":
+                    abertura = leitor.nextString();
+                    break;
+                case "2. high":
+                    maxima = leitor.nextString();
+                    break;
+                case "3. low":
+                    minima = leitor.nextString();
+                    break;
+                case "4. close":
+                    fechamento = leitor.nextString();
+                    break;
+                case "5. volume":
+                    volume = leitor.nextString();
+                    break;
+                default:
+                    leitor.skipValue();
+                    break;
+            }
+        }
+        leitor.endObject();
+
+        return new String[]{
+                exigir(abertura, "1. open"),
+                exigir(maxima, "2. high"),
+                exigir(minima, "3. low"),
+                exigir(fechamento, "4. close"),
+                exigir(volume, "5. volume")
+        };
+    }
+
+    private static void preencherDadosAcao(JsonObject respostaConteudo, String[] dia) {
+        respostaConteudo.addProperty("precoAtual", new BigDecimal(dia[0]));
+        respostaConteudo.addProperty("precoFechamentoAnterior", new BigDecimal(dia[3]));
+        respostaConteudo.addProperty("maxDia", new BigDecimal(dia[1]));
+        respostaConteudo.addProperty("minDia", new BigDecimal(dia[2]));
+        respostaConteudo.addProperty("volume", Long.parseLong(dia[4]));
+    }
+
+    private static void lerCambio(JsonReader leitor, JsonObject respostaConteudo) throws IOException {
+        String referenciaCodigo = null;
+        String referenciaNome = null;
+        String destinoCodigo = null;
+        String destinoNome = null;
+        String taxa = null;
+
+        leitor.beginObject();
+        while (leitor.hasNext()) {
+            switch (leitor.nextName()) {
+                case "1. From_Currency Code":
+                    referenciaCodigo = leitor.nextString();
+                    break;
+                case "2. From_Currency Name":
+                    referenciaNome = leitor.nextString();
+                    break;
+                case "3. To_Currency Code":
+                    destinoCodigo = leitor.nextString();
+                    break;
+                case "4. To_Currency Name":
+                    destinoNome = leitor.nextString();
+                    break;
+                case "5. Exchange Rate":
+                    taxa = leitor.nextString();
+                    break;
+                default:
+                    leitor.skipValue();
+                    break;
+            }
+        }
+        leitor.endObject();
+
+        respostaConteudo.addProperty("moedaReferenciaCodigo", exigir(referenciaCodigo, "1. From_Currency Code"));
+        respostaConteudo.addProperty("moedaReferenciaNome", exigir(referenciaNome, "2. From_Currency Name"));
+        respostaConteudo.addProperty("moedaDestinoCodigo", exigir(destinoCodigo, "3. To_Currency Code"));
+        respostaConteudo.addProperty("moedaDestinoNome", exigir(destinoNome, "4. To_Currency Name"));
+        respostaConteudo.addProperty("taxaDeCambio", new BigDecimal(exigir(taxa, "5. Exchange Rate")));
+    }
+
+    /**
+     * Lê um aviso da API. Os avisos de limite de chamadas usam {@code Note} para o limite por minuto e
+     * {@code Information} para o diário, mas o texto é o que indica o período quando menciona apenas um deles. O
+     * campo {@code Information} também traz avisos que não tratam de limite, como o de função exclusiva dos planos
+     * pagos ou o de uso inválido da chave; esses são devolvidos como erro comum da API.
+     *
+     * @throws LimiteApiExcedidoException Se o aviso for de limite de chamadas.
+     */
+    private static void lerAviso(JsonReader leitor, boolean informacao, JsonObject respostaConteudo)
+            throws IOException {
+        String aviso = leitor.nextString();
+        String texto = aviso.toLowerCase(Locale.ROOT);
+        boolean porMinuto = texto.contains("per minute");
+        boolean porDia = texto.contains("per day");
+        if (porMinuto || porDia || texto.contains("rate limit") || texto.contains("requests")) {
+            throw new LimiteApiExcedidoException(aviso, porDia != porMinuto ? porDia : informacao);
+        }
+        respostaConteudo.addProperty("erro", aviso);
+    }
+
+    private static String exigir(String valor, String campo) throws IOException {
+        if (valor == null) {
+            throw new IOException("Campo ausente na resposta da API: " + campo);
+        }
+        return valor;
+    }
+}
@@ -0,0 +1,30 @@
+package br.edu.unifei.servicos;
+
+import java.io.IOException;
+
+/**
+ * Indica que a API AlphaVantage recusou a consulta por excesso de chamadas, respondendo com os campos {@code Note} ou
+ * {@code Information} no lugar dos dados.
+ */
+final class LimiteApiExcedidoException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean diario;
+
+    /**
+     * @param mensagem A mensagem devolvida pela API.
+     * @param diario   {@code true} se a API informou o limite diário, {@code false} se o de minuto.
+     */
+    LimiteApiExcedidoException(String mensagem, boolean diario) {
+        super("Limite de consultas da API AlphaVantage atingido: " + mensagem);
+        this.diario = diario;
+    }
+
+    /**
+     * @return {@code true} se o limite excedido for o diário, {@code false} se for o de minuto.
+     */
+    boolean isDiario() {
+        return diario;
+    }
+}
@@ -0,0 +1,153 @@
+package br.edu.unifei.servicos;
+
+import br.edu.unifei.utils.LogUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Mantém em memória a série diária de cada ação consultada, para que o histórico e os indicadores sejam respondidos
+ * sem chamadas à API.
+ * <p>
+ * Cada nova série recebida da API é combinada com a já armazenada (ver {@link SerieDiaria#mesclar(SerieDiaria)}), de
+ * modo que o histórico cresce a cada consulta. A quantidade de ações é limitada: ao passar do limite, a série acessada
+ * há mais tempo é descartada.
+ * </p>
+ * <p>
+ * Com um {@link ArquivoSeries}, cada série atualizada também é gravada em disco, e as séries que não estão em memória,
+ * porque foram descartadas ou porque o servidor reiniciou, são lidas do disco quando consultadas. Nada é lido na
+ * inicialização.
+ * </p>
+ */
+final class RepositorioSeries implements Closeable {
+
+    private final LinkedHashMap<String, SerieDiaria> series;
+    private final ArquivoSeries arquivo;
+
+    /**
+     * @param maxSimbolos Quantidade máxima de ações com série em memória.
+     */
+    RepositorioSeries(int maxSimbolos) {
+        this(maxSimbolos, null);
+    }
+
+    /**
+     * @param maxSimbolos Quantidade máxima de ações com série em memória.
+     * @param arquivo     O armazenamento em disco das séries, ou {@code null} para mantê-las apenas em memória.
+     */
+    RepositorioSeries(int maxSimbolos, ArquivoSeries arquivo) {
+        this.series = new LinkedHashMap<String, SerieDiaria>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SerieDiaria> maisAntiga) {
+                return size() > maxSimbolos;
+            }
+        };
+        this.arquivo = arquivo;
+    }
+
+    /**
+     * @param simbolo O símbolo normalizado da ação.
+     * @return A série da ação, lida do disco se não estiver em memória, ou {@code null} se ela ainda não foi
+     * consultada.
+     */
+    SerieDiaria get(String simbolo) {
+        synchronized (this) {
+            SerieDiaria serie = series.get(simbolo);
+            if (serie != null || arquivo == null) {
+                return serie;
+            }
+        }
+        SerieDiaria lida = lerDoArquivo(simbolo);
+        if (lida == null) {
+            return null;
+        }
+        synchronized (this) {
+            // Uma atualização feita durante a leitura já partiu da série em disco e prevalece
+            SerieDiaria atual = series.get(simbolo);
+            if (atual != null) {
+                return atual;
+            }
+            series.put(simbolo, lida);
+            return lida;
+        }
+    }
+
+    /**
+     * Busca os dias de um período da série. Se a série não estiver em memória, apenas os blocos do arquivo que cobrem o
+     * período são lidos, e a série continua fora da memória.
+     *
+     * @param simbolo    O símbolo normalizado da ação.
+     * @param dataInicio A primeira data do período, no formato {@code aaaammdd}.
+     * @param dataFim    A última data do período, no formato {@code aaaammdd}.
+     * @return Uma série que contém os dias do período, podendo conter outros, ou {@code null} se a ação ainda não foi
+     * consultada.
+     */
+    SerieDiaria getPeriodo(String simbolo, int dataInicio, int dataFim) {
+        synchronized (this) {
+            SerieDiaria serie = series.get(simbolo);
+            if (serie != null || arquivo == null) {
+                return serie;
+            }
+        }
+        try {
+            return arquivo.lerPeriodo(simbolo, dataInicio, dataFim);
+        } catch (IOException e) {
+            LogUtils.logError("Erro ao ler a série da ação %s do disco: %s", simbolo, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Combina a série recebida com a armazenada para a ação e grava o resultado em disco.
+     *
+     * @param simbolo O símbolo normalizado da ação.
+     * @param recente A série recebida da API.
+     */
+    void atualizar(String simbolo, SerieDiaria recente) {
+        // Sem a série em memória, a recebida é combinada com a do disco, para não substituir o histórico pelos
+        // últimos 100 dias
+        get(simbolo);
+        synchronized (this) {
+            SerieDiaria atual = series.get(simbolo);
+            SerieDiaria combinada = atual == null ? recente : atual.mesclar(recente);
+            series.put(simbolo, combinada);
+            if (arquivo != null) {
+                // Enfileirada ainda com a trava, para que as gravações da mesma ação sigam a ordem das atualizações
+                arquivo.gravar(simbolo, combinada).whenComplete((gravada, erro) -> {
+                    if (erro != null) {
+                        LogUtils.logError("Erro ao gravar a série da ação %s: %s", simbolo, erro.getMessage());
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Aguarda as gravações em disco pendentes. As séries continuam disponíveis, mas as atualizações seguintes ficam
+     * apenas em memória.
+     */
+    @Override
+    public void close() {
+        if (arquivo != null) {
+            arquivo.close();
+        }
+    }
+
+    /**
+     * @return a quantidade de ações com série em memória.
+     */
+    synchronized int getTamanho() {
+        return series.size();
+    }
+
+    private SerieDiaria lerDoArquivo(String simbolo) {
+        try {
+            return arquivo.ler(simbolo);
+        } catch (IOException e) {
+            LogUtils.logError("Erro ao ler a série da ação %s do disco: %s", simbolo, e.getMessage());
+            return null;
+        }
+    }
+}
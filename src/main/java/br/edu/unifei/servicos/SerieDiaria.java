@@ -0,0 +1,310 @@
+package br.edu.unifei.servicos;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Série diária de cotações de uma ação armazenada em colunas de tipos primitivos, em ordem crescente de data: as datas
+ * como {@code int} no formato {@code aaaammdd}, os preços como {@code long} multiplicados por {@link #ESCALA} e o
+ * volume como {@code long}.
+ * <p>
+ * Comparada aos objetos JSON da resposta da API, a série ocupa uma fração da memória e permite percorrer uma coluna
+ * inteira sem desreferenciar objetos, o que torna rápidos os recortes por período e o cálculo de indicadores. A série é
+ * imutável: os arrays devolvidos pelos métodos de acesso são os internos e não devem ser alterados.
+ * </p>
+ */
+final class SerieDiaria {
+
+    /**
+     * Casas decimais dos preços, as mesmas informadas pela API.
+     */
+    static final int CASAS_DECIMAIS = 4;
+    static final long ESCALA = 10_000;
+
+    private final int[] datas;
+    private final long[] abertura;
+    private final long[] maxima;
+    private final long[] minima;
+    private final long[] fechamento;
+    private final long[] volume;
+
+    private SerieDiaria(int[] datas, long[] abertura, long[] maxima, long[] minima, long[] fechamento,
+                        long[] volume) {
+        this.datas = datas;
+        this.abertura = abertura;
+        this.maxima = maxima;
+        this.minima = minima;
+        this.fechamento = fechamento;
+        this.volume = volume;
+    }
+
+    /**
+     * @return a quantidade de dias da série.
+     */
+    int getTamanho() {
+        return datas.length;
+    }
+
+    int[] getDatas() {
+        return datas;
+    }
+
+    long[] getAbertura() {
+        return abertura;
+    }
+
+    long[] getMaxima() {
+        return maxima;
+    }
+
+    long[] getMinima() {
+        return minima;
+    }
+
+    long[] getFechamento() {
+        return fechamento;
+    }
+
+    long[] getVolume() {
+        return volume;
+    }
+
+    /**
+     * @param data Uma data no formato {@code aaaammdd}.
+     * @return O índice do primeiro dia da série igual ou posterior à data.
+     */
+    int indiceInicial(int data) {
+        int indice = Arrays.binarySearch(datas, data);
+        return indice >= 0 ? indice : -indice - 1;
+    }
+
+    /**
+     * @param data Uma data no formato {@code aaaammdd}.
+     * @return O índice seguinte ao último dia da série igual ou anterior à data.
+     */
+    int indiceFinal(int data) {
+        int indice = Arrays.binarySearch(datas, data);
+        return indice >= 0 ? indice + 1 : -indice - 1;
+    }
+
+    /**
+     * Combina esta série com uma obtida depois dela. Nos dias presentes nas duas, valem os dados da mais recente, e
+     * os dias anteriores ao início da mais recente são mantidos desta. Assim a resposta {@code compact} da API, com os
+     * últimos 100 dias, estende o histórico completo carregado antes sem truncá-lo.
+     *
+     * @param recente A série obtida depois desta.
+     * @return A série combinada.
+     */
+    SerieDiaria mesclar(SerieDiaria recente) {
+        if (recente.getTamanho() == 0) {
+            return this;
+        }
+        int mantidos = indiceInicial(recente.datas[0]);
+        if (mantidos == 0) {
+            return recente;
+        }
+        int tamanho = mantidos + recente.getTamanho();
+        return new SerieDiaria(
+                concatenar(datas, mantidos, recente.datas, tamanho),
+                concatenar(abertura, mantidos, recente.abertura, tamanho),
+                concatenar(maxima, mantidos, recente.maxima, tamanho),
+                concatenar(minima, mantidos, recente.minima, tamanho),
+                concatenar(fechamento, mantidos, recente.fechamento, tamanho),
+                concatenar(volume, mantidos, recente.volume, tamanho));
+    }
+
+    /**
+     * Converte a data do formato {@code aaaa-mm-dd} da API para {@code aaaammdd}.
+     *
+     * @throws NumberFormatException Se o texto não estiver no formato esperado.
+     */
+    static int converterData(String data) {
+        if (data.length() != 10 || data.charAt(4) != '-' || data.charAt(7) != '-') {
+            throw new NumberFormatException("Data inválida: " + data);
+        }
+        return digitos(data, 0, 4) * 10_000 + digitos(data, 5, 7) * 100 + digitos(data, 8, 10);
+    }
+
+    /**
+     * Formata a data {@code aaaammdd} como {@code aaaa-mm-dd}.
+     */
+    static String formatarData(int data) {
+        char[] texto = {'0', '0', '0', '0', '-', '0', '0', '-', '0', '0'};
+        int restante = data;
+        for (int posicao = 9; posicao >= 0; posicao--) {
+            if (posicao == 4 || posicao == 7) {
+                continue;
+            }
+            texto[posicao] = (char) ('0' + restante % 10);
+            restante /= 10;
+        }
+        return new String(texto);
+    }
+
+    /**
+     * Converte um preço da API para o valor inteiro em {@link #ESCALA}. Preços com mais casas decimais são
+     * arredondados.
+     *
+     * @throws NumberFormatException Se o texto não for um número decimal.
+     */
+    static long converterPreco(String preco) {
+        long inteiro = 0;
+        int casas = -1;
+        int tamanho = preco.length();
+        if (tamanho == 0 || tamanho > 14) {
+            return converterPrecoComArredondamento(preco);
+        }
+        for (int i = 0; i < tamanho; i++) {
+            char c = preco.charAt(i);
+            if (c == '.' && casas < 0) {
+                casas = 0;
+            } else if (c >= '0' && c <= '9') {
+                if (casas == CASAS_DECIMAIS) {
+                    return converterPrecoComArredondamento(preco);
+                }
+                inteiro = inteiro * 10 + (c - '0');
+                if (casas >= 0) {
+                    casas++;
+                }
+            } else {
+                return converterPrecoComArredondamento(preco);
+            }
+        }
+        for (int i = Math.max(casas, 0); i < CASAS_DECIMAIS; i++) {
+            inteiro *= 10;
+        }
+        return inteiro;
+    }
+
+    /**
+     * Converte um valor em {@link #ESCALA} para decimal.
+     */
+    static BigDecimal paraDecimal(long valor) {
+        return BigDecimal.valueOf(valor, CASAS_DECIMAIS);
+    }
+
+    private static long converterPrecoComArredondamento(String preco) {
+        try {
+            return new BigDecimal(preco).setScale(CASAS_DECIMAIS, RoundingMode.HALF_UP).unscaledValue()
+                    .longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Preço fora do intervalo suportado: " + preco);
+        }
+    }
+
+    private static int digitos(String texto, int inicio, int fim) {
+        int valor = 0;
+        for (int i = inicio; i < fim; i++) {
+            char c = texto.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Data inválida: " + texto);
+            }
+            valor = valor * 10 + (c - '0');
+        }
+        return valor;
+    }
+
+    private static int[] concatenar(int[] antigos, int mantidos, int[] recentes, int tamanho) {
+        int[] resultado = Arrays.copyOf(antigos, tamanho);
+        System.arraycopy(recentes, 0, resultado, mantidos, recentes.length);
+        return resultado;
+    }
+
+    private static long[] concatenar(long[] antigos, int mantidos, long[] recentes, int tamanho) {
+        long[] resultado = Arrays.copyOf(antigos, tamanho);
+        System.arraycopy(recentes, 0, resultado, mantidos, recentes.length);
+        return resultado;
+    }
+
+    /**
+     * Monta uma série a partir de dias recebidos em ordem decrescente de data, como na resposta da API, ou crescente.
+     */
+    static final class Construtor {
+        private int[] datas;
+        private long[] abertura;
+        private long[] maxima;
+        private long[] minima;
+        private long[] fechamento;
+        private long[] volume;
+        private int tamanho;
+
+        Construtor() {
+            this(128);
+        }
+
+        Construtor(int capacidade) {
+            datas = new int[capacidade];
+            abertura = new long[capacidade];
+            maxima = new long[capacidade];
+            minima = new long[capacidade];
+            fechamento = new long[capacidade];
+            volume = new long[capacidade];
+        }
+
+        void adicionar(int data, long precoAbertura, long precoMaximo, long precoMinimo, long precoFechamento,
+                       long volumeNegociado) {
+            if (tamanho == datas.length) {
+                int capacidade = Math.max(16, tamanho * 2);
+                datas = Arrays.copyOf(datas, capacidade);
+                abertura = Arrays.copyOf(abertura, capacidade);
+                maxima = Arrays.copyOf(maxima, capacidade);
+                minima = Arrays.copyOf(minima, capacidade);
+                fechamento = Arrays.copyOf(fechamento, capacidade);
+                volume = Arrays.copyOf(volume, capacidade);
+            }
+            datas[tamanho] = data;
+            abertura[tamanho] = precoAbertura;
+            maxima[tamanho] = precoMaximo;
+            minima[tamanho] = precoMinimo;
+            fechamento[tamanho] = precoFechamento;
+            volume[tamanho] = volumeNegociado;
+            tamanho++;
+        }
+
+        int getTamanho() {
+            return tamanho;
+        }
+
+        /**
+         * @return A série em ordem crescente de data.
+         * @throws IllegalStateException Se as datas não estiverem ordenadas, em um sentido ou no outro, sem repetições.
+         */
+        SerieDiaria construir() {
+            boolean decrescente = tamanho > 1 && datas[0] > datas[1];
+            for (int i = 1; i < tamanho; i++) {
+                if (decrescente ? datas[i - 1] <= datas[i] : datas[i - 1] >= datas[i]) {
+                    throw new IllegalStateException("Datas fora de ordem na série: " + formatarData(datas[i]));
+                }
+            }
+            SerieDiaria serie = new SerieDiaria(Arrays.copyOf(datas, tamanho), Arrays.copyOf(abertura, tamanho),
+                    Arrays.copyOf(maxima, tamanho), Arrays.copyOf(minima, tamanho),
+                    Arrays.copyOf(fechamento, tamanho), Arrays.copyOf(volume, tamanho));
+            if (decrescente) {
+                inverter(serie.datas);
+                inverter(serie.abertura);
+                inverter(serie.maxima);
+                inverter(serie.minima);
+                inverter(serie.fechamento);
+                inverter(serie.volume);
+            }
+            return serie;
+        }
+
+        private static void inverter(int[] valores) {
+            for (int i = 0, j = valores.length - 1; i < j; i++, j--) {
+                int valor = valores[i];
+                valores[i] = valores[j];
+                valores[j] = valor;
+            }
+        }
+
+        private static void inverter(long[] valores) {
+            for (int i = 0, j = valores.length - 1; i < j; i++, j--) {
+                long valor = valores[i];
+                valores[i] = valores[j];
+                valores[j] = valor;
+            }
+        }
+    }
+}
@@ -2,37 +2,353 @@ package br.edu.unifei.servicos;
 
 import br.edu.unifei.modelos.mensagem.Mensagem;
 import br.edu.unifei.modelos.servico.Servico;
+import br.edu.unifei.utils.CacheTTL;
+import br.edu.unifei.utils.ChamadaUnica;
 import br.edu.unifei.utils.ConfigLoader;
+import br.edu.unifei.utils.LimitadorConcorrencia;
+import br.edu.unifei.utils.LimitadorCota;
 import br.edu.unifei.utils.LogUtils;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.Reader;
 import java.math.BigDecimal;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Serviço de consulta a API da AlphaVantage para obter dados de ações e moedas. Este serviço é capaz de processar
  * mensagens para consultar informações financeiras, retornando os resultados no formato de mensagens.
+ * <p>
+ * As consultas usam um {@link HttpClient} compartilhado, que mantém as conexões abertas entre as requisições e aplica
+ * os tempos limite de conexão e de requisição configurados. A quantidade de requisições simultâneas, e portanto de
+ * conexões abertas, é limitada ao tamanho do pool; as excedentes aguardam em fila sem ocupar threads. Além do
+ * {@link #executar(Mensagem)} bloqueante, o serviço oferece {@link #executarAssincrono(Mensagem)}, que não ocupa a
+ * thread chamadora enquanto aguarda a API.
+ * </p>
+ * <p>
+ * As cotações obtidas da API são mantidas em caches com tempos de vida separados para ações e moedas. Das moedas é
+ * armazenada apenas a taxa de câmbio, e a conversão do valor é calculada a cada consulta. O metadata das respostas
+ * informa se os dados vieram do cache ({@code cache_hit}) e há quanto tempo foram obtidos da API
+ * ({@code idade_dados_ms}).
+ * </p>
+ * <p>
+ * Os erros informados pela API, como símbolos ou moedas inexistentes, ficam em um cache negativo separado, com tempo
+ * de vida curto, para que a repetição da mesma consulta inválida não gaste chamadas. A resposta vinda desse cache traz
+ * {@code cache_negativo} no metadata.
+ * </p>
+ * <p>
+ * Um par de moedas sem cotação em cache é respondido sem chamar a API quando há cotações recentes do par inverso ou
+ * das duas moedas em relação a um pivô (ver {@link TriangulacaoCambio}); o metadata informa {@code taxa_derivada} e
+ * as cotações combinadas ({@code pernas}). A ação "CONSULTAR_MATRIZ_MOEDAS" responde as taxas entre todas as moedas
+ * de uma lista, com uma chamada à API por moeda sem cotação em relação ao pivô, em vez de uma por par.
+ * </p>
+ * <p>
+ * As ações "CONSULTAR_ACAO_LOTE" e "CONSULTAR_MOEDA_LOTE" consultam uma lista de ações ou de pares de moedas em uma
+ * única mensagem. Os itens são consultados simultaneamente, pelo mesmo caminho das consultas individuais, e a resposta
+ * reúne o resultado ou o erro de cada um. Com {@code parcial} habilitado na consulta, cada resultado é publicado assim
+ * que fica pronto, e a resposta final traz apenas o resumo do lote.
+ * </p>
+ * <p>
+ * Consultas idênticas (mesma função e mesmo símbolo ou par de moedas, normalizados) que cheguem enquanto uma delas
+ * ainda aguarda a API compartilham a mesma chamada. Cada cliente recebe sua própria cópia dos dados, com o seu
+ * metadata.
+ * </p>
+ * <p>
+ * As chamadas à API respeitam a cota por minuto e por dia da chave de acesso, controlada por um {@link LimitadorCota}:
+ * sem cota disponível, as consultas aguardam em fila até o prazo configurado e, passado o prazo, recebem uma resposta
+ * de erro sem gastar chamadas. Os avisos de limite excedido da API ({@code Note} e {@code Information}) são
+ * respondidos como erro e corrigem a estimativa do limitador.
+ * </p>
+ * <p>
+ * Quando habilitado pela chave {@code servico.alpha_vantage_api.atualizacao.habilitada}, um
+ * {@link AtualizadorAntecipado} renova as consultas mais frequentes pouco antes de expirarem, com a cota que sobra
+ * acima da reserva das consultas dos clientes e apenas com o mercado correspondente aberto. A atualização começa em
+ * {@link #iniciar()} e termina em {@link #close()}; o construtor não inicia threads.
+ * </p>
+ * <p>
+ * As cotações obtidas também são gravadas em um {@link ArmazemCotacoes} em disco, quando habilitado pela chave
+ * {@code servico.alpha_vantage_api.armazem.habilitado}. Ao iniciar, o serviço recarrega nos caches as cotações ainda
+ * dentro do tempo de vida, com a idade que tinham, e assim não repete as chamadas feitas antes de reiniciar.
+ * </p>
+ * <p>
+ * As consultas de ações leem a série diária inteira devolvida pela API para um {@link RepositorioSeries}, de onde o
+ * {@link ServicoSeriesTemporais} responde o histórico e os indicadores sem novas chamadas. Quando habilitado pela chave
+ * {@code servico.series_temporais.arquivo.habilitado}, as séries também são gravadas em disco por um
+ * {@link ArquivoSeries}. As gravações pendentes do armazém e das séries são concluídas em {@link #close()}.
+ * </p>
  */
-public class ServicoAlphaVantageAPI extends Servico {
+public class ServicoAlphaVantageAPI extends Servico implements AutoCloseable {
 
     private static final String API_KEY = ConfigLoader.getConfigValue("servico.alpha_vantage_api.api_key");
-    private static final String BASE_URL = ConfigLoader.getConfigValue("servico.alpha_vantage_api.base_url");
+    private static final String TAMANHO_SERIE = ConfigLoader.getConfigValue("servico.alpha_vantage_api.outputsize");
+
+    private final String baseUrl;
+    private final HttpClient clienteHttp;
+    private final Duration timeoutRequisicao;
+    private final LimitadorConcorrencia conexoes;
+    private final LimitadorCota cota;
+    private final long prazoEsperaCotaMillis;
+    private final CacheTTL<String, JsonObject> cacheAcoes;
+    private final CacheTTL<String, JsonObject> cacheMoedas;
+    private final CacheTTL<String, JsonObject> cacheNegativo;
+    private final ChamadaUnica<String, JsonObject> chamadasEmAndamento = new ChamadaUnica<>();
+    private final AtualizadorAntecipado atualizador;
+    private final ArmazemCotacoes armazem;
+    private final RepositorioSeries series = criarRepositorioSeries();
+    private final TriangulacaoCambio triangulacao;
+    private final int maxMoedasMatriz;
+    private final int maxItensLote;
 
     /**
-     * Construtor padrão. Para mais informações, acessar a classe pai: {@link Servico}.
+     * Construtor padrão, com o cliente HTTP compartilhado e os caches configurados pelas chaves
+     * {@code servico.alpha_vantage_api.*}. Para mais informações, acessar a classe pai: {@link Servico}.
      */
     public ServicoAlphaVantageAPI() {
+        this(ConfigLoader.getConfigValue("servico.alpha_vantage_api.base_url"), ClienteHttpCompartilhado.INSTANCIA,
+                Duration.ofMillis(Long.parseLong(
+                        ConfigLoader.getConfigValue("servico.alpha_vantage_api.http.timeout_requisicao_ms"))),
+                Integer.parseInt(ConfigLoader.getConfigValue("servico.alpha_vantage_api.http.tamanho_pool")),
+                new LimitadorCota(
+                        Integer.parseInt(ConfigLoader.getConfigValue("servico.alpha_vantage_api.cota.por_minuto")),
+                        Integer.parseInt(ConfigLoader.getConfigValue("servico.alpha_vantage_api.cota.por_dia"))),
+                Long.parseLong(ConfigLoader.getConfigValue("servico.alpha_vantage_api.cota.prazo_espera_ms")),
+                abrirArmazem());
+    }
+
+    /**
+     * @param baseUrl               URL base da API, substituível nos testes por um servidor local.
+     * @param clienteHttp           O cliente HTTP usado nas consultas.
+     * @param timeoutRequisicao     Tempo limite de cada requisição, até o recebimento completo da resposta.
+     * @param tamanhoPool           Quantidade máxima de requisições simultâneas à API.
+     * @param cota                  O limitador da cota de chamadas à API.
+     * @param prazoEsperaCotaMillis Tempo máximo de espera de uma consulta na fila da cota, em milissegundos.
+     * @param armazem               O armazém em disco das cotações, ou {@code null} para não gravá-las.
+     */
+    ServicoAlphaVantageAPI(String baseUrl, HttpClient clienteHttp, Duration timeoutRequisicao, int tamanhoPool,
+                           LimitadorCota cota, long prazoEsperaCotaMillis, ArmazemCotacoes armazem) {
         super();
+        this.baseUrl = baseUrl;
+        this.clienteHttp = clienteHttp;
+        this.timeoutRequisicao = timeoutRequisicao;
+        this.conexoes = new LimitadorConcorrencia(tamanhoPool);
+        this.cota = cota;
+        this.prazoEsperaCotaMillis = prazoEsperaCotaMillis;
+        int capacidade = Integer.parseInt(ConfigLoader.getConfigValue("servico.alpha_vantage_api.cache.capacidade"));
+        this.cacheAcoes = new CacheTTL<>(capacidade,
+                Long.parseLong(ConfigLoader.getConfigValue("servico.alpha_vantage_api.cache.ttl_acao_ms")));
+        this.cacheMoedas = new CacheTTL<>(capacidade,
+                Long.parseLong(ConfigLoader.getConfigValue("servico.alpha_vantage_api.cache.ttl_moeda_ms")));
+        this.cacheNegativo = new CacheTTL<>(
+                Integer.parseInt(ConfigLoader.getConfigValue("servico.alpha_vantage_api.cache_negativo.capacidade")),
+                Long.parseLong(ConfigLoader.getConfigValue("servico.alpha_vantage_api.cache_negativo.ttl_ms")));
+        this.triangulacao = new TriangulacaoCambio(cacheMoedas,
+                Arrays.asList(ConfigLoader.getConfigValue("servico.alpha_vantage_api.cambio.pivos").split(",")),
+                Long.parseLong(ConfigLoader.getConfigValue("servico.alpha_vantage_api.cambio.idade_maxima_pernas_ms")));
+        this.maxMoedasMatriz = Integer.parseInt(
+                ConfigLoader.getConfigValue("servico.alpha_vantage_api.cambio.max_moedas_matriz"));
+        this.maxItensLote = Integer.parseInt(ConfigLoader.getConfigValue("servico.alpha_vantage_api.lote.max_itens"));
+        this.atualizador = criarAtualizador(cota);
+        this.armazem = armazem;
+        if (armazem != null) {
+            carregarDoArmazem();
+        }
+    }
+
+    /**
+     * Abre o armazém de cotações configurado pelas chaves {@code servico.alpha_vantage_api.armazem.*}. Se o arquivo
+     * não puder ser aberto, o serviço funciona apenas com os caches em memória.
+     *
+     * @return O armazém, ou {@code null} se estiver desabilitado ou não puder ser aberto.
+     */
+    private static ArmazemCotacoes abrirArmazem() {
+        String prefixo = "servico.alpha_vantage_api.armazem.";
+        if (!Boolean.parseBoolean(ConfigLoader.getConfigValue(prefixo + "habilitado"))) {
+            return null;
+        }
+        try {
+            return new ArmazemCotacoes(Paths.get(ConfigLoader.getConfigValue(prefixo + "arquivo")),
+                    Integer.parseInt(ConfigLoader.getConfigValue(prefixo + "capacidade_inicial")));
+        } catch (IOException e) {
+            LogUtils.logError("Erro ao abrir o armazém de cotações, que não será usado: %s", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Cria o repositório das séries diárias configurado pelas chaves {@code servico.series_temporais.*}. Se o diretório
+     * das séries não puder ser criado, as séries são mantidas apenas em memória.
+     *
+     * @return O repositório das séries.
+     */
+    private static RepositorioSeries criarRepositorioSeries() {
+        String prefixo = "servico.series_temporais.";
+        int maxSimbolos = Integer.parseInt(ConfigLoader.getConfigValue(prefixo + "max_simbolos"));
+        if (!Boolean.parseBoolean(ConfigLoader.getConfigValue(prefixo + "arquivo.habilitado"))) {
+            return new RepositorioSeries(maxSimbolos);
+        }
+        try {
+            return new RepositorioSeries(maxSimbolos, new ArquivoSeries(
+                    Paths.get(ConfigLoader.getConfigValue(prefixo + "arquivo.diretorio")),
+                    Integer.parseInt(ConfigLoader.getConfigValue(prefixo + "arquivo.dias_por_bloco"))));
+        } catch (IOException e) {
+            LogUtils.logError("Erro ao abrir o diretório das séries, que ficarão apenas em memória: %s",
+                    e.getMessage());
+            return new RepositorioSeries(maxSimbolos);
+        }
     }
 
     /**
-     * Executa o serviço com base na ação especificada na mensagem fornecida.
-     * Suporta as ações "CONSULTAR_ACAO" e "CONSULTAR_MOEDA".
+     * Recarrega nos caches as cotações mais recentes do armazém ainda dentro do tempo de vida do cache correspondente,
+     * até a capacidade dos caches.
+     */
+    private void carregarDoArmazem() {
+        long inicio = System.nanoTime();
+        long agora = System.currentTimeMillis();
+        long ttlMaximo = Math.max(cacheAcoes.getTtlMillis(), cacheMoedas.getTtlMillis());
+        int[] carregadas = new int[1];
+        int capacidadeMaxima = Math.max(cacheAcoes.getCapacidade(), cacheMoedas.getCapacidade());
+        armazem.carregar(agora - ttlMaximo, capacidadeMaxima, (tipo, chave, valor, armazenadoEm) -> {
+            CacheTTL<String, JsonObject> cache = tipo == ArmazemCotacoes.Tipo.ACAO ? cacheAcoes : cacheMoedas;
+            long idade = Math.max(0, agora - armazenadoEm);
+            if (idade < cache.getTtlMillis()) {
+                cache.put(chave, valor, idade);
+                carregadas[0]++;
+            }
+        });
+        LogUtils.logInfo("%d cotações recarregadas do armazém em %.1f ms (%s)",
+                carregadas[0], (System.nanoTime() - inicio) / 1e6, armazem);
+    }
+
+    /**
+     * Cria o atualizador antecipado configurado pelas chaves {@code servico.alpha_vantage_api.atualizacao.*}, sem
+     * iniciá-lo.
+     *
+     * @param cota O limitador da cota de chamadas à API.
+     * @return O atualizador, ou {@code null} se a atualização antecipada estiver desabilitada.
+     */
+    private static AtualizadorAntecipado criarAtualizador(LimitadorCota cota) {
+        String prefixo = "servico.alpha_vantage_api.atualizacao.";
+        if (!Boolean.parseBoolean(ConfigLoader.getConfigValue(prefixo + "habilitada"))) {
+            return null;
+        }
+        return new AtualizadorAntecipado(
+                cota,
+                Long.parseLong(ConfigLoader.getConfigValue(prefixo + "antecedencia_ms")),
+                Integer.parseInt(ConfigLoader.getConfigValue(prefixo + "max_chaves")),
+                Double.parseDouble(ConfigLoader.getConfigValue(prefixo + "acessos_minimos")),
+                Long.parseLong(ConfigLoader.getConfigValue(prefixo + "meia_vida_ms")),
+                Integer.parseInt(ConfigLoader.getConfigValue(prefixo + "reserva_minuto")),
+                Integer.parseInt(ConfigLoader.getConfigValue(prefixo + "reserva_dia")),
+                System::nanoTime,
+                Clock.systemUTC()
+        );
+    }
+
+    /**
+     * Inicia as tarefas em segundo plano do serviço: a atualização antecipada, se habilitada, a cada
+     * {@code servico.alpha_vantage_api.atualizacao.intervalo_ms}. Chamadas seguintes não têm efeito.
+     */
+    public void iniciar() {
+        if (atualizador != null) {
+            atualizador.iniciar(Long.parseLong(
+                    ConfigLoader.getConfigValue("servico.alpha_vantage_api.atualizacao.intervalo_ms")));
+        }
+    }
+
+    /**
+     * Interrompe a atualização antecipada e aguarda as gravações pendentes das cotações e das séries em disco, fechando
+     * o armazém. As consultas continuam sendo atendidas, sem atualização em segundo plano e sem gravar em disco.
+     * Chamadas seguintes não têm efeito.
+     */
+    @Override
+    public void close() {
+        if (atualizador != null) {
+            atualizador.encerrar();
+        }
+        if (armazem != null) {
+            try {
+                armazem.close();
+            } catch (IOException e) {
+                LogUtils.logError("Erro ao fechar o armazém de cotações: %s", e.getMessage());
+            }
+        }
+        series.close();
+    }
+
+    /**
+     * @return o cache das cotações de ações, com os contadores de acertos, falhas e remoções.
+     */
+    public CacheTTL<String, JsonObject> getCacheAcoes() {
+        return cacheAcoes;
+    }
+
+    /**
+     * @return o cache das taxas de câmbio, com os contadores de acertos, falhas e remoções.
+     */
+    public CacheTTL<String, JsonObject> getCacheMoedas() {
+        return cacheMoedas;
+    }
+
+    /**
+     * @return o cache dos erros informados pela API, com os contadores de acertos, falhas e remoções.
+     */
+    public CacheTTL<String, JsonObject> getCacheNegativo() {
+        return cacheNegativo;
+    }
+
+    /**
+     * @return o limitador da cota da API, com as fichas restantes no minuto e no dia e o tempo de espera na fila.
+     */
+    public LimitadorCota getCota() {
+        return cota;
+    }
+
+    /**
+     * @return o agrupador das chamadas à API, com os contadores de chamadas executadas e compartilhadas.
+     */
+    public ChamadaUnica<String, JsonObject> getChamadasEmAndamento() {
+        return chamadasEmAndamento;
+    }
+
+    /**
+     * @return as séries diárias das ações consultadas.
+     */
+    RepositorioSeries getSeries() {
+        return series;
+    }
+
+    /**
+     * Executa o serviço com base na ação especificada na mensagem fornecida, aguardando a resposta.
+     * Suporta as ações "CONSULTAR_ACAO", "CONSULTAR_MOEDA", "CONSULTAR_MATRIZ_MOEDAS", "CONSULTAR_ACAO_LOTE" e
+     * "CONSULTAR_MOEDA_LOTE". O histórico das ações é consultado pelo {@link ServicoSeriesTemporais}.
      *
      * @param mensagem A {@link Mensagem} de entrada contendo a ação e os parâmetros necessários.
      * @return A {@link Mensagem} de resposta contendo os resultados da operação.
@@ -40,32 +356,61 @@ public class ServicoAlphaVantageAPI extends Servico {
      */
     @Override
     public Mensagem executar(Mensagem mensagem) {
-        LogUtils.logInfo("Processando mensagem: " + mensagem.toJson());
+        return executarAssincrono(mensagem).join();
+    }
 
-        String acao = mensagem.getAcao();
-        Mensagem resposta;
+    /**
+     * Executa o serviço com base na ação especificada na mensagem fornecida, sem bloquear a thread chamadora.
+     * Suporta as mesmas ações de {@link #executar(Mensagem)}. Falhas na consulta à API são devolvidas como uma
+     * resposta com o campo {@code erro}, e não como uma conclusão excepcional. As consultas em lote não publicam
+     * resultados parciais.
+     *
+     * @param mensagem A {@link Mensagem} de entrada contendo a ação e os parâmetros necessários.
+     * @return A {@link Mensagem} de resposta, concluída quando a consulta terminar.
+     * @throws IllegalArgumentException Se a ação especificada não for suportada.
+     */
+    public CompletableFuture<Mensagem> executarAssincrono(Mensagem mensagem) {
+        return executarAssincrono(mensagem, null);
+    }
+
+    /**
+     * Executa o serviço com base na ação especificada na mensagem fornecida, sem bloquear a thread chamadora, e
+     * publica os resultados parciais das consultas em lote que os pedirem.
+     *
+     * @param mensagem A {@link Mensagem} de entrada contendo a ação e os parâmetros necessários.
+     * @param parciais Publica cada resultado parcial, nas threads em que as consultas terminam, ou {@code null} para
+     *                 sempre responder o lote completo.
+     * @return A {@link Mensagem} de resposta, concluída quando a consulta terminar e, no caso de um lote, depois de
+     * publicados todos os resultados parciais.
+     * @throws IllegalArgumentException Se a ação especificada não for suportada.
+     */
+    public CompletableFuture<Mensagem> executarAssincrono(Mensagem mensagem, Consumer<Mensagem> parciais) {
+        LogUtils.logInfo("Processando mensagem: %s", mensagem);
 
+        String acao = mensagem.getAcao();
         switch (acao) {
             case "CONSULTAR_ACAO":
-                resposta = consultarAcao(mensagem);
-                break;
+                return consultarAcao(mensagem, null);
             case "CONSULTAR_MOEDA":
-                resposta = consultarMoeda(mensagem);
-                break;
+                return consultarMoeda(mensagem, null);
+            case "CONSULTAR_MATRIZ_MOEDAS":
+                return consultarMatrizMoedas(mensagem);
+            case "CONSULTAR_ACAO_LOTE":
+            case "CONSULTAR_MOEDA_LOTE":
+                return consultarLote(mensagem, parciais);
             default:
                 throw new IllegalArgumentException("Ação desconhecida: " + acao);
         }
-
-        return resposta;
     }
 
     /**
      * Consulta os dados de uma ação específica usando a API AlphaVantage.
      *
-     * @param mensagem A {@link Mensagem} contendo o símbolo da ação a ser consultada.
+     * @param mensagem  A {@link Mensagem} contendo o símbolo da ação a ser consultada.
+     * @param vagasCota As chamadas à API que o lote ainda pode iniciar, ou {@code null} fora de um lote.
      * @return Uma {@link Mensagem} de resposta com os dados da ação ou um erro, se houver.
      */
-    private Mensagem consultarAcao(Mensagem mensagem) {
+    private CompletableFuture<Mensagem> consultarAcao(Mensagem mensagem, AtomicInteger vagasCota) {
         String respostaDestino = mensagem.getOrigem();
         JsonObject conteudo = mensagem.getConteudo();
         String simboloAcao = conteudo.get("simboloAcao").getAsString();
@@ -74,41 +419,55 @@ public class ServicoAlphaVantageAPI extends Servico {
                 ? conteudo.getAsJsonObject("metadata")
                 : new JsonObject();
 
-        try {
-            JsonObject respostaConteudo = getDadosAcao(simboloAcao);
-            respostaConteudo.add("metadata", metadata);
+        String chave = simboloAcao.trim().toUpperCase();
+        String chamadaId = "TIME_SERIES_DAILY:" + chave;
+        Supplier<CompletableFuture<JsonObject>> chamada = () -> getDadosAcao(chave);
+        registrarAcesso(chamadaId, true, cacheAcoes, chave, chamada);
+        CacheTTL.Valor<JsonObject> emCache = buscarEmCache(cacheAcoes, chave, chamadaId);
+        CompletableFuture<JsonObject> dados = emCache != null
+                ? CompletableFuture.completedFuture(emCache.getValor().deepCopy())
+                : consultarApi(chamadaId, cacheAcoes, chave, limitarAoLote(chamada, vagasCota));
 
-            return new Mensagem(
-                    "RESULTADO_CONSULTAR_ACAO",
-                    mensagem.getDestino(),
-                    respostaDestino,
-                    respostaConteudo
-            );
-        } catch (IOException e) {
-            LogUtils.logError("Erro ao consultar dados de ações: %s", e.getMessage());
+        return dados.handle((respostaConteudo, erro) -> {
+            if (erro != null) {
+                String causa = getCausa(erro).getMessage();
+                LogUtils.logError("Erro ao consultar dados de ações: %s", causa);
 
-            JsonObject respostaErro = new JsonObject();
-            respostaErro.add("metadata", metadata);
-            respostaErro.addProperty("erro",
-                    String.format("Erro ao consultar dados da ação %s: %s", simboloAcao, e.getMessage())
-            );
+                JsonObject respostaErro = new JsonObject();
+                respostaErro.add("metadata", metadata);
+                respostaErro.addProperty("erro",
+                        String.format("Erro ao consultar dados da ação %s: %s", simboloAcao, causa)
+                );
 
-            return new Mensagem(
+                return new Mensagem(
+                        "RESULTADO_CONSULTAR_ACAO",
+                        mensagem.getDestino(),
+                        respostaDestino,
+                        respostaErro
+                );
+            }
+            respostaConteudo.add("metadata", metadata);
+
+            Mensagem resposta = new Mensagem(
                     "RESULTADO_CONSULTAR_ACAO",
                     mensagem.getDestino(),
                     respostaDestino,
-                    respostaErro
+                    respostaConteudo
             );
-        }
+            registrarOrigemDosDados(resposta, emCache);
+            return resposta;
+        });
     }
 
     /**
-     * Consulta a taxa de câmbio entre duas moedas usando a API AlphaVantage.
+     * Consulta a taxa de câmbio entre duas moedas usando a API AlphaVantage. Sem a cotação do par em cache, a taxa é
+     * derivada das cotações em cache do par inverso ou de um pivô, se houver, e a API só é chamada na falta delas.
      *
-     * @param mensagem A {@link Mensagem} contendo as informações das moedas a serem convertidas.
+     * @param mensagem  A {@link Mensagem} contendo as informações das moedas a serem convertidas.
+     * @param vagasCota As chamadas à API que o lote ainda pode iniciar, ou {@code null} fora de um lote.
      * @return Uma {@link Mensagem} de resposta com os dados da cotação ou um erro, se houver.
      */
-    private Mensagem consultarMoeda(Mensagem mensagem) {
+    private CompletableFuture<Mensagem> consultarMoeda(Mensagem mensagem, AtomicInteger vagasCota) {
         String respostaDestino = mensagem.getOrigem();
         JsonObject conteudo = mensagem.getConteudo();
         String moedaReferencia = conteudo.get("moedaReferencia").getAsString();
@@ -119,91 +478,582 @@ public class ServicoAlphaVantageAPI extends Servico {
                 ? conteudo.getAsJsonObject("metadata")
                 : new JsonObject();
 
-        try {
-            JsonObject respostaConteudo = getDadosCotacao(moedaReferencia, moedaDestino, valorAConverter);
+        String referencia = moedaReferencia.trim().toUpperCase();
+        String destino = moedaDestino.trim().toUpperCase();
+        String chave = TriangulacaoCambio.chave(referencia, destino);
+        String chamadaId = "CURRENCY_EXCHANGE_RATE:" + chave;
+        CacheTTL.Valor<JsonObject> cotacao = cacheMoedas.get(chave);
+        TriangulacaoCambio.Taxa derivada = cotacao == null ? triangulacao.derivar(referencia, destino) : null;
+        if (derivada != null) {
+            return CompletableFuture.completedFuture(
+                    responderTaxaDerivada(mensagem, derivada, valorAConverter, metadata));
+        }
+
+        Supplier<CompletableFuture<JsonObject>> chamada = () -> getDadosCotacao(referencia, destino);
+        registrarAcesso(chamadaId, false, cacheMoedas, chave, chamada);
+        CacheTTL.Valor<JsonObject> emCache = cotacao != null ? cotacao : cacheNegativo.get(chamadaId);
+        CompletableFuture<JsonObject> dados = emCache != null
+                ? CompletableFuture.completedFuture(emCache.getValor().deepCopy())
+                : consultarApi(chamadaId, cacheMoedas, chave, limitarAoLote(chamada, vagasCota));
+
+        return dados.handle((respostaConteudo, erro) -> {
+            if (erro != null) {
+                String causa = getCausa(erro).getMessage();
+                LogUtils.logError("Erro ao consultar dados de cotação: %s", causa);
+
+                JsonObject respostaErro = new JsonObject();
+                respostaErro.add("metadata", metadata);
+                respostaErro.addProperty("erro",
+                        String.format("Erro ao consultar dados de cotação para as moedas %s/%s: %s",
+                                moedaReferencia, moedaDestino, causa)
+                );
+
+                return new Mensagem(
+                        "RESULTADO_CONSULTAR_MOEDA",
+                        mensagem.getDestino(),
+                        respostaDestino,
+                        respostaErro
+                );
+            }
+
+            if (!respostaConteudo.has("erro")) {
+                converterValor(respostaConteudo, valorAConverter);
+            }
             respostaConteudo.add("metadata", metadata);
 
-            return new Mensagem(
+            Mensagem resposta = new Mensagem(
                     "RESULTADO_CONSULTAR_MOEDA",
                     mensagem.getDestino(),
                     respostaDestino,
                     respostaConteudo
             );
-        } catch (IOException e) {
-            LogUtils.logError("Erro ao consultar dados de cotação: %s", e.getMessage());
+            registrarOrigemDosDados(resposta, emCache);
+            resposta.adicionarAoMetadata("taxa_derivada", new JsonPrimitive(false));
+            return resposta;
+        });
+    }
+
+    /**
+     * Responde a consulta de câmbio com uma taxa derivada das cotações em cache. As cotações combinadas são
+     * registradas no atualizador antecipado no lugar do par consultado, para que continuem recentes.
+     */
+    private Mensagem responderTaxaDerivada(Mensagem mensagem, TriangulacaoCambio.Taxa derivada,
+                                           BigDecimal valorAConverter, JsonObject metadata) {
+        derivada.getPernas().forEach(this::registrarAcessoCambio);
+
+        JsonObject respostaConteudo = derivada.paraJson();
+        converterValor(respostaConteudo, valorAConverter);
+        respostaConteudo.add("metadata", metadata);
+
+        Mensagem resposta = new Mensagem(
+                "RESULTADO_CONSULTAR_MOEDA",
+                mensagem.getDestino(),
+                mensagem.getOrigem(),
+                respostaConteudo
+        );
+        resposta.adicionarAoMetadata("cache_hit", new JsonPrimitive(true));
+        resposta.adicionarAoMetadata("cache_negativo", new JsonPrimitive(false));
+        resposta.adicionarAoMetadata("idade_dados_ms", new JsonPrimitive(derivada.getIdadeMillis()));
+        resposta.adicionarAoMetadata("taxa_derivada", new JsonPrimitive(true));
+        JsonArray pernas = new JsonArray();
+        derivada.getPernas().forEach(pernas::add);
+        resposta.adicionarAoMetadata("pernas", pernas);
+        if (derivada.getPivo() != null) {
+            resposta.adicionarAoMetadata("pivo", new JsonPrimitive(derivada.getPivo()));
+        }
+        return resposta;
+    }
+
+    private static void converterValor(JsonObject respostaConteudo, BigDecimal valorAConverter) {
+        respostaConteudo.addProperty("valorAConverter", valorAConverter);
+        respostaConteudo.addProperty("valorConvertido",
+                valorAConverter.multiply(respostaConteudo.get("taxaDeCambio").getAsBigDecimal()));
+    }
+
+    /**
+     * Consulta as taxas de câmbio entre todas as moedas de uma lista. As taxas são derivadas das cotações de cada
+     * moeda em relação a um pivô, escolhido entre os configurados pela quantidade de cotações já em cache; a API é
+     * chamada apenas para as moedas sem cotação recente em relação a ele. Quando há cotação direta de um par em cache,
+     * ela é usada no lugar da derivada.
+     * <p>
+     * A resposta traz, em {@code taxasDeCambio}, um objeto por moeda de referência com as taxas para cada moeda de
+     * destino, e em {@code erros} as moedas cuja cotação falhou, que ficam sem taxas ({@code null}). O metadata
+     * informa o pivô, as chamadas feitas à API e os pares com cotação direta ({@code taxas_diretas}); os demais foram
+     * derivados.
+     * </p>
+     *
+     * @param mensagem A {@link Mensagem} com a lista de códigos das moedas, no campo {@code moedas}.
+     * @return Uma {@link Mensagem} de resposta com a matriz de taxas ou um erro, se houver.
+     */
+    private CompletableFuture<Mensagem> consultarMatrizMoedas(Mensagem mensagem) {
+        JsonObject conteudo = mensagem.getConteudo();
+        JsonObject metadata = conteudo.has("metadata")
+                ? conteudo.getAsJsonObject("metadata")
+                : new JsonObject();
 
+        Set<String> distintas = new LinkedHashSet<>();
+        for (JsonElement moeda : conteudo.getAsJsonArray("moedas")) {
+            distintas.add(moeda.getAsString().trim().toUpperCase());
+        }
+        List<String> moedas = new ArrayList<>(distintas);
+        if (moedas.isEmpty() || moedas.size() > maxMoedasMatriz) {
             JsonObject respostaErro = new JsonObject();
             respostaErro.add("metadata", metadata);
-            respostaErro.addProperty("erro",
-                    String.format("Erro ao consultar dados de cotação para as moedas %s/%s: %s",
-                            moedaReferencia, moedaDestino, e.getMessage())
-            );
-
-            return new Mensagem(
-                    "RESULTADO_CONSULTAR_MOEDA",
+            respostaErro.addProperty("erro", String.format(
+                    "A matriz de câmbio deve ter de 1 a %d moedas, mas foram informadas %d.",
+                    maxMoedasMatriz, moedas.size()));
+            return CompletableFuture.completedFuture(new Mensagem(
+                    "RESULTADO_CONSULTAR_MATRIZ_MOEDAS",
                     mensagem.getDestino(),
-                    respostaDestino,
+                    mensagem.getOrigem(),
                     respostaErro
-            );
+            ));
+        }
+
+        String pivo = triangulacao.escolherPivo(moedas);
+        Map<String, CompletableFuture<TriangulacaoCambio.Taxa>> paraPivo = new LinkedHashMap<>();
+        int chamadas = 0;
+        for (String moeda : moedas) {
+            if (moeda.equals(pivo)) {
+                continue;
+            }
+            TriangulacaoCambio.Taxa emCache = triangulacao.paraPivo(moeda, pivo);
+            if (emCache != null) {
+                emCache.getPernas().forEach(this::registrarAcessoCambio);
+                paraPivo.put(moeda, CompletableFuture.completedFuture(emCache));
+                continue;
+            }
+            String chave = TriangulacaoCambio.chave(moeda, pivo);
+            String chamadaId = "CURRENCY_EXCHANGE_RATE:" + chave;
+            registrarAcessoCambio(chave);
+            CacheTTL.Valor<JsonObject> erroEmCache = cacheNegativo.get(chamadaId);
+            CompletableFuture<JsonObject> dados;
+            if (erroEmCache != null) {
+                dados = CompletableFuture.completedFuture(erroEmCache.getValor());
+            } else {
+                dados = consultarApi(chamadaId, cacheMoedas, chave, () -> getDadosCotacao(moeda, pivo));
+                chamadas++;
+            }
+            paraPivo.put(moeda, dados.thenApply(cotacao -> {
+                if (cotacao.has("erro")) {
+                    throw new CompletionException(new IOException(cotacao.get("erro").getAsString()));
+                }
+                TriangulacaoCambio.Taxa cotada = TriangulacaoCambio.cotada(moeda, pivo, cotacao, 0L);
+                if (cotada.getTaxa().signum() <= 0) {
+                    throw new CompletionException(new IOException("Taxa de câmbio inválida: " + cotada.getTaxa()));
+                }
+                return cotada;
+            }));
+        }
+
+        int chamadasApi = chamadas;
+        return CompletableFuture.allOf(paraPivo.values().toArray(new CompletableFuture<?>[0]))
+                .handle((concluidas, erro) -> responderMatriz(mensagem, moedas, pivo, paraPivo, metadata,
+                        chamadasApi));
+    }
+
+    /**
+     * Monta a resposta da matriz de câmbio com as taxas de cada moeda para o pivô, já concluídas.
+     */
+    private Mensagem responderMatriz(Mensagem mensagem, List<String> moedas, String pivo,
+                                     Map<String, CompletableFuture<TriangulacaoCambio.Taxa>> paraPivo,
+                                     JsonObject metadata, int chamadasApi) {
+        Map<String, TriangulacaoCambio.Taxa> taxas = new LinkedHashMap<>();
+        JsonObject nomes = new JsonObject();
+        JsonObject erros = new JsonObject();
+        long idadeMaxima = 0;
+        for (Map.Entry<String, CompletableFuture<TriangulacaoCambio.Taxa>> perna : paraPivo.entrySet()) {
+            try {
+                TriangulacaoCambio.Taxa taxa = perna.getValue().join();
+                taxas.put(perna.getKey(), taxa);
+                idadeMaxima = Math.max(idadeMaxima, taxa.getIdadeMillis());
+                if (taxa.getReferenciaNome() != null) {
+                    nomes.addProperty(perna.getKey(), taxa.getReferenciaNome());
+                }
+            } catch (CompletionException e) {
+                String causa = getCausa(e).getMessage();
+                LogUtils.logError("Erro ao consultar a cotação de %s/%s: %s", perna.getKey(), pivo, causa);
+                erros.addProperty(perna.getKey(), String.format(
+                        "Erro ao consultar dados de cotação para as moedas %s/%s: %s", perna.getKey(), pivo, causa));
+            }
+        }
+
+        JsonObject matriz = new JsonObject();
+        JsonArray diretas = new JsonArray();
+        for (String referencia : moedas) {
+            JsonObject linha = new JsonObject();
+            for (String destino : moedas) {
+                linha.add(destino, calcularTaxa(referencia, destino, pivo, taxas, diretas));
+            }
+            matriz.add(referencia, linha);
+        }
+
+        JsonObject respostaConteudo = new JsonObject();
+        JsonArray lista = new JsonArray();
+        moedas.forEach(lista::add);
+        respostaConteudo.add("moedas", lista);
+        respostaConteudo.add("nomesMoedas", nomes);
+        respostaConteudo.add("taxasDeCambio", matriz);
+        if (erros.size() > 0) {
+            respostaConteudo.add("erros", erros);
+        }
+        respostaConteudo.add("metadata", metadata);
+
+        Mensagem resposta = new Mensagem(
+                "RESULTADO_CONSULTAR_MATRIZ_MOEDAS",
+                mensagem.getDestino(),
+                mensagem.getOrigem(),
+                respostaConteudo
+        );
+        resposta.adicionarAoMetadata("pivo", new JsonPrimitive(pivo));
+        resposta.adicionarAoMetadata("chamadas_api", new JsonPrimitive(chamadasApi));
+        resposta.adicionarAoMetadata("cache_hit", new JsonPrimitive(chamadasApi == 0));
+        resposta.adicionarAoMetadata("idade_dados_ms", new JsonPrimitive(idadeMaxima));
+        resposta.adicionarAoMetadata("taxas_diretas", diretas);
+        return resposta;
+    }
+
+    /**
+     * Calcula uma taxa da matriz: a cotação direta do par, se estiver em cache, ou a razão entre as taxas das duas
+     * moedas para o pivô.
+     *
+     * @return A taxa, ou {@link JsonNull} se a cotação de uma das moedas falhou.
+     */
+    private JsonElement calcularTaxa(String referencia, String destino, String pivo,
+                                     Map<String, TriangulacaoCambio.Taxa> taxas, JsonArray diretas) {
+        if (referencia.equals(destino)) {
+            return new JsonPrimitive(BigDecimal.ONE);
+        }
+        TriangulacaoCambio.Taxa direta = triangulacao.buscar(referencia, destino);
+        if (direta != null) {
+            diretas.add(TriangulacaoCambio.chave(referencia, destino));
+            return new JsonPrimitive(direta.getTaxa());
         }
+        BigDecimal ida = referencia.equals(pivo) ? BigDecimal.ONE : taxaOuNulo(taxas.get(referencia));
+        BigDecimal volta = destino.equals(pivo) ? BigDecimal.ONE : taxaOuNulo(taxas.get(destino));
+        if (ida == null || volta == null) {
+            return JsonNull.INSTANCE;
+        }
+        return new JsonPrimitive(ida.divide(volta, TriangulacaoCambio.PRECISAO));
+    }
+
+    private static BigDecimal taxaOuNulo(TriangulacaoCambio.Taxa taxa) {
+        return taxa != null ? taxa.getTaxa() : null;
     }
 
     /**
-     * Realiza uma consulta à API AlphaVantage para obter os dados diários de uma ação.
+     * Consulta uma lista de ações, no campo {@code simbolosAcoes}, ou de pares de moedas, no campo {@code pares}, com
+     * os mesmos campos da consulta individual e {@code valorAConverter} opcional. Todos os itens são consultados
+     * simultaneamente, e os repetidos compartilham a mesma chamada. O lote só inicia tantas chamadas à API quantas a
+     * cota liberar sem espera quando ele chega; os demais itens sem dados em cache recebem um erro de cota na hora,
+     * em vez de ocuparem a fila da cota à frente das consultas individuais.
+     * <p>
+     * Cada resultado traz a sua posição na lista ({@code indice}), o item consultado e os dados ou o erro da consulta
+     * individual, com o metadata de origem dos dados. Sem resultados parciais, a resposta traz todos os resultados em
+     * {@code resultados}, na ordem da lista. Com {@code parcial} habilitado e um destino para eles, cada resultado é
+     * publicado em uma mensagem "RESULTADO_&lt;ação&gt;_PARCIAL" assim que fica pronto, e a resposta final, enviada
+     * depois de todos, traz apenas as quantidades.
+     * </p>
      *
-     * @param simboloAcao O símbolo da ação a ser consultada.
-     * @return Um objeto JSON contendo os dados da ação consultada.
-     * @throws IOException Se ocorrer um erro na conexão com a API.
-     */
-    private static JsonObject getDadosAcao(String simboloAcao) throws IOException {
-        String url = String.format("%s?function=TIME_SERIES_DAILY&symbol=%s&apikey=%s",
-                BASE_URL, simboloAcao.trim().toUpperCase(), API_KEY);
-
-        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
-        connection.setRequestMethod("GET");
-
-        try(BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-            StringBuilder response = new StringBuilder();
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
+     * @param mensagem A {@link Mensagem} com a lista de itens.
+     * @param parciais Publica os resultados parciais, ou {@code null}.
+     * @return A {@link Mensagem} de resposta com os resultados ou o resumo do lote, ou um erro se a lista for inválida.
+     */
+    private CompletableFuture<Mensagem> consultarLote(Mensagem mensagem, Consumer<Mensagem> parciais) {
+        JsonObject conteudo = mensagem.getConteudo();
+        JsonObject metadata = conteudo.has("metadata")
+                ? conteudo.getAsJsonObject("metadata")
+                : new JsonObject();
+        boolean acoes = "CONSULTAR_ACAO_LOTE".equals(mensagem.getAcao());
+        String campoItens = acoes ? "simbolosAcoes" : "pares";
+        String acaoResposta = "RESULTADO_" + mensagem.getAcao();
+
+        JsonArray itens = conteudo.has(campoItens) && conteudo.get(campoItens).isJsonArray()
+                ? conteudo.getAsJsonArray(campoItens)
+                : new JsonArray();
+        if (itens.size() == 0 || itens.size() > maxItensLote) {
+            JsonObject respostaErro = new JsonObject();
+            respostaErro.add("metadata", metadata);
+            respostaErro.addProperty("erro", String.format(
+                    "O campo %s deve ter de 1 a %d itens, mas foram informados %d.",
+                    campoItens, maxItensLote, itens.size()));
+            return CompletableFuture.completedFuture(
+                    new Mensagem(acaoResposta, mensagem.getDestino(), mensagem.getOrigem(), respostaErro));
+        }
+
+        boolean publicarParciais = parciais != null && conteudo.has("parcial")
+                && conteudo.get("parcial").getAsBoolean();
+        JsonObject[] resultados = new JsonObject[itens.size()];
+        CompletableFuture<?>[] concluidos = new CompletableFuture<?>[itens.size()];
+        AtomicInteger vagasCota = new AtomicInteger(cota.getDisponiveis());
+        for (int i = 0; i < itens.size(); i++) {
+            int indice = i;
+            JsonObject consulta = new JsonObject();
+            CompletableFuture<Mensagem> resposta;
+            try {
+                if (acoes) {
+                    consulta.addProperty("simboloAcao", itens.get(i).getAsString());
+                    resposta = consultarAcao(new Mensagem("CONSULTAR_ACAO", mensagem.getOrigem(),
+                            mensagem.getDestino(), consulta.deepCopy()), vagasCota);
+                } else {
+                    JsonObject par = itens.get(i).getAsJsonObject();
+                    consulta.addProperty("moedaReferencia", par.get("moedaReferencia").getAsString());
+                    consulta.addProperty("moedaDestino", par.get("moedaDestino").getAsString());
+                    consulta.add("valorAConverter", par.has("valorAConverter")
+                            ? par.get("valorAConverter")
+                            : new JsonPrimitive(BigDecimal.ONE));
+                    resposta = consultarMoeda(new Mensagem("CONSULTAR_MOEDA", mensagem.getOrigem(),
+                            mensagem.getDestino(), consulta.deepCopy()), vagasCota);
+                }
+            } catch (RuntimeException e) {
+                // Item malformado: os demais são consultados normalmente
+                JsonObject respostaErro = new JsonObject();
+                respostaErro.addProperty("erro", String.format("Item inválido em %s: %s", campoItens, e));
+                resposta = CompletableFuture.completedFuture(
+                        new Mensagem(acaoResposta, mensagem.getDestino(), mensagem.getOrigem(), respostaErro));
             }
-            JsonObject jsonResponse = JsonParser.parseString(response.toString()).getAsJsonObject();
+            concluidos[i] = resposta.thenAccept(respostaItem -> {
+                JsonObject resultado = new JsonObject();
+                resultado.addProperty("indice", indice);
+                consulta.entrySet().forEach(campo -> resultado.add(campo.getKey(), campo.getValue()));
+                respostaItem.getConteudo().entrySet()
+                        .forEach(campo -> resultado.add(campo.getKey(), campo.getValue()));
+                // No lugar do metadata vazio da consulta do item, a origem dos dados do item
+                resultado.add("metadata", respostaItem.getMetadata());
+                resultados[indice] = resultado;
+                if (publicarParciais) {
+                    publicarParcial(mensagem, acaoResposta + "_PARCIAL", resultado, itens.size(), metadata,
+                            parciais);
+                }
+            });
+        }
+
+        return CompletableFuture.allOf(concluidos).thenApply(concluido -> {
             JsonObject respostaConteudo = new JsonObject();
+            JsonArray lista = new JsonArray();
+            int erros = 0;
+            int acertosCache = 0;
+            for (JsonObject resultado : resultados) {
+                lista.add(resultado);
+                if (resultado.has("erro")) {
+                    erros++;
+                }
+                JsonElement acertoCache = resultado.getAsJsonObject("metadata").get("cache_hit");
+                if (acertoCache != null && acertoCache.getAsBoolean()) {
+                    acertosCache++;
+                }
+            }
+            if (!publicarParciais) {
+                respostaConteudo.add("resultados", lista);
+            }
+            respostaConteudo.addProperty("quantidade", resultados.length);
+            respostaConteudo.addProperty("quantidadeErros", erros);
+            respostaConteudo.add("metadata", metadata);
 
-            if (jsonResponse.has("Error Message")) {
-                String errorMessage = jsonResponse.get("Error Message").getAsString();
-                respostaConteudo.addProperty("erro", errorMessage);
-            } else if (jsonResponse.has("Time Series (Daily)")) {
-                JsonObject timeSeries = jsonResponse.getAsJsonObject("Time Series (Daily)");
-                JsonObject latestData = timeSeries.entrySet().iterator().next().getValue().getAsJsonObject();
+            Mensagem resposta = new Mensagem(acaoResposta, mensagem.getDestino(), mensagem.getOrigem(),
+                    respostaConteudo);
+            resposta.adicionarAoMetadata("parcial", new JsonPrimitive(publicarParciais));
+            resposta.adicionarAoMetadata("cache_hits", new JsonPrimitive(acertosCache));
+            return resposta;
+        });
+    }
 
-                respostaConteudo.addProperty(
-                        "precoAtual",
-                        latestData.get("1. open").getAsBigDecimal()
-                );
-                respostaConteudo.addProperty(
-                        "precoFechamentoAnterior",
-                        latestData.get("4. close").getAsBigDecimal()
-                );
-                respostaConteudo.addProperty(
-                        "maxDia",
-                        latestData.get("2. high").getAsBigDecimal()
-                );
-                respostaConteudo.addProperty(
-                        "minDia",
-                        latestData.get("3. low").getAsBigDecimal()
-                );
-                respostaConteudo.addProperty(
-                        "volume",
-                        latestData.get("5. volume").getAsLong()
-                );
+    /**
+     * Publica o resultado de um item do lote. Uma falha na publicação é registrada e não interrompe o lote.
+     */
+    private static void publicarParcial(Mensagem mensagem, String acao, JsonObject resultado, int total,
+                                        JsonObject metadata, Consumer<Mensagem> parciais) {
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("total", total);
+        conteudo.add("resultado", resultado);
+        conteudo.add("metadata", metadata.deepCopy());
+        try {
+            parciais.accept(new Mensagem(acao, mensagem.getDestino(), mensagem.getOrigem(), conteudo));
+        } catch (RuntimeException e) {
+            LogUtils.logError("Erro ao publicar o resultado parcial %d de %s: %s",
+                    resultado.get("indice").getAsInt(), mensagem.getAcao(), e.getMessage());
+        }
+    }
+
+    /**
+     * Registra no atualizador antecipado o acesso à cotação de um par, identificado pela chave do cache.
+     */
+    private void registrarAcessoCambio(String chave) {
+        int barra = chave.indexOf('/');
+        String referencia = chave.substring(0, barra);
+        String destino = chave.substring(barra + 1);
+        registrarAcesso("CURRENCY_EXCHANGE_RATE:" + chave, false, cacheMoedas, chave,
+                () -> getDadosCotacao(referencia, destino));
+    }
+
+    /**
+     * Registra o acesso no atualizador antecipado, se habilitado. A atualização passa pelo mesmo caminho das consultas
+     * dos clientes: compartilha a chamada com as idênticas em andamento e armazena o resultado no cache.
+     */
+    private void registrarAcesso(String chamadaId, boolean bolsa, CacheTTL<String, JsonObject> cache, String chave,
+                                 Supplier<CompletableFuture<JsonObject>> chamada) {
+        if (atualizador != null) {
+            atualizador.registrarAcesso(chamadaId, bolsa, cache, chave,
+                    () -> consultarApi(chamadaId, cache, chave, chamada));
+        }
+    }
+
+    /**
+     * Busca o resultado de uma consulta no cache de dados e, se não houver, no cache negativo.
+     *
+     * @param cache     O cache de dados do tipo da consulta.
+     * @param chave     A chave do resultado no cache de dados.
+     * @param chamadaId A chave do resultado no cache negativo: a função da API e a chave normalizada.
+     * @return O valor encontrado, ou {@code null} se a consulta não estiver em nenhum dos caches.
+     */
+    private CacheTTL.Valor<JsonObject> buscarEmCache(CacheTTL<String, JsonObject> cache, String chave,
+                                                     String chamadaId) {
+        CacheTTL.Valor<JsonObject> emCache = cache.get(chave);
+        return emCache != null ? emCache : cacheNegativo.get(chamadaId);
+    }
+
+    /**
+     * Consulta a API, compartilhando a chamada com as consultas idênticas em andamento. Quando a chamada termina, o
+     * resultado é armazenado no cache de dados ou, se a API informou um erro, no cache negativo. Falhas de conexão e de
+     * cota não são armazenadas.
+     *
+     * @param chamadaId Identificação da chamada: a função da API e a chave normalizada.
+     * @param cache     O cache em que o resultado deve ser armazenado.
+     * @param chave     A chave do resultado no cache.
+     * @param chamada   Inicia a consulta à API.
+     * @return Uma cópia do resultado, que pode ser alterada pelo chamador.
+     */
+    private CompletableFuture<JsonObject> consultarApi(String chamadaId, CacheTTL<String, JsonObject> cache,
+                                                       String chave, Supplier<CompletableFuture<JsonObject>> chamada) {
+        return chamadasEmAndamento.executar(chamadaId, () -> chamada.get().thenApply(resultado -> {
+            if (resultado.has("erro")) {
+                cacheNegativo.put(chamadaId, resultado);
             } else {
-                respostaConteudo.addProperty("erro", "Nenhum dado de ação encontrado.");
+                cache.put(chave, resultado);
+                armazenar(cache, chave, resultado);
             }
+            return resultado;
+        })).thenApply(JsonObject::deepCopy);
+    }
 
-            return respostaConteudo;
+    /**
+     * Limita as chamadas à API iniciadas pelos itens de um lote. A verificação é feita apenas quando a chamada é
+     * iniciada, de modo que os itens que compartilham uma chamada em andamento não gastam vagas.
+     *
+     * @param chamada   Inicia a consulta à API.
+     * @param vagasCota As chamadas que o lote ainda pode iniciar, ou {@code null} para não limitar.
+     * @return A chamada limitada, que conclui com {@link IOException}, sem chamar a API, quando não houver vaga.
+     */
+    private static Supplier<CompletableFuture<JsonObject>> limitarAoLote(
+            Supplier<CompletableFuture<JsonObject>> chamada, AtomicInteger vagasCota) {
+        if (vagasCota == null) {
+            return chamada;
         }
+        return () -> vagasCota.getAndDecrement() > 0
+                ? chamada.get()
+                : CompletableFuture.failedFuture(new IOException(
+                        "Cota da API insuficiente para todos os itens do lote; consulte este item novamente depois"));
+    }
+
+    /**
+     * Grava a cotação no armazém em disco, se houver, sem aguardar a gravação.
+     */
+    private void armazenar(CacheTTL<String, JsonObject> cache, String chave, JsonObject resultado) {
+        if (armazem == null) {
+            return;
+        }
+        ArmazemCotacoes.Tipo tipo = cache == cacheAcoes ? ArmazemCotacoes.Tipo.ACAO : ArmazemCotacoes.Tipo.CAMBIO;
+        armazem.gravar(tipo, chave, resultado, System.currentTimeMillis()).whenComplete((gravada, erro) -> {
+            if (erro != null) {
+                LogUtils.logError("Erro ao gravar a cotação %s no armazém: %s", chave, getCausa(erro).getMessage());
+            }
+        });
+    }
+
+    /**
+     * Consulta a API assim que a cota permitir e lê a resposta. Se a API informar que o limite foi excedido, o
+     * limitador da cota é corrigido para que as próximas consultas aguardem na fila em vez de gastar chamadas.
+     *
+     * @param url     A URL completa da requisição.
+     * @param leitura A leitura do corpo da resposta.
+     * @return Os dados lidos. Conclui com {@link IOException} se a cota não for liberada dentro do prazo, se ocorrer
+     * um erro na conexão com a API ou se a resposta for inválida.
+     */
+    private CompletableFuture<JsonObject> consultar(String url, Leitura leitura) {
+        return cota.reservar(prazoEsperaCotaMillis)
+                .thenCompose(liberada -> enviar(url))
+                .thenApply(corpo -> {
+                    try {
+                        return leitura.ler(LeitorRespostaAlphaVantage.abrir(corpo));
+                    } catch (LimiteApiExcedidoException e) {
+                        cota.registrarLimiteExcedido(e.isDiario());
+                        LogUtils.logWarn("%s (%s)", e.getMessage(), cota);
+                        throw new CompletionException(e);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    /**
+     * Envia uma requisição GET à API, assim que houver uma conexão livre no pool, e devolve o corpo da resposta. O
+     * corpo é recebido inteiro, sem decodificação para {@link String}, e a conexão volta ao pool para ser reutilizada.
+     *
+     * @param url A URL completa da requisição.
+     * @return Os bytes do corpo da resposta. Conclui com {@link IOException} se a API responder com um status
+     * diferente de 200, ou com {@link java.net.http.HttpTimeoutException} se o tempo limite for excedido.
+     */
+    private CompletableFuture<byte[]> enviar(String url) {
+        HttpRequest requisicao = HttpRequest.newBuilder(URI.create(url))
+                .timeout(timeoutRequisicao)
+                .GET()
+                .build();
+        return conexoes.executar(() -> clienteHttp.sendAsync(requisicao, HttpResponse.BodyHandlers.ofByteArray()))
+                .thenApply(resposta -> {
+                    if (resposta.statusCode() != 200) {
+                        throw new CompletionException(new IOException(
+                                "A API respondeu com o status HTTP " + resposta.statusCode()));
+                    }
+                    return resposta.body();
+                });
+    }
+
+    private static Throwable getCausa(Throwable erro) {
+        return erro instanceof CompletionException && erro.getCause() != null ? erro.getCause() : erro;
+    }
+
+    private static String codificar(String parametro) {
+        return URLEncoder.encode(parametro.trim().toUpperCase(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Registra no metadata da resposta se os dados vieram do cache, se do cache negativo, e a idade deles.
+     *
+     * @param resposta A {@link Mensagem} de resposta.
+     * @param emCache  O valor encontrado no cache, ou {@code null} se os dados foram obtidos da API.
+     */
+    private static void registrarOrigemDosDados(Mensagem resposta, CacheTTL.Valor<JsonObject> emCache) {
+        resposta.adicionarAoMetadata("cache_hit", new JsonPrimitive(emCache != null));
+        // Somente o cache negativo armazena resultados com erro
+        resposta.adicionarAoMetadata("cache_negativo",
+                new JsonPrimitive(emCache != null && emCache.getValor().has("erro")));
+        resposta.adicionarAoMetadata("idade_dados_ms",
+                new JsonPrimitive(emCache != null ? emCache.getIdadeMillis() : 0L));
+    }
+
+    /**
+     * Realiza uma consulta à API AlphaVantage para obter os dados diários de uma ação. A série inteira da resposta é
+     * guardada no repositório de séries, com o símbolo como informado.
+     *
+     * @param simboloAcao O símbolo normalizado da ação a ser consultada.
+     * @return Um objeto JSON contendo os dados da ação consultada. Conclui com {@link IOException} se ocorrer um erro
+     * na conexão com a API ou se a resposta for inválida.
+     */
+    protected CompletableFuture<JsonObject> getDadosAcao(String simboloAcao) {
+        String url = String.format("%s?function=TIME_SERIES_DAILY&symbol=%s&outputsize=%s&apikey=%s",
+                baseUrl, codificar(simboloAcao), TAMANHO_SERIE, API_KEY);
+        return consultar(url, entrada -> LeitorRespostaAlphaVantage.lerDadosAcao(entrada,
+                serie -> series.atualizar(simboloAcao, serie)));
     }
 
     /**
@@ -211,64 +1061,47 @@ public class ServicoAlphaVantageAPI extends Servico {
      *
      * @param moedaReferencia O símbolo da moeda de referência.
      * @param moedaDestino    O símbolo da moeda de destino.
-     * @param valorAConverter O valor a ser convertido.
-     * @return Um objeto JSON contendo os dados da conversão.
-     * @throws IOException Se ocorrer um erro na conexão com a API.
+     * @return Um objeto JSON contendo as moedas e a taxa de câmbio entre elas. Conclui com {@link IOException} se
+     * ocorrer um erro na conexão com a API ou se a resposta for inválida.
      */
-    private static JsonObject getDadosCotacao(String moedaReferencia, String moedaDestino, BigDecimal valorAConverter) throws IOException {
+    protected CompletableFuture<JsonObject> getDadosCotacao(String moedaReferencia, String moedaDestino) {
         String url = String.format("%s?function=CURRENCY_EXCHANGE_RATE&from_currency=%s&to_currency=%s&apikey=%s",
-                BASE_URL, moedaReferencia.trim().toUpperCase(), moedaDestino.trim().toUpperCase(), API_KEY);
-        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
-        connection.setRequestMethod("GET");
-
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-            StringBuilder response = new StringBuilder();
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
-            }
-            JsonObject jsonResponse = JsonParser.parseString(response.toString()).getAsJsonObject();
-            JsonObject respostaConteudo = new JsonObject();
+                baseUrl, codificar(moedaReferencia), codificar(moedaDestino), API_KEY);
+        return consultar(url, LeitorRespostaAlphaVantage::lerDadosCotacao);
+    }
 
-            if (jsonResponse.has("Error Message")) {
-                String errorMessage = jsonResponse.get("Error Message").getAsString();
-                respostaConteudo.addProperty("erro", errorMessage);
-            } else if (jsonResponse.has("Realtime Currency Exchange Rate")) {
-                JsonObject currencyExchangeRate = jsonResponse.getAsJsonObject("Realtime Currency Exchange Rate");
+    private interface Leitura {
+        JsonObject ler(Reader entrada) throws IOException;
+    }
 
-                respostaConteudo.addProperty(
-                        "moedaReferenciaCodigo",
-                        currencyExchangeRate.get("1. From_Currency Code").getAsString()
-                );
-                respostaConteudo.addProperty(
-                        "moedaReferenciaNome",
-                        currencyExchangeRate.get("2. From_Currency Name").getAsString()
-                );
-                respostaConteudo.addProperty(
-                        "moedaDestinoCodigo",
-                        currencyExchangeRate.get("3. To_Currency Code").getAsString()
-                );
-                respostaConteudo.addProperty(
-                        "moedaDestinoNome",
-                        currencyExchangeRate.get("4. To_Currency Name").getAsString()
-                );
-                respostaConteudo.addProperty(
-                        "taxaDeCambio",
-                        currencyExchangeRate.get("5. Exchange Rate").getAsBigDecimal()
-                );
-                respostaConteudo.addProperty(
-                        "valorAConverter",
-                        valorAConverter
-                );
-                respostaConteudo.addProperty(
-                        "valorConvertido",
-                        valorAConverter.multiply(respostaConteudo.get("taxaDeCambio").getAsBigDecimal())
-                );
-            } else {
-                respostaConteudo.addProperty("erro", "Nenhum dado de cotação encontrado.");
-            }
+    /**
+     * Inicialização tardia do cliente HTTP compartilhado, configurado pelas chaves
+     * {@code servico.alpha_vantage_api.http.*}.
+     */
+    private static final class ClienteHttpCompartilhado {
+        private static final HttpClient INSTANCIA = criar();
+
+        private static HttpClient criar() {
+            int threads = Integer.parseInt(ConfigLoader.getConfigValue("servico.alpha_vantage_api.http.threads"));
+            AtomicInteger contador = new AtomicInteger();
+            ExecutorService executor = new ThreadPoolExecutor(
+                    threads,
+                    threads,
+                    0L,
+                    TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(),
+                    tarefa -> {
+                        Thread thread = new Thread(tarefa, "alpha-vantage-http-" + contador.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+            );
 
-            return respostaConteudo;
+            return HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofMillis(Long.parseLong(
+                            ConfigLoader.getConfigValue("servico.alpha_vantage_api.http.timeout_conexao_ms"))))
+                    .executor(executor)
+                    .build();
         }
     }
 }
@@ -0,0 +1,267 @@
+package br.edu.unifei.servicos;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+import br.edu.unifei.modelos.servico.Servico;
+import br.edu.unifei.utils.LogUtils;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Serviço que responde consultas ao histórico diário das ações a partir das séries mantidas pelo
+ * {@link ServicoAlphaVantageAPI}, em memória ou em disco, sem chamadas à API.
+ * <p>
+ * Uma ação só tem série depois de consultada com {@code CONSULTAR_ACAO}, e o período disponível é o devolvido pela API
+ * nas consultas feitas desde o início do servidor. Os parâmetros {@code dataInicio} e {@code dataFim}, no formato
+ * {@code aaaa-mm-dd}, são opcionais e limitam o período consultado; sem eles, a série inteira é usada.
+ * </p>
+ * Suporta as ações:
+ * <ul>
+ *     <li>{@code CONSULTAR_HISTORICO}: os dias do período, em colunas. O parâmetro opcional {@code limite} restringe
+ *     a resposta aos últimos dias do período.</li>
+ *     <li>{@code CONSULTAR_INDICADOR}: o {@code indicador} sobre o preço de fechamento do período: {@code SMA} e
+ *     {@code EMA}, as médias móveis simples e exponencial com o {@code periodo} informado; {@code MIN_MAX}, a menor
+ *     mínima e a maior máxima; e {@code RETORNOS}, as variações diárias e a acumulada, nulas quando o fechamento de
+ *     referência é zero.</li>
+ * </ul>
+ */
+public class ServicoSeriesTemporais extends Servico {
+
+    private final RepositorioSeries series;
+
+    /**
+     * Construtor padrão. Usa as séries obtidas pelo serviço de acesso à API AlphaVantage. Para mais informações,
+     * acessar a classe pai: {@link Servico}.
+     *
+     * @param servicoAlphaVantageAPI O serviço de acesso à API AlphaVantage compartilhado.
+     */
+    public ServicoSeriesTemporais(ServicoAlphaVantageAPI servicoAlphaVantageAPI) {
+        this(servicoAlphaVantageAPI.getSeries());
+    }
+
+    /**
+     * @param series O repositório das séries diárias.
+     */
+    ServicoSeriesTemporais(RepositorioSeries series) {
+        super();
+        this.series = series;
+    }
+
+    /**
+     * Executa o serviço com base na ação especificada na mensagem fornecida.
+     * Suporta as ações "CONSULTAR_HISTORICO" e "CONSULTAR_INDICADOR".
+     *
+     * @param mensagem A {@link Mensagem} de entrada contendo a ação e os parâmetros necessários.
+     * @return A {@link Mensagem} de resposta contendo os resultados da operação.
+     * @throws IllegalArgumentException Se a ação especificada não for suportada.
+     */
+    @Override
+    public Mensagem executar(Mensagem mensagem) {
+        LogUtils.logInfo("Processando mensagem: %s", mensagem);
+
+        String acao = mensagem.getAcao();
+        switch (acao) {
+            case "CONSULTAR_HISTORICO":
+            case "CONSULTAR_INDICADOR":
+                return consultar(mensagem);
+            default:
+                throw new IllegalArgumentException("Ação desconhecida: " + acao);
+        }
+    }
+
+    private Mensagem consultar(Mensagem mensagem) {
+        JsonObject conteudo = mensagem.getConteudo();
+        JsonObject metadata = conteudo.has("metadata")
+                ? conteudo.getAsJsonObject("metadata")
+                : new JsonObject();
+        String simboloAcao = null;
+
+        JsonObject respostaConteudo;
+        try {
+            simboloAcao = lerTexto(conteudo, "simboloAcao");
+            if (simboloAcao == null) {
+                throw new IllegalArgumentException("o parâmetro simboloAcao é obrigatório");
+            }
+            String dataInicio = lerTexto(conteudo, "dataInicio");
+            String dataFim = lerTexto(conteudo, "dataFim");
+            int dataInicial = dataInicio != null ? SerieDiaria.converterData(dataInicio) : Integer.MIN_VALUE;
+            int dataFinal = dataFim != null ? SerieDiaria.converterData(dataFim) : Integer.MAX_VALUE;
+
+            // O histórico só precisa dos dias do período; as médias usam também os dias anteriores a ele
+            String chave = simboloAcao.trim().toUpperCase();
+            boolean historico = "CONSULTAR_HISTORICO".equals(mensagem.getAcao());
+            SerieDiaria serie = historico ? series.getPeriodo(chave, dataInicial, dataFinal) : series.get(chave);
+            if (serie == null) {
+                throw new IllegalArgumentException("não há série armazenada; consulte a ação com CONSULTAR_ACAO");
+            }
+            int inicio = serie.indiceInicial(dataInicial);
+            int fim = serie.indiceFinal(dataFinal);
+            if (inicio >= fim) {
+                throw new IllegalArgumentException("nenhum dia da série no período informado");
+            }
+
+            respostaConteudo = new JsonObject();
+            respostaConteudo.addProperty("simboloAcao", simboloAcao);
+            if (historico) {
+                consultarHistorico(conteudo, serie, inicio, fim, respostaConteudo);
+            } else {
+                consultarIndicador(conteudo, serie, inicio, fim, respostaConteudo);
+            }
+        } catch (IllegalArgumentException e) {
+            LogUtils.logError("Erro ao consultar a série da ação %s: %s", simboloAcao, e.getMessage());
+
+            respostaConteudo = new JsonObject();
+            respostaConteudo.addProperty("erro",
+                    String.format("Erro ao consultar a série da ação %s: %s", simboloAcao, e.getMessage()));
+        }
+        respostaConteudo.add("metadata", metadata);
+
+        return new Mensagem(
+                "RESULTADO_" + mensagem.getAcao(),
+                mensagem.getDestino(),
+                mensagem.getOrigem(),
+                respostaConteudo
+        );
+    }
+
+    private static void consultarHistorico(JsonObject conteudo, SerieDiaria serie, int inicio, int fim,
+                                           JsonObject historico) {
+        String limite = lerTexto(conteudo, "limite");
+        if (limite != null) {
+            int dias = Integer.parseInt(limite);
+            if (dias < 1) {
+                throw new IllegalArgumentException("o limite deve ser positivo");
+            }
+            inicio = Math.max(inicio, fim - dias);
+        }
+
+        adicionarDatas(historico, serie, inicio, fim);
+        historico.add("abertura", precos(serie.getAbertura(), inicio, fim));
+        historico.add("maxima", precos(serie.getMaxima(), inicio, fim));
+        historico.add("minima", precos(serie.getMinima(), inicio, fim));
+        historico.add("fechamento", precos(serie.getFechamento(), inicio, fim));
+        JsonArray volume = new JsonArray(fim - inicio);
+        for (int i = inicio; i < fim; i++) {
+            volume.add(serie.getVolume()[i]);
+        }
+        historico.add("volume", volume);
+    }
+
+    private static void consultarIndicador(JsonObject conteudo, SerieDiaria serie, int inicio, int fim,
+                                           JsonObject resultado) {
+        String indicador = lerTexto(conteudo, "indicador");
+        if (indicador == null) {
+            throw new IllegalArgumentException("o parâmetro indicador é obrigatório");
+        }
+
+        resultado.addProperty("indicador", indicador);
+        long[] fechamento = serie.getFechamento();
+        switch (indicador) {
+            case "SMA":
+            case "EMA": {
+                String parametroPeriodo = lerTexto(conteudo, "periodo");
+                if (parametroPeriodo == null) {
+                    throw new IllegalArgumentException("o parâmetro periodo é obrigatório para " + indicador);
+                }
+                int periodo = Integer.parseInt(parametroPeriodo);
+                if (periodo < 1 || periodo > fim) {
+                    throw new IllegalArgumentException("período fora do tamanho da série: " + periodo);
+                }
+                inicio = Math.max(inicio, periodo - 1);
+                double[] medias = "SMA".equals(indicador)
+                        ? IndicadoresSerie.mediaMovelSimples(fechamento, inicio, fim, periodo)
+                        : IndicadoresSerie.mediaMovelExponencial(fechamento, inicio, fim, periodo);
+                resultado.addProperty("periodo", periodo);
+                adicionarDatas(resultado, serie, inicio, fim);
+                JsonArray valores = new JsonArray(medias.length);
+                for (double media : medias) {
+                    valores.add(SerieDiaria.paraDecimal(Math.round(media)));
+                }
+                resultado.add("valores", valores);
+                break;
+            }
+            case "MIN_MAX": {
+                int minimo = IndicadoresSerie.indiceMinimo(serie.getMinima(), inicio, fim);
+                int maximo = IndicadoresSerie.indiceMaximo(serie.getMaxima(), inicio, fim);
+                adicionarPeriodo(resultado, serie, inicio, fim);
+                resultado.addProperty("minimo", SerieDiaria.paraDecimal(serie.getMinima()[minimo]));
+                resultado.addProperty("dataMinimo", SerieDiaria.formatarData(serie.getDatas()[minimo]));
+                resultado.addProperty("maximo", SerieDiaria.paraDecimal(serie.getMaxima()[maximo]));
+                resultado.addProperty("dataMaximo", SerieDiaria.formatarData(serie.getDatas()[maximo]));
+                break;
+            }
+            case "RETORNOS": {
+                // O primeiro dia da série não tem retorno, mas o de qualquer outro usa o fechamento da véspera
+                inicio = Math.max(inicio, 1);
+                if (inicio >= fim) {
+                    throw new IllegalArgumentException("a série não tem dias suficientes para calcular retornos");
+                }
+                double[] retornos = IndicadoresSerie.retornos(fechamento, inicio, fim);
+                adicionarDatas(resultado, serie, inicio, fim);
+                JsonArray valores = new JsonArray(retornos.length);
+                for (double retorno : retornos) {
+                    valores.add(numeroOuNulo(retorno));
+                }
+                resultado.add("valores", valores);
+                resultado.addProperty("retornoAcumulado",
+                        numeroOuNulo(IndicadoresSerie.retorno(fechamento[inicio - 1], fechamento[fim - 1])));
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("indicador desconhecido: " + indicador);
+        }
+    }
+
+    /**
+     * Adiciona à resposta a primeira e a última data do intervalo e a quantidade de dias.
+     */
+    private static void adicionarPeriodo(JsonObject resposta, SerieDiaria serie, int inicio, int fim) {
+        int[] datas = serie.getDatas();
+        resposta.addProperty("dataInicio", SerieDiaria.formatarData(datas[inicio]));
+        resposta.addProperty("dataFim", SerieDiaria.formatarData(datas[fim - 1]));
+        resposta.addProperty("quantidade", fim - inicio);
+    }
+
+    /**
+     * Adiciona à resposta o período e a coluna com as datas de cada dia do intervalo.
+     */
+    private static void adicionarDatas(JsonObject resposta, SerieDiaria serie, int inicio, int fim) {
+        adicionarPeriodo(resposta, serie, inicio, fim);
+        int[] datas = serie.getDatas();
+        JsonArray colunaDatas = new JsonArray(fim - inicio);
+        for (int i = inicio; i < fim; i++) {
+            colunaDatas.add(SerieDiaria.formatarData(datas[i]));
+        }
+        resposta.add("datas", colunaDatas);
+    }
+
+    private static JsonArray precos(long[] coluna, int inicio, int fim) {
+        JsonArray precos = new JsonArray(fim - inicio);
+        for (int i = inicio; i < fim; i++) {
+            precos.add(SerieDiaria.paraDecimal(coluna[i]));
+        }
+        return precos;
+    }
+
+    /**
+     * @return O parâmetro como texto, aceitando números, ou {@code null} se ausente.
+     * @throws IllegalArgumentException Se o parâmetro for um objeto ou um array.
+     */
+    private static String lerTexto(JsonObject conteudo, String campo) {
+        JsonElement valor = conteudo.get(campo);
+        if (valor == null || valor.isJsonNull()) {
+            return null;
+        }
+        if (!valor.isJsonPrimitive()) {
+            throw new IllegalArgumentException("o parâmetro " + campo + " deve ser um texto ou um número");
+        }
+        return valor.getAsString();
+    }
+
+    /**
+     * @return O valor, ou {@code null} se ele não for um número finito, que o JSON não representa.
+     */
+    private static Double numeroOuNulo(double valor) {
+        return Double.isFinite(valor) ? valor : null;
+    }
+}
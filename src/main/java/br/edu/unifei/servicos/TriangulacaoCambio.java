@@ -0,0 +1,251 @@
+package br.edu.unifei.servicos;
+
+import br.edu.unifei.utils.CacheTTL;
+import com.google.gson.JsonObject;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Deriva taxas de câmbio das cotações em cache, sem chamadas à API. Uma taxa é derivada da cotação do par inverso ou
+ * de duas cotações em relação a uma moeda pivô: a taxa de A para B é a de A para o pivô dividida pela de B para o
+ * pivô. Cada cotação combinada, chamada de perna, pode estar em cache em qualquer um dos dois sentidos.
+ * <p>
+ * Só são combinadas as pernas mais novas que a idade máxima configurada, que pode ser menor que o tempo de vida do
+ * cache, porque a taxa derivada acumula a defasagem das duas. Os pivôs são tentados na ordem configurada.
+ * </p>
+ */
+final class TriangulacaoCambio {
+
+    /**
+     * Precisão das taxas derivadas, em algarismos significativos, o dobro dos oito decimais informados pela API para
+     * as taxas próximas de 1.
+     */
+    static final MathContext PRECISAO = new MathContext(16, RoundingMode.HALF_EVEN);
+
+    private final CacheTTL<String, JsonObject> cache;
+    private final List<String> pivos;
+    private final long idadeMaximaMillis;
+
+    /**
+     * @param cache             O cache das taxas de câmbio, com chaves no formato {@code REFERENCIA/DESTINO}.
+     * @param pivos             Os códigos das moedas pivô, na ordem de preferência.
+     * @param idadeMaximaMillis Idade máxima das cotações combinadas, em milissegundos.
+     */
+    TriangulacaoCambio(CacheTTL<String, JsonObject> cache, List<String> pivos, long idadeMaximaMillis) {
+        this.cache = cache;
+        List<String> normalizados = new ArrayList<>();
+        for (String pivo : pivos) {
+            normalizados.add(pivo.trim().toUpperCase());
+        }
+        this.pivos = Collections.unmodifiableList(normalizados);
+        this.idadeMaximaMillis = idadeMaximaMillis;
+    }
+
+    /**
+     * Deriva a taxa de um par sem cotação direta em cache, a partir do par inverso ou de um pivô.
+     *
+     * @param referencia O código normalizado da moeda de referência.
+     * @param destino    O código normalizado da moeda de destino.
+     * @return A taxa derivada, ou {@code null} se faltar alguma das pernas.
+     */
+    Taxa derivar(String referencia, String destino) {
+        Taxa inversa = buscar(destino, referencia);
+        if (inversa != null) {
+            return inversa.inverter();
+        }
+        for (String pivo : pivos) {
+            if (pivo.equals(referencia) || pivo.equals(destino)) {
+                continue;
+            }
+            Taxa ida = paraPivo(referencia, pivo);
+            Taxa volta = ida != null ? paraPivo(destino, pivo) : null;
+            if (volta != null) {
+                return ida.combinar(volta);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Busca a taxa de uma moeda para o pivô, da cotação em qualquer um dos dois sentidos.
+     *
+     * @param moeda O código normalizado da moeda.
+     * @param pivo  O código normalizado do pivô, diferente da moeda.
+     * @return A taxa, ou {@code null} se não houver cotação recente entre as duas moedas.
+     */
+    Taxa paraPivo(String moeda, String pivo) {
+        Taxa direta = buscar(moeda, pivo);
+        if (direta != null) {
+            return direta;
+        }
+        Taxa inversa = buscar(pivo, moeda);
+        return inversa != null ? inversa.inverter() : null;
+    }
+
+    /**
+     * Busca a cotação direta de um par em cache.
+     *
+     * @param referencia O código normalizado da moeda de referência.
+     * @param destino    O código normalizado da moeda de destino.
+     * @return A taxa cotada, ou {@code null} se não houver cotação recente do par.
+     */
+    Taxa buscar(String referencia, String destino) {
+        CacheTTL.Valor<JsonObject> emCache = cache.espiar(chave(referencia, destino));
+        if (emCache == null || emCache.getIdadeMillis() > idadeMaximaMillis) {
+            return null;
+        }
+        Taxa cotada = cotada(referencia, destino, emCache.getValor(), emCache.getIdadeMillis());
+        return cotada.taxa.signum() > 0 ? cotada : null;
+    }
+
+    /**
+     * @param referencia  O código normalizado da moeda de referência.
+     * @param destino     O código normalizado da moeda de destino.
+     * @param dados       A cotação do par lida da API.
+     * @param idadeMillis A idade da cotação, em milissegundos.
+     * @return A taxa cotada.
+     */
+    static Taxa cotada(String referencia, String destino, JsonObject dados, long idadeMillis) {
+        return new Taxa(referencia, texto(dados, "moedaReferenciaNome"), destino, texto(dados, "moedaDestinoNome"),
+                dados.get("taxaDeCambio").getAsBigDecimal(), Collections.singletonList(chave(referencia, destino)),
+                idadeMillis, null);
+    }
+
+    /**
+     * Escolhe o pivô que liga mais moedas da lista com cotações recentes em cache, e portanto exige menos chamadas à
+     * API para completar a matriz. O próprio pivô, se estiver na lista, conta como ligado. Em caso de empate, vale a
+     * ordem configurada.
+     *
+     * @param moedas Os códigos normalizados das moedas.
+     * @return O pivô escolhido.
+     */
+    String escolherPivo(Collection<String> moedas) {
+        String escolhido = pivos.get(0);
+        int maisLigadas = -1;
+        for (String pivo : pivos) {
+            int ligadas = 0;
+            for (String moeda : moedas) {
+                if (moeda.equals(pivo) || paraPivo(moeda, pivo) != null) {
+                    ligadas++;
+                }
+            }
+            if (ligadas > maisLigadas) {
+                escolhido = pivo;
+                maisLigadas = ligadas;
+            }
+        }
+        return escolhido;
+    }
+
+    static String chave(String referencia, String destino) {
+        return referencia + "/" + destino;
+    }
+
+    private static String texto(JsonObject dados, String campo) {
+        return dados.has(campo) ? dados.get(campo).getAsString() : null;
+    }
+
+    /**
+     * Taxa de câmbio de um par, cotada ou derivada, com as cotações em cache de que foi obtida.
+     */
+    static final class Taxa {
+        private final String referencia;
+        private final String referenciaNome;
+        private final String destino;
+        private final String destinoNome;
+        private final BigDecimal taxa;
+        private final List<String> pernas;
+        private final long idadeMillis;
+        private final String pivo;
+
+        private Taxa(String referencia, String referenciaNome, String destino, String destinoNome, BigDecimal taxa,
+                     List<String> pernas, long idadeMillis, String pivo) {
+            this.referencia = referencia;
+            this.referenciaNome = referenciaNome;
+            this.destino = destino;
+            this.destinoNome = destinoNome;
+            this.taxa = taxa;
+            this.pernas = pernas;
+            this.idadeMillis = idadeMillis;
+            this.pivo = pivo;
+        }
+
+        /**
+         * @return a taxa do par inverso, obtida das mesmas cotações.
+         */
+        Taxa inverter() {
+            return new Taxa(destino, destinoNome, referencia, referenciaNome, BigDecimal.ONE.divide(taxa, PRECISAO),
+                    pernas, idadeMillis, pivo);
+        }
+
+        /**
+         * Combina esta taxa, da referência para o pivô, com a taxa do destino para o mesmo pivô.
+         *
+         * @param destinoParaPivo A taxa da moeda de destino para o pivô.
+         * @return A taxa da referência para o destino.
+         */
+        Taxa combinar(Taxa destinoParaPivo) {
+            List<String> todas = new ArrayList<>(pernas);
+            todas.addAll(destinoParaPivo.pernas);
+            return new Taxa(referencia, referenciaNome, destinoParaPivo.referencia, destinoParaPivo.referenciaNome,
+                    taxa.divide(destinoParaPivo.taxa, PRECISAO), Collections.unmodifiableList(todas),
+                    Math.max(idadeMillis, destinoParaPivo.idadeMillis), destino);
+        }
+
+        /**
+         * @return os dados da taxa nos mesmos campos da cotação lida da API.
+         */
+        JsonObject paraJson() {
+            JsonObject dados = new JsonObject();
+            dados.addProperty("moedaReferenciaCodigo", referencia);
+            if (referenciaNome != null) {
+                dados.addProperty("moedaReferenciaNome", referenciaNome);
+            }
+            dados.addProperty("moedaDestinoCodigo", destino);
+            if (destinoNome != null) {
+                dados.addProperty("moedaDestinoNome", destinoNome);
+            }
+            dados.addProperty("taxaDeCambio", taxa);
+            return dados;
+        }
+
+        String getReferencia() {
+            return referencia;
+        }
+
+        String getReferenciaNome() {
+            return referenciaNome;
+        }
+
+        BigDecimal getTaxa() {
+            return taxa;
+        }
+
+        /**
+         * @return as chaves das cotações em cache de que a taxa foi obtida.
+         */
+        List<String> getPernas() {
+            return pernas;
+        }
+
+        /**
+         * @return a idade da cotação mais antiga entre as combinadas, em milissegundos.
+         */
+        long getIdadeMillis() {
+            return idadeMillis;
+        }
+
+        /**
+         * @return o pivô pelo qual a taxa foi derivada, ou {@code null} se foi cotada ou obtida do par inverso.
+         */
+        String getPivo() {
+            return pivo;
+        }
+    }
+}
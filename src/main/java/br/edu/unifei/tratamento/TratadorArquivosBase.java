@@ -3,9 +3,11 @@ package br.edu.unifei.tratamento;
 import br.edu.unifei.modelos.mensagem.Mensagem;
 import br.edu.unifei.utils.FileUtils;
 import br.edu.unifei.utils.LogUtils;
-import com.google.gson.JsonObject;
+import br.edu.unifei.utils.RelatorioExtracao;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
 
 /**
  * Responsável por processar mensagens relacionadas à conversão e extração de arquivos base. Ele decodifica um bytecode
@@ -14,19 +16,20 @@ import java.io.IOException;
 public class TratadorArquivosBase implements TratadorMensagem {
 
     /**
-     * Processa uma mensagem contendo um bytecode e realiza a decodificação e extração dos arquivos base.
+     * Processa uma mensagem contendo um bytecode e realiza a decodificação e extração dos arquivos base. O bytecode é
+     * lido do payload recebido, decodificado e descompactado em streaming, sem montar o base64 ou o ZIP em memória.
      *
      * @param mensagem A {@link Mensagem} contendo o bytecode a ser processado.
      * @return Uma mensagem de sucesso indicando a conclusão do processamento.
      */
     @Override
     public String processar(Mensagem mensagem) {
-        JsonObject conteudo = mensagem.getConteudo();
-        String bytecode = conteudo.get("resposta").getAsString();
-        LogUtils.logDebug("Bytecode recebido: %s", bytecode);
-
-        try {
-            FileUtils.decodeAndExtractZip("/modelos/", bytecode);
+        try (InputStream bytecode = mensagem.abrirCampoTexto("resposta")) {
+            if (bytecode == null) {
+                throw new IllegalArgumentException("A mensagem não possui o bytecode dos arquivos base.");
+            }
+            RelatorioExtracao relatorio = FileUtils.extractZip("/modelos/", Base64.getDecoder().wrap(bytecode));
+            LogUtils.logInfo("Extração dos arquivos base: %s", relatorio);
         } catch (IOException e) {
             LogUtils.logError("Erro na decodificação e extração dos arquivos base: %s", e.getMessage());
             throw new RuntimeException(e);
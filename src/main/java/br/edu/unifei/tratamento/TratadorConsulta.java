@@ -0,0 +1,30 @@
+package br.edu.unifei.tratamento;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+
+/**
+ * Tratador de mensagens de consulta, cujo resultado é uma {@link Mensagem} de resposta enviada de volta ao barramento.
+ * Devolver a mensagem, em vez do JSON já serializado, permite que cada protocolo a codifique no formato negociado com
+ * a origem.
+ */
+public interface TratadorConsulta extends TratadorMensagem {
+
+    /**
+     * Processa uma mensagem de consulta e retorna a mensagem de resposta.
+     *
+     * @param mensagem A {@link Mensagem} de consulta.
+     * @return A {@link Mensagem} de resposta.
+     */
+    Mensagem consultar(Mensagem mensagem);
+
+    /**
+     * Processa uma mensagem de consulta e retorna a resposta em JSON.
+     *
+     * @param mensagem A {@link Mensagem} de consulta.
+     * @return A representação JSON da resposta.
+     */
+    @Override
+    default String processar(Mensagem mensagem) {
+        return consultar(mensagem).toJson();
+    }
+}
@@ -0,0 +1,33 @@
+package br.edu.unifei.tratamento;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+
+import java.util.function.Consumer;
+
+/**
+ * Tratador de consultas que podem publicar resultados parciais antes da mensagem de resposta, como as consultas em
+ * lote. Os parciais são publicados pelo protocolo da origem, no mesmo formato da resposta, e a resposta só é devolvida
+ * depois de publicados todos eles.
+ */
+public interface TratadorConsultaParcial extends TratadorConsulta {
+
+    /**
+     * Processa uma mensagem de consulta, publicando os resultados parciais, e retorna a mensagem de resposta.
+     *
+     * @param mensagem        A {@link Mensagem} de consulta.
+     * @param publicarParcial Publica um resultado parcial. Pode ser chamado por outras threads, antes do retorno.
+     * @return A {@link Mensagem} de resposta.
+     */
+    Mensagem consultar(Mensagem mensagem, Consumer<Mensagem> publicarParcial);
+
+    /**
+     * Processa uma mensagem de consulta sem publicar resultados parciais: a resposta traz todos os resultados.
+     *
+     * @param mensagem A {@link Mensagem} de consulta.
+     * @return A {@link Mensagem} de resposta.
+     */
+    @Override
+    default Mensagem consultar(Mensagem mensagem) {
+        return consultar(mensagem, null);
+    }
+}
@@ -7,30 +7,32 @@ import com.google.gson.JsonPrimitive;
 /**
  * Responsável por processar mensagens que solicitam a consulta de dados de ações através da API AlphaVantage.
  */
-public class TratadorConsultarAcaoAPI implements TratadorMensagem {
+public class TratadorConsultarAcaoAPI implements TratadorConsulta {
 
     private final ServicoAlphaVantageAPI servicoAlphaVantageAPI;
 
     /**
-     * Construtor da classe. Inicializa o serviço {@link ServicoAlphaVantageAPI} para consulta de ações.
+     * Construtor da classe. Recebe o serviço {@link ServicoAlphaVantageAPI} compartilhado usado para consulta de ações.
+     *
+     * @param servicoAlphaVantageAPI O serviço de acesso à API AlphaVantage.
      */
-    public TratadorConsultarAcaoAPI() {
-        this.servicoAlphaVantageAPI = new ServicoAlphaVantageAPI();
+    public TratadorConsultarAcaoAPI(ServicoAlphaVantageAPI servicoAlphaVantageAPI) {
+        this.servicoAlphaVantageAPI = servicoAlphaVantageAPI;
     }
 
     /**
      * Processa uma mensagem de consulta de ações e retorna os dados correspondentes.
      *
      * @param mensagem A {@link Mensagem} com os dados da ação a ser consultada.
-     * @return Uma representação JSON da resposta da consulta.
+     * @return A {@link Mensagem} de resposta da consulta.
      */
     @Override
-    public String processar(Mensagem mensagem) {
+    public Mensagem consultar(Mensagem mensagem) {
         mensagem.adicionarAoMetadata("timestamp_servidor_processamento_inicio",
                 new JsonPrimitive(System.currentTimeMillis()));
         Mensagem resposta = servicoAlphaVantageAPI.executar(mensagem);
         resposta.adicionarAoMetadata("timestamp_servidor_msg_enviada",
                 new JsonPrimitive(System.currentTimeMillis()));
-        return resposta.toJson();
+        return resposta;
     }
 }
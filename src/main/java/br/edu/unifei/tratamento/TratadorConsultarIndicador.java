@@ -0,0 +1,39 @@
+package br.edu.unifei.tratamento;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+import br.edu.unifei.servicos.ServicoSeriesTemporais;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Responsável por processar mensagens que solicitam a consulta de indicadores sobre o histórico diário de uma ação,
+ * calculados a partir das séries em memória.
+ */
+public class TratadorConsultarIndicador implements TratadorConsulta {
+
+    private final ServicoSeriesTemporais servicoSeriesTemporais;
+
+    /**
+     * Construtor da classe. Recebe o serviço {@link ServicoSeriesTemporais} compartilhado.
+     *
+     * @param servicoSeriesTemporais O serviço de séries temporais.
+     */
+    public TratadorConsultarIndicador(ServicoSeriesTemporais servicoSeriesTemporais) {
+        this.servicoSeriesTemporais = servicoSeriesTemporais;
+    }
+
+    /**
+     * Processa uma mensagem de consulta de indicador e retorna os dados correspondentes.
+     *
+     * @param mensagem A {@link Mensagem} com a ação e o período a serem consultados.
+     * @return A {@link Mensagem} de resposta da consulta.
+     */
+    @Override
+    public Mensagem consultar(Mensagem mensagem) {
+        mensagem.adicionarAoMetadata("timestamp_servidor_processamento_inicio",
+                new JsonPrimitive(System.currentTimeMillis()));
+        Mensagem resposta = servicoSeriesTemporais.executar(mensagem);
+        resposta.adicionarAoMetadata("timestamp_servidor_msg_enviada",
+                new JsonPrimitive(System.currentTimeMillis()));
+        return resposta;
+    }
+}
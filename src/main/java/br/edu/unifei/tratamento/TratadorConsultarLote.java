@@ -0,0 +1,49 @@
+package br.edu.unifei.tratamento;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+import br.edu.unifei.servicos.ServicoAlphaVantageAPI;
+import com.google.gson.JsonPrimitive;
+
+import java.util.function.Consumer;
+
+/**
+ * Responsável por processar mensagens que solicitam a consulta de uma lista de ações ou de pares de moedas através da
+ * API AlphaVantage, respondidas em uma única mensagem ou com um resultado parcial por item.
+ */
+public class TratadorConsultarLote implements TratadorConsultaParcial {
+
+    private final ServicoAlphaVantageAPI servicoAlphaVantageAPI;
+
+    /**
+     * Construtor da classe. Recebe o serviço {@link ServicoAlphaVantageAPI} compartilhado, pelo qual cada item do lote
+     * é consultado.
+     *
+     * @param servicoAlphaVantageAPI O serviço de acesso à API AlphaVantage.
+     */
+    public TratadorConsultarLote(ServicoAlphaVantageAPI servicoAlphaVantageAPI) {
+        this.servicoAlphaVantageAPI = servicoAlphaVantageAPI;
+    }
+
+    /**
+     * Processa uma mensagem de consulta em lote e retorna os resultados, ou o resumo do lote se os resultados foram
+     * publicados como parciais.
+     *
+     * @param mensagem        A {@link Mensagem} com a lista de ações ou de pares de moedas.
+     * @param publicarParcial Publica cada resultado parcial, ou {@code null} para responder o lote completo.
+     * @return A {@link Mensagem} de resposta da consulta.
+     */
+    @Override
+    public Mensagem consultar(Mensagem mensagem, Consumer<Mensagem> publicarParcial) {
+        mensagem.adicionarAoMetadata("timestamp_servidor_processamento_inicio",
+                new JsonPrimitive(System.currentTimeMillis()));
+        Consumer<Mensagem> parciais = publicarParcial == null ? null : parcial -> {
+            parcial.adicionarAoMetadata("timestamp_servidor_msg_enviada",
+                    new JsonPrimitive(System.currentTimeMillis()));
+            publicarParcial.accept(parcial);
+        };
+        Mensagem resposta = servicoAlphaVantageAPI.executarAssincrono(mensagem, parciais).join();
+        resposta.adicionarAoMetadata("timestamp_servidor_msg_enviada",
+                new JsonPrimitive(System.currentTimeMillis()));
+        return resposta;
+    }
+}
@@ -0,0 +1,40 @@
+package br.edu.unifei.tratamento;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+import br.edu.unifei.servicos.ServicoAlphaVantageAPI;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Responsável por processar mensagens que solicitam as taxas de câmbio entre todas as moedas de uma lista, derivadas
+ * das cotações em cache e obtidas da API AlphaVantage apenas quando faltarem.
+ */
+public class TratadorConsultarMatrizMoedas implements TratadorConsulta {
+
+    private final ServicoAlphaVantageAPI servicoAlphaVantageAPI;
+
+    /**
+     * Construtor da classe. Recebe o serviço {@link ServicoAlphaVantageAPI} compartilhado usado para consulta de
+     * câmbio.
+     *
+     * @param servicoAlphaVantageAPI O serviço de acesso à API AlphaVantage.
+     */
+    public TratadorConsultarMatrizMoedas(ServicoAlphaVantageAPI servicoAlphaVantageAPI) {
+        this.servicoAlphaVantageAPI = servicoAlphaVantageAPI;
+    }
+
+    /**
+     * Processa uma mensagem de consulta da matriz de câmbio e retorna as taxas correspondentes.
+     *
+     * @param mensagem A {@link Mensagem} com a lista das moedas da matriz.
+     * @return A {@link Mensagem} de resposta da consulta.
+     */
+    @Override
+    public Mensagem consultar(Mensagem mensagem) {
+        mensagem.adicionarAoMetadata("timestamp_servidor_processamento_inicio",
+                new JsonPrimitive(System.currentTimeMillis()));
+        Mensagem resposta = servicoAlphaVantageAPI.executar(mensagem);
+        resposta.adicionarAoMetadata("timestamp_servidor_msg_enviada",
+                new JsonPrimitive(System.currentTimeMillis()));
+        return resposta;
+    }
+}
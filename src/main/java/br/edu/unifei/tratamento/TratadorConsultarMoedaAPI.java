@@ -8,15 +8,18 @@ import com.google.gson.JsonPrimitive;
  * Responsável por processar mensagens que solicitam a consulta de taxas de câmbio entre moedas através da API
  * AlphaVantage.
  */
-public class TratadorConsultarMoedaAPI implements TratadorMensagem {
+public class TratadorConsultarMoedaAPI implements TratadorConsulta {
 
     private final ServicoAlphaVantageAPI servicoAlphaVantageAPI;
 
     /**
-     * Construtor da classe. Inicializa o serviço {@link ServicoAlphaVantageAPI} para consulta de taxa de câmbio.
+     * Construtor da classe. Recebe o serviço {@link ServicoAlphaVantageAPI} compartilhado usado para consulta de
+     * taxa de câmbio.
+     *
+     * @param servicoAlphaVantageAPI O serviço de acesso à API AlphaVantage.
      */
-    public TratadorConsultarMoedaAPI() {
-        this.servicoAlphaVantageAPI = new ServicoAlphaVantageAPI();
+    public TratadorConsultarMoedaAPI(ServicoAlphaVantageAPI servicoAlphaVantageAPI) {
+        this.servicoAlphaVantageAPI = servicoAlphaVantageAPI;
     }
 
     /**
@@ -24,13 +27,13 @@ public class TratadorConsultarMoedaAPI implements TratadorMensagem {
      * AlphaVantage.
      *
      * @param mensagem A {@link Mensagem} com os dados das moedas a serem consultadas.
-     * @return Uma representação JSON da resposta da consulta.
+     * @return A {@link Mensagem} de resposta da consulta.
      */
     @Override
-    public String processar(Mensagem mensagem) {
+    public Mensagem consultar(Mensagem mensagem) {
         Mensagem resposta = servicoAlphaVantageAPI.executar(mensagem);
         resposta.adicionarAoMetadata("timestamp_servidor_msg_enviada",
                 new JsonPrimitive(System.currentTimeMillis()));
-        return resposta.toJson();
+        return resposta;
     }
 }
@@ -1,45 +1,98 @@
 package br.edu.unifei.tratamento;
 
+import br.edu.unifei.servicos.ServicoAlphaVantageAPI;
+import br.edu.unifei.servicos.ServicoSeriesTemporais;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
- * Essa classe é uma fábrica responsável por gerar instâncias de {@link TratadorMensagem} com base na ação especificada.
+ * Essa classe é uma fábrica responsável por fornecer as instâncias de {@link TratadorMensagem} com base na ação
+ * especificada.
+ * <p>
+ * Os tratadores são criados uma única vez e mantidos em um registro imutável indexado pela ação, por isso devem ser
+ * seguros para uso concorrente. Novas ações podem ser registradas em tempo de execução com
+ * {@link #registrar(String, TratadorMensagem)}, que publica uma nova cópia do registro. Ações sem tratador registrado
+ * usam um tratador padrão compartilhado.
+ * </p>
+ * <p>
+ * O registro inicial traz apenas os tratadores que não dependem de serviços, e carregar esta classe não abre arquivos
+ * nem inicia threads. Os tratadores das consultas são registrados pela inicialização da aplicação com
+ * {@link #registrarConsultas(ServicoAlphaVantageAPI)}, que recebe o serviço já criado e iniciado.
+ * </p>
  */
 public class TratadorMensagemFactory {
 
+    private static final Gson GSON_FORMATADO = new GsonBuilder().setPrettyPrinting().create();
+
+    private static final TratadorMensagem TRATADOR_PADRAO = mensagem -> {
+        JsonObject conteudo = mensagem.getConteudo();
+        return conteudo.has("resultado")
+                ? conteudo.get("resultado").getAsString()
+                : String.format("A ação %s não possui tratamento definido.", mensagem.getAcao());
+    };
+
+    private static volatile Map<String, TratadorMensagem> tratadores = criarTratadoresPadrao();
+
     /**
-     * Retorna uma instância de {@link TratadorMensagem} com base na ação fornecida.
+     * Retorna a instância de {@link TratadorMensagem} registrada para a ação fornecida.
      *
      * @param acao A ação para a qual um tratador de mensagem deve ser retornado.
-     * @return Uma instância de uma das implementações de {@link TratadorMensagem} correspondente à ação.
+     * @return O tratador registrado para a ação, ou o tratador padrão se a ação não possuir tratamento definido.
      */
     public static TratadorMensagem getTratador(String acao) {
-        switch (acao) {
-            case "ARQUIVOS_BASE":
-                return new TratadorArquivosBase();
-            case "RESULTADO_BUSCA":
-                return new TratadorResultadoBusca();
-            case "CONSULTAR_ACAO":
-                return new TratadorConsultarAcaoAPI();
-            case "CONSULTAR_MOEDA":
-                return new TratadorConsultarMoedaAPI();
-            case "ENVIAR_MENSAGEM":
-                return mensagem -> {
-                    String conteudo = mensagem.getConteudo().toString();
-                    Gson gson = new GsonBuilder().setPrettyPrinting().create();
-                    JsonObject json = gson.fromJson(conteudo, JsonObject.class);
-                    return "Mensagem recebida de '" + mensagem.getOrigem() + "'. " +
-                            "Conteúdo da mensagem:\n" + gson.toJson(json);
-                };
-            default:
-                return mensagem -> {
-                    JsonObject conteudo = mensagem.getConteudo();
-                    return conteudo.has("resultado")
-                            ? conteudo.get("resultado").getAsString()
-                            : String.format("A ação %s não possui tratamento definido.", mensagem.getAcao());
-                };
-        }
+        return tratadores.getOrDefault(acao, TRATADOR_PADRAO);
+    }
+
+    /**
+     * Registra, ou substitui, o tratador de uma ação. O tratador passa a ser compartilhado por todas as mensagens com
+     * essa ação, podendo ser executado por várias threads ao mesmo tempo.
+     *
+     * @param acao     A ação tratada.
+     * @param tratador O {@link TratadorMensagem} da ação.
+     */
+    public static synchronized void registrar(String acao, TratadorMensagem tratador) {
+        Map<String, TratadorMensagem> novosTratadores = new HashMap<>(tratadores);
+        novosTratadores.put(acao, tratador);
+        tratadores = Collections.unmodifiableMap(novosTratadores);
+    }
+
+    /**
+     * Registra, ou substitui, os tratadores das consultas à API e às séries temporais, todos sobre o mesmo serviço. Os
+     * novos tratadores são publicados juntos, em uma única cópia do registro.
+     *
+     * @param servicoAlphaVantageAPI O serviço compartilhado pelas consultas, criado e iniciado por quem chama.
+     */
+    public static synchronized void registrarConsultas(ServicoAlphaVantageAPI servicoAlphaVantageAPI) {
+        ServicoSeriesTemporais servicoSeriesTemporais = new ServicoSeriesTemporais(servicoAlphaVantageAPI);
+
+        Map<String, TratadorMensagem> novosTratadores = new HashMap<>(tratadores);
+        novosTratadores.put("CONSULTAR_ACAO", new TratadorConsultarAcaoAPI(servicoAlphaVantageAPI));
+        novosTratadores.put("CONSULTAR_MOEDA", new TratadorConsultarMoedaAPI(servicoAlphaVantageAPI));
+        novosTratadores.put("CONSULTAR_MATRIZ_MOEDAS", new TratadorConsultarMatrizMoedas(servicoAlphaVantageAPI));
+        TratadorConsultarLote tratadorLote = new TratadorConsultarLote(servicoAlphaVantageAPI);
+        novosTratadores.put("CONSULTAR_ACAO_LOTE", tratadorLote);
+        novosTratadores.put("CONSULTAR_MOEDA_LOTE", tratadorLote);
+        novosTratadores.put("CONSULTAR_HISTORICO", new TratadorConsultarHistorico(servicoSeriesTemporais));
+        novosTratadores.put("CONSULTAR_INDICADOR", new TratadorConsultarIndicador(servicoSeriesTemporais));
+        tratadores = Collections.unmodifiableMap(novosTratadores);
+    }
+
+    /**
+     * Cria o registro inicial com os tratadores que não dependem de serviços.
+     *
+     * @return Um mapa imutável de ação para {@link TratadorMensagem}.
+     */
+    private static Map<String, TratadorMensagem> criarTratadoresPadrao() {
+        Map<String, TratadorMensagem> mapa = new HashMap<>();
+        mapa.put("ARQUIVOS_BASE", new TratadorArquivosBase());
+        mapa.put("RESULTADO_BUSCA", new TratadorResultadoBusca());
+        mapa.put("ENVIAR_MENSAGEM", mensagem -> "Mensagem recebida de '" + mensagem.getOrigem() + "'. " +
+                "Conteúdo da mensagem:\n" + GSON_FORMATADO.toJson(mensagem.getConteudo()));
+        return Collections.unmodifiableMap(mapa);
     }
 }
@@ -3,7 +3,9 @@ package br.edu.unifei.tratamento;
 import br.edu.unifei.modelos.mensagem.Mensagem;
 import br.edu.unifei.utils.FileUtils;
 import br.edu.unifei.utils.LogUtils;
-import com.google.gson.JsonObject;
+
+import java.io.InputStream;
+import java.util.Base64;
 
 /**
  * Responsável por processar mensagens relacionadas ao resultado de buscas, lidando com erros e salvando arquivos quando
@@ -13,23 +15,25 @@ public class TratadorResultadoBusca implements TratadorMensagem {
 
     /**
      * Processa uma mensagem contendo o resultado de uma busca e lida com possíveis erros ou salva arquivos conforme
-     * necessário.
+     * necessário. O bytecode do serviço é decodificado e gravado em streaming a partir do payload recebido.
      *
      * @param mensagem A {@link Mensagem} contendo o resultado da busca.
      * @return Uma mensagem indicando o sucesso ou erro do processamento.
      */
     @Override
     public String processar(Mensagem mensagem) {
-        JsonObject conteudo = mensagem.getConteudo();
+        String erro = mensagem.getCampoTexto("erro");
 
-        if (conteudo.has("erro")) {
-            return conteudo.get("erro").getAsString();
+        if (erro != null) {
+            return erro;
         } else {
-            String nomeServico = conteudo.get("nome").getAsString();
-            String bytecode = conteudo.get("bytecode").getAsString();
+            String nomeServico = mensagem.getCampoTexto("nome");
 
-            try {
-                FileUtils.decodeAndSaveFile("/servicos/", nomeServico + ".java", bytecode);
+            try (InputStream bytecode = mensagem.abrirCampoTexto("bytecode")) {
+                if (bytecode == null) {
+                    throw new IllegalArgumentException("A mensagem não possui o bytecode do serviço.");
+                }
+                FileUtils.saveFile("/servicos/", nomeServico + ".java", Base64.getDecoder().wrap(bytecode));
             } catch (Exception e) {
                 LogUtils.logError("Erro na decodificação e extração do arquivo do serviço %s: %s", nomeServico, e.getMessage());
                 throw new RuntimeException(e);
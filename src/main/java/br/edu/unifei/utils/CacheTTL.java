@@ -0,0 +1,255 @@
+package br.edu.unifei.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache limitado por quantidade de entradas e por tempo de vida. Quando a capacidade é atingida, a entrada usada há
+ * mais tempo é removida (LRU); entradas mais antigas que o TTL são descartadas na leitura. Só {@link #get} e
+ * {@link #put} contam como uso: {@link #espiar} e {@link #getIdadeMillis} não alteram a ordem de remoção.
+ * <p>
+ * O acesso é sincronizado na própria instância, o que é suficiente para o uso em frente a chamadas de rede, cujo custo
+ * é ordens de grandeza maior que o da consulta ao cache. Os valores armazenados são compartilhados entre as leituras e
+ * não devem ser alterados.
+ * </p>
+ *
+ * @param <K> O tipo das chaves.
+ * @param <V> O tipo dos valores.
+ */
+public class CacheTTL<K, V> {
+
+    private final int capacidade;
+    private final long ttlNanos;
+    private final LongSupplier relogio;
+    private final LinkedHashMap<K, Entrada<V>> entradas;
+
+    private long acertos;
+    private long falhas;
+    private long remocoes;
+    private long expiracoes;
+
+    /**
+     * @param capacidade Quantidade máxima de entradas.
+     * @param ttlMillis  Tempo de vida das entradas, em milissegundos.
+     */
+    public CacheTTL(int capacidade, long ttlMillis) {
+        this(capacidade, ttlMillis, System::nanoTime);
+    }
+
+    /**
+     * @param capacidade Quantidade máxima de entradas.
+     * @param ttlMillis  Tempo de vida das entradas, em milissegundos.
+     * @param relogio    Fonte de tempo em nanossegundos, substituível nos testes.
+     */
+    CacheTTL(int capacidade, long ttlMillis, LongSupplier relogio) {
+        this.capacidade = capacidade;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.relogio = relogio;
+        // Em ordem de inserção: get e put reinserem a entrada para marcá-la como a usada mais recentemente
+        this.entradas = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entrada<V>> maisAntiga) {
+                if (size() > CacheTTL.this.capacidade) {
+                    remocoes++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Busca um valor ainda dentro do tempo de vida.
+     *
+     * @param chave A chave buscada.
+     * @return O {@link Valor} encontrado, com a idade do dado, ou {@code null} se a chave não existir ou tiver
+     * expirado.
+     */
+    public synchronized Valor<V> get(K chave) {
+        Entrada<V> entrada = entradas.get(chave);
+        long agora = relogio.getAsLong();
+        if (entrada != null && agora - entrada.armazenadoEm >= ttlNanos) {
+            entradas.remove(chave);
+            expiracoes++;
+            entrada = null;
+        }
+        if (entrada == null) {
+            falhas++;
+            return null;
+        }
+        acertos++;
+        entradas.remove(chave);
+        entradas.put(chave, entrada);
+        return new Valor<>(entrada.valor, TimeUnit.NANOSECONDS.toMillis(agora - entrada.armazenadoEm));
+    }
+
+    /**
+     * Armazena um valor, substituindo o anterior da mesma chave e reiniciando seu tempo de vida.
+     *
+     * @param chave A chave do valor.
+     * @param valor O valor armazenado.
+     */
+    public synchronized void put(K chave, V valor) {
+        entradas.remove(chave);
+        entradas.put(chave, new Entrada<>(valor, relogio.getAsLong()));
+    }
+
+    /**
+     * Armazena um valor obtido anteriormente, com o tempo de vida contado a partir da sua obtenção. Usado para
+     * recarregar o cache com dados guardados fora dele.
+     *
+     * @param chave       A chave do valor.
+     * @param valor       O valor armazenado.
+     * @param idadeMillis Há quanto tempo o valor foi obtido, em milissegundos.
+     */
+    public synchronized void put(K chave, V valor, long idadeMillis) {
+        entradas.remove(chave);
+        entradas.put(chave, new Entrada<>(valor, relogio.getAsLong() - TimeUnit.MILLISECONDS.toNanos(idadeMillis)));
+    }
+
+    /**
+     * Informa a idade de um valor sem contar como leitura nos acertos e falhas nem como uso na ordem de remoção.
+     * Usado para decidir quando atualizar uma entrada antes que ela expire.
+     *
+     * @param chave A chave buscada.
+     * @return A idade do valor em milissegundos, ou {@code -1} se a chave não existir ou tiver expirado.
+     */
+    public synchronized long getIdadeMillis(K chave) {
+        Entrada<V> entrada = entradas.get(chave);
+        if (entrada == null) {
+            return -1;
+        }
+        long idade = relogio.getAsLong() - entrada.armazenadoEm;
+        return idade >= ttlNanos ? -1 : TimeUnit.NANOSECONDS.toMillis(idade);
+    }
+
+    /**
+     * Busca um valor ainda dentro do tempo de vida sem contar como leitura nos acertos e falhas nem como uso na ordem
+     * de remoção. Usado para combinar valores armazenados sem que as buscas auxiliares distorçam as estatísticas do
+     * cache ou mantenham nele entradas que ninguém mais consulta.
+     *
+     * @param chave A chave buscada.
+     * @return O {@link Valor} encontrado, com a idade do dado, ou {@code null} se a chave não existir ou tiver
+     * expirado.
+     */
+    public synchronized Valor<V> espiar(K chave) {
+        Entrada<V> entrada = entradas.get(chave);
+        if (entrada == null) {
+            return null;
+        }
+        long idade = relogio.getAsLong() - entrada.armazenadoEm;
+        return idade >= ttlNanos ? null : new Valor<>(entrada.valor, TimeUnit.NANOSECONDS.toMillis(idade));
+    }
+
+    /**
+     * Remove as entradas expiradas. A remoção também acontece na leitura, este método apenas libera a memória de
+     * chaves que não voltaram a ser consultadas.
+     */
+    public synchronized void removerExpiradas() {
+        long agora = relogio.getAsLong();
+        Iterator<Entrada<V>> iterador = entradas.values().iterator();
+        while (iterador.hasNext()) {
+            if (agora - iterador.next().armazenadoEm >= ttlNanos) {
+                iterador.remove();
+                expiracoes++;
+            }
+        }
+    }
+
+    /**
+     * @return a quantidade máxima de entradas.
+     */
+    public int getCapacidade() {
+        return capacidade;
+    }
+
+    /**
+     * @return o tempo de vida das entradas, em milissegundos.
+     */
+    public long getTtlMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+    }
+
+    /**
+     * @return a quantidade de entradas armazenadas, incluindo as expiradas ainda não removidas.
+     */
+    public synchronized int getTamanho() {
+        return entradas.size();
+    }
+
+    /**
+     * @return a quantidade de leituras que encontraram um valor válido.
+     */
+    public synchronized long getAcertos() {
+        return acertos;
+    }
+
+    /**
+     * @return a quantidade de leituras que não encontraram um valor válido.
+     */
+    public synchronized long getFalhas() {
+        return falhas;
+    }
+
+    /**
+     * @return a quantidade de entradas removidas por falta de capacidade.
+     */
+    public synchronized long getRemocoes() {
+        return remocoes;
+    }
+
+    /**
+     * @return a quantidade de entradas removidas por terem expirado.
+     */
+    public synchronized long getExpiracoes() {
+        return expiracoes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d entradas, %d acertos, %d falhas, %d remoções, %d expirações",
+                entradas.size(), acertos, falhas, remocoes, expiracoes);
+    }
+
+    /**
+     * Valor lido do cache, acompanhado da idade do dado.
+     *
+     * @param <V> O tipo do valor.
+     */
+    public static final class Valor<V> {
+        private final V valor;
+        private final long idadeMillis;
+
+        private Valor(V valor, long idadeMillis) {
+            this.valor = valor;
+            this.idadeMillis = idadeMillis;
+        }
+
+        /**
+         * @return o valor armazenado.
+         */
+        public V getValor() {
+            return valor;
+        }
+
+        /**
+         * @return o tempo, em milissegundos, desde que o valor foi armazenado.
+         */
+        public long getIdadeMillis() {
+            return idadeMillis;
+        }
+    }
+
+    private static final class Entrada<V> {
+        private final V valor;
+        private final long armazenadoEm;
+
+        private Entrada(V valor, long armazenadoEm) {
+            this.valor = valor;
+            this.armazenadoEm = armazenadoEm;
+        }
+    }
+}
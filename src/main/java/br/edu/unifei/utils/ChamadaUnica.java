@@ -0,0 +1,84 @@
+package br.edu.unifei.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Agrupa chamadas idênticas feitas ao mesmo tempo: o primeiro pedido de uma chave inicia a chamada e os demais que
+ * pedirem a mesma chave enquanto ela estiver em andamento recebem a mesma chamada, com o mesmo resultado ou a mesma
+ * falha. Terminada a chamada, a chave é liberada e o próximo pedido inicia uma nova chamada.
+ * <p>
+ * O resultado é compartilhado entre todos os pedidos atendidos pela chamada e não deve ser alterado; quem precisar
+ * modificá-lo deve trabalhar sobre uma cópia.
+ * </p>
+ *
+ * @param <K> O tipo das chaves que identificam chamadas idênticas.
+ * @param <V> O tipo do resultado das chamadas.
+ */
+public class ChamadaUnica<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> emAndamento = new ConcurrentHashMap<>();
+    private final AtomicLong executadas = new AtomicLong();
+    private final AtomicLong compartilhadas = new AtomicLong();
+
+    /**
+     * Inicia a chamada, ou retorna a chamada com a mesma chave que já esteja em andamento.
+     *
+     * @param chave   A chave que identifica a chamada.
+     * @param chamada Inicia a chamada caso nenhuma outra com a mesma chave esteja em andamento. É executada na thread
+     *                que pediu a chave.
+     * @return O resultado da chamada, compartilhado com os demais pedidos da mesma chave.
+     */
+    public CompletableFuture<V> executar(K chave, Supplier<CompletableFuture<V>> chamada) {
+        CompletableFuture<V> nova = new CompletableFuture<>();
+        CompletableFuture<V> existente = emAndamento.putIfAbsent(chave, nova);
+        if (existente != null) {
+            compartilhadas.incrementAndGet();
+            return existente;
+        }
+
+        executadas.incrementAndGet();
+        CompletableFuture<V> iniciada;
+        try {
+            iniciada = chamada.get();
+        } catch (RuntimeException e) {
+            iniciada = CompletableFuture.failedFuture(e);
+        }
+        // A chave é liberada antes de concluir, para que quem receber o resultado já possa iniciar uma nova chamada
+        iniciada.whenComplete((resultado, erro) -> {
+            emAndamento.remove(chave, nova);
+            if (erro != null) {
+                nova.completeExceptionally(erro instanceof CompletionException && erro.getCause() != null
+                        ? erro.getCause()
+                        : erro);
+            } else {
+                nova.complete(resultado);
+            }
+        });
+        return nova;
+    }
+
+    /**
+     * @return a quantidade de chamadas efetivamente executadas.
+     */
+    public long getExecutadas() {
+        return executadas.get();
+    }
+
+    /**
+     * @return a quantidade de pedidos atendidos pelo resultado de uma chamada já em andamento.
+     */
+    public long getCompartilhadas() {
+        return compartilhadas.get();
+    }
+
+    /**
+     * @return a quantidade de chamadas em andamento no momento.
+     */
+    public int getEmAndamento() {
+        return emAndamento.size();
+    }
+}
@@ -1,7 +1,9 @@
 package br.edu.unifei.utils;
 
 import java.io.InputStream;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 
 /**
  * Responsável por carregar e fornecer as configurações da aplicação a partir de um arquivo de propriedades.
@@ -32,4 +34,20 @@ public class ConfigLoader {
     public static String getConfigValue(String key) {
         return properties.getProperty(key);
     }
+
+    /**
+     * Obtém todas as configurações cujas chaves começam com o prefixo especificado.
+     *
+     * @param prefixo O prefixo das chaves, incluindo o ponto final.
+     * @return Os valores encontrados, indexados pelo restante da chave após o prefixo, em ordem alfabética.
+     */
+    public static Map<String, String> getConfigValues(String prefixo) {
+        Map<String, String> valores = new TreeMap<>();
+        for (String chave : properties.stringPropertyNames()) {
+            if (chave.startsWith(prefixo)) {
+                valores.put(chave.substring(prefixo.length()), properties.getProperty(chave));
+            }
+        }
+        return valores;
+    }
 }
@@ -0,0 +1,329 @@
+package br.edu.unifei.utils;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Extrai arquivos ZIP gravando as entradas em paralelo. O ZIP é lido em streaming por uma única thread, que carrega
+ * cada entrada em memória e entrega a gravação a um conjunto limitado de threads. A memória ocupada pelas entradas
+ * aguardando gravação é limitada por {@code maxBytesEmMemoria}; entradas maiores que um quarto desse limite, ou
+ * lidas quando a memória reservada pelas gravações pendentes não deixa espaço para elas, são gravadas em streaming
+ * pela própria thread de leitura.
+ * <p>
+ * Entradas cujo tamanho e CRC-32 coincidem com os do arquivo já existente em disco são ignoradas. As demais são
+ * gravadas em um arquivo temporário no mesmo diretório e movidas atomicamente para o destino, de modo que leitores
+ * nunca encontrem um arquivo gravado pela metade.
+ * </p>
+ */
+public class ExtratorZip {
+
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore bytesEmMemoria;
+    private final int limiteEntradaEmMemoria;
+
+    /**
+     * @param threads           Quantidade de threads de gravação.
+     * @param maxBytesEmMemoria Quantidade máxima de bytes de entradas lidas aguardando gravação.
+     */
+    public ExtratorZip(int threads, int maxBytesEmMemoria) {
+        this.bytesEmMemoria = new Semaphore(maxBytesEmMemoria);
+        this.limiteEntradaEmMemoria = Math.max(1, maxBytesEmMemoria / 4);
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                tarefa -> {
+                    Thread thread = new Thread(tarefa, "extrator-zip-" + contador.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+    }
+
+    /**
+     * Retorna o extrator compartilhado, criado a partir das chaves {@code extracao.*} do arquivo
+     * {@code config.properties}.
+     *
+     * @return A instância compartilhada de {@code ExtratorZip}.
+     */
+    public static ExtratorZip getInstancia() {
+        return InstanciaCompartilhada.INSTANCIA;
+    }
+
+    /**
+     * Extrai um ZIP lido em streaming no diretório informado. Entradas cujo caminho resolvido fique fora do diretório
+     * de saída são recusadas. Em caso de erro, as gravações já entregues às threads são concluídas antes de a exceção
+     * ser lançada.
+     *
+     * @param zipStream O stream com os bytes do arquivo ZIP.
+     * @param outputDir O diretório de saída.
+     * @return O {@link RelatorioExtracao} com os arquivos gravados e ignorados e a vazão da extração.
+     * @throws IOException Se ocorrer um erro na leitura ou gravação, ou se alguma entrada apontar para fora do
+     *                     diretório de saída.
+     */
+    public RelatorioExtracao extrair(InputStream zipStream, File outputDir) throws IOException {
+        long inicio = System.nanoTime();
+        File diretorioBase = outputDir.getCanonicalFile();
+        FileUtils.criarDiretorio(diretorioBase);
+
+        Contadores contadores = new Contadores();
+        List<Future<?>> gravacoes = new ArrayList<>();
+        byte[] buffer = new byte[TAMANHO_BUFFER];
+        IOException erro = null;
+
+        try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(zipStream, TAMANHO_BUFFER))) {
+            ZipEntry zipEntry;
+            while ((zipEntry = zis.getNextEntry()) != null) {
+                File outputFile = FileUtils.resolverDentroDe(diretorioBase, zipEntry.getName());
+                if (zipEntry.isDirectory()) {
+                    FileUtils.criarDiretorio(outputFile);
+                } else {
+                    FileUtils.criarDiretorio(outputFile.getParentFile());
+                    Future<?> gravacao = lerEntrada(zis, zipEntry.getSize(), outputFile, buffer, contadores);
+                    if (gravacao != null) {
+                        gravacoes.add(gravacao);
+                    }
+                }
+                zis.closeEntry();
+            }
+        } catch (IOException e) {
+            erro = e;
+        }
+
+        erro = aguardarGravacoes(gravacoes, erro);
+        if (erro != null) {
+            throw erro;
+        }
+        return new RelatorioExtracao(contadores.gravados.get(), contadores.ignorados.get(),
+                contadores.bytesGravados.get(), contadores.bytesLidos.get(), System.nanoTime() - inicio);
+    }
+
+    /**
+     * Lê a entrada atual do ZIP. Entradas que cabem no limite são carregadas em memória e gravadas por uma thread do
+     * executor; as maiores são gravadas em streaming na thread atual.
+     * <p>
+     * A memória de uma entrada é reservada de uma só vez antes da leitura: o tamanho declarado ou, se ele não for
+     * conhecido, o limite por entrada. Se a reserva não estiver disponível, a entrada também é gravada em streaming,
+     * em vez de a leitura esperar por memória que só as gravações pendentes podem liberar.
+     * </p>
+     *
+     * @return A gravação entregue ao executor, ou {@code null} se a entrada já foi gravada.
+     */
+    private Future<?> lerEntrada(ZipInputStream zis, long tamanhoDeclarado, File destino, byte[] buffer,
+                                 Contadores contadores) throws IOException {
+        int reserva = tamanhoDeclarado >= 0 ? (int) Math.min(tamanhoDeclarado, limiteEntradaEmMemoria)
+                : limiteEntradaEmMemoria;
+        if (tamanhoDeclarado > limiteEntradaEmMemoria || !bytesEmMemoria.tryAcquire(reserva)) {
+            gravarEmStreaming(zis, destino, new byte[0], 0, buffer, contadores);
+            return null;
+        }
+
+        byte[] dados = new byte[0];
+        int tamanho = 0;
+        int capacidade = tamanhoDeclarado >= 0 ? reserva : TAMANHO_BUFFER;
+        try {
+            while (true) {
+                if (tamanho == dados.length) {
+                    if (tamanho == tamanhoDeclarado) {
+                        if (zis.read() < 0) {
+                            break;
+                        }
+                        throw new ZipException("Entrada maior que o tamanho declarado: " + destino.getName());
+                    }
+                    if (tamanho >= reserva) {
+                        // Tamanho não declarado e maior que o limite: continua em streaming com o que já foi lido
+                        gravarEmStreaming(zis, destino, dados, tamanho, buffer, contadores);
+                        bytesEmMemoria.release(reserva);
+                        return null;
+                    }
+                    // O array cresce dentro da reserva já obtida, sem adquirir mais memória no meio da leitura
+                    dados = Arrays.copyOf(dados, Math.min(reserva, Math.max(capacidade, dados.length * 2)));
+                }
+                int lidos = zis.read(dados, tamanho, dados.length - tamanho);
+                if (lidos < 0) {
+                    break;
+                }
+                tamanho += lidos;
+            }
+        } catch (IOException | RuntimeException e) {
+            bytesEmMemoria.release(reserva);
+            throw e;
+        }
+
+        byte[] conteudo = dados;
+        int tamanhoConteudo = tamanho;
+        return executor.submit(() -> {
+            try {
+                gravarSeAlterado(destino, conteudo, tamanhoConteudo, contadores);
+                return null;
+            } finally {
+                bytesEmMemoria.release(reserva);
+            }
+        });
+    }
+
+    /**
+     * Grava uma entrada carregada em memória, a menos que o arquivo em disco já tenha o mesmo tamanho e CRC-32.
+     */
+    private static void gravarSeAlterado(File destino, byte[] dados, int tamanho, Contadores contadores)
+            throws IOException {
+        contadores.bytesLidos.addAndGet(tamanho);
+        CRC32 crc = new CRC32();
+        crc.update(dados, 0, tamanho);
+        if (destino.isFile() && destino.length() == tamanho && calcularCrc(destino) == crc.getValue()) {
+            contadores.ignorados.incrementAndGet();
+            return;
+        }
+
+        Path temporario = criarTemporario(destino);
+        try {
+            try (OutputStream saida = Files.newOutputStream(temporario)) {
+                saida.write(dados, 0, tamanho);
+            }
+            mover(temporario, destino);
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+        contadores.gravados.incrementAndGet();
+        contadores.bytesGravados.addAndGet(tamanho);
+    }
+
+    /**
+     * Grava uma entrada grande em um arquivo temporário enquanto calcula o CRC-32, e só a move para o destino se ela
+     * for diferente do arquivo existente.
+     */
+    private static void gravarEmStreaming(InputStream entrada, File destino, byte[] lidos, int tamanhoLido,
+                                          byte[] buffer, Contadores contadores) throws IOException {
+        CRC32 crc = new CRC32();
+        long tamanho = tamanhoLido;
+        Path temporario = criarTemporario(destino);
+        try {
+            try (OutputStream saida = Files.newOutputStream(temporario)) {
+                saida.write(lidos, 0, tamanhoLido);
+                crc.update(lidos, 0, tamanhoLido);
+                int length;
+                while ((length = entrada.read(buffer)) > 0) {
+                    saida.write(buffer, 0, length);
+                    crc.update(buffer, 0, length);
+                    tamanho += length;
+                }
+            }
+
+            contadores.bytesLidos.addAndGet(tamanho);
+            if (destino.isFile() && destino.length() == tamanho && calcularCrc(destino) == crc.getValue()) {
+                contadores.ignorados.incrementAndGet();
+                return;
+            }
+            mover(temporario, destino);
+            contadores.gravados.incrementAndGet();
+            contadores.bytesGravados.addAndGet(tamanho);
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+    }
+
+    private static Path criarTemporario(File destino) throws IOException {
+        return Files.createTempFile(destino.getParentFile().toPath(), "." + destino.getName() + "-", ".tmp");
+    }
+
+    /**
+     * Substitui o destino pelo arquivo temporário com uma renomeação atômica, quando o sistema de arquivos permitir.
+     */
+    private static void mover(Path temporario, File destino) throws IOException {
+        try {
+            Files.move(temporario, destino.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporario, destino.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static long calcularCrc(File arquivo) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[(int) Math.min(TAMANHO_BUFFER, Math.max(1, arquivo.length()))];
+        try (InputStream entrada = new FileInputStream(arquivo)) {
+            int length;
+            while ((length = entrada.read(buffer)) > 0) {
+                crc.update(buffer, 0, length);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Aguarda todas as gravações, mesmo após um erro, para que nenhuma thread continue gravando depois do retorno.
+     *
+     * @return O primeiro erro ocorrido, ou {@code null}.
+     */
+    private static IOException aguardarGravacoes(List<Future<?>> gravacoes, IOException erro) {
+        boolean interrompida = false;
+        for (Future<?> gravacao : gravacoes) {
+            while (true) {
+                try {
+                    gravacao.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrompida = true;
+                } catch (ExecutionException e) {
+                    if (erro == null) {
+                        erro = e.getCause() instanceof IOException
+                                ? (IOException) e.getCause()
+                                : new IOException(e.getCause());
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrompida) {
+            Thread.currentThread().interrupt();
+        }
+        return erro;
+    }
+
+    /**
+     * Contadores de uma extração, atualizados pelas threads de gravação.
+     */
+    private static final class Contadores {
+        private final AtomicInteger gravados = new AtomicInteger();
+        private final AtomicInteger ignorados = new AtomicInteger();
+        private final AtomicLong bytesGravados = new AtomicLong();
+        private final AtomicLong bytesLidos = new AtomicLong();
+    }
+
+    /**
+     * Inicialização tardia da instância compartilhada.
+     */
+    private static final class InstanciaCompartilhada {
+        private static final ExtratorZip INSTANCIA = new ExtratorZip(
+                Integer.parseInt(ConfigLoader.getConfigValue("extracao.threads")),
+                Integer.parseInt(ConfigLoader.getConfigValue("extracao.max_bytes_em_memoria"))
+        );
+    }
+}
@@ -1,12 +1,16 @@
 package br.edu.unifei.utils;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 public class FileUtils {
 
+    /**
+     * Tamanho dos buffers de leitura e escrita usados na extração e gravação de arquivos.
+     */
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
     /**
      * Descodifica o bytecode Base64, verifica se é um arquivo ZIP e descompacta no caminho base.
      *
@@ -15,43 +19,38 @@ public class FileUtils {
      * @throws IOException Se ocorrer um erro na leitura ou escrita dos arquivos.
      */
     public static void decodeAndExtractZip(String outputDir, String base64Bytecode) throws IOException {
-        String baseDir = getResourcePath();
-
-        // Decodificar o bytecode Base64 para um array de bytes
-        byte[] zipBytes = Base64.getDecoder().decode(base64Bytecode);
-
-        // Criar um InputStream para ler os bytes do ZIP
-        ByteArrayInputStream bais = new ByteArrayInputStream(zipBytes);
-
-        // Verificar se o bytecode representa um arquivo ZIP
-        try (ZipInputStream zis = new ZipInputStream(bais)) {
-            ZipEntry zipEntry;
-            while ((zipEntry = zis.getNextEntry()) != null) {
-                File outputFile = new File(baseDir + outputDir, zipEntry.getName());
-
-                // Criar diretórios se necessário
-                if (zipEntry.isDirectory()) {
-                    if (!outputFile.mkdirs() && !outputFile.isDirectory()) {
-                        throw new IOException("Não foi possível criar o diretório: " + outputFile);
-                    }
-                } else {
-                    // Criar diretórios para o arquivo (caso esteja em uma subpasta)
-                    File parentDir = outputFile.getParentFile();
-                    if (!parentDir.exists() && !parentDir.mkdirs()) {
-                        throw new IOException("Não foi possível criar o diretório: " + parentDir);
-                    }
-
-                    // Escrever o arquivo descompactado
-                    try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-                        byte[] buffer = new byte[1024];
-                        int length;
-                        while ((length = zis.read(buffer)) > 0) {
-                            fos.write(buffer, 0, length);
-                        }
-                    }
-                }
-                zis.closeEntry();
-            }
+        extractZip(outputDir, Base64.getDecoder().wrap(
+                new ByteArrayInputStream(base64Bytecode.getBytes(StandardCharsets.ISO_8859_1))));
+    }
+
+    /**
+     * Descompacta um arquivo ZIP lido em streaming no caminho base. Veja {@link #extractZip(File, InputStream)}.
+     *
+     * @param outputDir O diretório de saída, relativo ao caminho base, onde os arquivos descompactados serão salvos.
+     * @param zipStream O stream com os bytes do arquivo ZIP, como o retornado por {@link Base64.Decoder#wrap}.
+     * @return O {@link RelatorioExtracao} com os arquivos gravados e ignorados e a vazão da extração.
+     * @throws IOException Se ocorrer um erro na leitura ou escrita dos arquivos, ou se alguma entrada apontar para
+     *                     fora do diretório de saída.
+     */
+    public static RelatorioExtracao extractZip(String outputDir, InputStream zipStream) throws IOException {
+        return extractZip(new File(getResourcePath() + outputDir), zipStream);
+    }
+
+    /**
+     * Descompacta um arquivo ZIP lido em streaming no diretório informado, usando o {@link ExtratorZip}
+     * compartilhado: as entradas são gravadas em paralelo e de forma atômica, e arquivos idênticos aos existentes são
+     * ignorados. Entradas cujo caminho resolvido fique fora do diretório de saída (por exemplo, com {@code ../} ou
+     * caminhos absolutos) são recusadas.
+     *
+     * @param outputDir O diretório de saída onde os arquivos descompactados serão salvos.
+     * @param zipStream O stream com os bytes do arquivo ZIP.
+     * @return O {@link RelatorioExtracao} com os arquivos gravados e ignorados e a vazão da extração.
+     * @throws IOException Se ocorrer um erro na leitura ou escrita dos arquivos, ou se alguma entrada apontar para
+     *                     fora do diretório de saída.
+     */
+    public static RelatorioExtracao extractZip(File outputDir, InputStream zipStream) throws IOException {
+        try {
+            return ExtratorZip.getInstancia().extrair(zipStream, outputDir);
         } catch (IOException e) {
             LogUtils.logError("Erro ao descompactar o arquivo ZIP: %s", e.getMessage());
             throw e;
@@ -59,30 +58,85 @@ public class FileUtils {
     }
 
     public static void decodeAndSaveFile(String outputDir, String fileName, String base64Bytecode) throws IOException {
-        String baseDir = getResourcePath();
+        saveFile(outputDir, fileName, Base64.getDecoder().wrap(
+                new ByteArrayInputStream(base64Bytecode.getBytes(StandardCharsets.ISO_8859_1))));
+    }
 
-        // Decodificar o bytecode Base64 para um array de bytes
-        byte[] fileBytes = Base64.getDecoder().decode(base64Bytecode);
+    /**
+     * Grava em disco um arquivo lido em streaming, no diretório de saída relativo ao caminho base.
+     *
+     * @param outputDir O diretório de saída, relativo ao caminho base.
+     * @param fileName  O nome do arquivo.
+     * @param conteudo  O stream com os bytes do arquivo, como o retornado por {@link Base64.Decoder#wrap}.
+     * @return A quantidade de bytes gravados.
+     * @throws IOException Se ocorrer um erro na gravação, ou se o nome do arquivo apontar para fora do diretório de
+     *                     saída.
+     */
+    public static long saveFile(String outputDir, String fileName, InputStream conteudo) throws IOException {
+        return saveFile(new File(getResourcePath() + outputDir), fileName, conteudo);
+    }
 
+    /**
+     * Grava em disco um arquivo lido em streaming no diretório informado, em blocos, sem carregá-lo em memória.
+     *
+     * @param outputDir O diretório de saída.
+     * @param fileName  O nome do arquivo.
+     * @param conteudo  O stream com os bytes do arquivo.
+     * @return A quantidade de bytes gravados.
+     * @throws IOException Se ocorrer um erro na gravação, ou se o nome do arquivo apontar para fora do diretório de
+     *                     saída.
+     */
+    public static long saveFile(File outputDir, String fileName, InputStream conteudo) throws IOException {
         // Criar o diretório de saída se ele não existir
-        File outputFile = new File(baseDir + outputDir);
-        if (!outputFile.exists() && !outputFile.mkdirs()) {
-            throw new IOException("Falha ao criar o diretório: " + baseDir + outputDir);
-        }
+        criarDiretorio(outputDir);
 
         // Especificar o caminho completo do arquivo
-        File outputFilePath = new File(outputFile, fileName);
+        File outputFilePath = resolverDentroDe(outputDir.getCanonicalFile(), fileName);
 
         // Gravar os bytes no arquivo
-        try (FileOutputStream fos = new FileOutputStream(outputFilePath)) {
-            fos.write(fileBytes);
+        try (OutputStream fos = new FileOutputStream(outputFilePath)) {
+            byte[] buffer = new byte[TAMANHO_BUFFER];
+            long bytesGravados = 0;
+            int length;
+            while ((length = conteudo.read(buffer)) > 0) {
+                fos.write(buffer, 0, length);
+                bytesGravados += length;
+            }
             LogUtils.logInfo("Arquivo salvo com sucesso: " + outputFilePath.getAbsolutePath());
+            return bytesGravados;
         } catch (IOException e) {
             LogUtils.logError("Erro ao salvar o arquivo: " + e.getMessage());
             throw e;
         }
     }
 
+    /**
+     * Resolve um caminho recebido pela rede dentro do diretório base, recusando caminhos absolutos e caminhos que
+     * escapem dele (zip slip).
+     *
+     * @param diretorioBase O diretório base, já canônico.
+     * @param caminho       O caminho relativo recebido.
+     * @return O arquivo resolvido dentro do diretório base.
+     * @throws IOException Se o caminho for absoluto ou se o caminho resolvido estiver fora do diretório base.
+     */
+    static File resolverDentroDe(File diretorioBase, String caminho) throws IOException {
+        // new File(base, "/x") resolveria dentro da base, mas um caminho absoluto indica um ZIP malformado
+        if (caminho.startsWith("/") || caminho.startsWith("\\") || new File(caminho).isAbsolute()) {
+            throw new IOException("Caminho absoluto recusado: " + caminho);
+        }
+        File arquivo = new File(diretorioBase, caminho).getCanonicalFile();
+        if (!arquivo.toPath().startsWith(diretorioBase.toPath())) {
+            throw new IOException("Caminho fora do diretório de destino: " + caminho);
+        }
+        return arquivo;
+    }
+
+    static void criarDiretorio(File diretorio) throws IOException {
+        if (!diretorio.mkdirs() && !diretorio.isDirectory()) {
+            throw new IOException("Não foi possível criar o diretório: " + diretorio);
+        }
+    }
+
     /**
      * Converte um arquivo em bytecode Base64.
      *
@@ -0,0 +1,94 @@
+package br.edu.unifei.utils;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Limita a quantidade de operações assíncronas em andamento ao mesmo tempo. As operações que excedem o limite aguardam
+ * em uma fila, sem ocupar threads, e são iniciadas na ordem de chegada conforme as anteriores terminam.
+ * <p>
+ * Usado para manter um número fixo de conexões com APIs externas: sem o limite, uma rajada de consultas abre uma
+ * conexão nova para cada uma delas.
+ * </p>
+ */
+public class LimitadorConcorrencia {
+
+    private final int limite;
+    private final Semaphore vagas;
+    private final Queue<Runnable> aguardando = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param limite Quantidade máxima de operações em andamento.
+     */
+    public LimitadorConcorrencia(int limite) {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("O limite deve ser positivo: " + limite);
+        }
+        this.limite = limite;
+        this.vagas = new Semaphore(limite);
+    }
+
+    /**
+     * Inicia a operação assim que houver vaga.
+     *
+     * @param operacao Inicia a operação. É executada na thread que chamou este método, se houver vaga, ou na thread
+     *                 que concluiu a operação anterior.
+     * @param <T>      O tipo do resultado.
+     * @return O resultado da operação.
+     */
+    public <T> CompletableFuture<T> executar(Supplier<CompletableFuture<T>> operacao) {
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        aguardando.add(() -> {
+            CompletableFuture<T> iniciada;
+            try {
+                iniciada = operacao.get();
+            } catch (RuntimeException e) {
+                iniciada = CompletableFuture.failedFuture(e);
+            }
+            iniciada.whenComplete((valor, erro) -> {
+                vagas.release();
+                iniciarAguardando();
+                if (erro != null) {
+                    resultado.completeExceptionally(erro);
+                } else {
+                    resultado.complete(valor);
+                }
+            });
+        });
+        iniciarAguardando();
+        return resultado;
+    }
+
+    /**
+     * @return a quantidade de operações em andamento.
+     */
+    public int getEmAndamento() {
+        return limite - vagas.availablePermits();
+    }
+
+    /**
+     * @return a quantidade de operações aguardando vaga.
+     */
+    public int getAguardando() {
+        return aguardando.size();
+    }
+
+    /**
+     * Inicia as operações da fila enquanto houver vagas. Toda inclusão na fila e toda liberação de vaga passam por
+     * aqui, o que garante que nenhuma operação fique esperando com vagas livres.
+     */
+    private void iniciarAguardando() {
+        while (!aguardando.isEmpty() && vagas.tryAcquire()) {
+            Runnable proxima = aguardando.poll();
+            if (proxima == null) {
+                // Outra thread levou a operação entre a verificação e a retirada
+                vagas.release();
+                continue;
+            }
+            proxima.run();
+        }
+    }
+}
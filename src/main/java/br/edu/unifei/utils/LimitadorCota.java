@@ -0,0 +1,311 @@
+package br.edu.unifei.utils;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Controla o consumo da cota de uma API externa limitada por minuto e por dia. Cada limite é um balde de fichas
+ * reposto continuamente: o de minuto recebe {@code porMinuto} fichas a cada minuto e o de dia, {@code porDia} fichas a
+ * cada dia, e cada chamada consome uma ficha de cada balde.
+ * <p>
+ * Sem fichas, os pedidos aguardam em uma fila por ordem de chegada, sem ocupar threads, e são liberados conforme as
+ * fichas são repostas. O pedido que não for liberado até o seu prazo é recusado com {@link IOException}, sem consumir
+ * cota. Quando a própria API informa que o limite foi excedido, o balde correspondente é esvaziado com
+ * {@link #registrarLimiteExcedido(boolean)}, o que corrige a estimativa local.
+ * </p>
+ */
+public class LimitadorCota {
+
+    private static final long NANOS_POR_MINUTO = TimeUnit.MINUTES.toNanos(1);
+    private static final long NANOS_POR_DIA = TimeUnit.DAYS.toNanos(1);
+
+    private final Balde minuto;
+    private final Balde dia;
+    private final LongSupplier relogio;
+    private final ScheduledExecutorService agendador;
+    private final ArrayDeque<Pedido> fila = new ArrayDeque<>();
+    private ScheduledFuture<?> proximaVerificacao;
+    private long proximaVerificacaoEm;
+
+    private long concedidas;
+    private long recusadas;
+    private long limitesInformados;
+    private long esperaTotalNanos;
+    private long esperaMaximaNanos;
+
+    /**
+     * @param porMinuto Quantidade de chamadas permitidas por minuto.
+     * @param porDia    Quantidade de chamadas permitidas por dia.
+     */
+    public LimitadorCota(int porMinuto, int porDia) {
+        this(porMinuto, porDia, System::nanoTime);
+    }
+
+    /**
+     * @param porMinuto Quantidade de chamadas permitidas por minuto.
+     * @param porDia    Quantidade de chamadas permitidas por dia.
+     * @param relogio   Fonte de tempo em nanossegundos, substituível nos testes.
+     */
+    LimitadorCota(int porMinuto, int porDia, LongSupplier relogio) {
+        if (porMinuto <= 0 || porDia <= 0) {
+            throw new IllegalArgumentException(
+                    String.format("Os limites devem ser positivos: %d por minuto, %d por dia", porMinuto, porDia));
+        }
+        long agora = relogio.getAsLong();
+        this.minuto = new Balde(porMinuto, NANOS_POR_MINUTO, agora);
+        this.dia = new Balde(porDia, NANOS_POR_DIA, agora);
+        this.relogio = relogio;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, tarefa -> {
+            Thread thread = new Thread(tarefa, "limitador-cota");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.agendador = executor;
+    }
+
+    /**
+     * Reserva uma ficha de cada balde, aguardando na fila se não houver fichas disponíveis.
+     *
+     * @param prazoMillis Tempo máximo de espera na fila, em milissegundos.
+     * @return Conclui quando a chamada puder ser feita, ou com {@link IOException} se o prazo terminar antes.
+     */
+    public CompletableFuture<Void> reservar(long prazoMillis) {
+        long agora = relogio.getAsLong();
+        Pedido pedido = new Pedido(agora, agora + TimeUnit.MILLISECONDS.toNanos(prazoMillis));
+        List<Runnable> conclusoes;
+        synchronized (this) {
+            fila.addLast(pedido);
+            conclusoes = processarFila();
+        }
+        conclusoes.forEach(Runnable::run);
+        return pedido.futuro;
+    }
+
+    /**
+     * Processa a fila sem aguardar a verificação agendada. Usado nos testes, em que o relógio avança sem que o tempo
+     * real passe.
+     */
+    void verificarFila() {
+        List<Runnable> conclusoes;
+        synchronized (this) {
+            conclusoes = processarFila();
+        }
+        conclusoes.forEach(Runnable::run);
+    }
+
+    /**
+     * Esvazia o balde indicado, quando a API informar que o limite foi excedido apesar da estimativa local. A fila
+     * volta a andar conforme as fichas forem repostas.
+     *
+     * @param diario {@code true} se o limite excedido for o diário, {@code false} se for o de minuto.
+     */
+    public synchronized void registrarLimiteExcedido(boolean diario) {
+        long agora = relogio.getAsLong();
+        (diario ? dia : minuto).esvaziar(agora);
+        limitesInformados++;
+    }
+
+    /**
+     * @return as fichas disponíveis no balde de minuto, arredondadas para baixo.
+     */
+    public synchronized int getRestantesMinuto() {
+        minuto.repor(relogio.getAsLong());
+        return (int) minuto.fichas;
+    }
+
+    /**
+     * @return as fichas disponíveis no balde de dia, arredondadas para baixo.
+     */
+    public synchronized int getRestantesDia() {
+        dia.repor(relogio.getAsLong());
+        return (int) dia.fichas;
+    }
+
+    /**
+     * @return a quantidade de pedidos que seriam liberados agora, sem espera: as fichas disponíveis nos dois baldes,
+     * ou zero se já houver pedidos aguardando na fila.
+     */
+    public synchronized int getDisponiveis() {
+        if (!fila.isEmpty()) {
+            return 0;
+        }
+        long agora = relogio.getAsLong();
+        minuto.repor(agora);
+        dia.repor(agora);
+        return (int) Math.max(0, Math.min(minuto.fichas, dia.fichas));
+    }
+
+    /**
+     * @return a quantidade de pedidos aguardando na fila.
+     */
+    public synchronized int getTamanhoFila() {
+        return fila.size();
+    }
+
+    /**
+     * @return a quantidade de pedidos liberados.
+     */
+    public synchronized long getConcedidas() {
+        return concedidas;
+    }
+
+    /**
+     * @return a quantidade de pedidos recusados por terem excedido o prazo na fila.
+     */
+    public synchronized long getRecusadas() {
+        return recusadas;
+    }
+
+    /**
+     * @return a quantidade de vezes em que a API informou que o limite foi excedido.
+     */
+    public synchronized long getLimitesInformados() {
+        return limitesInformados;
+    }
+
+    /**
+     * @return o tempo médio de espera na fila dos pedidos liberados, em milissegundos.
+     */
+    public synchronized double getEsperaMediaMillis() {
+        return concedidas == 0 ? 0 : esperaTotalNanos / 1e6 / concedidas;
+    }
+
+    /**
+     * @return o maior tempo de espera na fila de um pedido liberado, em milissegundos.
+     */
+    public synchronized double getEsperaMaximaMillis() {
+        return esperaMaximaNanos / 1e6;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long agora = relogio.getAsLong();
+        minuto.repor(agora);
+        dia.repor(agora);
+        return String.format("%d restantes no minuto, %d no dia, %d na fila, %d liberadas, %d recusadas, "
+                        + "%d limites informados pela API, espera média de %.1f ms",
+                (int) minuto.fichas, (int) dia.fichas, fila.size(), concedidas, recusadas, limitesInformados,
+                getEsperaMediaMillis());
+    }
+
+    /**
+     * Libera os pedidos do início da fila enquanto houver fichas, recusa os que passaram do prazo e agenda a próxima
+     * verificação. Os futuros são concluídos fora do bloqueio, pelas {@code conclusoes} devolvidas, para que as
+     * chamadas encadeadas a eles não sejam executadas com o limitador bloqueado.
+     */
+    private List<Runnable> processarFila() {
+        List<Runnable> conclusoes = new ArrayList<>();
+        long agora = relogio.getAsLong();
+        minuto.repor(agora);
+        dia.repor(agora);
+
+        Iterator<Pedido> iterador = fila.iterator();
+        while (iterador.hasNext()) {
+            Pedido pedido = iterador.next();
+            if (pedido == fila.peekFirst() && minuto.fichas >= 1 && dia.fichas >= 1) {
+                // Só o primeiro da fila é liberado, o que mantém a ordem de chegada
+                iterador.remove();
+                minuto.fichas--;
+                dia.fichas--;
+                concedidas++;
+                long espera = agora - pedido.enfileiradoEm;
+                esperaTotalNanos += espera;
+                esperaMaximaNanos = Math.max(esperaMaximaNanos, espera);
+                conclusoes.add(() -> pedido.futuro.complete(null));
+            } else if (pedido.prazo - agora <= 0) {
+                iterador.remove();
+                recusadas++;
+                long espera = agora - pedido.enfileiradoEm;
+                conclusoes.add(() -> pedido.futuro.completeExceptionally(new IOException(String.format(
+                        "Cota da API esgotada: nenhuma consulta liberada em %d ms de espera",
+                        TimeUnit.NANOSECONDS.toMillis(espera)))));
+            }
+        }
+
+        agendarVerificacao(agora);
+        return conclusoes;
+    }
+
+    /**
+     * Agenda a próxima verificação da fila para quando houver uma nova ficha ou terminar o prazo mais próximo.
+     */
+    private void agendarVerificacao(long agora) {
+        if (fila.isEmpty()) {
+            return;
+        }
+        long espera = Math.max(minuto.nanosAteProximaFicha(), dia.nanosAteProximaFicha());
+        for (Pedido pedido : fila) {
+            espera = Math.min(espera, pedido.prazo - agora);
+        }
+        espera = Math.max(espera, 0);
+        long verificacaoEm = agora + espera;
+        if (proximaVerificacao != null && !proximaVerificacao.isDone()) {
+            if (proximaVerificacaoEm - verificacaoEm <= 0) {
+                return;
+            }
+            proximaVerificacao.cancel(false);
+        }
+        proximaVerificacaoEm = verificacaoEm;
+        proximaVerificacao = agendador.schedule(() -> {
+            List<Runnable> conclusoes;
+            synchronized (this) {
+                // Esta verificação já está em execução e não deve impedir o agendamento da seguinte
+                proximaVerificacao = null;
+                conclusoes = processarFila();
+            }
+            conclusoes.forEach(Runnable::run);
+        }, espera, TimeUnit.NANOSECONDS);
+    }
+
+    private static final class Pedido {
+        private final CompletableFuture<Void> futuro = new CompletableFuture<>();
+        private final long enfileiradoEm;
+        private final long prazo;
+
+        private Pedido(long enfileiradoEm, long prazo) {
+            this.enfileiradoEm = enfileiradoEm;
+            this.prazo = prazo;
+        }
+    }
+
+    /**
+     * Balde de fichas com capacidade igual ao limite do período e reposição contínua ao longo dele.
+     */
+    private static final class Balde {
+        private final double capacidade;
+        private final double fichasPorNano;
+        private double fichas;
+        private long atualizadoEm;
+
+        private Balde(int limite, long periodoNanos, long agora) {
+            this.capacidade = limite;
+            this.fichasPorNano = (double) limite / periodoNanos;
+            this.fichas = limite;
+            this.atualizadoEm = agora;
+        }
+
+        private void repor(long agora) {
+            fichas = Math.min(capacidade, fichas + (agora - atualizadoEm) * fichasPorNano);
+            atualizadoEm = agora;
+        }
+
+        private void esvaziar(long agora) {
+            repor(agora);
+            fichas = Math.min(fichas, 0);
+        }
+
+        private long nanosAteProximaFicha() {
+            return fichas >= 1 ? 0 : (long) Math.ceil((1 - fichas) / fichasPorNano);
+        }
+    }
+}
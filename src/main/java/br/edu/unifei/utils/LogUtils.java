@@ -40,10 +40,12 @@ public class LogUtils {
      */
     public static void logInfo(String message, Object... args) {
         Logger logger = getCallerLogger();
-        if (args != null && args.length > 0) {
-            message = String.format(message, args);
+        if (logger.isInfoEnabled()) {
+            if (args != null && args.length > 0) {
+                message = String.format(message, args);
+            }
+            logger.info(message);
         }
-        logger.info(message);
     }
 
     /**
@@ -0,0 +1,78 @@
+package br.edu.unifei.utils;
+
+/**
+ * Resultado de uma extração feita pelo {@link ExtratorZip}: arquivos gravados, arquivos ignorados por já estarem
+ * idênticos em disco, bytes descompactados e a vazão da extração.
+ */
+public class RelatorioExtracao {
+
+    private final int arquivosGravados;
+    private final int arquivosIgnorados;
+    private final long bytesGravados;
+    private final long bytesLidos;
+    private final long duracaoNanos;
+
+    /**
+     * @param arquivosGravados  Quantidade de arquivos novos ou alterados gravados em disco.
+     * @param arquivosIgnorados Quantidade de arquivos ignorados por serem idênticos aos existentes.
+     * @param bytesGravados     Bytes gravados em disco.
+     * @param bytesLidos        Bytes descompactados lidos do ZIP, gravados ou não.
+     * @param duracaoNanos      Duração da extração, em nanossegundos.
+     */
+    public RelatorioExtracao(int arquivosGravados, int arquivosIgnorados, long bytesGravados, long bytesLidos,
+                             long duracaoNanos) {
+        this.arquivosGravados = arquivosGravados;
+        this.arquivosIgnorados = arquivosIgnorados;
+        this.bytesGravados = bytesGravados;
+        this.bytesLidos = bytesLidos;
+        this.duracaoNanos = duracaoNanos;
+    }
+
+    /**
+     * @return a quantidade de arquivos novos ou alterados gravados em disco.
+     */
+    public int getArquivosGravados() {
+        return arquivosGravados;
+    }
+
+    /**
+     * @return a quantidade de arquivos ignorados por serem idênticos aos existentes em disco.
+     */
+    public int getArquivosIgnorados() {
+        return arquivosIgnorados;
+    }
+
+    /**
+     * @return os bytes gravados em disco.
+     */
+    public long getBytesGravados() {
+        return bytesGravados;
+    }
+
+    /**
+     * @return os bytes descompactados lidos do ZIP, incluindo os dos arquivos ignorados.
+     */
+    public long getBytesLidos() {
+        return bytesLidos;
+    }
+
+    /**
+     * @return a duração da extração, em nanossegundos.
+     */
+    public long getDuracaoNanos() {
+        return duracaoNanos;
+    }
+
+    /**
+     * @return a vazão da extração, em bytes descompactados por segundo.
+     */
+    public double getBytesPorSegundo() {
+        return duracaoNanos > 0 ? bytesLidos * 1e9 / duracaoNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d arquivo(s) gravado(s), %d ignorado(s) sem alteração, %d bytes gravados, %.1f MB/s",
+                arquivosGravados, arquivosIgnorados, bytesGravados, getBytesPorSegundo() / 1e6);
+    }
+}
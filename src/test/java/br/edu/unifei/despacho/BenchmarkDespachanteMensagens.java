@@ -0,0 +1,85 @@
+package br.edu.unifei.despacho;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+import br.edu.unifei.tratamento.TratadorMensagem;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Mede a vazão do processamento de mensagens {@code CONSULTAR_*} com 1, 8 e 64 consultas simultâneas, comparando com
+ * o processamento sequencial na thread de callback usado anteriormente. O serviço externo é simulado por um tratador
+ * que apenas aguarda a latência configurada.
+ */
+public class BenchmarkDespachanteMensagens {
+
+    private static final int TOTAL_MENSAGENS = 512;
+    private static final long LATENCIA_SERVICO_MS = 20;
+
+    public static void main(String[] args) throws InterruptedException {
+        String payload = gerarConsulta().toJson();
+        TratadorMensagem servicoSimulado = criarServicoSimulado();
+
+        // Comportamento anterior: espera fixa de 50 ms e processamento na própria thread de callback
+        int mensagensSequenciais = 32;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < mensagensSequenciais; i++) {
+            Thread.sleep(50);
+            processar(payload, servicoSimulado);
+        }
+        imprimirResultado("sequencial (anterior)", mensagensSequenciais, System.nanoTime() - inicio);
+
+        for (int emAndamento : new int[]{1, 8, 64}) {
+            DespachanteMensagens despachante = new DespachanteMensagens(
+                    emAndamento, false, TOTAL_MENSAGENS, PoliticaTransbordo.BLOQUEAR);
+            CountDownLatch concluidas = new CountDownLatch(TOTAL_MENSAGENS);
+
+            inicio = System.nanoTime();
+            for (int i = 0; i < TOTAL_MENSAGENS; i++) {
+                // 64 origens distintas, para que a ordenação por origem não limite o paralelismo
+                despachante.despachar("topico/cliente-" + (i % 64), () -> {
+                    processar(payload, servicoSimulado);
+                    concluidas.countDown();
+                }, concluidas::countDown);
+            }
+            concluidas.await();
+            imprimirResultado(emAndamento + " em andamento", TOTAL_MENSAGENS, System.nanoTime() - inicio);
+
+            despachante.encerrar();
+        }
+    }
+
+    private static void processar(String payload, TratadorMensagem tratador) {
+        Mensagem mensagem = Mensagem.fromJson(payload);
+        mensagem.adicionarAoMetadata("timestamp_servidor_msg_recebida",
+                new JsonPrimitive(System.currentTimeMillis()));
+        tratador.processar(mensagem);
+    }
+
+    private static TratadorMensagem criarServicoSimulado() {
+        return mensagem -> {
+            try {
+                Thread.sleep(LATENCIA_SERVICO_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            JsonObject conteudo = new JsonObject();
+            conteudo.addProperty("precoAtual", 123.45);
+            return new Mensagem("RESULTADO_CONSULTAR_ACAO", mensagem.getDestino(), mensagem.getOrigem(), conteudo)
+                    .toJson();
+        };
+    }
+
+    private static Mensagem gerarConsulta() {
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("simboloAcao", "IBM");
+        return new Mensagem("CONSULTAR_ACAO", "topico/cliente", "topico/servidor", conteudo);
+    }
+
+    private static void imprimirResultado(String cenario, int mensagens, long duracaoNanos) {
+        double segundos = duracaoNanos / 1e9;
+        System.out.printf("%-24s %6d mensagens em %8.3f s -> %10.1f msg/s%n",
+                cenario, mensagens, segundos, mensagens / segundos);
+    }
+}
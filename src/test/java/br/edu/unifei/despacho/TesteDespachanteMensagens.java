@@ -0,0 +1,137 @@
+package br.edu.unifei.despacho;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static br.edu.unifei.despacho.TesteExecutorPorChave.aguardar;
+import static br.edu.unifei.despacho.TesteExecutorPorChave.esperarAte;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TesteDespachanteMensagens {
+
+    private final List<String> executadas = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> rejeitadas = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch liberar = new CountDownLatch(1);
+    private DespachanteMensagens despachante;
+
+    @AfterEach
+    public void encerrar() {
+        liberar.countDown();
+        despachante.encerrar();
+    }
+
+    @Test
+    public void mensagensDaMesmaOrigemSaoProcessadasEmOrdem() throws Exception {
+        despachante = new DespachanteMensagens(4, false, 1_000, PoliticaTransbordo.REJEITAR);
+
+        for (int i = 0; i < 200; i++) {
+            despachar("origem-" + i % 4, "m" + i);
+        }
+
+        esperarAte(() -> executadas.size() == 200);
+        for (int origem = 0; origem < 4; origem++) {
+            int anterior = -1;
+            for (String mensagem : new ArrayList<>(executadas)) {
+                int numero = Integer.parseInt(mensagem.substring(1));
+                if (numero % 4 == origem) {
+                    assertTrue(numero > anterior, "Mensagem " + numero + " fora de ordem");
+                    anterior = numero;
+                }
+            }
+        }
+        esperarAte(() -> despachante.getChavesAtivas() == 0);
+        assertEquals(0, despachante.getChavesAtivas());
+        assertEquals(0, despachante.getTamanhoFila());
+    }
+
+    @Test
+    public void rejeitarRecusaAMensagemNovaComAFilaCheia() throws Exception {
+        despachante = new DespachanteMensagens(1, false, 2, PoliticaTransbordo.REJEITAR);
+        ocuparThread("a");
+        despachar("a", "a1");
+
+        despachar("b", "b0");
+
+        assertEquals(List.of("b0"), rejeitadas);
+        assertEquals(1, despachante.getRejeitadas());
+        liberar.countDown();
+        esperarAte(() -> executadas.size() == 2);
+        assertEquals(List.of("a0", "a1"), executadas);
+        assertEquals(0, despachante.getTamanhoFila());
+    }
+
+    @Test
+    public void descartarMaisAntigaRepassaAVagaParaAMensagemNova() throws Exception {
+        despachante = new DespachanteMensagens(1, false, 3, PoliticaTransbordo.DESCARTAR_MAIS_ANTIGA);
+        ocuparThread("a");
+        despachar("a", "a1");
+        despachar("a", "a2");
+
+        despachar("b", "b0");
+
+        // A mais antiga da maior fila é descartada; a que está em execução não
+        assertEquals(List.of("a1"), rejeitadas);
+        assertEquals(1, despachante.getDescartadas());
+        assertEquals(3, despachante.getTamanhoFila());
+        liberar.countDown();
+        esperarAte(() -> executadas.size() == 3);
+        assertTrue(executadas.containsAll(List.of("a0", "a2", "b0")));
+        esperarAte(() -> despachante.getTamanhoFila() == 0);
+        assertEquals(0, despachante.getTamanhoFila());
+    }
+
+    @Test
+    public void bloquearSeguraQuemDespachaAteAbrirVaga() throws Exception {
+        despachante = new DespachanteMensagens(1, false, 1, PoliticaTransbordo.BLOQUEAR);
+        ocuparThread("a");
+
+        Thread produtor = new Thread(() -> despachar("b", "b0"));
+        produtor.start();
+        esperarAte(() -> produtor.getState() == Thread.State.WAITING);
+        assertEquals(Thread.State.WAITING, produtor.getState());
+        assertFalse(executadas.contains("b0"));
+
+        liberar.countDown();
+        produtor.join(5_000);
+        esperarAte(() -> executadas.size() == 2);
+        assertEquals(List.of("a0", "b0"), executadas);
+        assertTrue(rejeitadas.isEmpty());
+    }
+
+    @Test
+    public void mensagensDepoisDeEncerrarSaoRejeitadas() {
+        despachante = new DespachanteMensagens(1, false, 10, PoliticaTransbordo.BLOQUEAR);
+        despachar("a", "a0");
+        despachante.encerrar();
+
+        despachar("a", "a1");
+
+        assertEquals(List.of("a0"), executadas);
+        assertEquals(List.of("a1"), rejeitadas);
+    }
+
+    /**
+     * Despacha uma tarefa que segura a única thread de trabalho até o teste liberá-la.
+     */
+    private void ocuparThread(String origem) throws InterruptedException {
+        CountDownLatch emExecucao = new CountDownLatch(1);
+        despachante.despachar(origem, () -> {
+            executadas.add(origem + "0");
+            emExecucao.countDown();
+            aguardar(liberar);
+        }, () -> rejeitadas.add(origem + "0"));
+        assertTrue(emExecucao.await(5, TimeUnit.SECONDS));
+    }
+
+    private void despachar(String origem, String mensagem) {
+        despachante.despachar(origem, () -> executadas.add(mensagem), () -> rejeitadas.add(mensagem));
+    }
+}
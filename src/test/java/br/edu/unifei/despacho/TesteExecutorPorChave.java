@@ -0,0 +1,154 @@
+package br.edu.unifei.despacho;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TesteExecutorPorChave {
+
+    private final ExecutorService threads = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    public void encerrar() {
+        threads.shutdownNow();
+    }
+
+    @Test
+    public void tarefasDaMesmaChaveSeguemAOrdemDeChegada() throws Exception {
+        ExecutorPorChave executor = new ExecutorPorChave(threads);
+        List<Integer> executadas = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch concluidas = new CountDownLatch(500);
+
+        for (int i = 0; i < 500; i++) {
+            int tarefa = i;
+            executor.executar("origem", () -> {
+                executadas.add(tarefa);
+                concluidas.countDown();
+            });
+        }
+
+        assertTrue(concluidas.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 500; i++) {
+            assertEquals(Integer.valueOf(i), executadas.get(i));
+        }
+    }
+
+    @Test
+    public void chavesDiferentesExecutamAoMesmoTempo() throws Exception {
+        ExecutorPorChave executor = new ExecutorPorChave(threads);
+        CountDownLatch emExecucao = new CountDownLatch(2);
+        CountDownLatch liberar = new CountDownLatch(1);
+
+        for (String chave : new String[]{"a", "b"}) {
+            executor.executar(chave, () -> {
+                emExecucao.countDown();
+                aguardar(liberar);
+            });
+        }
+
+        // Só chega a zero se as duas tarefas estiverem executando juntas
+        assertTrue(emExecucao.await(5, TimeUnit.SECONDS));
+        assertEquals(2, executor.getChavesAtivas());
+        liberar.countDown();
+    }
+
+    @Test
+    public void chavesOciosasSaemDoMapa() throws Exception {
+        ExecutorPorChave executor = new ExecutorPorChave(threads);
+        CountDownLatch concluidas = new CountDownLatch(300);
+
+        for (int i = 0; i < 300; i++) {
+            executor.executar("origem-" + i % 30, concluidas::countDown);
+        }
+
+        assertTrue(concluidas.await(10, TimeUnit.SECONDS));
+        esperarAte(() -> executor.getChavesAtivas() == 0);
+        assertEquals(0, executor.getChavesAtivas());
+        assertTrue(executor.getProfundidadesPorChave().isEmpty());
+    }
+
+    @Test
+    public void removeAMaisAntigaDaMaiorFilaSemAfetarAEmExecucao() throws Exception {
+        ExecutorPorChave executor = new ExecutorPorChave(threads);
+        List<String> executadas = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch emExecucao = new CountDownLatch(2);
+        CountDownLatch liberar = new CountDownLatch(1);
+        for (String chave : new String[]{"a", "b"}) {
+            executor.executar(chave, () -> {
+                executadas.add(chave + "0");
+                emExecucao.countDown();
+                aguardar(liberar);
+            });
+        }
+        assertTrue(emExecucao.await(5, TimeUnit.SECONDS));
+        Runnable a1 = () -> executadas.add("a1");
+        executor.executar("a", a1);
+        executor.executar("a", () -> executadas.add("a2"));
+        executor.executar("b", () -> executadas.add("b1"));
+
+        assertSame(a1, executor.removerMaisAntigaDaMaiorFila());
+        assertEquals(1, executor.getProfundidadeFila("a"));
+
+        liberar.countDown();
+        esperarAte(() -> executor.getChavesAtivas() == 0);
+        assertEquals(4, executadas.size());
+        assertTrue(executadas.indexOf("a0") < executadas.indexOf("a2"));
+        assertTrue(executadas.indexOf("b0") < executadas.indexOf("b1"));
+    }
+
+    @Test
+    public void chaveRecusadaPeloExecutorNaoFicaPresaNoMapa() {
+        AtomicBoolean recusar = new AtomicBoolean(true);
+        List<Runnable> recusadas = new ArrayList<>();
+        List<String> executadas = new ArrayList<>();
+        ExecutorPorChave executor = new ExecutorPorChave(tarefa -> {
+            if (recusar.get()) {
+                throw new RejectedExecutionException("executor encerrado");
+            }
+            tarefa.run();
+        }, recusadas::add);
+
+        Runnable primeira = () -> executadas.add("primeira");
+        assertThrows(RejectedExecutionException.class, () -> executor.executar("origem", primeira));
+
+        assertEquals(List.of(primeira), recusadas);
+        assertEquals(0, executor.getChavesAtivas());
+        recusar.set(false);
+        executor.executar("origem", () -> executadas.add("segunda"));
+        assertEquals(List.of("segunda"), executadas);
+        assertEquals(0, executor.getChavesAtivas());
+    }
+
+    static void aguardar(CountDownLatch liberar) {
+        try {
+            liberar.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A chave só sai do mapa depois que a última tarefa termina, um pouco depois de a tarefa sinalizar o término.
+     */
+    static void esperarAte(BooleanSupplier condicao) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5_000;
+        while (!condicao.getAsBoolean() && System.currentTimeMillis() < limite) {
+            Thread.sleep(5);
+        }
+    }
+}
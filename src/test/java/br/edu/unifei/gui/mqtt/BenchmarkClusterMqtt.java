@@ -0,0 +1,124 @@
+package br.edu.unifei.gui.mqtt;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+import br.edu.unifei.tratamento.TratadorConsulta;
+import br.edu.unifei.tratamento.TratadorMensagemFactory;
+import br.edu.unifei.utils.LogTextAreaUtils;
+import com.google.gson.JsonObject;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+
+import javax.swing.JTextArea;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mede a vazão de requisições respondidas por 1, 2 e 4 instâncias do servidor no mesmo grupo de inscrição
+ * compartilhada, com as requisições chegando de uma vez pelo {@code topico/servidor}.
+ * <p>
+ * Cada instância publica as respostas com QoS 1 e janela de {@value #JANELA} mensagem em voo, em um
+ * {@link BrokerMqttLocal} que atrasa cada confirmação em {@value #ATRASO_CONFIRMACAO_MICROS} µs: a vazão de uma
+ * instância fica limitada pela própria conexão, e o benchmark mostra quanto o grupo ganha ao dividir as requisições.
+ * As instâncias rodam na mesma JVM e dividem o {@link br.edu.unifei.despacho.DespachanteMensagens}, a CPU e a cota da
+ * API, que em instâncias separadas também seriam divididos.
+ * </p>
+ */
+public class BenchmarkClusterMqtt {
+
+    private static final long ATRASO_CONFIRMACAO_MICROS = 500;
+    private static final int JANELA = 1;
+    private static final int[] INSTANCIAS = {1, 2, 4};
+    private static final int REQUISICOES = 4_000;
+    private static final String ACAO = "CONSULTAR_ECO_CLUSTER";
+    private static final String TOPICO_SERVIDOR = "topico/servidor";
+
+    public static void main(String[] args) throws Exception {
+        TratadorMensagemFactory.registrar(ACAO, (TratadorConsulta) mensagem -> new Mensagem(
+                "RESULTADO_" + ACAO, mensagem.getDestino(), mensagem.getOrigem(), mensagem.getConteudo()));
+        PoliticaPublicacao.Regra regra = PoliticaPublicacao.daConfiguracao().regraPara("RESULTADO_" + ACAO);
+        System.out.printf("%d requisições, respostas com %s, janela de %d, confirmações atrasadas em %d µs%n%n",
+                REQUISICOES, regra, JANELA, ATRASO_CONFIRMACAO_MICROS);
+
+        for (int quantidade : INSTANCIAS) {
+            try (BrokerMqttLocal broker = new BrokerMqttLocal(ATRASO_CONFIRMACAO_MICROS)) {
+                List<MqttPahoAsyncClient> instancias = new ArrayList<>();
+                for (int i = 0; i < quantidade; i++) {
+                    IdentidadeInstancia identidade = new IdentidadeInstancia("benchmark", "servidores", "i" + i);
+                    MqttPahoAsyncClient instancia = new MqttPahoAsyncClient(broker.getUrl(),
+                            identidade.getClientId(), JANELA, REQUISICOES, 500, 30_000,
+                            new LogTextAreaUtils(new JTextArea()));
+                    instancia.subscribe(identidade.filtroInscricao(TOPICO_SERVIDOR));
+                    instancias.add(instancia);
+                }
+                try {
+                    Map<String, Integer> porInstancia = new TreeMap<>();
+                    double vazao = medir(broker, porInstancia);
+                    System.out.printf(Locale.ROOT, "%d instância(s)   %8.0f respostas/s   %s%n", quantidade, vazao,
+                            porInstancia);
+                } finally {
+                    for (MqttPahoAsyncClient instancia : instancias) {
+                        instancia.disconnect();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Publica as requisições de uma vez e espera todas as respostas no tópico do barramento.
+     *
+     * @return a vazão, em respostas por segundo.
+     */
+    private static double medir(BrokerMqttLocal broker, Map<String, Integer> porInstancia) throws Exception {
+        CountDownLatch respostas = new CountDownLatch(REQUISICOES);
+        MqttClient barramento = new MqttClient(broker.getUrl(), "barramento", new MemoryPersistence());
+        barramento.setCallback(new MqttCallback() {
+            @Override
+            public void connectionLost(Throwable causa) {
+            }
+
+            @Override
+            public void messageArrived(String topico, MqttMessage mensagem) {
+                String instancia = Mensagem.fromJson(mensagem.getPayload()).getMetadata()
+                        .get("instancia_servidor").getAsString();
+                synchronized (porInstancia) {
+                    porInstancia.merge(instancia, 1, Integer::sum);
+                }
+                respostas.countDown();
+            }
+
+            @Override
+            public void deliveryComplete(IMqttDeliveryToken token) {
+            }
+        });
+        barramento.connect();
+        barramento.subscribe("topico/barramento");
+
+        MqttClient cliente = new MqttClient(broker.getUrl(), "cliente", new MemoryPersistence());
+        cliente.connect();
+        long inicio = System.nanoTime();
+        for (int i = 0; i < REQUISICOES; i++) {
+            JsonObject conteudo = new JsonObject();
+            conteudo.addProperty("id", i);
+            Mensagem requisicao = new Mensagem(ACAO, "cliente-" + i % 50, TOPICO_SERVIDOR, conteudo);
+            cliente.publish(TOPICO_SERVIDOR, requisicao.toJsonBytes(), 0, false);
+        }
+        if (!respostas.await(120, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Respostas faltando: " + respostas.getCount());
+        }
+        double vazao = REQUISICOES / ((System.nanoTime() - inicio) / 1e9);
+        cliente.disconnect();
+        cliente.close();
+        barramento.disconnect();
+        barramento.close();
+        return vazao;
+    }
+}
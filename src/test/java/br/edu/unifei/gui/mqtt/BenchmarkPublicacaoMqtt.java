@@ -0,0 +1,157 @@
+package br.edu.unifei.gui.mqtt;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+import br.edu.unifei.utils.LogTextAreaUtils;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import javax.swing.JTextArea;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Mede a publicação de respostas com QoS 2 pelo {@link MqttPahoAsyncClient} com janelas de 1, 10 e 100 mensagens em
+ * voo. A janela de 1 reproduz o cliente síncrono, que espera a confirmação de cada mensagem antes da próxima. Em
+ * seguida compara a vazão de respostas de cotação com QoS 0, 1 e 2, as opções da {@link PoliticaPublicacao}.
+ * <p>
+ * São medidas a vazão de uma rajada de publicações e a latência, da chamada a {@code publish} até a confirmação do
+ * broker, com as publicações chegando em ritmo constante. Sem argumentos, usa um {@link BrokerMqttLocal} que atrasa
+ * cada confirmação em {@value #ATRASO_CONFIRMACAO_MICROS} µs, simulando um broker na rede; com o URL de um broker como
+ * argumento, por exemplo {@code tcp://localhost:1883}, usa esse broker sem atraso adicional.
+ * </p>
+ */
+public class BenchmarkPublicacaoMqtt {
+
+    private static final long ATRASO_CONFIRMACAO_MICROS = 500;
+    private static final int[] JANELAS = {1, 10, 100};
+    private static final int[] JANELAS_QOS = {1, 100};
+    private static final int MENSAGENS_RAJADA = 5_000;
+    private static final int TAXA_POR_SEGUNDO = 1_500;
+    private static final int MENSAGENS_RITMO = 3_000;
+    private static final String TOPICO = "topico/barramento";
+
+    public static void main(String[] args) throws Exception {
+        BrokerMqttLocal brokerLocal = args.length == 0 ? new BrokerMqttLocal(ATRASO_CONFIRMACAO_MICROS) : null;
+        String url = brokerLocal != null ? brokerLocal.getUrl() : args[0];
+        byte[] resposta = gerarResposta();
+        try {
+            System.out.printf("Broker %s%s, respostas de %d bytes com QoS 2%n%n", url,
+                    brokerLocal != null ? String.format(" com confirmações atrasadas em %d µs",
+                            ATRASO_CONFIRMACAO_MICROS) : "", resposta.length);
+            for (int janela : JANELAS) {
+                MqttPahoAsyncClient cliente = criarCliente(url, "benchmark-janela-" + janela, janela);
+                try {
+                    // Aquecimento
+                    medirRajada(cliente, resposta, PoliticaPublicacao.Regra.PADRAO,
+                            Math.min(MENSAGENS_RAJADA, 500 * janela));
+                    double vazao = medirRajada(cliente, resposta, PoliticaPublicacao.Regra.PADRAO,
+                            Math.min(MENSAGENS_RAJADA, 1_000 * janela));
+                    long[] latencias = medirRitmo(cliente, resposta);
+                    System.out.printf(Locale.ROOT, "janela %3d   rajada %8.0f msg/s   a %d msg/s: p50 %8.2f ms   "
+                                    + "p99 %8.2f ms%n", janela, vazao, TAXA_POR_SEGUNDO,
+                            percentil(latencias, 0.50) / 1e6, percentil(latencias, 0.99) / 1e6);
+                } finally {
+                    cliente.disconnect();
+                }
+            }
+
+            System.out.printf("%nRespostas de cotação em rajada, por QoS%n");
+            for (int janela : JANELAS_QOS) {
+                MqttPahoAsyncClient cliente = criarCliente(url, "benchmark-qos-" + janela, janela);
+                try {
+                    StringBuilder linha = new StringBuilder(String.format("janela %3d", janela));
+                    for (int qos = 0; qos <= 2; qos++) {
+                        PoliticaPublicacao.Regra regra = new PoliticaPublicacao.Regra(qos, false, 0);
+                        int mensagens = Math.min(MENSAGENS_RAJADA, qos == 0 ? MENSAGENS_RAJADA : 1_000 * janela);
+                        medirRajada(cliente, resposta, regra, mensagens);
+                        linha.append(String.format(Locale.ROOT, "   QoS %d %8.0f msg/s", qos,
+                                medirRajada(cliente, resposta, regra, mensagens)));
+                    }
+                    System.out.println(linha);
+                } finally {
+                    cliente.disconnect();
+                }
+            }
+        } finally {
+            if (brokerLocal != null) {
+                brokerLocal.close();
+            }
+        }
+    }
+
+    private static MqttPahoAsyncClient criarCliente(String url, String id, int janela) {
+        return new MqttPahoAsyncClient(url, id, janela, MENSAGENS_RAJADA, 500, 30_000,
+                new LogTextAreaUtils(new JTextArea()));
+    }
+
+    /**
+     * Publica as mensagens de uma vez e espera todas serem confirmadas.
+     *
+     * @return a vazão, em mensagens por segundo.
+     */
+    private static double medirRajada(MqttClientStrategy cliente, byte[] resposta, PoliticaPublicacao.Regra regra,
+                                      int mensagens) {
+        CompletableFuture<?>[] confirmacoes = new CompletableFuture<?>[mensagens];
+        long inicio = System.nanoTime();
+        for (int i = 0; i < mensagens; i++) {
+            confirmacoes[i] = cliente.publish(TOPICO, resposta, regra);
+        }
+        CompletableFuture.allOf(confirmacoes).join();
+        return mensagens / ((System.nanoTime() - inicio) / 1e9);
+    }
+
+    /**
+     * Publica as mensagens em ritmo constante, como respostas chegando de vários clientes.
+     *
+     * @return a latência de cada publicação, em nanossegundos.
+     */
+    private static long[] medirRitmo(MqttClientStrategy cliente, byte[] resposta) {
+        long[] latencias = new long[MENSAGENS_RITMO];
+        CompletableFuture<?>[] confirmacoes = new CompletableFuture<?>[MENSAGENS_RITMO];
+        long intervalo = TimeUnit.SECONDS.toNanos(1) / TAXA_POR_SEGUNDO;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < MENSAGENS_RITMO; i++) {
+            long previsto = inicio + i * intervalo;
+            long espera = previsto - System.nanoTime();
+            if (espera > 0) {
+                LockSupport.parkNanos(espera);
+            }
+            int indice = i;
+            long publicado = System.nanoTime();
+            confirmacoes[i] = cliente.publish(TOPICO, resposta)
+                    .thenRun(() -> latencias[indice] = System.nanoTime() - publicado);
+        }
+        CompletableFuture.allOf(confirmacoes).join();
+        return latencias;
+    }
+
+    private static long percentil(long[] valores, double fracao) {
+        long[] ordenados = valores.clone();
+        Arrays.sort(ordenados);
+        return ordenados[(int) Math.min(ordenados.length - 1, Math.ceil(fracao * ordenados.length) - 1)];
+    }
+
+    /**
+     * @return uma resposta típica de {@code CONSULTAR_ACAO}, codificada em JSON.
+     */
+    private static byte[] gerarResposta() {
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("simboloAcao", "IBM");
+        conteudo.addProperty("dataUltimaAtualizacao", "2024-05-17");
+        conteudo.addProperty("precoAbertura", 168.9700);
+        conteudo.addProperty("precoMaximo", 169.6300);
+        conteudo.addProperty("precoMinimo", 167.8000);
+        conteudo.addProperty("precoFechamento", 169.0300);
+        conteudo.addProperty("volume", 2956139);
+        Mensagem mensagem = new Mensagem("RESULTADO_CONSULTAR_ACAO", "topico/servidor", "cliente", conteudo);
+        mensagem.adicionarAoMetadata("cache_hit", new JsonPrimitive(false));
+        mensagem.adicionarAoMetadata("timestamp_servidor_processamento_inicio",
+                new JsonPrimitive(System.currentTimeMillis()));
+        mensagem.adicionarAoMetadata("timestamp_servidor_msg_enviada",
+                new JsonPrimitive(System.currentTimeMillis()));
+        return mensagem.toJsonBytes();
+    }
+}
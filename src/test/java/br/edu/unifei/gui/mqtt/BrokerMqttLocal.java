@@ -0,0 +1,577 @@
+package br.edu.unifei.gui.mqtt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Broker MQTT 3.1.1 e 5 mínimo, em memória, para os testes e benchmarks do cliente MQTT sem um broker externo.
+ * <p>
+ * Aceita publicações com QoS 0, 1 e 2, respondendo com os pacotes de confirmação de cada nível, e repassa as
+ * mensagens aos inscritos com QoS 0. Os filtros de tópico aceitam os curingas {@code +} e {@code #}, e as inscrições
+ * compartilhadas {@code $share/<grupo>/<filtro>} recebem cada mensagem em apenas um dos clientes do grupo, em rodízio.
+ * As inscrições de clientes conectados sem sessão limpa são mantidas entre as conexões, mas não sobrevivem ao
+ * encerramento do broker, e as mensagens publicadas enquanto o inscrito está desconectado não são guardadas para ele:
+ * como o repasse é sempre com QoS 0, não há reentrega aos inscritos. Não há autenticação, mensagens retidas nem
+ * mensagens de última vontade.
+ * </p>
+ * <p>
+ * Com clientes MQTT 5, o broker aceita até {@value #ALIAS_TOPICO_MAXIMO} aliases de tópico por conexão e repassa aos
+ * inscritos MQTT 5 as propriedades de cada publicação, exceto o alias, sem descontar da expiração o tempo decorrido.
+ * </p>
+ * <p>
+ * As confirmações enviadas a quem publica podem ser atrasadas para simular o tempo de ida e volta de um broker na
+ * rede: sem atraso, a troca de pacotes pela interface de loopback leva poucos microssegundos.
+ * </p>
+ */
+public class BrokerMqttLocal implements AutoCloseable {
+
+    private static final int CONNECT = 1;
+    private static final int PUBLISH = 3;
+    private static final int PUBACK = 4;
+    private static final int PUBREC = 5;
+    private static final int PUBREL = 6;
+    private static final int PUBCOMP = 7;
+    private static final int SUBSCRIBE = 8;
+    private static final int UNSUBSCRIBE = 10;
+    private static final int PINGREQ = 12;
+    private static final int DISCONNECT = 14;
+    private static final String PREFIXO_COMPARTILHADA = "$share/";
+    private static final int MQTT_5 = 5;
+    private static final int ALIAS_TOPICO = 0x23;
+    private static final int ALIAS_TOPICO_MAXIMO = 10;
+    private static final int ALIAS_TOPICO_MAXIMO_PROPRIEDADE = 0x22;
+
+    private final ServerSocket servidor;
+    private final long atrasoConfirmacaoMicros;
+    private final ScheduledExecutorService agendador;
+    private final Thread aceitacao;
+    private final List<Conexao> conexoes = new CopyOnWriteArrayList<>();
+    private final Map<String, Map<String, Boolean>> sessoes = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> rodizioCompartilhadas = new ConcurrentHashMap<>();
+    private final AtomicLong publicacoesRecebidas = new AtomicLong();
+    private final AtomicLong publicacoesComAlias = new AtomicLong();
+    private volatile List<String> payloadsRecebidos;
+
+    /**
+     * Inicia o broker em uma porta livre da interface de loopback.
+     *
+     * @param atrasoConfirmacaoMicros Atraso, em microssegundos, de cada confirmação enviada a quem publica.
+     * @throws IOException Se não for possível abrir a porta.
+     */
+    public BrokerMqttLocal(long atrasoConfirmacaoMicros) throws IOException {
+        this(0, atrasoConfirmacaoMicros);
+    }
+
+    /**
+     * Inicia o broker na porta informada da interface de loopback, por exemplo para reiniciá-lo na mesma porta.
+     *
+     * @param porta                   A porta, ou {@code 0} para uma porta livre.
+     * @param atrasoConfirmacaoMicros Atraso, em microssegundos, de cada confirmação enviada a quem publica.
+     * @throws IOException Se não for possível abrir a porta.
+     */
+    public BrokerMqttLocal(int porta, long atrasoConfirmacaoMicros) throws IOException {
+        this.servidor = new ServerSocket();
+        this.servidor.setReuseAddress(true);
+        this.servidor.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), porta));
+        this.atrasoConfirmacaoMicros = atrasoConfirmacaoMicros;
+        this.agendador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "broker-mqtt-confirmacoes");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.aceitacao = new Thread(this::aceitar, "broker-mqtt-" + getPorta());
+        aceitacao.setDaemon(true);
+        aceitacao.start();
+    }
+
+    /**
+     * @return o URL para os clientes se conectarem ao broker.
+     */
+    public String getUrl() {
+        return "tcp://localhost:" + getPorta();
+    }
+
+    public int getPorta() {
+        return servidor.getLocalPort();
+    }
+
+    /**
+     * @return a quantidade de pacotes PUBLISH recebidos dos clientes, incluindo os reenviados.
+     */
+    public long getPublicacoesRecebidas() {
+        return publicacoesRecebidas.get();
+    }
+
+    /**
+     * @return a quantidade de pacotes PUBLISH recebidos com o tópico vazio, substituído por um alias já definido.
+     */
+    public long getPublicacoesComAlias() {
+        return publicacoesComAlias.get();
+    }
+
+    /**
+     * Passa a guardar o conteúdo, como texto, de todas as publicações recebidas a partir de agora.
+     *
+     * @return a lista, atualizada conforme as publicações chegam.
+     */
+    public List<String> registrarPayloads() {
+        List<String> payloads = new CopyOnWriteArrayList<>();
+        payloadsRecebidos = payloads;
+        return payloads;
+    }
+
+    /**
+     * @param filtro Um filtro de tópico.
+     * @return se algum cliente conectado está inscrito exatamente nesse filtro.
+     */
+    public boolean possuiInscricao(String filtro) {
+        for (Conexao conexao : conexoes) {
+            if (conexao.filtros.containsKey(filtro)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Derruba as conexões abertas sem encerrar o broker, como em uma falha passageira da rede. As sessões persistentes
+     * são mantidas.
+     */
+    public void derrubarConexoes() {
+        for (Conexao conexao : conexoes) {
+            conexao.fechar();
+        }
+    }
+
+    /**
+     * @return a quantidade de clientes conectados.
+     */
+    public int getConexoes() {
+        return conexoes.size();
+    }
+
+    /**
+     * Encerra o broker e derruba as conexões abertas, sem enviar nenhum pacote aos clientes.
+     */
+    @Override
+    public void close() throws IOException {
+        // Sincronizado com a aceitação, para que uma conexão aceita durante o encerramento não mantenha a porta presa
+        synchronized (conexoes) {
+            servidor.close();
+            for (Conexao conexao : conexoes) {
+                conexao.fechar();
+            }
+        }
+        agendador.shutdownNow();
+        // O socket do servidor só é fechado de fato quando a thread bloqueada no accept sai dele
+        try {
+            aceitacao.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void aceitar() {
+        while (!servidor.isClosed()) {
+            try {
+                Socket socket = servidor.accept();
+                socket.setTcpNoDelay(true);
+                Conexao conexao = new Conexao(socket);
+                synchronized (conexoes) {
+                    if (servidor.isClosed()) {
+                        conexao.fechar();
+                        return;
+                    }
+                    conexoes.add(conexao);
+                }
+                Thread leitura = new Thread(conexao::ler, "broker-mqtt-conexao-" + socket.getPort());
+                leitura.setDaemon(true);
+                leitura.start();
+            } catch (IOException e) {
+                // Broker encerrado
+            }
+        }
+    }
+
+    /**
+     * Repassa uma publicação a todos os clientes inscritos em um filtro que aceite o tópico e, para cada inscrição
+     * compartilhada que aceite o tópico, ao próximo cliente do grupo no rodízio. Os clientes MQTT 5 recebem também as
+     * propriedades da publicação.
+     */
+    private void repassar(String topico, byte[] payload, byte[] propriedades) {
+        PacotesPublicacao pacote = new PacotesPublicacao(topico, payload, propriedades);
+        Map<String, List<Conexao>> grupos = new HashMap<>();
+        for (Conexao conexao : conexoes) {
+            boolean entregue = false;
+            for (String filtro : conexao.filtros.keySet()) {
+                if (filtro.startsWith(PREFIXO_COMPARTILHADA)) {
+                    int fimGrupo = filtro.indexOf('/', PREFIXO_COMPARTILHADA.length());
+                    if (fimGrupo > 0 && aceita(filtro.substring(fimGrupo + 1), topico)) {
+                        grupos.computeIfAbsent(filtro, chave -> new ArrayList<>()).add(conexao);
+                    }
+                } else if (!entregue && aceita(filtro, topico)) {
+                    conexao.escrever(pacote.para(conexao.versao));
+                    entregue = true;
+                }
+            }
+        }
+        for (Map.Entry<String, List<Conexao>> grupo : grupos.entrySet()) {
+            List<Conexao> membros = grupo.getValue();
+            long vez = rodizioCompartilhadas.computeIfAbsent(grupo.getKey(), chave -> new AtomicLong())
+                    .getAndIncrement();
+            Conexao escolhida = membros.get((int) (vez % membros.size()));
+            escolhida.escrever(pacote.para(escolhida.versao));
+        }
+    }
+
+    /**
+     * Verifica se um tópico é aceito por um filtro com os curingas {@code +} (um nível) e {@code #} (os demais).
+     */
+    static boolean aceita(String filtro, String topico) {
+        String[] niveisFiltro = filtro.split("/", -1);
+        String[] niveisTopico = topico.split("/", -1);
+        for (int i = 0; i < niveisFiltro.length; i++) {
+            if (niveisFiltro[i].equals("#")) {
+                return true;
+            }
+            if (i >= niveisTopico.length || !niveisFiltro[i].equals("+") && !niveisFiltro[i].equals(niveisTopico[i])) {
+                return false;
+            }
+        }
+        return niveisFiltro.length == niveisTopico.length;
+    }
+
+    private static byte[] montarPublicacao(String topico, byte[] payload, byte[] propriedades) {
+        byte[] nome = topico.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream corpo = new ByteArrayOutputStream(2 + nome.length + payload.length);
+        corpo.write(nome.length >> 8);
+        corpo.write(nome.length);
+        corpo.write(nome, 0, nome.length);
+        if (propriedades != null) {
+            escreverVariavel(corpo, propriedades.length);
+            corpo.write(propriedades, 0, propriedades.length);
+        }
+        corpo.write(payload, 0, payload.length);
+        return montarPacote(PUBLISH << 4, corpo.toByteArray());
+    }
+
+    /**
+     * Lê um inteiro de tamanho variável, o formato do tamanho restante e do tamanho das propriedades.
+     *
+     * @return o valor e a quantidade de bytes lidos.
+     */
+    private static int[] lerVariavel(byte[] corpo, int posicao) {
+        int valor = 0;
+        int multiplicador = 1;
+        int lidos = 0;
+        int digito;
+        do {
+            digito = corpo[posicao + lidos++] & 0xFF;
+            valor += (digito & 0x7F) * multiplicador;
+            multiplicador *= 128;
+        } while ((digito & 0x80) != 0);
+        return new int[]{valor, lidos};
+    }
+
+    private static void escreverVariavel(ByteArrayOutputStream saida, int valor) {
+        do {
+            int digito = valor % 128;
+            valor /= 128;
+            saida.write(valor > 0 ? digito | 0x80 : digito);
+        } while (valor > 0);
+    }
+
+    /**
+     * @return o tamanho do valor de uma propriedade de PUBLISH, sem o identificador.
+     */
+    private static int tamanhoPropriedade(byte[] corpo, int posicao, int identificador) {
+        switch (identificador) {
+            case 0x01:
+                return 1;
+            case 0x02:
+                return 4;
+            case 0x03:
+            case 0x08:
+            case 0x09:
+                return 2 + ((corpo[posicao] & 0xFF) << 8 | corpo[posicao + 1] & 0xFF);
+            case 0x0B:
+                return lerVariavel(corpo, posicao)[1];
+            case ALIAS_TOPICO:
+                return 2;
+            case 0x26:
+                int chave = 2 + ((corpo[posicao] & 0xFF) << 8 | corpo[posicao + 1] & 0xFF);
+                return chave + 2 + ((corpo[posicao + chave] & 0xFF) << 8 | corpo[posicao + chave + 1] & 0xFF);
+            default:
+                throw new IllegalArgumentException("Propriedade de PUBLISH desconhecida: " + identificador);
+        }
+    }
+
+    private static byte[] montarPacote(int cabecalho, byte[] corpo) {
+        ByteArrayOutputStream pacote = new ByteArrayOutputStream(corpo.length + 5);
+        pacote.write(cabecalho);
+        escreverVariavel(pacote, corpo.length);
+        pacote.write(corpo, 0, corpo.length);
+        return pacote.toByteArray();
+    }
+
+    private static byte[] confirmacao(int tipo, int flags, int identificador) {
+        return new byte[]{(byte) (tipo << 4 | flags), 2, (byte) (identificador >> 8), (byte) identificador};
+    }
+
+    /**
+     * Monta o pacote repassado a cada versão do protocolo apenas na primeira vez em que é usado.
+     */
+    private static final class PacotesPublicacao {
+        private final String topico;
+        private final byte[] payload;
+        private final byte[] propriedades;
+        private byte[] mqtt311;
+        private byte[] mqtt5;
+
+        private PacotesPublicacao(String topico, byte[] payload, byte[] propriedades) {
+            this.topico = topico;
+            this.payload = payload;
+            this.propriedades = propriedades;
+        }
+
+        private byte[] para(int versao) {
+            if (versao == MQTT_5) {
+                if (mqtt5 == null) {
+                    mqtt5 = montarPublicacao(topico, payload, propriedades);
+                }
+                return mqtt5;
+            }
+            if (mqtt311 == null) {
+                mqtt311 = montarPublicacao(topico, payload, null);
+            }
+            return mqtt311;
+        }
+    }
+
+    private final class Conexao {
+        private final Socket socket;
+        private final OutputStream saida;
+        private final Map<Integer, String> aliases = new HashMap<>();
+        private volatile Map<String, Boolean> filtros = new ConcurrentHashMap<>();
+        private volatile int versao;
+
+        private Conexao(Socket socket) throws IOException {
+            this.socket = socket;
+            this.saida = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        private void ler() {
+            try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+                while (true) {
+                    int cabecalho = entrada.read();
+                    if (cabecalho < 0) {
+                        break;
+                    }
+                    byte[] corpo = new byte[lerTamanho(entrada)];
+                    entrada.readFully(corpo);
+                    if (!tratar(cabecalho >> 4, cabecalho & 0x0F, corpo)) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                // Conexão encerrada pelo cliente ou pelo broker
+            } finally {
+                fechar();
+            }
+        }
+
+        /**
+         * @return {@code false} se o cliente pediu para desconectar.
+         */
+        private boolean tratar(int tipo, int flags, byte[] corpo) {
+            switch (tipo) {
+                case CONNECT:
+                    conectar(corpo);
+                    return true;
+                case PUBLISH:
+                    publicacoesRecebidas.incrementAndGet();
+                    int qos = flags >> 1 & 0x03;
+                    int tamanhoTopico = (corpo[0] & 0xFF) << 8 | corpo[1] & 0xFF;
+                    String topico = new String(corpo, 2, tamanhoTopico, StandardCharsets.UTF_8);
+                    int inicioPayload = 2 + tamanhoTopico + (qos > 0 ? 2 : 0);
+                    byte[] propriedades = new byte[0];
+                    if (versao == MQTT_5) {
+                        int[] tamanho = lerVariavel(corpo, inicioPayload);
+                        int inicio = inicioPayload + tamanho[1];
+                        inicioPayload = inicio + tamanho[0];
+                        ByteArrayOutputStream repassadas = new ByteArrayOutputStream();
+                        int posicaoPropriedade = inicio;
+                        while (posicaoPropriedade < inicioPayload) {
+                            int identificador = corpo[posicaoPropriedade] & 0xFF;
+                            int tamanhoValor = tamanhoPropriedade(corpo, posicaoPropriedade + 1, identificador);
+                            if (identificador == ALIAS_TOPICO) {
+                                int alias = (corpo[posicaoPropriedade + 1] & 0xFF) << 8
+                                        | corpo[posicaoPropriedade + 2] & 0xFF;
+                                if (topico.isEmpty()) {
+                                    topico = aliases.get(alias);
+                                    publicacoesComAlias.incrementAndGet();
+                                } else {
+                                    aliases.put(alias, topico);
+                                }
+                            } else {
+                                repassadas.write(corpo, posicaoPropriedade, 1 + tamanhoValor);
+                            }
+                            posicaoPropriedade += 1 + tamanhoValor;
+                        }
+                        propriedades = repassadas.toByteArray();
+                    }
+                    byte[] payload = new byte[corpo.length - inicioPayload];
+                    System.arraycopy(corpo, inicioPayload, payload, 0, payload.length);
+                    List<String> payloads = payloadsRecebidos;
+                    if (payloads != null) {
+                        payloads.add(new String(payload, StandardCharsets.UTF_8));
+                    }
+                    if (qos > 0) {
+                        int identificador = (corpo[2 + tamanhoTopico] & 0xFF) << 8 | corpo[3 + tamanhoTopico] & 0xFF;
+                        confirmar(confirmacao(qos == 1 ? PUBACK : PUBREC, 0, identificador));
+                    }
+                    repassar(topico, payload, propriedades);
+                    return true;
+                case PUBREL:
+                    confirmar(confirmacao(PUBCOMP, 0, (corpo[0] & 0xFF) << 8 | corpo[1] & 0xFF));
+                    return true;
+                case SUBSCRIBE:
+                case UNSUBSCRIBE:
+                    ByteArrayOutputStream resposta = new ByteArrayOutputStream();
+                    resposta.write(corpo, 0, 2);
+                    int posicao = 2;
+                    if (versao == MQTT_5) {
+                        int[] tamanho = lerVariavel(corpo, posicao);
+                        posicao += tamanho[1] + tamanho[0];
+                        resposta.write(0);
+                    }
+                    while (posicao < corpo.length) {
+                        int tamanhoFiltro = (corpo[posicao] & 0xFF) << 8 | corpo[posicao + 1] & 0xFF;
+                        String filtro = new String(corpo, posicao + 2, tamanhoFiltro, StandardCharsets.UTF_8);
+                        posicao += 2 + tamanhoFiltro;
+                        if (tipo == SUBSCRIBE) {
+                            filtros.put(filtro, Boolean.TRUE);
+                            posicao++;
+                            // Concede QoS 0 a todas as inscrições
+                            resposta.write(0);
+                        } else {
+                            filtros.remove(filtro);
+                            if (versao == MQTT_5) {
+                                resposta.write(0);
+                            }
+                        }
+                    }
+                    escrever(montarPacote((tipo + 1) << 4, resposta.toByteArray()));
+                    return true;
+                case PINGREQ:
+                    escrever(new byte[]{(byte) 0xD0, 0});
+                    return true;
+                case DISCONNECT:
+                    return false;
+                default:
+                    // PUBACK, PUBREC e PUBCOMP não chegam, porque o broker só repassa com QoS 0
+                    return true;
+            }
+        }
+
+        /**
+         * Lê a versão do protocolo, o ID do cliente e a flag de sessão limpa, e retoma as inscrições de uma sessão
+         * persistente existente.
+         */
+        private void conectar(byte[] corpo) {
+            int tamanhoProtocolo = (corpo[0] & 0xFF) << 8 | corpo[1] & 0xFF;
+            versao = corpo[2 + tamanhoProtocolo] & 0xFF;
+            int flags = corpo[3 + tamanhoProtocolo] & 0xFF;
+            int inicioId = 6 + tamanhoProtocolo;
+            if (versao == MQTT_5) {
+                int[] tamanho = lerVariavel(corpo, inicioId);
+                inicioId += tamanho[1] + tamanho[0];
+            }
+            int tamanhoId = (corpo[inicioId] & 0xFF) << 8 | corpo[inicioId + 1] & 0xFF;
+            String clienteId = new String(corpo, inicioId + 2, tamanhoId, StandardCharsets.UTF_8);
+            boolean sessaoPresente = false;
+            if ((flags & 0x02) != 0) {
+                sessoes.remove(clienteId);
+            } else {
+                Map<String, Boolean> existente = sessoes.putIfAbsent(clienteId, filtros);
+                if (existente != null) {
+                    filtros = existente;
+                    sessaoPresente = true;
+                }
+            }
+            if (versao == MQTT_5) {
+                escrever(new byte[]{0x20, 6, (byte) (sessaoPresente ? 1 : 0), 0, 3, ALIAS_TOPICO_MAXIMO_PROPRIEDADE, 0,
+                        ALIAS_TOPICO_MAXIMO});
+            } else {
+                escrever(new byte[]{0x20, 2, (byte) (sessaoPresente ? 1 : 0), 0});
+            }
+        }
+
+        private void confirmar(byte[] pacote) {
+            if (atrasoConfirmacaoMicros <= 0) {
+                escrever(pacote);
+                return;
+            }
+            try {
+                agendador.schedule(() -> escrever(pacote), atrasoConfirmacaoMicros, TimeUnit.MICROSECONDS);
+            } catch (RuntimeException e) {
+                // Broker encerrado
+            }
+        }
+
+        private void escrever(byte[] pacote) {
+            synchronized (saida) {
+                try {
+                    saida.write(pacote);
+                    saida.flush();
+                } catch (IOException e) {
+                    fechar();
+                }
+            }
+        }
+
+        private void fechar() {
+            conexoes.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Já fechada
+            }
+        }
+
+        private int lerTamanho(DataInputStream entrada) throws IOException {
+            int tamanho = 0;
+            int multiplicador = 1;
+            int digito;
+            do {
+                digito = entrada.read();
+                if (digito < 0) {
+                    throw new EOFException();
+                }
+                tamanho += (digito & 0x7F) * multiplicador;
+                multiplicador *= 128;
+            } while ((digito & 0x80) != 0);
+            return tamanho;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package br.edu.unifei.gui.mqtt;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+import br.edu.unifei.tratamento.TratadorConsulta;
+import br.edu.unifei.tratamento.TratadorMensagemFactory;
+import br.edu.unifei.utils.LogTextAreaUtils;
+import com.google.gson.JsonObject;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.JTextArea;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TesteClusterMqtt {
+
+    private static final String ACAO = "CONSULTAR_ECO_CLUSTER";
+    private static final String TOPICO_SERVIDOR = "topico/servidor";
+
+    private BrokerMqttLocal broker;
+    private final List<MqttPahoAsyncClient> instancias = new ArrayList<>();
+    private final Map<Integer, AtomicInteger> respostasPorId = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> respostasPorInstancia = new ConcurrentHashMap<>();
+    private MqttClient barramento;
+
+    @BeforeEach
+    public void iniciar() throws Exception {
+        broker = new BrokerMqttLocal(0);
+        TratadorMensagemFactory.registrar(ACAO, (TratadorConsulta) mensagem -> new Mensagem(
+                "RESULTADO_" + ACAO, mensagem.getDestino(), mensagem.getOrigem(), mensagem.getConteudo()));
+
+        barramento = new MqttClient(broker.getUrl(), "barramento", new MemoryPersistence());
+        barramento.setCallback(new MqttCallback() {
+            @Override
+            public void connectionLost(Throwable causa) {
+            }
+
+            @Override
+            public void messageArrived(String topico, MqttMessage mensagem) {
+                Mensagem resposta = Mensagem.fromJson(mensagem.getPayload());
+                respostasPorId.computeIfAbsent(resposta.getConteudo().get("id").getAsInt(),
+                        id -> new AtomicInteger()).incrementAndGet();
+                respostasPorInstancia.computeIfAbsent(resposta.getMetadata().get("instancia_servidor").getAsString(),
+                        instancia -> new AtomicInteger()).incrementAndGet();
+            }
+
+            @Override
+            public void deliveryComplete(IMqttDeliveryToken token) {
+            }
+        });
+        barramento.connect();
+        barramento.subscribe("topico/barramento");
+    }
+
+    @AfterEach
+    public void encerrar() throws Exception {
+        for (MqttPahoAsyncClient instancia : instancias) {
+            instancia.disconnect();
+        }
+        barramento.disconnect();
+        barramento.close();
+        broker.close();
+    }
+
+    @Test
+    public void instanciasDoGrupoDividemAsRequisicoesSemDuplicar() throws Exception {
+        for (String nome : new String[]{"a", "b", "c"}) {
+            iniciarInstancia(new IdentidadeInstancia("aplicacao_servidor", "servidores", nome));
+        }
+
+        int total = 300;
+        publicarRequisicoes(total);
+        aguardar(() -> respostasPorId.size() >= total);
+
+        assertEquals(total, respostasPorId.size());
+        for (int i = 0; i < total; i++) {
+            assertEquals(1, respostasPorId.get(i).get(), "Requisição " + i + " respondida mais de uma vez");
+        }
+        assertEquals(3, respostasPorInstancia.size());
+        for (String nome : new String[]{"a", "b", "c"}) {
+            assertEquals(100, respostasPorInstancia.get("aplicacao_servidor-" + nome).get());
+        }
+    }
+
+    @Test
+    public void instanciasForaDoClusterRecebemCopiasDeTudo() throws Exception {
+        // O comportamento que o modo cluster evita: duas instâncias inscritas diretamente respondem em dobro
+        iniciarInstancia(new IdentidadeInstancia("aplicacao_servidor-a", null, null));
+        iniciarInstancia(new IdentidadeInstancia("aplicacao_servidor-b", null, null));
+
+        int total = 50;
+        publicarRequisicoes(total);
+        aguardar(() -> respostasPorInstancia.values().stream().mapToInt(AtomicInteger::get).sum() >= 2 * total);
+
+        for (int i = 0; i < total; i++) {
+            assertEquals(2, respostasPorId.get(i).get());
+        }
+    }
+
+    private void iniciarInstancia(IdentidadeInstancia identidade) {
+        MqttPahoAsyncClient instancia = new MqttPahoAsyncClient(broker.getUrl(), identidade.getClientId(), 100,
+                10_000, 50, 400, new LogTextAreaUtils(new JTextArea()));
+        instancia.subscribe(identidade.filtroInscricao(TOPICO_SERVIDOR));
+        instancias.add(instancia);
+        assertTrue(broker.possuiInscricao(identidade.filtroInscricao(TOPICO_SERVIDOR)));
+    }
+
+    private void publicarRequisicoes(int total) throws Exception {
+        MqttClient cliente = new MqttClient(broker.getUrl(), "cliente", new MemoryPersistence());
+        MqttConnectOptions opcoes = new MqttConnectOptions();
+        // O publish síncrono retorna ao chegar o PUBACK, mas o Paho só desconta a mensagem das em voo depois, na
+        // thread de callbacks; com a janela padrão de 10, publicações seguidas podem falhar com 32202
+        opcoes.setMaxInflight(total);
+        cliente.connect(opcoes);
+        for (int i = 0; i < total; i++) {
+            JsonObject conteudo = new JsonObject();
+            conteudo.addProperty("id", i);
+            Mensagem requisicao = new Mensagem(ACAO, "cliente-" + i % 20, TOPICO_SERVIDOR, conteudo);
+            cliente.publish(TOPICO_SERVIDOR, requisicao.toJsonBytes(), 1, false);
+        }
+        cliente.disconnect();
+        cliente.close();
+    }
+
+    private static void aguardar(BooleanSupplier condicao) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 10_000;
+        while (!condicao.getAsBoolean() && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package br.edu.unifei.gui.mqtt;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TesteIdentidadeInstancia {
+
+    @Test
+    public void foraDoClusterUsaIdEInscricaoDiretos() {
+        IdentidadeInstancia identidade = new IdentidadeInstancia("aplicacao_servidor", null, "ignorada");
+
+        assertFalse(identidade.isCluster());
+        assertEquals("aplicacao_servidor", identidade.getClientId());
+        assertEquals("topico/servidor", identidade.filtroInscricao("topico/servidor"));
+    }
+
+    @Test
+    public void noClusterCadaInstanciaTemIdProprioEInscricaoCompartilhada() {
+        IdentidadeInstancia a = new IdentidadeInstancia("aplicacao_servidor", "servidores", "a");
+        IdentidadeInstancia b = new IdentidadeInstancia("aplicacao_servidor", "servidores", "b");
+
+        assertTrue(a.isCluster());
+        assertEquals("aplicacao_servidor-a", a.getClientId());
+        assertEquals("aplicacao_servidor-b", b.getClientId());
+        assertEquals("$share/servidores/topico/servidor", a.filtroInscricao("topico/servidor"));
+        assertEquals(a.filtroInscricao("topico/servidor/cbor"), b.filtroInscricao("topico/servidor/cbor"));
+    }
+
+    @Test
+    public void grupoOuInstanciaInvalidosSaoRejeitados() {
+        for (String grupo : new String[]{"", "servidores/a", "servidores+", "#"}) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> new IdentidadeInstancia("aplicacao_servidor", grupo, "a"));
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> new IdentidadeInstancia("aplicacao_servidor", "servidores", ""));
+    }
+
+    @Test
+    public void configuracaoPadraoNaoUsaCluster() {
+        IdentidadeInstancia identidade = IdentidadeInstancia.daConfiguracao();
+
+        assertFalse(identidade.isCluster());
+        assertEquals("aplicacao_servidor", identidade.getClientId());
+    }
+
+    @Test
+    public void clusterSemNomeDeInstanciaNaConfiguracaoERejeitado() {
+        for (String instancia : new String[]{null, "", "  "}) {
+            IllegalArgumentException erro = assertThrows(IllegalArgumentException.class,
+                    () -> IdentidadeInstancia.daConfiguracao("aplicacao_servidor", true, "servidores", instancia));
+            assertTrue(erro.getMessage().contains("mqtt.cluster.instancia"), erro.getMessage());
+        }
+
+        IdentidadeInstancia identidade = IdentidadeInstancia.daConfiguracao("aplicacao_servidor", true,
+                " servidores ", " a ");
+        assertEquals("aplicacao_servidor-a", identidade.getClientId());
+        assertEquals("$share/servidores/topico/servidor", identidade.filtroInscricao("topico/servidor"));
+    }
+}
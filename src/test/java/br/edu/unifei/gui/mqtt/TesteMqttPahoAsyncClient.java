@@ -0,0 +1,258 @@
+package br.edu.unifei.gui.mqtt;
+
+import br.edu.unifei.utils.LogTextAreaUtils;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.JTextArea;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TesteMqttPahoAsyncClient {
+
+    private static final int CAPACIDADE_FILA = 10_000;
+    private static final long ESPERA_INICIAL_MS = 50;
+    private static final long ESPERA_MAXIMA_MS = 400;
+
+    private BrokerMqttLocal broker;
+    private final List<MqttPahoAsyncClient> clientes = new ArrayList<>();
+
+    @BeforeEach
+    public void iniciarBroker() throws Exception {
+        broker = new BrokerMqttLocal(2_000);
+    }
+
+    @AfterEach
+    public void encerrarBroker() throws Exception {
+        for (MqttPahoAsyncClient cliente : clientes) {
+            cliente.disconnect();
+        }
+        broker.close();
+    }
+
+    @Test
+    public void publicacoesAlemDaJanelaAguardamConfirmacao() throws Exception {
+        MqttPahoAsyncClient cliente = conectar("janela-3", 3, CAPACIDADE_FILA);
+
+        List<CompletableFuture<Void>> confirmacoes = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            confirmacoes.add(cliente.publish("topico/barramento", "resposta " + i));
+        }
+
+        assertTrue(cliente.getEmVoo() <= 3);
+        assertTrue(cliente.getProfundidadeFila() > 0);
+        CompletableFuture.allOf(confirmacoes.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        assertEquals(30, broker.getPublicacoesRecebidas());
+        assertEquals(0, cliente.getEmVoo());
+        assertEquals(0, cliente.getProfundidadeFila());
+    }
+
+    @Test
+    public void mensagensChegamNaOrdemEmQueForamPublicadas() throws Exception {
+        List<String> recebidas = Collections.synchronizedList(new ArrayList<>());
+        MqttClient inscrito = new MqttClient(broker.getUrl(), "inscrito", new MemoryPersistence());
+        inscrito.setCallback(new MqttCallback() {
+            @Override
+            public void connectionLost(Throwable causa) {
+            }
+
+            @Override
+            public void messageArrived(String topico, MqttMessage mensagem) {
+                recebidas.add(new String(mensagem.getPayload(), StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public void deliveryComplete(IMqttDeliveryToken token) {
+            }
+        });
+        inscrito.connect();
+        inscrito.subscribe("topico/#");
+        MqttPahoAsyncClient cliente = conectar("janela-10", 10, CAPACIDADE_FILA);
+
+        List<CompletableFuture<Void>> confirmacoes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            confirmacoes.add(cliente.publish("topico/barramento", ("resposta " + i).getBytes(StandardCharsets.UTF_8)));
+        }
+        CompletableFuture.allOf(confirmacoes.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        aguardar(() -> recebidas.size() >= 200);
+        inscrito.disconnect();
+        inscrito.close();
+
+        assertEquals(200, recebidas.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals("resposta " + i, recebidas.get(i));
+        }
+    }
+
+    @Test
+    public void mensagemQueExpiraAntesDeTerVagaEDescartada() throws Exception {
+        broker.close();
+        // Cada PUBACK demora 400 ms: com janela de 1, a quarta mensagem só teria vaga depois de 1,2 s
+        broker = new BrokerMqttLocal(400_000);
+        MqttPahoAsyncClient cliente = conectar("expiracao", 1, CAPACIDADE_FILA);
+        PoliticaPublicacao.Regra regra = new PoliticaPublicacao.Regra(1, false, 1);
+
+        List<CompletableFuture<Void>> confirmacoes = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            confirmacoes.add(cliente.publish("topico/barramento", new byte[]{(byte) i}, regra));
+        }
+
+        for (int i = 0; i < 3; i++) {
+            confirmacoes.get(i).get(10, TimeUnit.SECONDS);
+        }
+        CompletionException erro = assertThrows(CompletionException.class, confirmacoes.get(3)::join);
+        assertTrue(erro.getCause() instanceof TimeoutException);
+        assertEquals(3, broker.getPublicacoesRecebidas());
+    }
+
+    @Test
+    public void publicacoesSemBrokerAguardamNaFilaAteConectar() throws Exception {
+        broker.close();
+        broker = new BrokerMqttLocal(0);
+        int porta = broker.getPorta();
+        broker.close();
+        MqttPahoAsyncClient cliente = conectar("sem-broker", 10, CAPACIDADE_FILA);
+
+        List<CompletableFuture<Void>> confirmacoes = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            confirmacoes.add(cliente.publish("topico/barramento", "resposta " + i));
+        }
+        Thread.sleep(200);
+
+        assertFalse(cliente.isConectado());
+        assertEquals(5, cliente.getProfundidadeFila());
+        assertFalse(confirmacoes.get(0).isDone());
+
+        broker = new BrokerMqttLocal(porta, 0);
+        List<String> recebidas = broker.registrarPayloads();
+        CompletableFuture.allOf(confirmacoes.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+        assertEquals(List.of("resposta 0", "resposta 1", "resposta 2", "resposta 3", "resposta 4"), recebidas);
+        assertEquals(1, cliente.getReconexoes());
+        assertEquals(0, cliente.getProfundidadeFila());
+        aguardar(() -> cliente.getTaxaDrenagem() > 0);
+        assertTrue(cliente.getTaxaDrenagem() > 0);
+    }
+
+    @Test
+    public void filaCheiaDescartaAMaisAntiga() throws Exception {
+        broker.close();
+        MqttPahoAsyncClient cliente = conectar("fila-cheia", 10, 3);
+
+        List<CompletableFuture<Void>> confirmacoes = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            confirmacoes.add(cliente.publish("topico/barramento", "resposta " + i));
+        }
+
+        for (int i = 0; i < 2; i++) {
+            CompletionException erro = assertThrows(CompletionException.class, confirmacoes.get(i)::join);
+            assertTrue(erro.getCause() instanceof RejectedExecutionException);
+        }
+        assertFalse(confirmacoes.get(2).isDone());
+        assertEquals(3, cliente.getProfundidadeFila());
+        assertEquals(2, cliente.getDescartadas());
+    }
+
+    /**
+     * Cobre apenas a manutenção das inscrições. As mensagens publicadas para o cliente durante a queda não são
+     * reentregues: o {@link BrokerMqttLocal} repassa com QoS 0 e não guarda mensagens para sessões desconectadas.
+     */
+    @Test
+    public void inscricoesSobrevivemAQuedaEAoReinicioDoBroker() throws Exception {
+        MqttPahoAsyncClient cliente = conectar("inscricoes", 10, CAPACIDADE_FILA);
+        cliente.subscribe("topico/servidor");
+        assertTrue(broker.possuiInscricao("topico/servidor"));
+
+        // Queda da conexão: o broker mantém a sessão e as inscrições
+        broker.derrubarConexoes();
+        aguardar(() -> cliente.getReconexoes() == 1 && cliente.isConectado());
+        assertTrue(broker.possuiInscricao("topico/servidor"));
+
+        // Reinício do broker: a sessão se perde e o cliente refaz a inscrição
+        int porta = broker.getPorta();
+        broker.close();
+        broker = new BrokerMqttLocal(porta, 0);
+        aguardar(() -> cliente.getReconexoes() == 2 && broker.possuiInscricao("topico/servidor"));
+        assertTrue(broker.possuiInscricao("topico/servidor"));
+    }
+
+    /**
+     * Cobre o lado de quem publica: a fila de saída e o reenvio pelo Paho das mensagens sem confirmação. A reentrega
+     * com QoS 1 a inscritos com sessão persistente não é coberta, porque o {@link BrokerMqttLocal} repassa com QoS 0
+     * e perde as sessões ao ser encerrado.
+     */
+    @Test
+    public void reinicioDoBrokerSobCargaNaoPerdeNemReordenaRespostas() throws Exception {
+        broker.close();
+        broker = new BrokerMqttLocal(0);
+        int porta = broker.getPorta();
+        List<String> antes = broker.registrarPayloads();
+        MqttPahoAsyncClient cliente = conectar("sob-carga", 10, CAPACIDADE_FILA);
+        PoliticaPublicacao.Regra regra = new PoliticaPublicacao.Regra(1, false, 0);
+
+        int total = 3_000;
+        List<CompletableFuture<Void>> confirmacoes = new ArrayList<>();
+        List<String> depois = null;
+        for (int i = 0; i < total; i++) {
+            confirmacoes.add(cliente.publish("topico/barramento", String.valueOf(i).getBytes(StandardCharsets.UTF_8),
+                    regra));
+            if (i == 1_000) {
+                broker.close();
+            } else if (i == 2_000) {
+                broker = new BrokerMqttLocal(porta, 0);
+                depois = broker.registrarPayloads();
+            }
+            if (i % 10 == 0) {
+                Thread.sleep(1);
+            }
+        }
+        CompletableFuture.allOf(confirmacoes.toArray(new CompletableFuture<?>[0])).get(20, TimeUnit.SECONDS);
+
+        assertEquals(1, cliente.getReconexoes());
+        // Mensagens sem confirmação quando o broker caiu podem chegar aos dois, mas nenhuma se perde
+        Set<String> recebidas = new HashSet<>(antes);
+        recebidas.addAll(depois);
+        for (int i = 0; i < total; i++) {
+            assertTrue(recebidas.contains(String.valueOf(i)), "Resposta perdida: " + i);
+        }
+        for (int i = 1; i < depois.size(); i++) {
+            assertTrue(Integer.parseInt(depois.get(i - 1)) < Integer.parseInt(depois.get(i)),
+                    "Respostas fora de ordem: " + depois.get(i - 1) + " e " + depois.get(i));
+        }
+    }
+
+    private MqttPahoAsyncClient conectar(String id, int maxEmVoo, int capacidadeFila) {
+        MqttPahoAsyncClient cliente = new MqttPahoAsyncClient(broker.getUrl(), id, maxEmVoo, capacidadeFila,
+                ESPERA_INICIAL_MS, ESPERA_MAXIMA_MS, new LogTextAreaUtils(new JTextArea()));
+        clientes.add(cliente);
+        return cliente;
+    }
+
+    private static void aguardar(BooleanSupplier condicao) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 10_000;
+        while (!condicao.getAsBoolean() && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+    }
+}
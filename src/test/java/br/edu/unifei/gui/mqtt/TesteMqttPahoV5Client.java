@@ -0,0 +1,260 @@
+package br.edu.unifei.gui.mqtt;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+import br.edu.unifei.tratamento.TratadorConsulta;
+import br.edu.unifei.tratamento.TratadorMensagemFactory;
+import br.edu.unifei.utils.LogTextAreaUtils;
+import com.google.gson.JsonObject;
+import org.eclipse.paho.mqttv5.client.IMqttToken;
+import org.eclipse.paho.mqttv5.client.MqttCallback;
+import org.eclipse.paho.mqttv5.client.MqttClient;
+import org.eclipse.paho.mqttv5.client.MqttDisconnectResponse;
+import org.eclipse.paho.mqttv5.client.persist.MemoryPersistence;
+import org.eclipse.paho.mqttv5.common.MqttException;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.JTextArea;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TesteMqttPahoV5Client {
+
+    private static final String ACAO = "CONSULTAR_ECO_V5";
+    private static final String TOPICO_SERVIDOR = "topico/servidor";
+
+    private BrokerMqttLocal broker;
+    private MqttPahoV5Client servidor;
+    private final List<MqttClient> clientes = new ArrayList<>();
+
+    @BeforeEach
+    public void iniciar() throws Exception {
+        broker = new BrokerMqttLocal(0);
+        TratadorMensagemFactory.registrar(ACAO, (TratadorConsulta) mensagem -> new Mensagem(
+                "RESULTADO_" + ACAO, mensagem.getDestino(), mensagem.getOrigem(), mensagem.getConteudo()));
+        servidor = new MqttPahoV5Client(broker.getUrl(), "aplicacao_servidor", 100, 10_000, 1_000, 2_000, 60, 10,
+                new LogTextAreaUtils(new JTextArea()));
+        servidor.subscribe(TOPICO_SERVIDOR);
+        assertTrue(broker.possuiInscricao(TOPICO_SERVIDOR));
+    }
+
+    @AfterEach
+    public void encerrar() throws Exception {
+        servidor.disconnect();
+        for (MqttClient cliente : clientes) {
+            if (cliente.isConnected()) {
+                cliente.disconnect();
+            }
+            cliente.close();
+        }
+        broker.close();
+    }
+
+    @Test
+    public void respostaVaiParaOTopicoDeRespostaComCorrelacaoEPropriedades() throws Exception {
+        List<MqttMessage> respostas = inscrever("cliente/respostas/a");
+        List<MqttMessage> barramento = inscrever("topico/barramento");
+
+        MqttProperties propriedades = new MqttProperties();
+        propriedades.setResponseTopic("cliente/respostas/a");
+        propriedades.setCorrelationData("req-7".getBytes(StandardCharsets.UTF_8));
+        propriedades.setUserProperties(List.of(new UserProperty("origem", "cliente-a")));
+        requisitar(requisicao("cliente-a", 7), propriedades);
+        aguardar(() -> !respostas.isEmpty());
+
+        assertEquals(1, respostas.size());
+        MqttMessage resposta = respostas.get(0);
+        assertArrayEquals("req-7".getBytes(StandardCharsets.UTF_8), resposta.getProperties().getCorrelationData());
+        Map<String, String> usuario = propriedadesDeUsuario(resposta);
+        assertEquals("RESULTADO_" + ACAO, usuario.get("acao"));
+        assertEquals("cliente-a", usuario.get("destino"));
+        assertEquals("aplicacao_servidor", usuario.get("instancia_servidor"));
+        assertTrue(Long.parseLong(usuario.get("timestamp_servidor_msg_enviada"))
+                >= Long.parseLong(usuario.get("timestamp_servidor_msg_recebida")));
+        // O corpo continua o mesmo do MQTT 3.1.1, para quem não lê as propriedades
+        Mensagem corpo = Mensagem.fromJson(resposta.getPayload());
+        assertEquals(7, corpo.getConteudo().get("id").getAsInt());
+        assertEquals("aplicacao_servidor", corpo.getMetadata().get("instancia_servidor").getAsString());
+        assertTrue(barramento.isEmpty());
+    }
+
+    @Test
+    public void semTopicoDeRespostaARespostaVaiParaOBarramento() throws Exception {
+        List<MqttMessage> barramento = inscrever("topico/barramento");
+
+        requisitar(requisicao("cliente-b", 3), new MqttProperties());
+        aguardar(() -> !barramento.isEmpty());
+
+        assertEquals(1, barramento.size());
+        assertNull(barramento.get(0).getProperties().getCorrelationData());
+        assertEquals(3, Mensagem.fromJson(barramento.get(0).getPayload()).getConteudo().get("id").getAsInt());
+    }
+
+    @Test
+    public void publicacoesRepetidasUsamAliasDeTopicoEExpiracaoDaRegra() throws Exception {
+        List<MqttMessage> barramento = inscrever("topico/barramento");
+        PoliticaPublicacao.Regra regra = new PoliticaPublicacao.Regra(1, false, 60);
+
+        List<CompletableFuture<Void>> confirmacoes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            confirmacoes.add(servidor.publish("topico/barramento",
+                    ("resposta " + i).getBytes(StandardCharsets.UTF_8), regra));
+        }
+        CompletableFuture.allOf(confirmacoes.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        aguardar(() -> barramento.size() >= 20);
+
+        // Só a primeira publicação leva o tópico por extenso
+        assertTrue(broker.getPublicacoesComAlias() >= 19, "Publicações com alias: " + broker.getPublicacoesComAlias());
+        assertEquals(20, barramento.size());
+        for (MqttMessage mensagem : barramento) {
+            assertEquals(Long.valueOf(60), mensagem.getProperties().getMessageExpiryInterval());
+        }
+    }
+
+    @Test
+    public void semBrokerNaPrimeiraConexaoAsRespostasAguardamNaFilaLimitada() throws Exception {
+        String url = broker.getUrl();
+        int porta = broker.getPorta();
+        servidor.disconnect();
+        broker.close();
+        servidor = new MqttPahoV5Client(url, "aplicacao_servidor", 10, 4, 50, 400, 60, 10,
+                new LogTextAreaUtils(new JTextArea()));
+        PoliticaPublicacao.Regra regra = new PoliticaPublicacao.Regra(1, false, 60);
+
+        CompletableFuture<Void> maisAntiga = servidor.publish("topico/barramento", bytes("resposta 0"), regra);
+        CompletableFuture<Void> expirada = servidor.publish("topico/barramento", bytes("expira"),
+                new PoliticaPublicacao.Regra(1, false, 1));
+        List<CompletableFuture<Void>> confirmacoes = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            confirmacoes.add(servidor.publish("topico/barramento", bytes("resposta " + i), regra));
+        }
+        Thread.sleep(1_200);
+
+        assertFalse(servidor.isConectado());
+        CompletionException erro = assertThrows(CompletionException.class, maisAntiga::join);
+        assertTrue(erro.getCause() instanceof RejectedExecutionException);
+        assertEquals(1, servidor.getDescartadas());
+        assertEquals(4, servidor.getProfundidadeFila());
+
+        broker = new BrokerMqttLocal(porta, 0);
+        List<String> recebidas = broker.registrarPayloads();
+        CompletableFuture.allOf(confirmacoes.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+        erro = assertThrows(CompletionException.class, expirada::join);
+        assertTrue(erro.getCause() instanceof TimeoutException);
+        assertEquals(List.of("resposta 1", "resposta 2", "resposta 3"), recebidas);
+        assertEquals(1, servidor.getReconexoes());
+        assertEquals(0, servidor.getProfundidadeFila());
+        aguardar(() -> servidor.getTaxaDrenagem() > 0);
+        assertTrue(servidor.getTaxaDrenagem() > 0);
+    }
+
+    @Test
+    public void quedaDaConexaoReconectaEMantemAsInscricoes() throws Exception {
+        broker.derrubarConexoes();
+        aguardar(() -> servidor.getReconexoes() == 1 && servidor.isConectado());
+
+        assertTrue(servidor.isConectado());
+        assertTrue(broker.possuiInscricao(TOPICO_SERVIDOR));
+        List<MqttMessage> barramento = inscrever("topico/barramento");
+        servidor.publish("topico/barramento", "depois da queda").get(10, TimeUnit.SECONDS);
+        aguardar(() -> !barramento.isEmpty());
+        assertEquals("depois da queda", new String(barramento.get(0).getPayload(), StandardCharsets.UTF_8));
+    }
+
+    private static byte[] bytes(String texto) {
+        return texto.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Mensagem requisicao(String origem, int id) {
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("id", id);
+        return new Mensagem(ACAO, origem, TOPICO_SERVIDOR, conteudo);
+    }
+
+    private void requisitar(Mensagem requisicao, MqttProperties propriedades) throws MqttException {
+        MqttClient cliente = conectar("requisitante");
+        MqttMessage mensagem = new MqttMessage(requisicao.toJsonBytes());
+        mensagem.setQos(0);
+        mensagem.setProperties(propriedades);
+        cliente.publish(TOPICO_SERVIDOR, mensagem);
+    }
+
+    private List<MqttMessage> inscrever(String topico) throws MqttException {
+        List<MqttMessage> recebidas = Collections.synchronizedList(new ArrayList<>());
+        MqttClient cliente = new MqttClient(broker.getUrl(), "inscrito-" + clientes.size(), new MemoryPersistence());
+        cliente.setCallback(new MqttCallback() {
+            @Override
+            public void disconnected(MqttDisconnectResponse resposta) {
+            }
+
+            @Override
+            public void mqttErrorOccurred(MqttException erro) {
+            }
+
+            @Override
+            public void messageArrived(String topicoRecebido, MqttMessage mensagem) {
+                recebidas.add(mensagem);
+            }
+
+            @Override
+            public void deliveryComplete(IMqttToken token) {
+            }
+
+            @Override
+            public void connectComplete(boolean reconexao, String url) {
+            }
+
+            @Override
+            public void authPacketArrived(int codigo, MqttProperties propriedades) {
+            }
+        });
+        cliente.connect();
+        clientes.add(cliente);
+        cliente.subscribe(topico, 1);
+        return recebidas;
+    }
+
+    private MqttClient conectar(String clientId) throws MqttException {
+        MqttClient cliente = new MqttClient(broker.getUrl(), clientId, new MemoryPersistence());
+        cliente.connect();
+        clientes.add(cliente);
+        return cliente;
+    }
+
+    private static Map<String, String> propriedadesDeUsuario(MqttMessage mensagem) {
+        Map<String, String> usuario = new HashMap<>();
+        for (UserProperty propriedade : mensagem.getProperties().getUserProperties()) {
+            usuario.put(propriedade.getKey(), propriedade.getValue());
+        }
+        return usuario;
+    }
+
+    private static void aguardar(BooleanSupplier condicao) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 10_000;
+        while (!condicao.getAsBoolean() && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+    }
+}
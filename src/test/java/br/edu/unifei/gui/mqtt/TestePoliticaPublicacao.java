@@ -0,0 +1,72 @@
+package br.edu.unifei.gui.mqtt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestePoliticaPublicacao {
+
+    @Test
+    public void padraoMaisEspecificoPrevalece() {
+        Map<String, String> regras = new HashMap<>();
+        regras.put("*", "2,false,0");
+        regras.put("RESULTADO_CONSULTAR_*", "1,false,60");
+        regras.put("RESULTADO_CONSULTAR_*_PARCIAL", "0,false,10");
+        regras.put("REGISTRAR_SERVICO", "2,true,0");
+        PoliticaPublicacao politica = new PoliticaPublicacao(regras);
+
+        PoliticaPublicacao.Regra cotacao = politica.regraPara("RESULTADO_CONSULTAR_ACAO");
+        assertEquals(1, cotacao.getQos());
+        assertFalse(cotacao.isRetida());
+        assertEquals(60, cotacao.getExpiracaoSegundos());
+        assertEquals(0, politica.regraPara("RESULTADO_CONSULTAR_ACAO_LOTE_PARCIAL").getQos());
+        assertTrue(politica.regraPara("REGISTRAR_SERVICO").isRetida());
+        assertEquals(2, politica.regraPara("ARQUIVOS_BASE").getQos());
+        assertEquals(2, politica.regraPara("RESULTADO_CONSULTAR").getQos());
+    }
+
+    @Test
+    public void acaoSemRegraUsaOPadrao() {
+        Map<String, String> regras = new HashMap<>();
+        regras.put("RESULTADO_*", "0,false,5");
+        PoliticaPublicacao politica = new PoliticaPublicacao(regras);
+
+        assertSame(PoliticaPublicacao.Regra.PADRAO, politica.regraPara("REGISTRAR_SERVICO"));
+        assertEquals(0, politica.regraPara("RESULTADO_BUSCA").getQos());
+    }
+
+    @Test
+    public void padraoNaoEhExpressaoRegular() {
+        Map<String, String> regras = new HashMap<>();
+        regras.put("RESULTADO.CONSULTAR", "0,false,0");
+        PoliticaPublicacao politica = new PoliticaPublicacao(regras);
+
+        assertEquals(0, politica.regraPara("RESULTADO.CONSULTAR").getQos());
+        assertEquals(2, politica.regraPara("RESULTADO_CONSULTAR").getQos());
+    }
+
+    @Test
+    public void regraMalFormadaERejeitada() {
+        for (String invalida : new String[]{"3,false,0", "1,sim,0", "1,false", "1,false,-1", "um,false,0"}) {
+            Map<String, String> regras = new HashMap<>();
+            regras.put("*", invalida);
+            assertThrows(IllegalArgumentException.class, () -> new PoliticaPublicacao(regras));
+        }
+    }
+
+    @Test
+    public void configuracaoPadraoPublicaCotacoesComQos1() {
+        PoliticaPublicacao politica = PoliticaPublicacao.daConfiguracao();
+
+        assertEquals(1, politica.regraPara("RESULTADO_CONSULTAR_MOEDA").getQos());
+        assertEquals(2, politica.regraPara("REGISTRAR_SERVICO").getQos());
+        assertEquals(2, politica.regraPara("ENVIAR_MENSAGEM").getQos());
+    }
+}
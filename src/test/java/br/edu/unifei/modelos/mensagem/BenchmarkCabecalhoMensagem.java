@@ -0,0 +1,57 @@
+package br.edu.unifei.modelos.mensagem;
+
+import br.edu.unifei.tratamento.TratadorMensagemFactory;
+import br.edu.unifei.utils.MedidorDesempenho;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * Mede a latência de despacho (leitura da mensagem e escolha do tratador pela ação) e de encaminhamento de mensagens
+ * {@code ARQUIVOS_BASE} com {@code bytecode} de 1 KB a 8 MB, comparando a leitura completa do {@link CodecMensagem}
+ * com a leitura apenas do cabeçalho feita por {@link Mensagem#fromJson(byte[])}.
+ */
+public class BenchmarkCabecalhoMensagem {
+
+    private static final int[] TAMANHOS = {1024, 64 * 1024, 1024 * 1024, 8 * 1024 * 1024};
+
+    public static void main(String[] args) {
+        for (int tamanho : TAMANHOS) {
+            byte[] bytes = gerarMensagem(tamanho).toJsonBytes();
+
+            // Menos iterações para mensagens maiores, mantendo o tempo total de cada cenário parecido
+            int iteracoes = Math.max(20, 50_000_000 / tamanho);
+            int aquecimento = iteracoes / 2;
+            String sufixo = String.format(" [%d B]", bytes.length);
+
+            MedidorDesempenho.medir("despacho leitura completa" + sufixo, aquecimento, iteracoes,
+                    () -> TratadorMensagemFactory.getTratador(CodecMensagem.ler(bytes).getAcao()));
+            MedidorDesempenho.medir("despacho apenas cabeçalho" + sufixo, aquecimento, iteracoes,
+                    () -> TratadorMensagemFactory.getTratador(Mensagem.fromJson(bytes).getAcao()));
+            MedidorDesempenho.medir("encaminhamento leitura completa" + sufixo, aquecimento, iteracoes,
+                    () -> CodecMensagem.ler(bytes).toJsonBytes());
+            MedidorDesempenho.medir("encaminhamento apenas cabeçalho" + sufixo, aquecimento, iteracoes,
+                    () -> Mensagem.fromJson(bytes).toJsonBytes());
+            System.out.println();
+        }
+    }
+
+    /**
+     * Gera uma mensagem {@code ARQUIVOS_BASE} com um {@code bytecode} em base64 de aproximadamente o tamanho informado.
+     */
+    private static Mensagem gerarMensagem(int tamanhoBytecode) {
+        byte[] arquivo = new byte[tamanhoBytecode * 3 / 4];
+        new Random(42).nextBytes(arquivo);
+
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("nome_arquivo", "base.zip");
+        conteudo.addProperty("bytecode", Base64.getEncoder().encodeToString(arquivo));
+
+        Mensagem mensagem = new Mensagem("ARQUIVOS_BASE", "topico/cliente", "topico/servidor", conteudo);
+        mensagem.adicionarAoMetadata("timestamp_cliente_msg_enviada", new JsonPrimitive(System.currentTimeMillis()));
+        return mensagem;
+    }
+}
@@ -0,0 +1,56 @@
+package br.edu.unifei.modelos.mensagem;
+
+import br.edu.unifei.utils.MedidorDesempenho;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Mede a vazão e os bytes alocados por operação na leitura e escrita de mensagens de 200 B a 1 MB, comparando o
+ * {@link CodecMensagem} com a criação de um novo {@link Gson} a cada chamada, usada anteriormente.
+ */
+public class BenchmarkCodecMensagem {
+
+    private static final int[] TAMANHOS = {200, 1024, 16 * 1024, 128 * 1024, 1024 * 1024};
+
+    public static void main(String[] args) {
+        for (int tamanho : TAMANHOS) {
+            Mensagem mensagem = gerarMensagem(tamanho);
+            String json = mensagem.toJson();
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+            // Menos iterações para mensagens maiores, mantendo o tempo total de cada cenário parecido
+            int iteracoes = Math.max(50, 20_000_000 / (tamanho * 10));
+            int aquecimento = iteracoes / 2;
+            String sufixo = String.format(" [%d B]", bytes.length);
+
+            MedidorDesempenho.medir("leitura Gson por chamada" + sufixo, aquecimento, iteracoes,
+                    () -> new Gson().fromJson(new String(bytes, StandardCharsets.UTF_8), Mensagem.class));
+            MedidorDesempenho.medir("leitura CodecMensagem" + sufixo, aquecimento, iteracoes,
+                    () -> CodecMensagem.ler(bytes));
+            MedidorDesempenho.medir("escrita Gson por chamada" + sufixo, aquecimento, iteracoes,
+                    () -> new Gson().toJson(mensagem).getBytes(StandardCharsets.UTF_8));
+            MedidorDesempenho.medir("escrita CodecMensagem" + sufixo, aquecimento, iteracoes,
+                    () -> CodecMensagem.paraBytes(mensagem));
+            System.out.println();
+        }
+    }
+
+    /**
+     * Gera uma mensagem {@code ENVIAR_MENSAGEM} cujo JSON tem aproximadamente o tamanho informado.
+     */
+    private static Mensagem gerarMensagem(int tamanhoAproximado) {
+        JsonObject conteudo = new JsonObject();
+        StringBuilder texto = new StringBuilder();
+        for (int i = 0; texto.length() < Math.max(0, tamanhoAproximado - 150); i++) {
+            texto.append((char) ('a' + i % 26));
+        }
+        conteudo.addProperty("texto", texto.toString());
+
+        Mensagem mensagem = new Mensagem("ENVIAR_MENSAGEM", "topico/cliente", "topico/servidor", conteudo);
+        mensagem.adicionarAoMetadata("timestamp_cliente_msg_enviada", new JsonPrimitive(System.currentTimeMillis()));
+        return mensagem;
+    }
+}
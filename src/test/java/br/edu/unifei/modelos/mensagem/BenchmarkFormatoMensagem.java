@@ -0,0 +1,112 @@
+package br.edu.unifei.modelos.mensagem;
+
+import br.edu.unifei.utils.MedidorDesempenho;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Compara o tamanho e a vazão de codificação e decodificação de mensagens em JSON e em CBOR, usando uma consulta
+ * {@code CONSULTAR_ACAO}, sua resposta e mensagens {@code ARQUIVOS_BASE} com arquivos compactados de 4 KB a 64 KB.
+ * Também indica se cada mensagem cabe no limite de 16 KB de transferência em blocos do {@code CoapHandler}.
+ */
+public class BenchmarkFormatoMensagem {
+
+    private static final int LIMITE_COAP = 16384;
+    private static final int ITERACOES = 20_000;
+
+    public static void main(String[] args) throws IOException {
+        comparar("CONSULTAR_ACAO", gerarConsultaAcao());
+        comparar("RESULTADO_CONSULTAR_ACAO", gerarRespostaAcao());
+        for (int tamanho : new int[]{4 * 1024, 16 * 1024, 20 * 1024, 64 * 1024}) {
+            comparar(String.format("ARQUIVOS_BASE %d KB", tamanho / 1024), gerarArquivosBase(tamanho));
+        }
+    }
+
+    private static void comparar(String nome, Mensagem mensagem) {
+        byte[] json = mensagem.toJsonBytes();
+        byte[] cbor = CodecCborMensagem.paraBytes(mensagem);
+        if (!CodecCborMensagem.ler(cbor).toJson().equals(mensagem.toJson())) {
+            throw new IllegalStateException("Ida e volta em CBOR alterou a mensagem " + nome);
+        }
+
+        System.out.printf("%s: JSON %d B%s, CBOR %d B%s (%.1f%% do JSON)%n", nome,
+                json.length, json.length > LIMITE_COAP ? " [excede 16 KB]" : "",
+                cbor.length, cbor.length > LIMITE_COAP ? " [excede 16 KB]" : "",
+                100.0 * cbor.length / json.length);
+
+        int iteracoes = Math.max(200, ITERACOES * 256 / Math.max(256, json.length));
+        int aquecimento = iteracoes / 2;
+        MedidorDesempenho.medir("  codificação JSON", aquecimento, iteracoes, () -> CodecMensagem.paraBytes(mensagem));
+        MedidorDesempenho.medir("  codificação CBOR", aquecimento, iteracoes,
+                () -> CodecCborMensagem.paraBytes(mensagem));
+        MedidorDesempenho.medir("  decodificação JSON", aquecimento, iteracoes, () -> CodecMensagem.ler(json));
+        MedidorDesempenho.medir("  decodificação CBOR", aquecimento, iteracoes, () -> CodecCborMensagem.ler(cbor));
+        System.out.println();
+    }
+
+    private static Mensagem gerarConsultaAcao() {
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("simboloAcao", "IBM");
+        Mensagem mensagem = new Mensagem("CONSULTAR_ACAO", "topico/cliente", "topico/servidor", conteudo);
+        mensagem.adicionarAoMetadata("timestamp_cliente_msg_enviada", new JsonPrimitive(System.currentTimeMillis()));
+        return mensagem;
+    }
+
+    /**
+     * Gera a resposta com os mesmos campos produzidos pelo {@code ServicoAlphaVantageAPI}, relida do JSON para que os
+     * números tenham a mesma representação das mensagens recebidas pela rede.
+     */
+    private static Mensagem gerarRespostaAcao() {
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("precoAtual", new BigDecimal("221.0300"));
+        conteudo.addProperty("precoFechamentoAnterior", new BigDecimal("222.4600"));
+        conteudo.addProperty("maxDia", new BigDecimal("223.2500"));
+        conteudo.addProperty("minDia", new BigDecimal("220.6100"));
+        conteudo.addProperty("volume", 3_482_191L);
+        conteudo.add("metadata", new JsonObject());
+        Mensagem mensagem = new Mensagem("RESULTADO_CONSULTAR_ACAO", "topico/servidor", "topico/cliente", conteudo);
+        mensagem.adicionarAoMetadata("timestamp_cliente_msg_enviada", new JsonPrimitive(System.currentTimeMillis()));
+        mensagem.adicionarAoMetadata("timestamp_servidor_msg_recebida", new JsonPrimitive(System.currentTimeMillis()));
+        mensagem.adicionarAoMetadata("timestamp_servidor_msg_enviada", new JsonPrimitive(System.currentTimeMillis()));
+        return CodecMensagem.ler(mensagem.toJsonBytes());
+    }
+
+    /**
+     * Gera uma mensagem {@code ARQUIVOS_BASE} com um zip de aproximadamente o tamanho informado, contendo código-fonte
+     * Java e um arquivo binário pouco compressível, como os modelos enviados pelo barramento.
+     */
+    private static Mensagem gerarArquivosBase(int tamanhoZip) throws IOException {
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream saida = new ZipOutputStream(zip)) {
+            saida.putNextEntry(new ZipEntry("modelos/Servico.java"));
+            StringBuilder fonte = new StringBuilder();
+            for (int i = 0; fonte.length() < tamanhoZip; i++) {
+                fonte.append("    public String campo").append(i).append("() { return \"valor").append(i)
+                        .append("\"; }\n");
+            }
+            saida.write(fonte.toString().getBytes(StandardCharsets.UTF_8));
+            saida.closeEntry();
+
+            saida.putNextEntry(new ZipEntry("modelos/Servico.class"));
+            byte[] binario = new byte[tamanhoZip / 2];
+            new Random(42).nextBytes(binario);
+            saida.write(binario);
+            saida.closeEntry();
+        }
+
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("resposta", Base64.getEncoder().encodeToString(zip.toByteArray()));
+        Mensagem mensagem = new Mensagem("ARQUIVOS_BASE", "topico/barramento", "topico/servidor", conteudo);
+        mensagem.adicionarAoMetadata("timestamp_barramento_msg_enviada", new JsonPrimitive(System.currentTimeMillis()));
+        return mensagem;
+    }
+}
@@ -0,0 +1,153 @@
+package br.edu.unifei.modelos.mensagem;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TesteCabecalhoMensagem {
+
+    @Test
+    public void cabecalhoConfereComALeituraCompletaDoGson() {
+        String[] jsons = {
+                "{\"acao\":\"CONSULTAR_ACAO\",\"origem\":\"topico/cliente\",\"destino\":\"topico/servidor\","
+                        + "\"conteudo\":{\"simboloAcao\":\"IBM\"},\"metadata\":{\"id\":7}}",
+                // Campos em outra ordem, com espaços e campos desconhecidos que contêm os mesmos nomes
+                " \n{ \"metadata\" :\t{ \"acao\" : \"falsa\" } ,\r\n \"extra\" : [ { \"origem\" : \"falsa\" } ] ,"
+                        + " \"conteudo\" : { \"destino\" : \"falso\" } , \"destino\" : \"d\\u00e9st\\/ino\" ,"
+                        + " \"origem\" : \"or\\\"igem\" , \"acao\" : \"a\\u00e7\\u00e3o \\uD83D\\uDE00\" }\n",
+                "{\"conteudo\":null,\"acao\":\"SEM_CONTEUDO\",\"origem\":null}",
+                "{}",
+        };
+        for (String json : jsons) {
+            JsonObject gson = JsonParser.parseString(json).getAsJsonObject();
+            Mensagem cabecalho = Mensagem.fromJson(json.getBytes(StandardCharsets.UTF_8));
+
+            assertEquals(texto(gson, "acao"), cabecalho.getAcao(), json);
+            assertEquals(texto(gson, "origem"), cabecalho.getOrigem(), json);
+            assertEquals(texto(gson, "destino"), cabecalho.getDestino(), json);
+            assertEquals(gson.has("metadata") ? gson.get("metadata") : new JsonObject(), cabecalho.getMetadata());
+            JsonObject conteudo = gson.has("conteudo") && gson.get("conteudo").isJsonObject()
+                    ? gson.getAsJsonObject("conteudo") : null;
+            assertEquals(conteudo, cabecalho.getConteudo(), json);
+        }
+    }
+
+    @Test
+    public void campoTextoELidoSemInterpretarOConteudo() {
+        String json = "{\"acao\":\"A\",\"conteudo\":{ \"interno\" : { \"nome\" : \"errado\" } ,"
+                + " \"lista\" : [ \"nome\" ] , \"nome\" : \"J\\u00falia \\\"da\\\" Silva\" , \"nulo\" : null ,"
+                + " \"numero\" : 12 }}";
+        JsonObject gson = JsonParser.parseString(json).getAsJsonObject().getAsJsonObject("conteudo");
+        Mensagem mensagem = Mensagem.fromJson(json.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(gson.get("nome").getAsString(), mensagem.getCampoTexto("nome"));
+        assertNull(mensagem.getCampoTexto("nulo"));
+        assertNull(mensagem.getCampoTexto("ausente"));
+        assertThrows(JsonSyntaxException.class, () -> mensagem.getCampoTexto("numero"));
+        assertNotNull(mensagem.getConteudoNaoLido());
+
+        // Depois de interpretado, o conteúdo responde da mesma forma
+        assertEquals(gson, mensagem.getConteudo());
+        assertNull(mensagem.getConteudoNaoLido());
+        assertEquals(gson.get("nome").getAsString(), mensagem.getCampoTexto("nome"));
+        assertNull(mensagem.getCampoTexto("nulo"));
+    }
+
+    @Test
+    public void abrirCampoTextoDecodificaOBase64Escapado() throws IOException {
+        byte[] arquivo = new byte[50_000];
+        new Random(42).nextBytes(arquivo);
+        String base64 = Base64.getEncoder().encodeToString(arquivo);
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("bytecode", base64);
+        conteudo.addProperty("nulo", (String) null);
+        conteudo.addProperty("numero", 1);
+        Mensagem original = new Mensagem("ARQUIVOS_BASE", "topico/cliente", "topico/servidor", conteudo);
+        // O Gson padrão escapa o '=' do preenchimento como sequência Unicode; outros codificadores escapam '/'
+        String json = new Gson().toJson(JsonParser.parseString(original.toJson())).replace("/", "\\/");
+        assertTrue(json.contains("\\u003d") && json.contains("\\/"), "O JSON deveria conter escapes");
+
+        Mensagem mensagem = Mensagem.fromJson(json.getBytes(StandardCharsets.UTF_8));
+
+        byte[] lidoEmBlocos;
+        try (InputStream entrada = mensagem.abrirCampoTexto("bytecode")) {
+            lidoEmBlocos = lerEmBlocos(entrada, 7);
+        }
+        ByteArrayOutputStream porByte = new ByteArrayOutputStream();
+        try (InputStream entrada = mensagem.abrirCampoTexto("bytecode")) {
+            int b;
+            while ((b = entrada.read()) >= 0) {
+                porByte.write(b);
+            }
+        }
+        assertArrayEquals(base64.getBytes(StandardCharsets.US_ASCII), lidoEmBlocos);
+        assertArrayEquals(lidoEmBlocos, porByte.toByteArray());
+        assertArrayEquals(arquivo, Base64.getDecoder().decode(lidoEmBlocos));
+        assertNull(mensagem.abrirCampoTexto("nulo"));
+        assertNull(mensagem.abrirCampoTexto("ausente"));
+        assertThrows(JsonSyntaxException.class, () -> mensagem.abrirCampoTexto("numero"));
+        assertNotNull(mensagem.getConteudoNaoLido());
+    }
+
+    @Test
+    public void abrirCampoTextoDecodificaEscapesDeVariosBytes() throws IOException {
+        String json = "{\"conteudo\":{\"texto\":\"\\u00e7\\u20ac\\uD83D\\uDE00\\n\\t\\\\\\\"\\/ fim ç€😀\"}}";
+        String esperado = JsonParser.parseString(json).getAsJsonObject().getAsJsonObject("conteudo")
+                .get("texto").getAsString();
+
+        try (InputStream entrada = Mensagem.fromJson(json.getBytes(StandardCharsets.UTF_8))
+                .abrirCampoTexto("texto")) {
+            assertEquals(esperado, new String(lerEmBlocos(entrada, 3), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void conteudoNuncaLidoEReescritoByteAByte() {
+        // Espaços, notações numéricas e escapes que uma nova serialização não preservaria
+        String conteudo = "{ \"preco\" : 1.50e+2 ,\n\t\"nome\" : \"J\\u00falia\" , \"lista\" : [ 1 , 2.0 ] ,"
+                + " \"barra\" : \"a\\/b\" }";
+        String json = "{\"acao\":\"A\",\"origem\":\"o\",\"destino\":\"d\",\"conteudo\":" + conteudo
+                + ",\"metadata\":{\"id\":1}}";
+        Mensagem mensagem = Mensagem.fromJson(json.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("Júlia", mensagem.getCampoTexto("nome"));
+        mensagem.adicionarAoMetadata("timestamp", JsonParser.parseString("2"));
+
+        String reescrito = new String(mensagem.toJsonBytes(), StandardCharsets.UTF_8);
+        assertTrue(reescrito.contains("\"conteudo\":" + conteudo + ","), reescrito);
+        assertEquals(reescrito, mensagem.toJson());
+        JsonObject lido = JsonParser.parseString(reescrito).getAsJsonObject();
+        assertEquals(JsonParser.parseString(conteudo), lido.get("conteudo"));
+        assertEquals(JsonParser.parseString("{\"id\":1,\"timestamp\":2}"), lido.get("metadata"));
+    }
+
+    private static String texto(JsonObject objeto, String campo) {
+        return objeto.has(campo) && !objeto.get(campo).isJsonNull() ? objeto.get(campo).getAsString() : null;
+    }
+
+    private static byte[] lerEmBlocos(InputStream entrada, int tamanhoBloco) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        byte[] bloco = new byte[tamanhoBloco];
+        int lidos;
+        while ((lidos = entrada.read(bloco, 0, bloco.length)) >= 0) {
+            saida.write(bloco, 0, lidos);
+        }
+        return saida.toByteArray();
+    }
+}
@@ -0,0 +1,78 @@
+package br.edu.unifei.modelos.mensagem;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TesteCodecCborMensagem {
+
+    @Test
+    public void idaEVoltaPreservaAMensagem() {
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("simboloAcao", "IBM");
+        conteudo.addProperty("preco", new BigDecimal("187.4300"));
+        conteudo.addProperty("volume", 4_215_733L);
+        conteudo.addProperty("negativo", -12);
+        conteudo.addProperty("ativo", true);
+        JsonArray historico = new JsonArray();
+        historico.add(1.5);
+        historico.add("texto");
+        conteudo.add("historico", historico);
+        Mensagem mensagem = new Mensagem("RESULTADO_CONSULTAR_ACAO", "topico/servidor", "topico/cliente", conteudo);
+        mensagem.adicionarAoMetadata("timestamp_servidor_msg_enviada", new JsonPrimitive(1_700_000_000_000L));
+
+        assertEquals(mensagem.toJson(), CodecCborMensagem.ler(CodecCborMensagem.paraBytes(mensagem)).toJson());
+    }
+
+    @Test
+    public void camposBinariosEmBase64VoltamIguaisEOcupamMenos() {
+        byte[] arquivo = new byte[3000];
+        for (int i = 0; i < arquivo.length; i++) {
+            arquivo[i] = (byte) (i * 31);
+        }
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("bytecode", Base64.getEncoder().encodeToString(arquivo));
+        Mensagem mensagem = new Mensagem("ARQUIVOS_BASE", "topico/cliente", "topico/servidor", conteudo);
+
+        byte[] cbor = CodecCborMensagem.paraBytes(mensagem);
+
+        assertTrue(cbor.length < arquivo.length + 200, "CBOR com " + cbor.length + " bytes");
+        assertEquals(mensagem.toJson(), CodecCborMensagem.ler(cbor).toJson());
+    }
+
+    @Test
+    public void textoQueNaoEhBase64CanonicoSegueComoTexto() {
+        // "AB==" e "AA==" decodificam para o mesmo byte; "AB==" não pode virar bytes
+        for (String texto : new String[]{"AB==", "abc=", "ABCD====", "não é base64", "", "AQ=="}) {
+            JsonObject conteudo = new JsonObject();
+            conteudo.addProperty("resposta", texto);
+            conteudo.addProperty("bytecode", texto);
+            Mensagem mensagem = new Mensagem("RESULTADO_BUSCA", "topico/servidor", "topico/cliente", conteudo);
+
+            Mensagem lida = CodecCborMensagem.ler(CodecCborMensagem.paraBytes(mensagem));
+
+            assertEquals(texto, lida.getConteudo().get("resposta").getAsString());
+            assertEquals(texto, lida.getConteudo().get("bytecode").getAsString());
+        }
+    }
+
+    @Test
+    public void camposForaDosBinariosNaoSaoConvertidos() {
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("simboloAcao", "AQ==");
+        Mensagem mensagem = new Mensagem("CONSULTAR_ACAO", "topico/cliente", "topico/servidor", conteudo);
+
+        byte[] cbor = CodecCborMensagem.paraBytes(mensagem);
+
+        assertTrue(new String(cbor, StandardCharsets.UTF_8).contains("AQ=="));
+        assertEquals(mensagem.toJson(), CodecCborMensagem.ler(cbor).toJson());
+    }
+}
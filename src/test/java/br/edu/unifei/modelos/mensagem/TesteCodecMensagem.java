@@ -0,0 +1,210 @@
+package br.edu.unifei.modelos.mensagem;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TesteCodecMensagem {
+
+    /**
+     * Caracteres de 1 a 4 bytes em UTF-8, caracteres de controle e todos os que o JSON exige escapar.
+     */
+    private static final String TEXTO = "aspas \" barra \\ / controle \b\f\n\r\t\u0001\u001f ç ã € 中 😀 𝄞 fim";
+
+    @Test
+    public void idaEVoltaConfereComOGson() throws Exception {
+        Mensagem mensagem = new Mensagem(TEXTO, "topico/😀", "topico/ç", conteudoCompleto());
+        mensagem.adicionarAoMetadata("texto", new JsonPrimitive(TEXTO));
+
+        byte[] bytes = CodecMensagem.paraBytes(mensagem);
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        CodecMensagem.escrever(mensagem, saida);
+
+        // Como na serialização padrão do Gson, campos nulos não são escritos
+        JsonObject esperado = JsonParser.parseString(new String(bytes, StandardCharsets.UTF_8)).getAsJsonObject();
+        assertEquals(TEXTO, esperado.get("acao").getAsString());
+        assertEquals(JsonParser.parseString(new Gson().toJson(conteudoCompleto())), esperado.get("conteudo"));
+        assertFalse(esperado.getAsJsonObject("conteudo").has("nulo"));
+        assertEquals(esperado, JsonParser.parseString(CodecMensagem.paraString(mensagem)));
+        assertEquals(esperado, JsonParser.parseString(saida.toString(StandardCharsets.UTF_8)));
+
+        for (Mensagem lida : new Mensagem[]{CodecMensagem.ler(bytes), CodecMensagem.lerCabecalho(bytes),
+                CodecMensagem.ler(new String(bytes, StandardCharsets.UTF_8)),
+                CodecMensagem.ler(new ByteArrayInputStream(bytes))}) {
+            assertEquals(TEXTO, lida.getAcao());
+            assertEquals("topico/😀", lida.getOrigem());
+            assertEquals("topico/ç", lida.getDestino());
+            assertEquals(esperado.get("conteudo"), lida.getConteudo());
+            assertEquals(TEXTO, lida.getMetadata().get("texto").getAsString());
+        }
+    }
+
+    @Test
+    public void sequenciasDeEscapeSaoDecodificadasComoNoGson() {
+        String json = "{\"acao\":\"\\\"\\\\\\/\\b\\f\\n\\r\\t\\u00e7\\u20AC\\uD83D\\uDE00\\ud834\\udd1e\","
+                + "\"conteudo\":{\"texto\":\"x\\u0000y\\uDBFF\\uDFFF\"}}";
+        JsonObject esperado = JsonParser.parseString(json).getAsJsonObject();
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+        for (Mensagem lida : new Mensagem[]{CodecMensagem.ler(bytes), CodecMensagem.lerCabecalho(bytes),
+                CodecMensagem.ler(json)}) {
+            assertEquals("\"\\/\b\f\n\r\tç€😀𝄞", lida.getAcao());
+            assertEquals(esperado.get("acao").getAsString(), lida.getAcao());
+            assertEquals(esperado.get("conteudo"), lida.getConteudo());
+        }
+    }
+
+    @Test
+    public void utf8DeDoisATresEQuatroBytesAtravessaOBufferDoLeitor() throws Exception {
+        // Muitos caracteres de vários bytes para que alguns fiquem divididos entre duas leituras do stream
+        String[] caracteres = {"ç", "€", "😀", "a"};
+        StringBuilder texto = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            texto.append(caracteres[i % caracteres.length]);
+        }
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("texto", texto.toString());
+        Mensagem mensagem = new Mensagem("ACAO", "origem", "destino", conteudo);
+        byte[] bytes = CodecMensagem.paraBytes(mensagem);
+
+        assertEquals(new String(bytes, StandardCharsets.UTF_8), CodecMensagem.paraString(mensagem));
+        assertEquals(texto.toString(),
+                CodecMensagem.ler(new ByteArrayInputStream(bytes)).getConteudo().get("texto").getAsString());
+        assertEquals(texto.toString(), CodecMensagem.ler(bytes).getConteudo().get("texto").getAsString());
+    }
+
+    @Test
+    public void conteudoEMetadataNulosOuAusentes() {
+        for (String json : new String[]{"{\"acao\":\"A\"}", "{\"acao\":\"A\",\"conteudo\":null,\"metadata\":null}",
+                " { \"metadata\" : null , \"conteudo\" : null , \"acao\" : \"A\" } "}) {
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            for (Mensagem lida : new Mensagem[]{CodecMensagem.ler(bytes), CodecMensagem.lerCabecalho(bytes)}) {
+                assertEquals("A", lida.getAcao());
+                assertNull(lida.getOrigem());
+                assertNull(lida.getConteudo());
+                assertEquals(new JsonObject(), lida.getMetadata());
+
+                JsonObject escrito = JsonParser.parseString(lida.toJson()).getAsJsonObject();
+                assertFalse(escrito.has("conteudo"), json);
+                assertFalse(escrito.has("origem"), json);
+                assertEquals(new JsonObject(), escrito.get("metadata"));
+            }
+        }
+    }
+
+    @Test
+    public void numerosNoLimiteDoBigDecimalNaoPerdemPrecisao() {
+        String[] numeros = {"123456789012345678901234567890.123456789012345678901234567890", "1e400", "-1E-400",
+                "9223372036854775808", "-0.0", "0.1", "187.4300"};
+        StringBuilder json = new StringBuilder("{\"acao\":\"A\",\"conteudo\":{\"numeros\":[");
+        for (int i = 0; i < numeros.length; i++) {
+            json.append(i > 0 ? "," : "").append(numeros[i]);
+        }
+        json.append("]}}");
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+
+        for (Mensagem lida : new Mensagem[]{CodecMensagem.ler(bytes), CodecMensagem.lerCabecalho(bytes)}) {
+            JsonArray lidos = lida.getConteudo().getAsJsonArray("numeros");
+            JsonArray reescritos = JsonParser.parseString(CodecMensagem.paraString(lida)).getAsJsonObject()
+                    .getAsJsonObject("conteudo").getAsJsonArray("numeros");
+            for (int i = 0; i < numeros.length; i++) {
+                assertEquals(new BigDecimal(numeros[i]), lidos.get(i).getAsBigDecimal());
+                assertEquals(new BigDecimal(numeros[i]), reescritos.get(i).getAsBigDecimal());
+            }
+        }
+    }
+
+    @Test
+    public void objetosEArraysAninhados() {
+        String json = "{\"acao\":\"A\",\"conteudo\":{\"a\":[[],{},[{\"b\":[1,[2,[3,{\"c\":null}]]]}],"
+                + "\"}]\\\"{[\"],\"d\":{\"e\":{\"f\":{\"g\":[true,false,null]}}}},"
+                + "\"metadata\":{\"lista\":[{\"x\":\"]}\"}]}}";
+        JsonObject esperado = JsonParser.parseString(json).getAsJsonObject();
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+        for (Mensagem lida : new Mensagem[]{CodecMensagem.ler(bytes), CodecMensagem.lerCabecalho(bytes)}) {
+            assertEquals(esperado.get("conteudo"), lida.getConteudo());
+            assertEquals(esperado.get("metadata"), lida.getMetadata());
+            assertEquals(JsonParser.parseString(new Gson().toJson(esperado)),
+                    JsonParser.parseString(CodecMensagem.paraString(lida)));
+        }
+        JsonElement nulo = esperado.getAsJsonObject("conteudo").getAsJsonArray("a").get(2).getAsJsonArray().get(0)
+                .getAsJsonObject().getAsJsonArray("b").get(1).getAsJsonArray().get(1).getAsJsonArray().get(1)
+                .getAsJsonObject().get("c");
+        assertEquals(JsonNull.INSTANCE, nulo);
+    }
+
+    @Test
+    public void jsonMalformadoLancaJsonSyntaxException() {
+        String[] invalidos = {
+                "",
+                "{",
+                "{\"acao\":\"abc",
+                "{\"acao\":\"abc\\",
+                "{\"acao\":\"abc\\\"}",
+                "{\"acao\":\"a\\u12\"}",
+                "{\"acao\":\"a\\u00",
+                "{\"acao\":\"a\\uZZZZ\"}",
+                "{\"acao\":\"a\\x\"}",
+                "{\"acao\":{}}",
+                "{\"acao\":nulo}",
+                "{\"acao\":\"A\",\"conteudo\":[1]}",
+                "{\"acao\":\"A\",\"conteudo\":{\"a\":1",
+                "{\"acao\":\"A\",\"conteudo\":{\"a\":\"\\u12\"}}",
+                "{\"acao\":\"A\",\"conteudo\":{\"a\":\"\\u+1AB\"}}",
+                "{\"acao\":\"A\",\"metadata\":\"texto\"}",
+                "{\"acao\":\"A\",}",
+                "{\"acao\" \"A\"}",
+        };
+        for (String json : invalidos) {
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            assertThrows(JsonSyntaxException.class, () -> CodecMensagem.ler(bytes), json);
+            assertThrows(JsonSyntaxException.class, () -> CodecMensagem.ler(json), json);
+            // O cabeçalho só delimita o conteúdo; erros dentro dele aparecem no primeiro acesso
+            assertThrows(JsonSyntaxException.class, () -> CodecMensagem.lerCabecalho(bytes).getConteudo(), json);
+        }
+    }
+
+    @Test
+    public void bytesInvalidosEmUtf8ViramCaractereDeSubstituicao() {
+        byte[] bytes = {'{', '"', 'a', 'c', 'a', 'o', '"', ':', '"', 'a', (byte) 0xc3, '"', '}'};
+
+        String acao = CodecMensagem.ler(bytes).getAcao();
+
+        assertEquals(new String(bytes, StandardCharsets.UTF_8), "{\"acao\":\"" + acao + "\"}");
+        assertTrue(acao.endsWith("\ufffd"), acao);
+    }
+
+    private static JsonObject conteudoCompleto() {
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("texto", TEXTO);
+        conteudo.addProperty(TEXTO, "nome com escapes");
+        conteudo.addProperty("preco", new BigDecimal("187.4300"));
+        conteudo.addProperty("ativo", true);
+        conteudo.add("nulo", JsonNull.INSTANCE);
+        JsonArray lista = new JsonArray();
+        lista.add(1);
+        lista.add(TEXTO);
+        lista.add(new JsonArray());
+        lista.add(new JsonObject());
+        conteudo.add("lista", lista);
+        return conteudo;
+    }
+}
@@ -0,0 +1,100 @@
+package br.edu.unifei.servicos;
+
+import br.edu.unifei.utils.CacheTTL;
+import br.edu.unifei.utils.MedidorDesempenho;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Mede o {@link ArmazemCotacoes} com 100 mil cotações: a vazão das gravações em segundo plano e o tempo de início do
+ * servidor, da abertura do arquivo até o cache recarregado. São 80 mil ações e 20 mil pares de moedas, cada chave
+ * gravada duas vezes para que metade dos registros do arquivo seja de cotações substituídas.
+ */
+public class BenchmarkArmazemCotacoes {
+
+    private static final int ACOES = 80_000;
+    private static final int PARES = 20_000;
+    private static final long TTL_MILLIS = 300_000;
+
+    public static void main(String[] args) throws IOException {
+        Path diretorio = Files.createTempDirectory("benchmark-armazem");
+        Path arquivo = diretorio.resolve("cotacoes.dat");
+        try {
+            long inicio = System.nanoTime();
+            try (ArmazemCotacoes armazem = new ArmazemCotacoes(arquivo, 4096)) {
+                long agora = System.currentTimeMillis();
+                CompletableFuture<Boolean> ultima = null;
+                for (int rodada = 0; rodada < 2; rodada++) {
+                    for (int i = 0; i < ACOES; i++) {
+                        ultima = armazem.gravar(ArmazemCotacoes.Tipo.ACAO, String.format("A%05d", i),
+                                acao(i + rodada), agora);
+                    }
+                    for (int i = 0; i < PARES; i++) {
+                        ultima = armazem.gravar(ArmazemCotacoes.Tipo.CAMBIO, String.format("M%04d/BRL", i),
+                                cambio(i + rodada), agora);
+                    }
+                }
+                ultima.join();
+                long duracao = System.nanoTime() - inicio;
+                System.out.printf("%d gravações em %.1f ms (%.0f gravações/s), arquivo de %.1f MB%n",
+                        2 * (ACOES + PARES), duracao / 1e6, 2 * (ACOES + PARES) * 1e9 / duracao,
+                        Files.size(arquivo) / 1e6);
+                System.out.println(armazem);
+            }
+
+            MedidorDesempenho.medir("abertura e montagem do índice", 3, 20, () -> abrir(arquivo, 0));
+            MedidorDesempenho.medir("recarga de 1.000 por tipo (cache padrão)", 3, 20, () -> abrir(arquivo, 1_000));
+            MedidorDesempenho.medir("recarga de todas as 100 mil cotações", 3, 20,
+                    () -> abrir(arquivo, Integer.MAX_VALUE));
+        } finally {
+            Files.deleteIfExists(arquivo);
+            Files.deleteIfExists(diretorio);
+        }
+    }
+
+    /**
+     * Reproduz o início do servidor: abre o armazém e recarrega as cotações mais recentes em caches em memória.
+     */
+    private static int abrir(Path arquivo, int maximoPorTipo) {
+        CacheTTL<String, JsonObject> cacheAcoes = new CacheTTL<>(Math.min(maximoPorTipo, ACOES), TTL_MILLIS);
+        CacheTTL<String, JsonObject> cacheMoedas = new CacheTTL<>(Math.min(maximoPorTipo, PARES), TTL_MILLIS);
+        long agora = System.currentTimeMillis();
+        try (ArmazemCotacoes armazem = new ArmazemCotacoes(arquivo, 4096)) {
+            if (maximoPorTipo == 0) {
+                return armazem.getEntradas();
+            }
+            return armazem.carregar(agora - TTL_MILLIS, maximoPorTipo, (tipo, chave, valor, armazenadoEm) ->
+                    (tipo == ArmazemCotacoes.Tipo.ACAO ? cacheAcoes : cacheMoedas)
+                            .put(chave, valor, agora - armazenadoEm));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static JsonObject acao(int i) {
+        BigDecimal preco = BigDecimal.valueOf(100_000 + i, 4);
+        JsonObject dados = new JsonObject();
+        dados.addProperty("precoAtual", preco);
+        dados.addProperty("precoFechamentoAnterior", preco.subtract(BigDecimal.ONE));
+        dados.addProperty("maxDia", preco.add(BigDecimal.ONE));
+        dados.addProperty("minDia", preco.subtract(BigDecimal.TEN));
+        dados.addProperty("volume", 3_000_000L + i);
+        return dados;
+    }
+
+    private static JsonObject cambio(int i) {
+        JsonObject dados = new JsonObject();
+        dados.addProperty("moedaReferenciaCodigo", String.format("M%04d", i));
+        dados.addProperty("moedaReferenciaNome", "Moeda de teste " + i);
+        dados.addProperty("moedaDestinoCodigo", "BRL");
+        dados.addProperty("moedaDestinoNome", "Brazilian Real");
+        dados.addProperty("taxaDeCambio", BigDecimal.valueOf(544_120_000L + i, 8));
+        return dados;
+    }
+}
@@ -0,0 +1,183 @@
+package br.edu.unifei.servicos;
+
+import br.edu.unifei.utils.MedidorDesempenho;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Mede o formato do {@link ArquivoSeries}: a taxa de compressão em relação ao JSON da API e às colunas em memória, a
+ * vazão da leitura completa das séries e o tempo da leitura de um período curto, que descomprime um único bloco.
+ * <p>
+ * Os argumentos, se houver, são arquivos com respostas de {@code TIME_SERIES_DAILY} com {@code outputsize=full}
+ * gravadas da API. Sem argumentos, são geradas 200 respostas no mesmo formato, com 20 anos de pregões cada, preços
+ * em centavos com quatro casas decimais, como a API informa as ações americanas, e volumes variados.
+ * </p>
+ */
+public class BenchmarkArquivoSeries {
+
+    private static final int ACOES_GERADAS = 200;
+    private static final int DIAS_GERADOS = 20 * 252;
+    private static final int DIAS_POR_BLOCO = 256;
+
+    public static void main(String[] args) throws IOException {
+        List<String> simbolos = new ArrayList<>();
+        List<byte[]> respostas = new ArrayList<>();
+        if (args.length > 0) {
+            for (String caminho : args) {
+                simbolos.add(Paths.get(caminho).getFileName().toString().replaceAll("\\..*", "").toUpperCase());
+                respostas.add(Files.readAllBytes(Paths.get(caminho)));
+            }
+        } else {
+            Random aleatorio = new Random(42);
+            for (int i = 0; i < ACOES_GERADAS; i++) {
+                simbolos.add(String.format("A%03d", i));
+                respostas.add(gerarResposta(aleatorio).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        long bytesJson = 0;
+        long dias = 0;
+        List<SerieDiaria> series = new ArrayList<>();
+        long inicioJson = System.nanoTime();
+        for (byte[] resposta : respostas) {
+            SerieDiaria serie = lerResposta(resposta);
+            series.add(serie);
+            bytesJson += resposta.length;
+            dias += serie.getTamanho();
+        }
+        long duracaoJson = System.nanoTime() - inicioJson;
+
+        Path diretorio = Files.createTempDirectory("benchmark-series");
+        try {
+            ArquivoSeries arquivo = new ArquivoSeries(diretorio, DIAS_POR_BLOCO);
+            long inicioGravacao = System.nanoTime();
+            for (int i = 0; i < series.size(); i++) {
+                arquivo.gravar(simbolos.get(i), series.get(i)).join();
+            }
+            long duracaoGravacao = System.nanoTime() - inicioGravacao;
+
+            long bytesArquivo = 0;
+            for (String simbolo : simbolos) {
+                bytesArquivo += Files.size(arquivo.getArquivo(simbolo));
+            }
+            long bytesColunas = dias * (4 + 5 * 8);
+            System.out.printf(Locale.ROOT, "%d ações, %d dias, blocos de %d dias%n", series.size(), dias,
+                    DIAS_POR_BLOCO);
+            System.out.printf(Locale.ROOT, "  JSON da API     %,14d bytes  %6.1f bytes/dia%n",
+                    bytesJson, (double) bytesJson / dias);
+            System.out.printf(Locale.ROOT, "  colunas         %,14d bytes  %6.1f bytes/dia  (JSON/colunas %.1fx)%n",
+                    bytesColunas, (double) bytesColunas / dias, (double) bytesJson / bytesColunas);
+            System.out.printf(Locale.ROOT, "  arquivo         %,14d bytes  %6.1f bytes/dia  (JSON/arquivo %.1fx, "
+                            + "colunas/arquivo %.1fx)%n", bytesArquivo, (double) bytesArquivo / dias,
+                    (double) bytesJson / bytesArquivo, (double) bytesColunas / bytesArquivo);
+            System.out.printf(Locale.ROOT, "  gravação        %.1f ms (%.1f milhões de dias/s)%n",
+                    duracaoGravacao / 1e6, dias * 1e3 / duracaoGravacao);
+            System.out.printf(Locale.ROOT, "  leitura do JSON %.1f ms (%.1f milhões de dias/s)%n%n",
+                    duracaoJson / 1e6, dias * 1e3 / duracaoJson);
+
+            int[] proxima = new int[1];
+            double nanosSerie = MedidorDesempenho.medir("série completa do arquivo", 200, 2_000, () ->
+                    ler(arquivo, simbolos.get(proxima[0]++ % simbolos.size())));
+            MedidorDesempenho.medir("série completa do JSON", 20, 200, () ->
+                    lerResposta(respostas.get(proxima[0]++ % respostas.size())));
+            MedidorDesempenho.medir("último mês do arquivo (um bloco)", 2_000, 20_000, () -> {
+                SerieDiaria serie = series.get(proxima[0]++ % series.size());
+                int[] datas = serie.getDatas();
+                return lerPeriodo(arquivo, simbolos.get(proxima[0] % series.size()),
+                        datas[Math.max(0, datas.length - 21)], datas[datas.length - 1]);
+            });
+            System.out.printf(Locale.ROOT, "%nvarredura: %.1f milhões de dias/s%n",
+                    dias / (double) series.size() * 1e3 / nanosSerie);
+        } finally {
+            try (Stream<Path> caminhos = Files.walk(diretorio)) {
+                caminhos.sorted(Comparator.reverseOrder()).forEach(caminho -> caminho.toFile().delete());
+            }
+        }
+    }
+
+    private static SerieDiaria ler(ArquivoSeries arquivo, String simbolo) {
+        try {
+            return arquivo.ler(simbolo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static SerieDiaria lerPeriodo(ArquivoSeries arquivo, String simbolo, int dataInicio, int dataFim) {
+        try {
+            return arquivo.lerPeriodo(simbolo, dataInicio, dataFim);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static SerieDiaria lerResposta(byte[] resposta) {
+        AtomicReference<SerieDiaria> serie = new AtomicReference<>();
+        try {
+            LeitorRespostaAlphaVantage.lerDadosAcao(LeitorRespostaAlphaVantage.abrir(resposta), serie::set);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return serie.get();
+    }
+
+    /**
+     * Gera uma resposta de {@code TIME_SERIES_DAILY} com pregões em dias úteis, alguns feriados e preços em passeio
+     * aleatório arredondados a centavos.
+     */
+    private static String gerarResposta(Random aleatorio) {
+        List<String> dias = new ArrayList<>(DIAS_GERADOS);
+        LocalDate data = LocalDate.of(2004, 1, 2);
+        double fechamento = 20 + aleatorio.nextInt(300);
+        for (int i = 0; i < DIAS_GERADOS; i++) {
+            while (data.getDayOfWeek().getValue() > 5 || aleatorio.nextInt(28) == 0) {
+                data = data.plusDays(1);
+            }
+            double abertura = Math.max(0.01, fechamento * (1 + aleatorio.nextGaussian() * 0.005));
+            fechamento = Math.max(0.01, fechamento * (1 + aleatorio.nextGaussian() * 0.02));
+            double maxima = Math.max(abertura, fechamento) * (1 + aleatorio.nextDouble() * 0.01);
+            double minima = Math.min(abertura, fechamento) * (1 - aleatorio.nextDouble() * 0.01);
+            dias.add(String.format(Locale.ROOT,
+                    "        \"%s\": {\n"
+                            + "            \"1. open\": \"%.4f\",\n"
+                            + "            \"2. high\": \"%.4f\",\n"
+                            + "            \"3. low\": \"%.4f\",\n"
+                            + "            \"4. close\": \"%.4f\",\n"
+                            + "            \"5. volume\": \"%d\"\n"
+                            + "        }",
+                    data, centavos(abertura), centavos(maxima), centavos(minima), centavos(fechamento),
+                    (long) (2_000_000 * Math.exp(aleatorio.nextGaussian() * 0.6))));
+            data = data.plusDays(1);
+        }
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n    \"Meta Data\": {\n")
+                .append("        \"1. Information\": \"Daily Prices (open, high, low, close) and Volumes\",\n")
+                .append("        \"2. Symbol\": \"TESTE\",\n")
+                .append("        \"4. Output Size\": \"Full size\",\n")
+                .append("        \"5. Time Zone\": \"US/Eastern\"\n")
+                .append("    },\n    \"Time Series (Daily)\": {\n");
+        // A API lista do dia mais recente para o mais antigo
+        for (int i = dias.size() - 1; i >= 0; i--) {
+            json.append(dias.get(i)).append(i > 0 ? ",\n" : "\n");
+        }
+        return json.append("    }\n}").toString();
+    }
+
+    private static double centavos(double preco) {
+        return Math.round(preco * 100) / 100.0;
+    }
+}
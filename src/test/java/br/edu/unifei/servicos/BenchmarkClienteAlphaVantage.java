@@ -0,0 +1,231 @@
+package br.edu.unifei.servicos;
+
+import br.edu.unifei.utils.LimitadorCota;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compara a latência das consultas de ações entre o caminho anterior ({@link HttpURLConnection} aberta a cada consulta,
+ * sem tempos limite e com leitura linha a linha) e o {@link HttpClient} compartilhado do
+ * {@link ServicoAlphaVantageAPI}. A API é simulada por um servidor HTTP local que responde a {@code TIME_SERIES_DAILY}
+ * com 100 dias de cotações após a latência configurada.
+ * <p>
+ * São medidos dois padrões: consultas sequenciais, uma após a outra, e rajadas de consultas simultâneas. As consultas
+ * vão direto ao {@code getDadosAcao}, sem passar pelo cache nem pelo agrupamento de chamadas idênticas. A latência de
+ * cada consulta da rajada é contada desde o pedido, incluindo a espera por uma thread ou por uma conexão livre.
+ * </p>
+ */
+public class BenchmarkClienteAlphaVantage {
+
+    private static final long LATENCIA_API_MS = 5;
+    private static final int CONSULTAS_SEQUENCIAIS = 200;
+    private static final int CONSULTAS_SIMULTANEAS = 256;
+    private static final int THREADS_CAMINHO_ANTERIOR = 64;
+    private static final int TAMANHO_POOL = 16;
+    private static final int RODADAS_SIMULTANEAS = 3;
+
+    public static void main(String[] args) throws Exception {
+        // Sem esta opção o servidor de teste envia cabeçalhos e corpo em pacotes separados e cada resposta espera o
+        // ACK atrasado do cliente, o que domina a latência medida
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        byte[] resposta = gerarTimeSeriesDaily(100).getBytes(StandardCharsets.UTF_8);
+        HttpServer servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        ExecutorService executorServidor = Executors.newCachedThreadPool();
+        servidor.setExecutor(executorServidor);
+        servidor.createContext("/query", troca -> {
+            try {
+                Thread.sleep(LATENCIA_API_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            troca.getResponseHeaders().set("Content-Type", "application/json");
+            troca.sendResponseHeaders(200, resposta.length);
+            try (OutputStream corpo = troca.getResponseBody()) {
+                corpo.write(resposta);
+            }
+        });
+        servidor.start();
+
+        String baseUrl = "http://localhost:" + servidor.getAddress().getPort() + "/query";
+        HttpClient clienteHttp = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5)).build();
+        // Cota ilimitada na prática, para medir apenas o cliente HTTP
+        ServicoAlphaVantageAPI servico = new ServicoAlphaVantageAPI(baseUrl, clienteHttp, Duration.ofSeconds(10),
+                TAMANHO_POOL, new LimitadorCota(Integer.MAX_VALUE, Integer.MAX_VALUE), 10_000, null);
+        String urlAnterior = baseUrl + "?function=TIME_SERIES_DAILY&symbol=IBM&apikey=demo";
+
+        try {
+            System.out.printf("API simulada com latência de %d ms e resposta de %d bytes%n%n",
+                    LATENCIA_API_MS, resposta.length);
+
+            // Aquecimento dos dois caminhos
+            medirSequencial(null, 50, () -> getDadosAcaoComoAntes(urlAnterior));
+            medirSequencial(null, 50, () -> servico.getDadosAcao("IBM").join());
+
+            medirSequencial("sequencial, caminho anterior", CONSULTAS_SEQUENCIAIS,
+                    () -> getDadosAcaoComoAntes(urlAnterior));
+            medirSequencial("sequencial, HttpClient compartilhado", CONSULTAS_SEQUENCIAIS,
+                    () -> servico.getDadosAcao("IBM").join());
+
+            for (int rodada = 0; rodada < RODADAS_SIMULTANEAS; rodada++) {
+                // A primeira rodada abre as conexões e aquece os dois caminhos sob concorrência
+                boolean imprimir = rodada > 0;
+                medirSimultaneoAnterior(imprimir, urlAnterior);
+                medirSimultaneoAssincrono(imprimir, servico);
+            }
+        } finally {
+            servidor.stop(0);
+            executorServidor.shutdownNow();
+        }
+    }
+
+    private interface Consulta {
+        JsonObject executar() throws IOException;
+    }
+
+    private static void medirSequencial(String cenario, int consultas, Consulta consulta) throws IOException {
+        long[] latencias = new long[consultas];
+        long inicio = System.nanoTime();
+        for (int i = 0; i < consultas; i++) {
+            long inicioConsulta = System.nanoTime();
+            consulta.executar();
+            latencias[i] = System.nanoTime() - inicioConsulta;
+        }
+        if (cenario != null) {
+            imprimirResultado(cenario, latencias, System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Rajada no caminho anterior: cada consulta ocupa uma thread bloqueada na conexão até a resposta.
+     */
+    private static void medirSimultaneoAnterior(boolean imprimir, String url) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS_CAMINHO_ANTERIOR);
+        try {
+            long[] latencias = new long[CONSULTAS_SIMULTANEAS];
+            List<Future<?>> futuros = new ArrayList<>();
+            long inicio = System.nanoTime();
+            for (int i = 0; i < CONSULTAS_SIMULTANEAS; i++) {
+                int indice = i;
+                long inicioConsulta = System.nanoTime();
+                futuros.add(executor.submit(() -> {
+                    getDadosAcaoComoAntes(url);
+                    latencias[indice] = System.nanoTime() - inicioConsulta;
+                    return null;
+                }));
+            }
+            for (Future<?> futuro : futuros) {
+                futuro.get();
+            }
+            if (imprimir) {
+                imprimirResultado(String.format("%d simultâneas, anterior (%d threads)",
+                        CONSULTAS_SIMULTANEAS, THREADS_CAMINHO_ANTERIOR), latencias, System.nanoTime() - inicio);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Rajada no cliente assíncrono: todas as consultas são iniciadas por uma única thread.
+     */
+    private static void medirSimultaneoAssincrono(boolean imprimir, ServicoAlphaVantageAPI servico) {
+        long[] latencias = new long[CONSULTAS_SIMULTANEAS];
+        CompletableFuture<?>[] futuros = new CompletableFuture<?>[CONSULTAS_SIMULTANEAS];
+        long inicio = System.nanoTime();
+        for (int i = 0; i < CONSULTAS_SIMULTANEAS; i++) {
+            int indice = i;
+            long inicioConsulta = System.nanoTime();
+            futuros[i] = servico.getDadosAcao("IBM")
+                    .thenRun(() -> latencias[indice] = System.nanoTime() - inicioConsulta);
+        }
+        CompletableFuture.allOf(futuros).join();
+        if (imprimir) {
+            imprimirResultado(String.format("%d simultâneas, assíncrono (pool de %d)",
+                    CONSULTAS_SIMULTANEAS, TAMANHO_POOL), latencias, System.nanoTime() - inicio);
+        }
+    }
+
+    private static void imprimirResultado(String cenario, long[] latencias, long duracaoTotal) {
+        long[] ordenadas = latencias.clone();
+        Arrays.sort(ordenadas);
+        System.out.printf("%-48s p50 %7.2f ms   p99 %7.2f ms   máx %7.2f ms %10.1f consultas/s%n",
+                cenario,
+                ordenadas[ordenadas.length / 2] / 1e6,
+                ordenadas[(int) (ordenadas.length * 0.99)] / 1e6,
+                ordenadas[ordenadas.length - 1] / 1e6,
+                latencias.length * 1e9 / duracaoTotal);
+    }
+
+    /**
+     * Reproduz o caminho anterior: nova {@link HttpURLConnection} sem tempos limite, corpo lido linha a linha.
+     */
+    private static JsonObject getDadosAcaoComoAntes(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("GET");
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
+            StringBuilder response = new StringBuilder();
+            String inputLine;
+            while ((inputLine = in.readLine()) != null) {
+                response.append(inputLine);
+            }
+            return JsonParser.parseString(response.toString()).getAsJsonObject();
+        }
+    }
+
+    /**
+     * Gera uma resposta no formato da função {@code TIME_SERIES_DAILY}, com a quantidade de dias informada: 100 na
+     * resposta padrão ({@code compact}) e todo o histórico com {@code outputsize=full}.
+     */
+    static String gerarTimeSeriesDaily(int dias) {
+        StringBuilder json = new StringBuilder();
+        LocalDate data = LocalDate.of(2024, 9, 30);
+        json.append("{\n    \"Meta Data\": {\n")
+                .append("        \"1. Information\": \"Daily Prices (open, high, low, close) and Volumes\",\n")
+                .append("        \"2. Symbol\": \"IBM\",\n")
+                .append("        \"3. Last Refreshed\": \"").append(data).append("\",\n")
+                .append("        \"4. Output Size\": \"").append(dias > 100 ? "Full size" : "Compact").append("\",\n")
+                .append("        \"5. Time Zone\": \"US/Eastern\"\n")
+                .append("    },\n    \"Time Series (Daily)\": {\n");
+        double preco = 220.0;
+        for (int i = 0; i < dias; i++, data = data.minusDays(1)) {
+            double abertura = preco;
+            preco += Math.sin(i) * 2;
+            json.append(String.format(Locale.ROOT,
+                    "        \"%s\": {\n"
+                            + "            \"1. open\": \"%.4f\",\n"
+                            + "            \"2. high\": \"%.4f\",\n"
+                            + "            \"3. low\": \"%.4f\",\n"
+                            + "            \"4. close\": \"%.4f\",\n"
+                            + "            \"5. volume\": \"%d\"\n"
+                            + "        }%s\n",
+                    data, abertura, Math.max(abertura, preco) + 1.5, Math.min(abertura, preco) - 1.5, preco,
+                    3_000_000 + i * 1_000L, i + 1 < dias ? "," : ""));
+        }
+        json.append("    }\n}");
+        return json.toString();
+    }
+}
@@ -0,0 +1,160 @@
+package br.edu.unifei.servicos;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+import br.edu.unifei.tratamento.TratadorConsulta;
+import br.edu.unifei.tratamento.TratadorConsultarAcaoAPI;
+import br.edu.unifei.tratamento.TratadorConsultarLote;
+import br.edu.unifei.utils.LimitadorCota;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Compara, de ponta a ponta, 50 mensagens {@code CONSULTAR_ACAO} de um mesmo cliente com uma única
+ * {@code CONSULTAR_ACAO_LOTE} dos mesmos 50 símbolos, com e sem resultados parciais. Cada mensagem é codificada pelo
+ * cliente, decodificada pelo servidor, tratada e respondida em JSON, e a resposta é decodificada pelo cliente; o
+ * broker não entra na medida, mas a quantidade de mensagens e de bytes trafegados é informada.
+ * <p>
+ * As mensagens individuais são tratadas uma após a outra, como o {@link br.edu.unifei.despacho.DespachanteMensagens}
+ * faz com as mensagens de uma mesma origem. A API é simulada por um servidor HTTP local com a latência configurada.
+ * Sem cache, cada rodada usa símbolos novos; com cache, repete os símbolos da rodada anterior.
+ * </p>
+ */
+public class BenchmarkConsultaLote {
+
+    private static final long LATENCIA_API_MS = 20;
+    private static final int SIMBOLOS = 50;
+    private static final int TAMANHO_POOL = 16;
+    private static final int RODADAS = 5;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        byte[] resposta = BenchmarkClienteAlphaVantage.gerarTimeSeriesDaily(100).getBytes(StandardCharsets.UTF_8);
+        HttpServer servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        ExecutorService executorServidor = Executors.newCachedThreadPool();
+        servidor.setExecutor(executorServidor);
+        servidor.createContext("/query", troca -> {
+            try {
+                Thread.sleep(LATENCIA_API_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            troca.sendResponseHeaders(200, resposta.length);
+            try (OutputStream corpo = troca.getResponseBody()) {
+                corpo.write(resposta);
+            }
+        });
+        servidor.start();
+
+        HttpClient clienteHttp = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5)).build();
+        // Cota ilimitada na prática, para medir apenas o lote
+        ServicoAlphaVantageAPI servico = new ServicoAlphaVantageAPI(
+                "http://localhost:" + servidor.getAddress().getPort() + "/query", clienteHttp,
+                Duration.ofSeconds(10), TAMANHO_POOL, new LimitadorCota(Integer.MAX_VALUE, Integer.MAX_VALUE),
+                10_000, null);
+        TratadorConsultarAcaoAPI individual = new TratadorConsultarAcaoAPI(servico);
+        TratadorConsultarLote lote = new TratadorConsultarLote(servico);
+
+        try {
+            System.out.printf("%d símbolos, API simulada com latência de %d ms, pool de %d conexões%n%n",
+                    SIMBOLOS, LATENCIA_API_MS, TAMANHO_POOL);
+            int rodada = 0;
+            // Aquecimento
+            for (int i = 0; i < RODADAS; i++) {
+                medirIndividuais(null, individual, rodada++);
+                medirLote(null, lote, rodada++, false);
+                medirLote(null, lote, rodada++, true);
+            }
+
+            medirIndividuais("50 CONSULTAR_ACAO, sem cache", individual, rodada);
+            medirIndividuais("50 CONSULTAR_ACAO, com cache", individual, rodada++);
+            medirLote("CONSULTAR_ACAO_LOTE, sem cache", lote, rodada, false);
+            medirLote("CONSULTAR_ACAO_LOTE, com cache", lote, rodada++, false);
+            medirLote("CONSULTAR_ACAO_LOTE parcial, sem cache", lote, rodada, true);
+            medirLote("CONSULTAR_ACAO_LOTE parcial, com cache", lote, rodada, true);
+        } finally {
+            servidor.stop(0);
+            executorServidor.shutdownNow();
+        }
+    }
+
+    private static void medirIndividuais(String cenario, TratadorConsulta tratador, int rodada) {
+        long bytes = 0;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < SIMBOLOS; i++) {
+            JsonObject conteudo = new JsonObject();
+            conteudo.addProperty("simboloAcao", simbolo(rodada, i));
+            bytes += trafegar(tratador, new Mensagem("CONSULTAR_ACAO", "cliente", "topico/servidor", conteudo), null);
+        }
+        imprimir(cenario, System.nanoTime() - inicio, -1, SIMBOLOS * 2, bytes);
+    }
+
+    private static void medirLote(String cenario, TratadorConsultarLote tratador, int rodada, boolean parcial) {
+        JsonObject conteudo = new JsonObject();
+        JsonArray simbolos = new JsonArray();
+        for (int i = 0; i < SIMBOLOS; i++) {
+            simbolos.add(simbolo(rodada, i));
+        }
+        conteudo.add("simbolosAcoes", simbolos);
+        conteudo.addProperty("parcial", parcial);
+
+        AtomicInteger mensagens = new AtomicInteger(2);
+        AtomicLong bytesParciais = new AtomicLong();
+        AtomicLong primeiroParcial = new AtomicLong();
+        long inicio = System.nanoTime();
+        long bytes = trafegar(tratador, new Mensagem("CONSULTAR_ACAO_LOTE", "cliente", "topico/servidor", conteudo),
+                parcialRecebido -> {
+                    primeiroParcial.compareAndSet(0, System.nanoTime());
+                    mensagens.incrementAndGet();
+                    byte[] codificado = parcialRecebido.toJsonBytes();
+                    bytesParciais.addAndGet(codificado.length);
+                    Mensagem.fromJson(codificado).getConteudo();
+                });
+        long duracao = System.nanoTime() - inicio;
+        imprimir(cenario, duracao, parcial ? primeiroParcial.get() - inicio : -1, mensagens.get(),
+                bytes + bytesParciais.get());
+    }
+
+    /**
+     * Codifica a consulta como o cliente, decodifica e trata como o servidor, e decodifica a resposta.
+     *
+     * @return os bytes da consulta e da resposta.
+     */
+    private static long trafegar(TratadorConsulta tratador, Mensagem consulta, Consumer<Mensagem> parciais) {
+        byte[] enviada = consulta.toJsonBytes();
+        Mensagem recebida = Mensagem.fromJson(enviada);
+        Mensagem resposta = parciais != null && tratador instanceof TratadorConsultarLote
+                ? ((TratadorConsultarLote) tratador).consultar(recebida, parciais)
+                : tratador.consultar(recebida);
+        byte[] respondida = resposta.toJsonBytes();
+        Mensagem.fromJson(respondida).getConteudo();
+        return enviada.length + respondida.length;
+    }
+
+    private static void imprimir(String cenario, long duracao, long primeiro, int mensagens, long bytes) {
+        if (cenario == null) {
+            return;
+        }
+        System.out.printf(Locale.ROOT, "%-42s total %8.1f ms   primeiro resultado %8s   %3d mensagens %8d bytes%n",
+                cenario, duracao / 1e6, primeiro < 0 ? "-" : String.format(Locale.ROOT, "%.1f ms", primeiro / 1e6),
+                mensagens, bytes);
+    }
+
+    private static String simbolo(int rodada, int indice) {
+        return String.format("R%dS%02d", rodada, indice);
+    }
+}
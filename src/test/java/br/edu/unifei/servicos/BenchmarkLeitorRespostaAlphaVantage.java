@@ -0,0 +1,128 @@
+package br.edu.unifei.servicos;
+
+import br.edu.unifei.utils.MedidorDesempenho;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compara a interpretação das respostas da API AlphaVantage entre o caminho anterior (corpo decodificado para
+ * {@link String} e montado em árvore pelo {@link JsonParser}) e a leitura em streaming do
+ * {@link LeitorRespostaAlphaVantage}, que para no primeiro dia da série. As respostas de {@code TIME_SERIES_DAILY} têm
+ * 100 dias ({@code compact}) e 25 anos de pregões ({@code outputsize=full}).
+ */
+public class BenchmarkLeitorRespostaAlphaVantage {
+
+    private static final int AQUECIMENTO = 2_000;
+    private static final int ITERACOES = 5_000;
+
+    public static void main(String[] args) {
+        byte[] compacta = BenchmarkClienteAlphaVantage.gerarTimeSeriesDaily(100).getBytes(StandardCharsets.UTF_8);
+        byte[] completa = BenchmarkClienteAlphaVantage.gerarTimeSeriesDaily(25 * 252).getBytes(StandardCharsets.UTF_8);
+        byte[] cambio = gerarCurrencyExchangeRate().getBytes(StandardCharsets.UTF_8);
+
+        verificarEquivalencia(compacta, cambio);
+
+        System.out.printf("TIME_SERIES_DAILY compact (%d bytes)%n", compacta.length);
+        MedidorDesempenho.medir("  árvore (anterior)", AQUECIMENTO, ITERACOES,
+                () -> interpretarDadosAcaoComoAntes(compacta));
+        MedidorDesempenho.medir("  streaming", AQUECIMENTO, ITERACOES,
+                () -> lerDadosAcao(compacta));
+
+        System.out.printf("TIME_SERIES_DAILY full (%d bytes)%n", completa.length);
+        MedidorDesempenho.medir("  árvore (anterior)", AQUECIMENTO / 20, ITERACOES / 20,
+                () -> interpretarDadosAcaoComoAntes(completa));
+        MedidorDesempenho.medir("  streaming", AQUECIMENTO / 20, ITERACOES / 20,
+                () -> lerDadosAcao(completa));
+
+        System.out.printf("CURRENCY_EXCHANGE_RATE (%d bytes)%n", cambio.length);
+        MedidorDesempenho.medir("  árvore (anterior)", AQUECIMENTO, ITERACOES,
+                () -> interpretarDadosCotacaoComoAntes(cambio));
+        MedidorDesempenho.medir("  streaming", AQUECIMENTO, ITERACOES,
+                () -> lerDadosCotacao(cambio));
+    }
+
+    private static void verificarEquivalencia(byte[] acao, byte[] cambio) {
+        if (!interpretarDadosAcaoComoAntes(acao).equals(lerDadosAcao(acao))
+                || !interpretarDadosCotacaoComoAntes(cambio).equals(lerDadosCotacao(cambio))) {
+            throw new IllegalStateException("A leitura em streaming difere da leitura em árvore");
+        }
+    }
+
+    private static JsonObject lerDadosAcao(byte[] corpo) {
+        try {
+            return LeitorRespostaAlphaVantage.lerDadosAcao(LeitorRespostaAlphaVantage.abrir(corpo));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static JsonObject lerDadosCotacao(byte[] corpo) {
+        try {
+            return LeitorRespostaAlphaVantage.lerDadosCotacao(LeitorRespostaAlphaVantage.abrir(corpo));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reproduz o caminho anterior: corpo decodificado para {@link String} e documento inteiro montado em árvore.
+     */
+    private static JsonObject interpretarDadosAcaoComoAntes(byte[] corpo) {
+        JsonObject jsonResponse = JsonParser.parseString(new String(corpo, StandardCharsets.UTF_8)).getAsJsonObject();
+        JsonObject respostaConteudo = new JsonObject();
+
+        if (jsonResponse.has("Error Message")) {
+            respostaConteudo.addProperty("erro", jsonResponse.get("Error Message").getAsString());
+        } else if (jsonResponse.has("Time Series (Daily)")) {
+            JsonObject timeSeries = jsonResponse.getAsJsonObject("Time Series (Daily)");
+            JsonObject latestData = timeSeries.entrySet().iterator().next().getValue().getAsJsonObject();
+
+            respostaConteudo.addProperty("precoAtual", latestData.get("1. open").getAsBigDecimal());
+            respostaConteudo.addProperty("precoFechamentoAnterior", latestData.get("4. close").getAsBigDecimal());
+            respostaConteudo.addProperty("maxDia", latestData.get("2. high").getAsBigDecimal());
+            respostaConteudo.addProperty("minDia", latestData.get("3. low").getAsBigDecimal());
+            respostaConteudo.addProperty("volume", latestData.get("5. volume").getAsLong());
+        } else {
+            respostaConteudo.addProperty("erro", "Nenhum dado de ação encontrado.");
+        }
+        return respostaConteudo;
+    }
+
+    private static JsonObject interpretarDadosCotacaoComoAntes(byte[] corpo) {
+        JsonObject jsonResponse = JsonParser.parseString(new String(corpo, StandardCharsets.UTF_8)).getAsJsonObject();
+        JsonObject respostaConteudo = new JsonObject();
+
+        if (jsonResponse.has("Error Message")) {
+            respostaConteudo.addProperty("erro", jsonResponse.get("Error Message").getAsString());
+        } else if (jsonResponse.has("Realtime Currency Exchange Rate")) {
+            JsonObject taxa = jsonResponse.getAsJsonObject("Realtime Currency Exchange Rate");
+
+            respostaConteudo.addProperty("moedaReferenciaCodigo", taxa.get("1. From_Currency Code").getAsString());
+            respostaConteudo.addProperty("moedaReferenciaNome", taxa.get("2. From_Currency Name").getAsString());
+            respostaConteudo.addProperty("moedaDestinoCodigo", taxa.get("3. To_Currency Code").getAsString());
+            respostaConteudo.addProperty("moedaDestinoNome", taxa.get("4. To_Currency Name").getAsString());
+            respostaConteudo.addProperty("taxaDeCambio", taxa.get("5. Exchange Rate").getAsBigDecimal());
+        } else {
+            respostaConteudo.addProperty("erro", "Nenhum dado de cotação encontrado.");
+        }
+        return respostaConteudo;
+    }
+
+    private static String gerarCurrencyExchangeRate() {
+        return "{\n    \"Realtime Currency Exchange Rate\": {\n"
+                + "        \"1. From_Currency Code\": \"USD\",\n"
+                + "        \"2. From_Currency Name\": \"United States Dollar\",\n"
+                + "        \"3. To_Currency Code\": \"BRL\",\n"
+                + "        \"4. To_Currency Name\": \"Brazilian Real\",\n"
+                + "        \"5. Exchange Rate\": \"5.44120000\",\n"
+                + "        \"6. Last Refreshed\": \"2024-09-30 18:05:01\",\n"
+                + "        \"7. Time Zone\": \"UTC\",\n"
+                + "        \"8. Bid Price\": \"5.44110000\",\n"
+                + "        \"9. Ask Price\": \"5.44130000\"\n"
+                + "    }\n}";
+    }
+}
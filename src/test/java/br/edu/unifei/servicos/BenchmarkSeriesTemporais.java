@@ -0,0 +1,170 @@
+package br.edu.unifei.servicos;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+import br.edu.unifei.utils.MedidorDesempenho;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Mede as consultas do {@link ServicoSeriesTemporais} sobre 1.000 ações com 20 anos de pregões cada (5.040 dias): os
+ * recortes por período e os indicadores, com e sem a montagem da resposta. Cada operação usa uma ação diferente, para
+ * que as colunas não fiquem todas no cache do processador.
+ * <p>
+ * Para comparação, a média móvel também é calculada como seria sem as colunas, percorrendo a árvore JSON da resposta
+ * {@code outputsize=full} de uma única ação. A leitura dessa resposta para a série é medida à parte.
+ * </p>
+ */
+public class BenchmarkSeriesTemporais {
+
+    private static final int ACOES = 1_000;
+    private static final int DIAS = 20 * 252;
+    private static final int AQUECIMENTO = 2_000;
+    private static final int ITERACOES = 10_000;
+    private static final String[] SIMBOLOS = new String[ACOES];
+
+    static {
+        for (int i = 0; i < ACOES; i++) {
+            SIMBOLOS[i] = String.format("A%04d", i);
+        }
+    }
+
+    public static void main(String[] args) {
+        RepositorioSeries series = new RepositorioSeries(ACOES);
+        Random aleatorio = new Random(42);
+        long inicioCarga = System.nanoTime();
+        for (int i = 0; i < ACOES; i++) {
+            series.atualizar(simbolo(i), gerarSerie(aleatorio));
+        }
+        SerieDiaria exemplo = series.get(simbolo(0));
+        System.out.printf("%d ações x %d dias montadas em %.1f ms, %.1f MB em colunas (%s a %s)%n%n",
+                ACOES, DIAS, (System.nanoTime() - inicioCarga) / 1e6, ACOES * (double) DIAS * (4 + 5 * 8) / 1e6,
+                SerieDiaria.formatarData(exemplo.getDatas()[0]),
+                SerieDiaria.formatarData(exemplo.getDatas()[DIAS - 1]));
+
+        int umAnoAtras = exemplo.getDatas()[DIAS - 252];
+        int ultimoDia = exemplo.getDatas()[DIAS - 1];
+        int[] proxima = new int[1];
+
+        System.out.println("Colunas, sem montar a resposta");
+        MedidorDesempenho.medir("  recorte de 1 ano (busca binária)", AQUECIMENTO * 10, ITERACOES * 10, () -> {
+            SerieDiaria serie = series.get(simbolo(proxima[0]++ % ACOES));
+            return serie.indiceFinal(ultimoDia) - serie.indiceInicial(umAnoAtras);
+        });
+        MedidorDesempenho.medir("  SMA(50) de 20 anos", AQUECIMENTO, ITERACOES, () ->
+                IndicadoresSerie.mediaMovelSimples(series.get(simbolo(proxima[0]++ % ACOES)).getFechamento(),
+                        49, DIAS, 50));
+        MedidorDesempenho.medir("  EMA(50) de 20 anos", AQUECIMENTO, ITERACOES, () ->
+                IndicadoresSerie.mediaMovelExponencial(series.get(simbolo(proxima[0]++ % ACOES)).getFechamento(),
+                        49, DIAS, 50));
+        MedidorDesempenho.medir("  mínimo e máximo de 20 anos", AQUECIMENTO, ITERACOES, () -> {
+            SerieDiaria serie = series.get(simbolo(proxima[0]++ % ACOES));
+            return IndicadoresSerie.indiceMinimo(serie.getMinima(), 0, DIAS)
+                    + IndicadoresSerie.indiceMaximo(serie.getMaxima(), 0, DIAS);
+        });
+        MedidorDesempenho.medir("  retornos de 20 anos", AQUECIMENTO, ITERACOES, () ->
+                IndicadoresSerie.retornos(series.get(simbolo(proxima[0]++ % ACOES)).getFechamento(), 1, DIAS));
+
+        ServicoSeriesTemporais servico = new ServicoSeriesTemporais(series);
+        String dataInicio = SerieDiaria.formatarData(umAnoAtras);
+        System.out.println("Serviço, com a resposta em JSON");
+        MedidorDesempenho.medir("  CONSULTAR_HISTORICO de 1 ano", AQUECIMENTO, ITERACOES, () ->
+                consultar(servico, "CONSULTAR_HISTORICO", proxima[0]++ % ACOES, dataInicio, null));
+        MedidorDesempenho.medir("  CONSULTAR_INDICADOR SMA(50) de 1 ano", AQUECIMENTO, ITERACOES, () ->
+                consultar(servico, "CONSULTAR_INDICADOR", proxima[0]++ % ACOES, dataInicio, "SMA"));
+        MedidorDesempenho.medir("  CONSULTAR_INDICADOR MIN_MAX de 20 anos", AQUECIMENTO, ITERACOES, () ->
+                consultar(servico, "CONSULTAR_INDICADOR", proxima[0]++ % ACOES, null, "MIN_MAX"));
+
+        byte[] completa = BenchmarkClienteAlphaVantage.gerarTimeSeriesDaily(DIAS).getBytes(StandardCharsets.UTF_8);
+        JsonObject arvore = JsonParser.parseString(new String(completa, StandardCharsets.UTF_8))
+                .getAsJsonObject().getAsJsonObject("Time Series (Daily)");
+        System.out.printf("Árvore JSON de uma ação (%d bytes)%n", completa.length);
+        MedidorDesempenho.medir("  SMA(50) de 20 anos", AQUECIMENTO / 10, ITERACOES / 10,
+                () -> mediaMovelNaArvore(arvore, 50));
+        MedidorDesempenho.medir("  leitura da resposta para a série", AQUECIMENTO / 10, ITERACOES / 10,
+                () -> lerSerie(completa));
+    }
+
+    private static Mensagem consultar(ServicoSeriesTemporais servico, String acao, int indice, String dataInicio,
+                                      String indicador) {
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("simboloAcao", simbolo(indice));
+        if (dataInicio != null) {
+            conteudo.addProperty("dataInicio", dataInicio);
+        }
+        if (indicador != null) {
+            conteudo.addProperty("indicador", indicador);
+            conteudo.addProperty("periodo", 50);
+        }
+        return servico.executar(new Mensagem(acao, "cliente", "servidor", conteudo));
+    }
+
+    /**
+     * Calcula a média móvel simples dos fechamentos como seria feito sem a série: ordenando as datas da árvore e
+     * convertendo cada preço.
+     */
+    private static double[] mediaMovelNaArvore(JsonObject arvore, int periodo) {
+        List<String> datas = new ArrayList<>(arvore.keySet());
+        datas.sort(null);
+        double[] fechamentos = new double[datas.size()];
+        for (int i = 0; i < fechamentos.length; i++) {
+            JsonElement dia = arvore.get(datas.get(i));
+            fechamentos[i] = Double.parseDouble(dia.getAsJsonObject().get("4. close").getAsString());
+        }
+        double[] medias = new double[fechamentos.length - periodo + 1];
+        double soma = 0;
+        for (int i = 0; i < fechamentos.length; i++) {
+            soma += fechamentos[i];
+            if (i >= periodo - 1) {
+                medias[i - periodo + 1] = soma / periodo;
+                soma -= fechamentos[i - periodo + 1];
+            }
+        }
+        return medias;
+    }
+
+    private static SerieDiaria lerSerie(byte[] corpo) {
+        AtomicReference<SerieDiaria> serie = new AtomicReference<>();
+        try {
+            LeitorRespostaAlphaVantage.lerDadosAcao(LeitorRespostaAlphaVantage.abrir(corpo), serie::set);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return serie.get();
+    }
+
+    /**
+     * Gera uma série de pregões em dias úteis com os preços em passeio aleatório.
+     */
+    private static SerieDiaria gerarSerie(Random aleatorio) {
+        SerieDiaria.Construtor construtor = new SerieDiaria.Construtor(DIAS);
+        LocalDate data = LocalDate.of(2004, 1, 1);
+        long fechamento = (50 + aleatorio.nextInt(200)) * SerieDiaria.ESCALA;
+        for (int i = 0; i < DIAS; i++) {
+            while (data.getDayOfWeek().getValue() > 5) {
+                data = data.plusDays(1);
+            }
+            long abertura = fechamento;
+            fechamento = Math.max(SerieDiaria.ESCALA, fechamento + (long) (aleatorio.nextGaussian() * fechamento / 50));
+            long maxima = Math.max(abertura, fechamento) + aleatorio.nextInt(10_000);
+            long minima = Math.max(1, Math.min(abertura, fechamento) - aleatorio.nextInt(10_000));
+            construtor.adicionar(data.getYear() * 10_000 + data.getMonthValue() * 100 + data.getDayOfMonth(),
+                    abertura, maxima, minima, fechamento, 1_000_000 + aleatorio.nextInt(9_000_000));
+            data = data.plusDays(1);
+        }
+        return construtor.construir();
+    }
+
+    private static String simbolo(int indice) {
+        return SIMBOLOS[indice];
+    }
+}
@@ -0,0 +1,23 @@
+package br.edu.unifei.servicos;
+
+import br.edu.unifei.utils.LimitadorCota;
+
+import java.time.Duration;
+
+/**
+ * Cria serviços para os testes e benchmarks de outros pacotes sem o armazém de cotações, cujo arquivo só pode ser
+ * aberto por um serviço de cada vez e pertence ao serviço criado pela aplicação.
+ */
+public final class ServicosParaTeste {
+
+    private ServicosParaTeste() {
+    }
+
+    /**
+     * @return um serviço sem armazém e sem cliente HTTP, para medir o que acontece antes das consultas à API.
+     */
+    public static ServicoAlphaVantageAPI alphaVantageSemApi() {
+        return new ServicoAlphaVantageAPI("http://localhost", null, Duration.ofSeconds(1), 1,
+                new LimitadorCota(1_000, 1_000), 0L, null);
+    }
+}
@@ -0,0 +1,263 @@
+package br.edu.unifei.servicos;
+
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TesteArmazemCotacoes {
+
+    private Path diretorio;
+    private Path arquivo;
+
+    @BeforeEach
+    public void criarDiretorio() throws IOException {
+        diretorio = Files.createTempDirectory("armazem-cotacoes");
+        arquivo = diretorio.resolve("cotacoes.dat");
+    }
+
+    @AfterEach
+    public void removerDiretorio() throws IOException {
+        try (Stream<Path> caminhos = Files.walk(diretorio)) {
+            caminhos.sorted(Comparator.reverseOrder()).forEach(caminho -> caminho.toFile().delete());
+        }
+    }
+
+    @Test
+    public void cotacoesGravadasSaoRecarregadasAoReabrir() throws Exception {
+        try (ArmazemCotacoes armazem = new ArmazemCotacoes(arquivo, 16)) {
+            assertTrue(armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "IBM", acao("171.5000"), 1_000L).join());
+            assertTrue(armazem.gravar(ArmazemCotacoes.Tipo.CAMBIO, "USD/BRL", cambio("5.44120000"), 2_000L).join());
+        }
+
+        Map<String, JsonObject> carregadas = carregar(0);
+        assertEquals(2, carregadas.size());
+        assertEquals(acao("171.5000"), carregadas.get("ACAO:IBM@1000"));
+        assertEquals(cambio("5.44120000"), carregadas.get("CAMBIO:USD/BRL@2000"));
+    }
+
+    @Test
+    public void cotacaoMaisRecenteSubstituiAAnterior() throws Exception {
+        try (ArmazemCotacoes armazem = new ArmazemCotacoes(arquivo, 16)) {
+            armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "IBM", acao("171.5000"), 1_000L);
+            armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "IBM", acao("172.2500"), 2_000L).join();
+            assertEquals(1, armazem.getEntradas());
+            assertEquals(2, armazem.getRegistros());
+        }
+
+        Map<String, JsonObject> carregadas = carregar(0);
+        assertEquals(1, carregadas.size());
+        assertEquals(acao("172.2500"), carregadas.get("ACAO:IBM@2000"));
+    }
+
+    @Test
+    public void cotacoesAnterioresAoLimiteNaoSaoCarregadas() throws Exception {
+        try (ArmazemCotacoes armazem = new ArmazemCotacoes(arquivo, 16)) {
+            armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "IBM", acao("171.5000"), 1_000L);
+            armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "AAPL", acao("227.7900"), 5_000L).join();
+        }
+
+        Map<String, JsonObject> carregadas = carregar(2_000L);
+        assertEquals(1, carregadas.size());
+        assertTrue(carregadas.containsKey("ACAO:AAPL@5000"));
+    }
+
+    @Test
+    public void somenteAsCotacoesMaisRecentesDeCadaTipoSaoCarregadas() throws Exception {
+        try (ArmazemCotacoes armazem = new ArmazemCotacoes(arquivo, 16)) {
+            armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "IBM", acao("171.5000"), 1_000L);
+            armazem.gravar(ArmazemCotacoes.Tipo.CAMBIO, "USD/BRL", cambio("5.44120000"), 1_000L);
+            armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "AAPL", acao("227.7900"), 2_000L);
+            armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "MSFT", acao("430.3000"), 3_000L);
+            armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "IBM", acao("172.2500"), 4_000L).join();
+        }
+
+        Map<String, JsonObject> carregadas = carregar(0, 2);
+        // Da mais antiga para a mais recente, a ordem em que devem entrar no cache
+        assertEquals(List.of("CAMBIO:USD/BRL@1000", "ACAO:MSFT@3000", "ACAO:IBM@4000"),
+                new ArrayList<>(carregadas.keySet()));
+    }
+
+    @Test
+    public void registroFinalTruncadoEIgnorado() throws Exception {
+        try (ArmazemCotacoes armazem = new ArmazemCotacoes(arquivo, 3)) {
+            armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "IBM", acao("171.5000"), 1_000L);
+            armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "AAPL", acao("227.7900"), 1_000L);
+            armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "MSFT", acao("430.3000"), 1_000L).join();
+        }
+        // Processo interrompido no meio da gravação do terceiro registro
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.WRITE)) {
+            canal.truncate(ArmazemCotacoes.TAMANHO_CABECALHO + 2L * ArmazemCotacoes.TAMANHO_REGISTRO + 60);
+        }
+
+        try (ArmazemCotacoes armazem = new ArmazemCotacoes(arquivo, 3)) {
+            assertEquals(2, armazem.getEntradas());
+            assertEquals(1, armazem.getDescartados());
+            assertTrue(armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "MSFT", acao("431.0000"), 2_000L).join());
+        }
+
+        Map<String, JsonObject> carregadas = carregar(0);
+        assertEquals(3, carregadas.size());
+        assertEquals(acao("171.5000"), carregadas.get("ACAO:IBM@1000"));
+        assertEquals(acao("227.7900"), carregadas.get("ACAO:AAPL@1000"));
+        assertEquals(acao("431.0000"), carregadas.get("ACAO:MSFT@2000"));
+    }
+
+    @Test
+    public void registroCorrompidoMantemAVersaoAnteriorDaChave() throws Exception {
+        try (ArmazemCotacoes armazem = new ArmazemCotacoes(arquivo, 16)) {
+            armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "IBM", acao("171.5000"), 1_000L);
+            armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "AAPL", acao("227.7900"), 1_000L);
+            armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "IBM", acao("172.2500"), 2_000L).join();
+        }
+        // Gravação parcial do último registro: o início foi escrito, os dados da cotação não
+        try (RandomAccessFile acesso = new RandomAccessFile(arquivo.toFile(), "rw")) {
+            acesso.seek(ArmazemCotacoes.TAMANHO_CABECALHO + 2L * ArmazemCotacoes.TAMANHO_REGISTRO + 50);
+            acesso.write(new byte[40]);
+        }
+
+        try (ArmazemCotacoes armazem = new ArmazemCotacoes(arquivo, 16)) {
+            assertEquals(1, armazem.getDescartados());
+        }
+        Map<String, JsonObject> carregadas = carregar(0);
+        assertEquals(2, carregadas.size());
+        assertEquals(acao("171.5000"), carregadas.get("ACAO:IBM@1000"));
+    }
+
+    @Test
+    public void arquivoCheioECompactadoSemPerderCotacoes() throws Exception {
+        try (ArmazemCotacoes armazem = new ArmazemCotacoes(arquivo, 4)) {
+            for (int i = 0; i < 50; i++) {
+                armazem.gravar(ArmazemCotacoes.Tipo.ACAO, i % 2 == 0 ? "IBM" : "AAPL",
+                        acao(String.format("%d.0000", 100 + i)), i);
+            }
+            armazem.gravar(ArmazemCotacoes.Tipo.CAMBIO, "USD/BRL", cambio("5.44120000"), 50L).join();
+            assertTrue(armazem.getCompactacoes() > 0);
+            assertEquals(4, armazem.getCapacidade());
+        }
+
+        Map<String, JsonObject> carregadas = carregar(0);
+        assertEquals(3, carregadas.size());
+        assertEquals(acao("148.0000"), carregadas.get("ACAO:IBM@48"));
+        assertEquals(acao("149.0000"), carregadas.get("ACAO:AAPL@49"));
+        assertEquals(cambio("5.44120000"), carregadas.get("CAMBIO:USD/BRL@50"));
+    }
+
+    @Test
+    public void arquivoCresceQuandoAsChavesNaoCabem() throws Exception {
+        try (ArmazemCotacoes armazem = new ArmazemCotacoes(arquivo, 4)) {
+            for (int i = 0; i < 10; i++) {
+                armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "ACAO" + i, acao("10.0000"), i);
+            }
+            armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "ACAO0", acao("11.0000"), 10L).join();
+            assertEquals(16, armazem.getCapacidade());
+        }
+
+        Map<String, JsonObject> carregadas = carregar(0);
+        assertEquals(10, carregadas.size());
+        assertEquals(acao("11.0000"), carregadas.get("ACAO:ACAO0@10"));
+    }
+
+    @Test
+    public void valoresQueNaoCabemNoRegistroNaoSaoGravados() throws Exception {
+        JsonObject nomeLongo = cambio("1.95583000");
+        nomeLongo.addProperty("moedaReferenciaNome", "Bosnia-Herzegovina Convertible Mark (marka)");
+        JsonObject semVolume = acao("171.5000");
+        semVolume.remove("volume");
+
+        try (ArmazemCotacoes armazem = new ArmazemCotacoes(arquivo, 16)) {
+            assertFalse(armazem.gravar(ArmazemCotacoes.Tipo.CAMBIO, "BAM/EUR", nomeLongo, 1_000L).join());
+            assertFalse(armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "IBM", semVolume, 1_000L).join());
+            assertFalse(armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "SIMBOLO.MUITO.LONGO.PARA.A.CHAVE",
+                    acao("1.0000"), 1_000L).join());
+            assertEquals(0, armazem.getEntradas());
+        }
+    }
+
+    @Test
+    public void arquivoEmUsoNaoPodeSerAbertoNovamente() throws Exception {
+        try (ArmazemCotacoes armazem = new ArmazemCotacoes(arquivo, 16)) {
+            try {
+                new ArmazemCotacoes(arquivo, 16).close();
+                throw new AssertionError("O segundo armazém não deveria abrir o arquivo em uso");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("em uso"));
+            }
+        }
+    }
+
+    @Test
+    public void fecharAguardaAsGravacoesPendentesERecusaAsSeguintes() throws Exception {
+        ArmazemCotacoes armazem = new ArmazemCotacoes(arquivo, 4);
+        for (int i = 0; i < 50; i++) {
+            // Sem aguardar: o fechamento deve esperar a fila, que inclui o crescimento do arquivo
+            armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "ACAO" + i, acao(i + ".0000"), 1_000L + i);
+        }
+        armazem.close();
+        armazem.close();
+
+        CompletionException erro = assertThrows(CompletionException.class,
+                () -> armazem.gravar(ArmazemCotacoes.Tipo.ACAO, "IBM", acao("1.0000"), 1_000L).join());
+        assertTrue(erro.getCause() instanceof IOException);
+        Map<String, JsonObject> carregadas = carregar(0);
+        assertEquals(50, carregadas.size());
+        assertEquals(acao("49.0000"), carregadas.get("ACAO:ACAO49@1049"));
+    }
+
+    /**
+     * Reabre o arquivo e devolve as cotações indexadas por tipo, chave e data de obtenção.
+     */
+    private Map<String, JsonObject> carregar(long armazenadasDesde) throws IOException {
+        return carregar(armazenadasDesde, Integer.MAX_VALUE);
+    }
+
+    private Map<String, JsonObject> carregar(long armazenadasDesde, int maximoPorTipo) throws IOException {
+        Map<String, JsonObject> carregadas = new LinkedHashMap<>();
+        try (ArmazemCotacoes armazem = new ArmazemCotacoes(arquivo, 16)) {
+            armazem.carregar(armazenadasDesde, maximoPorTipo, (tipo, chave, valor, armazenadoEm) ->
+                    carregadas.put(tipo + ":" + chave + "@" + armazenadoEm, valor));
+        }
+        return carregadas;
+    }
+
+    private static JsonObject acao(String preco) {
+        BigDecimal valor = new BigDecimal(preco);
+        JsonObject dados = new JsonObject();
+        dados.addProperty("precoAtual", valor);
+        dados.addProperty("precoFechamentoAnterior", valor.subtract(BigDecimal.ONE));
+        dados.addProperty("maxDia", valor.add(BigDecimal.ONE));
+        dados.addProperty("minDia", valor.subtract(BigDecimal.TEN));
+        dados.addProperty("volume", 3_214_567L);
+        return dados;
+    }
+
+    private static JsonObject cambio(String taxa) {
+        JsonObject dados = new JsonObject();
+        dados.addProperty("moedaReferenciaCodigo", "USD");
+        dados.addProperty("moedaReferenciaNome", "United States Dollar");
+        dados.addProperty("moedaDestinoCodigo", "BRL");
+        dados.addProperty("moedaDestinoNome", "Brazilian Real");
+        dados.addProperty("taxaDeCambio", new BigDecimal(taxa));
+        return dados;
+    }
+}
@@ -0,0 +1,231 @@
+package br.edu.unifei.servicos;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TesteArquivoSeries {
+
+    private static final int DIAS_POR_BLOCO = 64;
+
+    private Path diretorio;
+    private ArquivoSeries arquivo;
+
+    @BeforeEach
+    public void criarDiretorio() throws IOException {
+        diretorio = Files.createTempDirectory("arquivo-series");
+        arquivo = new ArquivoSeries(diretorio, DIAS_POR_BLOCO);
+    }
+
+    @AfterEach
+    public void removerDiretorio() throws IOException {
+        arquivo.close();
+        try (Stream<Path> caminhos = Files.walk(diretorio)) {
+            caminhos.sorted(Comparator.reverseOrder()).forEach(caminho -> caminho.toFile().delete());
+        }
+    }
+
+    @Test
+    public void serieGravadaELidaSemPerdas() throws Exception {
+        SerieDiaria serie = gerarSerie(1_000, new Random(1));
+
+        assertTrue(arquivo.gravar("IBM", serie).join());
+
+        assertSerieIgual(serie, 0, serie.getTamanho(), arquivo.ler("IBM"));
+        assertTrue(Files.size(arquivo.getArquivo("IBM")) < serie.getTamanho() * 20L);
+    }
+
+    @Test
+    public void valoresExtremosSobrevivemAoFormato() throws Exception {
+        SerieDiaria.Construtor construtor = new SerieDiaria.Construtor();
+        // Intervalos de um dia a vários anos, preços repetidos, nulos e muito grandes, volumes nulos e negativos
+        construtor.adicionar(19991231, 0, 0, 0, 0, 0);
+        construtor.adicionar(20000103, 1, 1, 1, 1, -1);
+        construtor.adicionar(20000104, 1, 1, 1, 1, Long.MAX_VALUE);
+        construtor.adicionar(20150630, 1L << 53, (1L << 53) - 1, 123_456_789, 5, Long.MIN_VALUE);
+        construtor.adicionar(20150701, -(1L << 53), 2, 10_000, 5, 42);
+        construtor.adicionar(20150702, 1_715_000, 1_720_100, 1_700_001, 1_715_000, 3_000_000);
+        SerieDiaria serie = construtor.construir();
+
+        assertTrue(arquivo.gravar("BRK.B", serie).join());
+
+        assertSerieIgual(serie, 0, serie.getTamanho(), arquivo.ler("BRK.B"));
+    }
+
+    @Test
+    public void serieComUmDiaOuNenhum() throws Exception {
+        SerieDiaria.Construtor umDia = new SerieDiaria.Construtor();
+        umDia.adicionar(20240102, 1_000_000, 1_010_000, 990_000, 1_005_000, 10);
+        SerieDiaria vazia = new SerieDiaria.Construtor().construir();
+
+        assertTrue(arquivo.gravar("UM", umDia.construir()).join());
+        assertTrue(arquivo.gravar("VAZIA", vazia).join());
+
+        assertSerieIgual(umDia.construir(), 0, 1, arquivo.ler("UM"));
+        assertEquals(0, arquivo.ler("VAZIA").getTamanho());
+    }
+
+    @Test
+    public void conversaoDeDatasIgualALocalDate() {
+        for (LocalDate data = LocalDate.of(1899, 12, 25); data.getYear() < 2101; data = data.plusDays(1)) {
+            int aaaammdd = data.getYear() * 10_000 + data.getMonthValue() * 100 + data.getDayOfMonth();
+            assertEquals(data.toEpochDay(), ArquivoSeries.diaCorrido(aaaammdd));
+            assertEquals(aaaammdd, ArquivoSeries.dataDoDia(data.toEpochDay()));
+        }
+    }
+
+    @Test
+    public void periodoTrazApenasOsDiasPedidos() throws Exception {
+        SerieDiaria serie = gerarSerie(500, new Random(2));
+        arquivo.gravar("IBM", serie).join();
+
+        // Um período que começa e termina no meio de blocos, com datas que não são pregões
+        int inicio = 100;
+        int fim = 301;
+        SerieDiaria periodo = arquivo.lerPeriodo("IBM", serie.getDatas()[inicio - 1] + 1,
+                serie.getDatas()[fim - 1]);
+
+        assertSerieIgual(serie, inicio, fim, periodo);
+        assertEquals(0, arquivo.lerPeriodo("IBM", 18000101, 18991231).getTamanho());
+    }
+
+    @Test
+    public void periodoNaoLeOsBlocosForaDele() throws Exception {
+        SerieDiaria serie = gerarSerie(DIAS_POR_BLOCO * 4, new Random(3));
+        arquivo.gravar("IBM", serie).join();
+        // Corrompe o último byte do arquivo, que pertence ao último bloco
+        try (RandomAccessFile dados = new RandomAccessFile(arquivo.getArquivo("IBM").toFile(), "rw")) {
+            dados.seek(dados.length() - 1);
+            int original = dados.read();
+            dados.seek(dados.length() - 1);
+            dados.write(original ^ 0xFF);
+        }
+
+        SerieDiaria primeiroBloco = arquivo.lerPeriodo("IBM", serie.getDatas()[0],
+                serie.getDatas()[DIAS_POR_BLOCO - 1]);
+
+        assertSerieIgual(serie, 0, DIAS_POR_BLOCO, primeiroBloco);
+        assertThrows(IOException.class, () -> arquivo.ler("IBM"));
+    }
+
+    @Test
+    public void arquivoAusenteOuSimboloInvalido() throws Exception {
+        assertNull(arquivo.ler("AAPL"));
+        assertNull(arquivo.ler("../config"));
+        assertFalse(arquivo.gravar("../config", gerarSerie(10, new Random(4))).join());
+        assertFalse(Files.exists(diretorio.resolveSibling("config.ser")));
+    }
+
+    @Test
+    public void arquivoTruncadoELidoComoErro() throws Exception {
+        arquivo.gravar("IBM", gerarSerie(300, new Random(5))).join();
+        Path caminho = arquivo.getArquivo("IBM");
+        try (RandomAccessFile dados = new RandomAccessFile(caminho.toFile(), "rw")) {
+            dados.setLength(dados.length() / 2);
+        }
+
+        assertThrows(IOException.class, () -> arquivo.ler("IBM"));
+    }
+
+    @Test
+    public void repositorioLeDoDiscoECombinaComOHistoricoGravado() throws Exception {
+        SerieDiaria historico = gerarSerie(400, new Random(6));
+        arquivo.gravar("IBM", historico).join();
+
+        // Um repositório novo, como depois de reiniciar, recebe só os últimos dias da API
+        RepositorioSeries series = new RepositorioSeries(10, arquivo);
+        SerieDiaria.Construtor recente = new SerieDiaria.Construtor();
+        int ultimaData = historico.getDatas()[historico.getTamanho() - 1];
+        LocalDate seguinte = LocalDate.parse(SerieDiaria.formatarData(ultimaData)).plusDays(1);
+        recente.adicionar(ultimaData, 10_000, 10_000, 10_000, 10_000, 1);
+        recente.adicionar(SerieDiaria.converterData(seguinte.toString()), 20_000, 20_000, 20_000, 20_000, 2);
+        series.atualizar("IBM", recente.construir());
+        // A gravação da atualização é enfileirada antes desta
+        arquivo.gravar("AAPL", historico).join();
+
+        SerieDiaria gravada = arquivo.ler("IBM");
+        assertEquals(401, gravada.getTamanho());
+        assertEquals(historico.getDatas()[0], gravada.getDatas()[0]);
+        assertEquals(10_000, gravada.getFechamento()[399]);
+        assertEquals(20_000, gravada.getFechamento()[400]);
+
+        RepositorioSeries reiniciado = new RepositorioSeries(10, arquivo);
+        assertEquals(0, reiniciado.getTamanho());
+        assertEquals(40, reiniciado.getPeriodo("IBM", historico.getDatas()[10], historico.getDatas()[49])
+                .getTamanho());
+        assertEquals(0, reiniciado.getTamanho());
+        assertEquals(401, reiniciado.get("IBM").getTamanho());
+        assertEquals(1, reiniciado.getTamanho());
+    }
+
+    @Test
+    public void fecharAguardaAsGravacoesPendentesERecusaAsSeguintes() throws Exception {
+        SerieDiaria serie = gerarSerie(2_000, new Random(7));
+        RepositorioSeries series = new RepositorioSeries(10, arquivo);
+        for (int i = 0; i < 20; i++) {
+            series.atualizar("ACAO" + i, serie);
+        }
+
+        series.close();
+
+        for (int i = 0; i < 20; i++) {
+            assertSerieIgual(serie, 0, serie.getTamanho(), arquivo.ler("ACAO" + i));
+        }
+        CompletionException erro = assertThrows(CompletionException.class, () -> arquivo.gravar("IBM", serie).join());
+        assertTrue(erro.getCause() instanceof IOException);
+        // Depois de fechado, o repositório continua atendendo da memória
+        series.atualizar("IBM", serie);
+        assertEquals(serie.getTamanho(), series.get("IBM").getTamanho());
+        assertNull(arquivo.ler("IBM"));
+    }
+
+    private static void assertSerieIgual(SerieDiaria esperada, int inicio, int fim, SerieDiaria lida) {
+        assertEquals(fim - inicio, lida.getTamanho());
+        assertArrayEquals(Arrays.copyOfRange(esperada.getDatas(), inicio, fim), lida.getDatas());
+        assertArrayEquals(Arrays.copyOfRange(esperada.getAbertura(), inicio, fim), lida.getAbertura());
+        assertArrayEquals(Arrays.copyOfRange(esperada.getMaxima(), inicio, fim), lida.getMaxima());
+        assertArrayEquals(Arrays.copyOfRange(esperada.getMinima(), inicio, fim), lida.getMinima());
+        assertArrayEquals(Arrays.copyOfRange(esperada.getFechamento(), inicio, fim), lida.getFechamento());
+        assertArrayEquals(Arrays.copyOfRange(esperada.getVolume(), inicio, fim), lida.getVolume());
+    }
+
+    /**
+     * Gera pregões em dias úteis, pulando alguns feriados, com preços em centavos e volumes variados.
+     */
+    private static SerieDiaria gerarSerie(int dias, Random aleatorio) {
+        SerieDiaria.Construtor construtor = new SerieDiaria.Construtor();
+        LocalDate data = LocalDate.of(2010, 1, 4);
+        long fechamento = 1_500_000;
+        for (int i = 0; i < dias; i++) {
+            while (data.getDayOfWeek().getValue() > 5 || aleatorio.nextInt(40) == 0) {
+                data = data.plusDays(1);
+            }
+            long abertura = fechamento;
+            fechamento = Math.max(100, fechamento + (aleatorio.nextInt(401) - 200) * 100L);
+            construtor.adicionar(data.getYear() * 10_000 + data.getMonthValue() * 100 + data.getDayOfMonth(),
+                    abertura, Math.max(abertura, fechamento) + aleatorio.nextInt(100) * 100L,
+                    Math.min(abertura, fechamento) - aleatorio.nextInt(50) * 100L, fechamento,
+                    aleatorio.nextInt(50_000_000));
+            data = data.plusDays(1);
+        }
+        return construtor.construir();
+    }
+}
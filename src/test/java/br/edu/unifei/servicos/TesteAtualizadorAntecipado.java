@@ -0,0 +1,154 @@
+package br.edu.unifei.servicos;
+
+import br.edu.unifei.utils.CacheTTL;
+import br.edu.unifei.utils.LimitadorCota;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TesteAtualizadorAntecipado {
+
+    private static final long TTL_MS = 60_000;
+    private static final long ANTECEDENCIA_MS = 15_000;
+    private static final long MEIA_VIDA_MS = 600_000;
+    private static final double ACESSOS_MINIMOS = 3;
+
+    // Quarta-feira, 10h em Nova York: bolsa e câmbio abertos
+    private static final Instant PREGAO = Instant.parse("2024-01-10T15:00:00Z");
+    // Quarta-feira, 20h em Nova York: bolsa fechada, câmbio aberto
+    private static final Instant APOS_PREGAO = Instant.parse("2024-01-11T01:00:00Z");
+    // Sábado: ambos fechados
+    private static final Instant FIM_DE_SEMANA = Instant.parse("2024-01-13T15:00:00Z");
+
+    private final AtomicLong agora = new AtomicLong(TimeUnit.DAYS.toNanos(365));
+    private final CacheTTL<String, JsonObject> acoes = new CacheTTL<>(100, TTL_MS);
+    private final CacheTTL<String, JsonObject> moedas = new CacheTTL<>(100, TTL_MS);
+    private final List<String> atualizadas = Collections.synchronizedList(new ArrayList<>());
+    private Supplier<CompletableFuture<Void>> chamada;
+
+    @Test
+    public void atualizaAsMaisFrequentesPrimeiroAteOLimiteDoCiclo() {
+        AtualizadorAntecipado atualizador = criar(new LimitadorCota(100, 1_000), 2, PREGAO);
+        registrar(atualizador, "IBM", true, 5, 50_000);
+        registrar(atualizador, "AAPL", true, 10, 50_000);
+        registrar(atualizador, "MSFT", true, 7, 50_000);
+
+        atualizador.executarCiclo();
+
+        assertEquals(List.of("AAPL", "MSFT"), atualizadas);
+        assertEquals(2, atualizador.getAtualizacoes());
+    }
+
+    @Test
+    public void ignoraChavesPoucoAcessadasLongeDaExpiracaoOuForaDoCache() {
+        AtualizadorAntecipado atualizador = criar(new LimitadorCota(100, 1_000), 20, PREGAO);
+        registrar(atualizador, "POUCO", true, 2, 50_000);
+        registrar(atualizador, "RECENTE", true, 10, 10_000);
+        registrar(atualizador, "VENCENDO", true, 10, 45_000);
+        registrar(atualizador, "EXPIRADA", true, 10, 60_000);
+        registrar(atualizador, "AUSENTE", true, 10, -1);
+
+        atualizador.executarCiclo();
+
+        assertEquals(List.of("VENCENDO"), atualizadas);
+    }
+
+    @Test
+    public void paraNaReservaDaCota() {
+        LimitadorCota cota = new LimitadorCota(5, 1_000);
+        AtualizadorAntecipado atualizador = criar(cota, 20, PREGAO, () -> cota.reservar(0));
+        for (int i = 0; i < 6; i++) {
+            registrar(atualizador, "ACAO" + i, true, 10 + i, 50_000);
+        }
+
+        atualizador.executarCiclo();
+
+        // Cinco fichas e reserva de duas: três atualizações
+        assertEquals(List.of("ACAO5", "ACAO4", "ACAO3"), atualizadas);
+        assertEquals(3, atualizador.getAdiadasPorCota());
+        assertEquals(2, cota.getRestantesMinuto());
+    }
+
+    @Test
+    public void naoAtualizaComOMercadoFechado() {
+        AtualizadorAntecipado noFimDeSemana = criar(new LimitadorCota(100, 1_000), 20, FIM_DE_SEMANA);
+        registrar(noFimDeSemana, "IBM", true, 10, 50_000);
+        registrar(noFimDeSemana, "USD/BRL", false, 10, 50_000);
+
+        noFimDeSemana.executarCiclo();
+
+        assertEquals(List.of(), atualizadas);
+        assertEquals(2, noFimDeSemana.getAdiadasPorHorario());
+
+        AtualizadorAntecipado aposPregao = criar(new LimitadorCota(100, 1_000), 20, APOS_PREGAO);
+        registrar(aposPregao, "IBM", true, 10, 50_000);
+        registrar(aposPregao, "USD/BRL", false, 10, 50_000);
+
+        aposPregao.executarCiclo();
+
+        assertEquals(List.of("USD/BRL"), atualizadas);
+        assertEquals(1, aposPregao.getAdiadasPorHorario());
+    }
+
+    @Test
+    public void frequenciaDecaiAteAChaveSerDescartada() {
+        AtualizadorAntecipado atualizador = criar(new LimitadorCota(100, 1_000), 20, PREGAO);
+        registrar(atualizador, "IBM", true, 10, 50_000);
+
+        // Duas meias-vidas: 2,5 acessos, abaixo do mínimo, mas a chave continua registrada
+        agora.addAndGet(TimeUnit.MILLISECONDS.toNanos(2 * MEIA_VIDA_MS));
+        atualizador.executarCiclo();
+        assertEquals(List.of(), atualizadas);
+        assertEquals(1, atualizador.getChavesRegistradas());
+
+        // Oito meias-vidas: menos de 0,05 acesso, a chave é descartada
+        agora.addAndGet(TimeUnit.MILLISECONDS.toNanos(6 * MEIA_VIDA_MS));
+        atualizador.executarCiclo();
+        assertEquals(0, atualizador.getChavesRegistradas());
+    }
+
+    private AtualizadorAntecipado criar(LimitadorCota cota, int maxChaves, Instant instante) {
+        return criar(cota, maxChaves, instante, () -> CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * @param chamada O que cada atualização faz além de registrar a chave atualizada.
+     */
+    private AtualizadorAntecipado criar(LimitadorCota cota, int maxChaves, Instant instante,
+                                        Supplier<CompletableFuture<Void>> chamada) {
+        this.chamada = chamada;
+        return new AtualizadorAntecipado(cota, ANTECEDENCIA_MS, maxChaves, ACESSOS_MINIMOS, MEIA_VIDA_MS, 2, 10,
+                agora::get, Clock.fixed(instante, ZoneOffset.UTC));
+    }
+
+    /**
+     * Registra os acessos à chave e a coloca no cache com a idade informada, ou a deixa fora dele com idade negativa.
+     */
+    private void registrar(AtualizadorAntecipado atualizador, String chave, boolean bolsa, int acessos,
+                           long idadeMillis) {
+        CacheTTL<String, JsonObject> cache = bolsa ? acoes : moedas;
+        if (idadeMillis >= 0) {
+            cache.put(chave, new JsonObject(), idadeMillis);
+        }
+        Supplier<CompletableFuture<Void>> chamadaAtual = chamada;
+        for (int i = 0; i < acessos; i++) {
+            atualizador.registrarAcesso((bolsa ? "GLOBAL_QUOTE:" : "CURRENCY_EXCHANGE_RATE:") + chave, bolsa, cache,
+                    chave, () -> {
+                        atualizadas.add(chave);
+                        return chamadaAtual.get().thenApply(nada -> new JsonObject());
+                    });
+        }
+    }
+}
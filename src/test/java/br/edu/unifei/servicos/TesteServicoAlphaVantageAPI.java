@@ -0,0 +1,634 @@
+package br.edu.unifei.servicos;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+import br.edu.unifei.utils.LimitadorCota;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TesteServicoAlphaVantageAPI {
+
+    private static final int CLIENTES = 100;
+
+    /**
+     * Serviço com a API substituída: conta as chamadas e segura cada uma até que os demais clientes estejam aguardando
+     * por ela, ou até o tempo limite, caso as chamadas não estejam sendo compartilhadas.
+     */
+    private static class ServicoComApiFalsa extends ServicoAlphaVantageAPI {
+        private final AtomicInteger chamadasAcao = new AtomicInteger();
+        private final AtomicInteger chamadasMoeda = new AtomicInteger();
+
+        @Override
+        protected CompletableFuture<JsonObject> getDadosAcao(String simboloAcao) {
+            chamadasAcao.incrementAndGet();
+            return CompletableFuture.supplyAsync(() -> {
+                aguardarDemaisClientes();
+                JsonObject dados = new JsonObject();
+                dados.addProperty("precoAtual", new BigDecimal("171.50"));
+                dados.addProperty("volume", 1000L);
+                return dados;
+            });
+        }
+
+        @Override
+        protected CompletableFuture<JsonObject> getDadosCotacao(String moedaReferencia, String moedaDestino) {
+            chamadasMoeda.incrementAndGet();
+            return CompletableFuture.supplyAsync(() -> {
+                aguardarDemaisClientes();
+                JsonObject dados = new JsonObject();
+                dados.addProperty("moedaReferenciaCodigo", moedaReferencia);
+                dados.addProperty("moedaDestinoCodigo", moedaDestino);
+                dados.addProperty("taxaDeCambio", new BigDecimal("5.25"));
+                return dados;
+            });
+        }
+
+        private void aguardarDemaisClientes() {
+            long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (getChamadasEmAndamento().getCompartilhadas() < CLIENTES - 1 && System.nanoTime() < limite) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CompletionException(e);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void consultasDeAcaoSimultaneasCompartilhamUmaChamada() throws Exception {
+        ServicoComApiFalsa servico = new ServicoComApiFalsa();
+
+        List<Mensagem> respostas = executarSimultaneamente(servico, i -> {
+            JsonObject conteudo = new JsonObject();
+            // Variações de caixa e espaços devem ser normalizadas para a mesma chamada
+            conteudo.addProperty("simboloAcao", i % 2 == 0 ? "IBM" : " ibm ");
+            conteudo.add("metadata", metadataDoCliente(i));
+            return new Mensagem("CONSULTAR_ACAO", "cliente/" + i, "topico/servidor", conteudo);
+        });
+
+        assertEquals(1, servico.chamadasAcao.get(), "chamadas à API");
+        assertEquals(1L, servico.getChamadasEmAndamento().getExecutadas());
+        verificarRespostasIndependentes(respostas);
+        for (Mensagem resposta : respostas) {
+            assertEquals(new BigDecimal("171.50"), resposta.getConteudo().get("precoAtual").getAsBigDecimal());
+        }
+    }
+
+    @Test
+    public void consultasDeMoedaSimultaneasCompartilhamUmaChamada() throws Exception {
+        ServicoComApiFalsa servico = new ServicoComApiFalsa();
+
+        List<Mensagem> respostas = executarSimultaneamente(servico, i -> {
+            JsonObject conteudo = new JsonObject();
+            conteudo.addProperty("moedaReferencia", "USD");
+            conteudo.addProperty("moedaDestino", "brl");
+            conteudo.addProperty("valorAConverter", i);
+            conteudo.add("metadata", metadataDoCliente(i));
+            return new Mensagem("CONSULTAR_MOEDA", "cliente/" + i, "topico/servidor", conteudo);
+        });
+
+        assertEquals(1, servico.chamadasMoeda.get(), "chamadas à API");
+        verificarRespostasIndependentes(respostas);
+        for (int i = 0; i < CLIENTES; i++) {
+            // Cada cliente recebe a conversão do próprio valor sobre a taxa compartilhada
+            assertEquals(new BigDecimal("5.25").multiply(BigDecimal.valueOf(i)),
+                    respostas.get(i).getConteudo().get("valorConvertido").getAsBigDecimal());
+        }
+    }
+
+    @Test
+    public void consultasDiferentesNaoSaoAgrupadas() {
+        ServicoComApiFalsa servico = new ServicoComApiFalsa() {
+            @Override
+            protected CompletableFuture<JsonObject> getDadosAcao(String simboloAcao) {
+                super.chamadasAcao.incrementAndGet();
+                JsonObject dados = new JsonObject();
+                dados.addProperty("precoAtual", BigDecimal.ONE);
+                return CompletableFuture.completedFuture(dados);
+            }
+        };
+
+        for (String simbolo : new String[]{"IBM", "AAPL", "MSFT"}) {
+            JsonObject conteudo = new JsonObject();
+            conteudo.addProperty("simboloAcao", simbolo);
+            servico.executar(new Mensagem("CONSULTAR_ACAO", "cliente", "topico/servidor", conteudo));
+        }
+
+        assertEquals(3, servico.chamadasAcao.get());
+        assertEquals(0L, servico.getChamadasEmAndamento().getCompartilhadas());
+        assertEquals(0, servico.getChamadasEmAndamento().getEmAndamento());
+    }
+
+    @Test
+    public void erroDaApiVemDoCacheNegativoNaRepeticao() {
+        AtomicInteger chamadas = new AtomicInteger();
+        ServicoAlphaVantageAPI servico = new ServicoAlphaVantageAPI() {
+            @Override
+            protected CompletableFuture<JsonObject> getDadosAcao(String simboloAcao) {
+                chamadas.incrementAndGet();
+                JsonObject dados = new JsonObject();
+                dados.addProperty("erro", "Invalid API call.");
+                return CompletableFuture.completedFuture(dados);
+            }
+        };
+
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("simboloAcao", "XYZW");
+        Mensagem primeira = servico.executar(new Mensagem("CONSULTAR_ACAO", "cliente", "topico/servidor", conteudo));
+        Mensagem segunda = servico.executar(new Mensagem("CONSULTAR_ACAO", "cliente", "topico/servidor", conteudo));
+
+        assertEquals(1, chamadas.get(), "chamadas à API");
+        assertFalse(primeira.getMetadata().get("cache_negativo").getAsBoolean());
+        assertTrue(segunda.getMetadata().get("cache_negativo").getAsBoolean());
+        assertEquals("Invalid API call.", segunda.getConteudo().get("erro").getAsString());
+        assertEquals(0, servico.getCacheAcoes().getTamanho());
+    }
+
+    @Test
+    public void avisoQueNaoEDeLimiteVaiParaOCacheNegativoSemEsvaziarACota() throws Exception {
+        String premium = "Thank you for using Alpha Vantage! This is a premium endpoint. You may subscribe to any of "
+                + "the premium plans at https://www.alphavantage.co/premium/ to instantly unlock all premium endpoints";
+        String diario = "We have detected your API key as DEMO and our standard API rate limit is 25 requests per "
+                + "day. Please subscribe to any of the premium plans to instantly remove all daily rate limits.";
+        List<String> avisos = Collections.synchronizedList(new ArrayList<>(List.of(premium, diario)));
+        AtomicInteger chamadas = new AtomicInteger();
+        HttpServer servidor = iniciarApiFalsa(() -> {
+            chamadas.incrementAndGet();
+            JsonObject corpo = new JsonObject();
+            corpo.addProperty("Information", avisos.remove(0));
+            return corpo.toString();
+        });
+        LimitadorCota cota = new LimitadorCota(1_000, 1_000);
+        ServicoAlphaVantageAPI servico = servicoComApiFalsa(servidor, cota, 1_000L);
+        try {
+            Mensagem primeira = consultarAcao(servico, "IBM");
+            Mensagem repetida = consultarAcao(servico, "IBM");
+
+            assertEquals(premium, primeira.getConteudo().get("erro").getAsString());
+            assertTrue(repetida.getMetadata().get("cache_negativo").getAsBoolean());
+            assertEquals(1, chamadas.get(), "chamadas à API");
+            assertEquals(0L, cota.getLimitesInformados());
+            assertTrue(cota.getRestantesDia() > 0);
+
+            Mensagem limitada = consultarAcao(servico, "AAPL");
+
+            assertTrue(limitada.getConteudo().get("erro").getAsString().contains("Limite de consultas"));
+            assertEquals(1L, cota.getLimitesInformados());
+            assertEquals(0, cota.getRestantesDia());
+        } finally {
+            servico.close();
+            servidor.stop(0);
+        }
+    }
+
+    @Test
+    public void consultaIndividualNaoEsperaAtrasDeUmLoteGrande() throws Exception {
+        String serie = BenchmarkClienteAlphaVantage.gerarTimeSeriesDaily(5);
+        HttpServer servidor = iniciarApiFalsa(() -> serie);
+        // Uma ficha por segundo: o lote gasta as 60 disponíveis e a consulta individual fica com a seguinte
+        LimitadorCota cota = new LimitadorCota(60, 10_000);
+        ServicoAlphaVantageAPI servico = servicoComApiFalsa(servidor, cota, 5_000L);
+        try {
+            JsonObject conteudo = new JsonObject();
+            JsonArray simbolos = new JsonArray();
+            for (int i = 0; i < 100; i++) {
+                simbolos.add("ACAO" + i);
+            }
+            conteudo.add("simbolosAcoes", simbolos);
+            CompletableFuture<Mensagem> lote = servico.executarAssincrono(
+                    new Mensagem("CONSULTAR_ACAO_LOTE", "cliente", "topico/servidor", conteudo), null);
+
+            Mensagem individual = consultarAcao(servico, "IBM");
+
+            assertFalse(individual.getConteudo().has("erro"), "resposta com erro: " + individual.getConteudo());
+            Mensagem respostaLote = lote.get(10, TimeUnit.SECONDS);
+            assertEquals(40, respostaLote.getConteudo().get("quantidadeErros").getAsInt());
+            JsonObject semCota = respostaLote.getConteudo().getAsJsonArray("resultados").get(99).getAsJsonObject();
+            assertTrue(semCota.get("erro").getAsString().contains("Cota da API insuficiente"));
+            assertEquals(61L, cota.getConcedidas());
+            assertEquals(0L, cota.getRecusadas());
+        } finally {
+            servico.close();
+            servidor.stop(0);
+        }
+    }
+
+    /**
+     * Inicia um servidor local que responde a todas as consultas com o corpo fornecido.
+     */
+    private static HttpServer iniciarApiFalsa(Supplier<String> corpo) throws IOException {
+        HttpServer servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        servidor.createContext("/query", troca -> {
+            byte[] bytes = corpo.get().getBytes(StandardCharsets.UTF_8);
+            troca.sendResponseHeaders(200, bytes.length);
+            try (OutputStream saida = troca.getResponseBody()) {
+                saida.write(bytes);
+            }
+        });
+        servidor.start();
+        return servidor;
+    }
+
+    private static ServicoAlphaVantageAPI servicoComApiFalsa(HttpServer servidor, LimitadorCota cota,
+                                                             long prazoEsperaCotaMillis) {
+        return new ServicoAlphaVantageAPI("http://localhost:" + servidor.getAddress().getPort() + "/query",
+                HttpClient.newHttpClient(), Duration.ofSeconds(5), 4, cota, prazoEsperaCotaMillis, null);
+    }
+
+    private static Mensagem consultarAcao(ServicoAlphaVantageAPI servico, String simbolo) {
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("simboloAcao", simbolo);
+        return servico.executar(new Mensagem("CONSULTAR_ACAO", "cliente", "topico/servidor", conteudo));
+    }
+
+    /**
+     * Serviço sem armazém em disco com a API substituída por tabelas: taxas em relação ao dólar e ações cujo preço é o
+     * tamanho do símbolo. Os pares com uma moeda fora da tabela e os símbolos iniciados por X são respondidos com o
+     * erro da API.
+     */
+    private static class ServicoComTabelaFalsa extends ServicoAlphaVantageAPI {
+        private final Map<String, BigDecimal> dolar = new HashMap<>();
+        private final List<String> chamadas = new ArrayList<>();
+
+        ServicoComTabelaFalsa() {
+            super("http://localhost", null, Duration.ofSeconds(1), 1, new LimitadorCota(1_000, 1_000), 0L, null);
+            dolar.put("USD", BigDecimal.ONE);
+            dolar.put("EUR", new BigDecimal("1.08000000"));
+            dolar.put("BRL", new BigDecimal("0.20000000"));
+            dolar.put("JPY", new BigDecimal("0.00650000"));
+        }
+
+        @Override
+        protected synchronized CompletableFuture<JsonObject> getDadosCotacao(String moedaReferencia,
+                                                                             String moedaDestino) {
+            chamadas.add(moedaReferencia + "/" + moedaDestino);
+            JsonObject dados = new JsonObject();
+            if (!dolar.containsKey(moedaReferencia) || !dolar.containsKey(moedaDestino)) {
+                dados.addProperty("erro", "Invalid API call.");
+                return CompletableFuture.completedFuture(dados);
+            }
+            dados.addProperty("moedaReferenciaCodigo", moedaReferencia);
+            dados.addProperty("moedaReferenciaNome", "Moeda " + moedaReferencia);
+            dados.addProperty("moedaDestinoCodigo", moedaDestino);
+            dados.addProperty("moedaDestinoNome", "Moeda " + moedaDestino);
+            dados.addProperty("taxaDeCambio", dolar.get(moedaReferencia)
+                    .divide(dolar.get(moedaDestino), TriangulacaoCambio.PRECISAO));
+            return CompletableFuture.completedFuture(dados);
+        }
+
+        @Override
+        protected synchronized CompletableFuture<JsonObject> getDadosAcao(String simboloAcao) {
+            chamadas.add(simboloAcao);
+            JsonObject dados = new JsonObject();
+            if (simboloAcao.startsWith("X")) {
+                dados.addProperty("erro", "Invalid API call.");
+            } else {
+                dados.addProperty("precoAtual", BigDecimal.valueOf(simboloAcao.length()));
+            }
+            // Conclui em outra thread, como a API, para que os itens do lote terminem fora de ordem
+            return CompletableFuture.supplyAsync(() -> dados);
+        }
+
+        synchronized List<String> getChamadas() {
+            return new ArrayList<>(chamadas);
+        }
+
+        Mensagem consultarMoeda(String referencia, String destino) {
+            JsonObject conteudo = new JsonObject();
+            conteudo.addProperty("moedaReferencia", referencia);
+            conteudo.addProperty("moedaDestino", destino);
+            conteudo.addProperty("valorAConverter", 100);
+            return executar(new Mensagem("CONSULTAR_MOEDA", "cliente", "topico/servidor", conteudo));
+        }
+
+        Mensagem consultarMatriz(String... moedas) {
+            JsonObject conteudo = new JsonObject();
+            JsonArray lista = new JsonArray();
+            for (String moeda : moedas) {
+                lista.add(moeda);
+            }
+            conteudo.add("moedas", lista);
+            return executar(new Mensagem("CONSULTAR_MATRIZ_MOEDAS", "cliente", "topico/servidor", conteudo));
+        }
+    }
+
+    @Test
+    public void taxaDerivadaDasCotacoesEmCacheSemChamarApi() {
+        ServicoComTabelaFalsa servico = new ServicoComTabelaFalsa();
+        servico.consultarMoeda("EUR", "USD");
+        servico.consultarMoeda("usd", "brl");
+
+        Mensagem derivada = servico.consultarMoeda("EUR", "BRL");
+        Mensagem inversa = servico.consultarMoeda("BRL", "USD");
+
+        assertEquals(List.of("EUR/USD", "USD/BRL"), servico.getChamadas(), "chamadas à API");
+        assertEquals(0, new BigDecimal("5.4").compareTo(derivada.getConteudo().get("taxaDeCambio").getAsBigDecimal()));
+        assertEquals(0, new BigDecimal("540").compareTo(
+                derivada.getConteudo().get("valorConvertido").getAsBigDecimal()));
+        assertEquals("Moeda BRL", derivada.getConteudo().get("moedaDestinoNome").getAsString());
+        assertTrue(derivada.getMetadata().get("taxa_derivada").getAsBoolean());
+        assertTrue(derivada.getMetadata().get("cache_hit").getAsBoolean());
+        assertEquals("USD", derivada.getMetadata().get("pivo").getAsString());
+        assertEquals(2, derivada.getMetadata().getAsJsonArray("pernas").size());
+        assertEquals(0, new BigDecimal("0.2").compareTo(inversa.getConteudo().get("taxaDeCambio").getAsBigDecimal()));
+        assertTrue(inversa.getMetadata().get("taxa_derivada").getAsBoolean());
+        assertFalse(servico.consultarMoeda("EUR", "USD").getMetadata().get("taxa_derivada").getAsBoolean());
+    }
+
+    @Test
+    public void taxaSemPernaEmCacheVemDaApi() {
+        ServicoComTabelaFalsa servico = new ServicoComTabelaFalsa();
+        servico.consultarMoeda("EUR", "USD");
+
+        Mensagem resposta = servico.consultarMoeda("EUR", "BRL");
+
+        assertEquals(List.of("EUR/USD", "EUR/BRL"), servico.getChamadas(), "chamadas à API");
+        assertFalse(resposta.getMetadata().get("taxa_derivada").getAsBoolean());
+        assertFalse(resposta.getMetadata().get("cache_hit").getAsBoolean());
+    }
+
+    @Test
+    public void matrizChamaAApiUmaVezPorMoedaSemCotacaoParaOPivo() {
+        ServicoComTabelaFalsa servico = new ServicoComTabelaFalsa();
+        // Cotação já em cache, no sentido inverso ao da perna
+        servico.consultarMoeda("USD", "BRL");
+
+        Mensagem primeira = servico.consultarMatriz("USD", "EUR", "BRL", "JPY", "XXX");
+        Mensagem segunda = servico.consultarMatriz("jpy", "brl", "eur");
+
+        assertEquals(List.of("USD/BRL", "EUR/USD", "JPY/USD", "XXX/USD"), servico.getChamadas(), "chamadas à API");
+        JsonObject taxas = primeira.getConteudo().getAsJsonObject("taxasDeCambio");
+        assertEquals(0, BigDecimal.ONE.compareTo(taxas.getAsJsonObject("EUR").get("EUR").getAsBigDecimal()));
+        assertEquals(0, new BigDecimal("5.4").compareTo(taxas.getAsJsonObject("EUR").get("BRL").getAsBigDecimal()));
+        assertEquals(0, new BigDecimal("166.1538461538462").compareTo(
+                taxas.getAsJsonObject("EUR").get("JPY").getAsBigDecimal()));
+        assertTrue(taxas.getAsJsonObject("XXX").get("EUR").isJsonNull());
+        assertTrue(taxas.getAsJsonObject("EUR").get("XXX").isJsonNull());
+        assertTrue(primeira.getConteudo().getAsJsonObject("erros").has("XXX"));
+        assertEquals("Moeda JPY", primeira.getConteudo().getAsJsonObject("nomesMoedas").get("JPY").getAsString());
+        assertEquals(3, primeira.getMetadata().get("chamadas_api").getAsInt());
+        JsonArray diretas = primeira.getMetadata().getAsJsonArray("taxas_diretas");
+        assertTrue(diretas.contains(new JsonPrimitive("USD/BRL")));
+        assertFalse(diretas.contains(new JsonPrimitive("BRL/USD")));
+
+        assertEquals(0, segunda.getMetadata().get("chamadas_api").getAsInt());
+        assertTrue(segunda.getMetadata().get("cache_hit").getAsBoolean());
+        assertNull(segunda.getConteudo().get("erros"));
+        assertEquals(0, new BigDecimal("30.76923076923077").compareTo(segunda.getConteudo()
+                .getAsJsonObject("taxasDeCambio").getAsJsonObject("BRL").get("JPY").getAsBigDecimal()));
+    }
+
+    @Test
+    public void loteDeAcoesReuneResultadosEErrosNaOrdemDaLista() {
+        ServicoComTabelaFalsa servico = new ServicoComTabelaFalsa();
+        JsonObject conteudo = new JsonObject();
+        JsonArray simbolos = new JsonArray();
+        for (String simbolo : new String[]{"IBM", "AAPL", " ibm ", "XYZ"}) {
+            simbolos.add(simbolo);
+        }
+        simbolos.add(new JsonObject());
+        conteudo.add("simbolosAcoes", simbolos);
+        conteudo.add("metadata", metadataDoCliente(7));
+
+        Mensagem resposta = servico.executar(
+                new Mensagem("CONSULTAR_ACAO_LOTE", "cliente", "topico/servidor", conteudo));
+
+        assertEquals("RESULTADO_CONSULTAR_ACAO_LOTE", resposta.getAcao());
+        assertEquals("cliente", resposta.getDestino());
+        assertEquals(7, resposta.getConteudo().getAsJsonObject("metadata").get("cliente").getAsInt());
+        assertEquals(5, resposta.getConteudo().get("quantidade").getAsInt());
+        assertEquals(2, resposta.getConteudo().get("quantidadeErros").getAsInt());
+        JsonArray resultados = resposta.getConteudo().getAsJsonArray("resultados");
+        for (int i = 0; i < resultados.size(); i++) {
+            assertEquals(i, resultados.get(i).getAsJsonObject().get("indice").getAsInt());
+        }
+        JsonObject aapl = resultados.get(1).getAsJsonObject();
+        assertEquals("AAPL", aapl.get("simboloAcao").getAsString());
+        assertEquals(4, aapl.get("precoAtual").getAsInt());
+        assertFalse(aapl.getAsJsonObject("metadata").get("cache_hit").getAsBoolean());
+        assertEquals(3, resultados.get(2).getAsJsonObject().get("precoAtual").getAsInt());
+        assertTrue(resultados.get(3).getAsJsonObject().has("erro"));
+        assertTrue(resultados.get(4).getAsJsonObject().has("erro"));
+        // O símbolo repetido é consultado uma única vez, e o malformado não chega à API
+        assertEquals(3, servico.getChamadas().size());
+    }
+
+    @Test
+    public void loteDeMoedasUsaOValorPadraoEATaxaDerivada() {
+        ServicoComTabelaFalsa servico = new ServicoComTabelaFalsa();
+        servico.consultarMoeda("EUR", "USD");
+        servico.consultarMoeda("USD", "BRL");
+        JsonObject conteudo = new JsonObject();
+        JsonArray pares = new JsonArray();
+        JsonObject eurBrl = new JsonObject();
+        eurBrl.addProperty("moedaReferencia", "EUR");
+        eurBrl.addProperty("moedaDestino", "BRL");
+        pares.add(eurBrl);
+        JsonObject usdBrl = eurBrl.deepCopy();
+        usdBrl.addProperty("moedaReferencia", "USD");
+        usdBrl.addProperty("valorAConverter", 10);
+        pares.add(usdBrl);
+        JsonObject semDestino = new JsonObject();
+        semDestino.addProperty("moedaReferencia", "USD");
+        pares.add(semDestino);
+        conteudo.add("pares", pares);
+
+        Mensagem resposta = servico.executar(
+                new Mensagem("CONSULTAR_MOEDA_LOTE", "cliente", "topico/servidor", conteudo));
+
+        JsonArray resultados = resposta.getConteudo().getAsJsonArray("resultados");
+        assertEquals(0, new BigDecimal("5.4").compareTo(
+                resultados.get(0).getAsJsonObject().get("valorConvertido").getAsBigDecimal()));
+        assertTrue(resultados.get(0).getAsJsonObject().getAsJsonObject("metadata").get("taxa_derivada")
+                .getAsBoolean());
+        assertEquals(0, new BigDecimal("50").compareTo(
+                resultados.get(1).getAsJsonObject().get("valorConvertido").getAsBigDecimal()));
+        assertTrue(resultados.get(2).getAsJsonObject().has("erro"));
+        assertEquals(2, resposta.getMetadata().get("cache_hits").getAsInt());
+        assertEquals(2, servico.getChamadas().size(), "chamadas à API");
+    }
+
+    @Test
+    public void loteComParciaisPublicaCadaResultadoAntesDaResposta() {
+        ServicoComTabelaFalsa servico = new ServicoComTabelaFalsa();
+        JsonObject conteudo = new JsonObject();
+        JsonArray simbolos = new JsonArray();
+        for (int i = 0; i < 20; i++) {
+            simbolos.add(i % 5 == 4 ? "X" + i : "ACAO" + i);
+        }
+        conteudo.add("simbolosAcoes", simbolos);
+        conteudo.addProperty("parcial", true);
+        conteudo.add("metadata", metadataDoCliente(3));
+        List<Mensagem> parciais = Collections.synchronizedList(new ArrayList<>());
+
+        Mensagem resposta = servico.executarAssincrono(
+                new Mensagem("CONSULTAR_ACAO_LOTE", "cliente", "topico/servidor", conteudo), parciais::add).join();
+
+        assertEquals(20, parciais.size());
+        boolean[] publicados = new boolean[20];
+        for (Mensagem parcial : parciais) {
+            assertEquals("RESULTADO_CONSULTAR_ACAO_LOTE_PARCIAL", parcial.getAcao());
+            assertEquals(3, parcial.getConteudo().getAsJsonObject("metadata").get("cliente").getAsInt());
+            assertEquals(20, parcial.getConteudo().get("total").getAsInt());
+            JsonObject resultado = parcial.getConteudo().getAsJsonObject("resultado");
+            publicados[resultado.get("indice").getAsInt()] = true;
+        }
+        for (boolean publicado : publicados) {
+            assertTrue(publicado);
+        }
+        assertFalse(resposta.getConteudo().has("resultados"));
+        assertTrue(resposta.getMetadata().get("parcial").getAsBoolean());
+        assertEquals(4, resposta.getConteudo().get("quantidadeErros").getAsInt());
+    }
+
+    @Test
+    public void loteVazioOuGrandeDemaisERecusado() {
+        ServicoComTabelaFalsa servico = new ServicoComTabelaFalsa();
+        JsonObject conteudo = new JsonObject();
+        conteudo.add("simbolosAcoes", new JsonArray());
+
+        Mensagem vazio = servico.executar(new Mensagem("CONSULTAR_ACAO_LOTE", "cliente", "topico/servidor", conteudo));
+
+        assertTrue(vazio.getConteudo().has("erro"));
+        assertTrue(servico.executar(new Mensagem("CONSULTAR_MOEDA_LOTE", "cliente", "topico/servidor",
+                new JsonObject())).getConteudo().has("erro"));
+        assertTrue(servico.getChamadas().isEmpty());
+    }
+
+    @Test
+    public void atualizacaoAntecipadaComecaEmIniciarETerminaEmClose() throws Exception {
+        long antes = threadsAtualizacao();
+        ServicoComTabelaFalsa servico = new ServicoComTabelaFalsa();
+        assertEquals(antes, threadsAtualizacao(), "o construtor não deve iniciar threads");
+
+        servico.iniciar();
+        servico.iniciar();
+        assertEquals(antes + 1, threadsAtualizacao());
+
+        servico.close();
+        long limite = System.currentTimeMillis() + 5_000;
+        while (threadsAtualizacao() > antes && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+        assertEquals(antes, threadsAtualizacao());
+    }
+
+    @Test
+    public void closeConcluiAsGravacoesEFechaOArmazem() throws Exception {
+        Path diretorio = Files.createTempDirectory("servico-alpha-vantage");
+        Path arquivo = diretorio.resolve("cotacoes.dat");
+        try {
+            ArmazemCotacoes armazem = new ArmazemCotacoes(arquivo, 16);
+            ServicoAlphaVantageAPI servico = new ServicoAlphaVantageAPI("http://localhost", null, Duration.ofSeconds(1),
+                    1, new LimitadorCota(1_000, 1_000), 0L, armazem);
+            JsonObject cotacao = new JsonObject();
+            cotacao.addProperty("moedaReferenciaCodigo", "USD");
+            cotacao.addProperty("moedaReferenciaNome", "United States Dollar");
+            cotacao.addProperty("moedaDestinoCodigo", "BRL");
+            cotacao.addProperty("moedaDestinoNome", "Brazilian Real");
+            cotacao.addProperty("taxaDeCambio", new BigDecimal("5.44120000"));
+            armazem.gravar(ArmazemCotacoes.Tipo.CAMBIO, "USD/BRL", cotacao, System.currentTimeMillis());
+
+            servico.close();
+            servico.close();
+
+            // Fechado, o arquivo pode ser aberto por outro armazém e traz a cotação enfileirada antes do fechamento
+            try (ArmazemCotacoes reaberto = new ArmazemCotacoes(arquivo, 16)) {
+                assertEquals(1, reaberto.getEntradas());
+            }
+        } finally {
+            try (Stream<Path> caminhos = Files.walk(diretorio)) {
+                caminhos.sorted(Comparator.reverseOrder()).forEach(caminho -> caminho.toFile().delete());
+            }
+        }
+    }
+
+    private static long threadsAtualizacao() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.isAlive() && thread.getName().equals("atualizacao-antecipada"))
+                .count();
+    }
+
+    private interface FabricaMensagem {
+        Mensagem criar(int cliente);
+    }
+
+    private static List<Mensagem> executarSimultaneamente(ServicoAlphaVantageAPI servico, FabricaMensagem fabrica)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTES);
+        try {
+            CountDownLatch largada = new CountDownLatch(1);
+            List<Future<Mensagem>> futuros = new ArrayList<>();
+            for (int i = 0; i < CLIENTES; i++) {
+                Mensagem mensagem = fabrica.criar(i);
+                futuros.add(executor.submit(() -> {
+                    largada.await();
+                    return servico.executar(mensagem);
+                }));
+            }
+            largada.countDown();
+
+            List<Mensagem> respostas = new ArrayList<>();
+            for (Future<Mensagem> futuro : futuros) {
+                respostas.add(futuro.get(10, TimeUnit.SECONDS));
+            }
+            return respostas;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static JsonObject metadataDoCliente(int cliente) {
+        JsonObject metadata = new JsonObject();
+        metadata.addProperty("cliente", cliente);
+        return metadata;
+    }
+
+    private static void verificarRespostasIndependentes(List<Mensagem> respostas) {
+        Map<JsonObject, Boolean> conteudos = new IdentityHashMap<>();
+        for (int i = 0; i < respostas.size(); i++) {
+            Mensagem resposta = respostas.get(i);
+            assertEquals("cliente/" + i, resposta.getDestino());
+            assertFalse(resposta.getConteudo().has("erro"), "resposta com erro: " + resposta.getConteudo());
+            assertEquals(i, resposta.getConteudo().getAsJsonObject("metadata").get("cliente").getAsInt());
+            assertEquals(null, conteudos.put(resposta.getConteudo(), Boolean.TRUE), "conteúdo compartilhado");
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package br.edu.unifei.servicos;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TesteServicoSeriesTemporais {
+
+    private RepositorioSeries series;
+    private ServicoSeriesTemporais servico;
+
+    /**
+     * Dez dias, de 2024-01-01 a 2024-01-10, com fechamento de 10 a 19, mínima um real abaixo e máxima um real acima.
+     */
+    @BeforeEach
+    public void criarSerie() {
+        SerieDiaria.Construtor construtor = new SerieDiaria.Construtor();
+        // Em ordem decrescente, como na resposta da API
+        for (int dia = 10; dia >= 1; dia--) {
+            long fechamento = (9 + dia) * SerieDiaria.ESCALA;
+            construtor.adicionar(20240100 + dia, fechamento, fechamento + SerieDiaria.ESCALA,
+                    fechamento - SerieDiaria.ESCALA, fechamento, 1000L * dia);
+        }
+        series = new RepositorioSeries(10);
+        series.atualizar("IBM", construtor.construir());
+        servico = new ServicoSeriesTemporais(series);
+    }
+
+    @Test
+    public void historicoRecortaOPeriodoEmColunas() {
+        JsonObject conteudo = consulta("ibm");
+        conteudo.addProperty("dataInicio", "2024-01-03");
+        conteudo.addProperty("dataFim", "2024-01-05");
+
+        Mensagem resposta = servico.executar(new Mensagem("CONSULTAR_HISTORICO", "cliente", "servidor", conteudo));
+
+        assertEquals("RESULTADO_CONSULTAR_HISTORICO", resposta.getAcao());
+        assertEquals("cliente", resposta.getDestino());
+        JsonObject historico = resposta.getConteudo();
+        assertEquals(3, historico.get("quantidade").getAsInt());
+        assertEquals("2024-01-03", historico.getAsJsonArray("datas").get(0).getAsString());
+        assertEquals("2024-01-05", historico.get("dataFim").getAsString());
+        assertEquals(new BigDecimal("12.0000"), historico.getAsJsonArray("fechamento").get(0).getAsBigDecimal());
+        assertEquals(new BigDecimal("14.0000"), historico.getAsJsonArray("maxima").get(1).getAsBigDecimal());
+        assertEquals(5000L, historico.getAsJsonArray("volume").get(2).getAsLong());
+        assertTrue(historico.has("metadata"));
+    }
+
+    @Test
+    public void historicoComLimiteDevolveOsUltimosDias() {
+        JsonObject conteudo = consulta("IBM");
+        conteudo.addProperty("limite", 2);
+
+        JsonObject historico = executar("CONSULTAR_HISTORICO", conteudo);
+
+        JsonArray datas = historico.getAsJsonArray("datas");
+        assertEquals(2, datas.size());
+        assertEquals("2024-01-09", datas.get(0).getAsString());
+        assertEquals("2024-01-10", datas.get(1).getAsString());
+    }
+
+    @Test
+    public void mediaMovelSimplesUsaOsDiasAnterioresAoPeriodo() {
+        JsonObject conteudo = consulta("IBM");
+        conteudo.addProperty("indicador", "SMA");
+        conteudo.addProperty("periodo", 3);
+        conteudo.addProperty("dataInicio", "2024-01-02");
+
+        JsonObject resultado = executar("CONSULTAR_INDICADOR", conteudo);
+
+        // O dia 2 não tem três dias até ele; a primeira média é a do dia 3, sobre os fechamentos 10, 11 e 12
+        assertEquals("2024-01-03", resultado.get("dataInicio").getAsString());
+        JsonArray valores = resultado.getAsJsonArray("valores");
+        assertEquals(8, valores.size());
+        assertEquals(new BigDecimal("11.0000"), valores.get(0).getAsBigDecimal());
+        assertEquals(new BigDecimal("18.0000"), valores.get(7).getAsBigDecimal());
+    }
+
+    @Test
+    public void mediaMovelExponencialPartiDaMediaSimples() {
+        long[] valores = {10, 20, 30, 40};
+
+        double[] medias = IndicadoresSerie.mediaMovelExponencial(valores, 1, 4, 2);
+
+        // Fator 2/3: 15, depois 15 + 2/3 * 15 = 25 e 25 + 2/3 * 15 = 35
+        assertEquals(15.0, medias[0], 1e-9);
+        assertEquals(25.0, medias[1], 1e-9);
+        assertEquals(35.0, medias[2], 1e-9);
+    }
+
+    @Test
+    public void minimoEMaximoDoPeriodo() {
+        JsonObject conteudo = consulta("IBM");
+        conteudo.addProperty("indicador", "MIN_MAX");
+        conteudo.addProperty("dataInicio", "2024-01-04");
+        conteudo.addProperty("dataFim", "2024-01-06");
+
+        JsonObject resultado = executar("CONSULTAR_INDICADOR", conteudo);
+
+        assertEquals(new BigDecimal("12.0000"), resultado.get("minimo").getAsBigDecimal());
+        assertEquals("2024-01-04", resultado.get("dataMinimo").getAsString());
+        assertEquals(new BigDecimal("16.0000"), resultado.get("maximo").getAsBigDecimal());
+        assertEquals("2024-01-06", resultado.get("dataMaximo").getAsString());
+    }
+
+    @Test
+    public void retornosUsamOFechamentoDaVespera() {
+        JsonObject conteudo = consulta("IBM");
+        conteudo.addProperty("indicador", "RETORNOS");
+        conteudo.addProperty("dataInicio", "2024-01-10");
+
+        JsonObject resultado = executar("CONSULTAR_INDICADOR", conteudo);
+
+        assertEquals(19.0 / 18 - 1, resultado.getAsJsonArray("valores").get(0).getAsDouble(), 1e-12);
+        assertEquals(19.0 / 18 - 1, resultado.get("retornoAcumulado").getAsDouble(), 1e-12);
+    }
+
+    @Test
+    public void acaoNaoConsultadaOuParametroInvalidoRespondeErro() {
+        assertTrue(executar("CONSULTAR_HISTORICO", consulta("PETR4")).has("erro"));
+
+        JsonObject periodoVazio = consulta("IBM");
+        periodoVazio.addProperty("dataInicio", "2025-01-01");
+        assertTrue(executar("CONSULTAR_HISTORICO", periodoVazio).has("erro"));
+
+        JsonObject semPeriodo = consulta("IBM");
+        semPeriodo.addProperty("indicador", "SMA");
+        assertTrue(executar("CONSULTAR_INDICADOR", semPeriodo).has("erro"));
+
+        JsonObject dataInvalida = consulta("IBM");
+        dataInvalida.addProperty("dataFim", "10/01/2024");
+        assertTrue(executar("CONSULTAR_HISTORICO", dataInvalida).has("erro"));
+    }
+
+    @Test
+    public void parametroQueNaoETextoRespondeErro() {
+        JsonObject simboloObjeto = new JsonObject();
+        simboloObjeto.add("simboloAcao", new JsonObject());
+        assertTrue(executar("CONSULTAR_HISTORICO", simboloObjeto).has("erro"));
+
+        JsonObject indicadorArray = consulta("IBM");
+        indicadorArray.add("indicador", new JsonArray());
+        assertTrue(executar("CONSULTAR_INDICADOR", indicadorArray).has("erro"));
+
+        JsonObject limiteObjeto = consulta("IBM");
+        limiteObjeto.add("limite", new JsonObject());
+        assertTrue(executar("CONSULTAR_HISTORICO", limiteObjeto).has("erro"));
+    }
+
+    @Test
+    public void retornoSobreFechamentoZeroENulo() {
+        SerieDiaria.Construtor construtor = new SerieDiaria.Construtor();
+        construtor.adicionar(20240103, 0, 0, 0, 12 * SerieDiaria.ESCALA, 1);
+        construtor.adicionar(20240102, 0, 0, 0, 0, 1);
+        construtor.adicionar(20240101, 0, 0, 0, 10 * SerieDiaria.ESCALA, 1);
+        series.atualizar("ZERO", construtor.construir());
+        JsonObject conteudo = consulta("ZERO");
+        conteudo.addProperty("indicador", "RETORNOS");
+        JsonObject desdeOZero = conteudo.deepCopy();
+        desdeOZero.addProperty("dataInicio", "2024-01-03");
+
+        JsonObject resultado = executar("CONSULTAR_INDICADOR", conteudo);
+        JsonObject apenasUltimoDia = executar("CONSULTAR_INDICADOR", desdeOZero);
+
+        JsonArray valores = resultado.getAsJsonArray("valores");
+        assertEquals(-1.0, valores.get(0).getAsDouble(), 1e-12);
+        assertTrue(valores.get(1).isJsonNull());
+        assertEquals(0.2, resultado.get("retornoAcumulado").getAsDouble(), 1e-12);
+        assertTrue(apenasUltimoDia.getAsJsonArray("valores").get(0).isJsonNull());
+        assertTrue(apenasUltimoDia.get("retornoAcumulado").isJsonNull());
+    }
+
+    @Test
+    public void novaSerieEstendeAAnteriorSemTruncarOHistorico() {
+        SerieDiaria.Construtor recente = new SerieDiaria.Construtor();
+        recente.adicionar(20240110, 0, 0, 0, 200_000, 1);
+        recente.adicionar(20240111, 0, 0, 0, 210_000, 1);
+        series.atualizar("IBM", recente.construir());
+
+        SerieDiaria serie = series.get("IBM");
+
+        assertEquals(11, serie.getTamanho());
+        assertEquals(20240101, serie.getDatas()[0]);
+        assertEquals(200_000, serie.getFechamento()[9]);
+        assertEquals(210_000, serie.getFechamento()[10]);
+    }
+
+    @Test
+    public void leitorEntregaASerieCompletaDaResposta() throws Exception {
+        String resposta = "{\"Meta Data\": {\"2. Symbol\": \"IBM\"}, \"Time Series (Daily)\": {"
+                + "\"2024-01-03\": {\"1. open\": \"11.5\", \"2. high\": \"12.00\", \"3. low\": \"11.0000\","
+                + " \"4. close\": \"11.75\", \"5. volume\": \"300\"},"
+                + "\"2024-01-02\": {\"1. open\": \"10.12345\", \"2. high\": \"11\", \"3. low\": \"10\","
+                + " \"4. close\": \"10.5\", \"5. volume\": \"200\"}}}";
+        AtomicReference<SerieDiaria> lida = new AtomicReference<>();
+
+        JsonObject dados = LeitorRespostaAlphaVantage.lerDadosAcao(new StringReader(resposta), lida::set);
+
+        assertEquals(new BigDecimal("11.5"), dados.get("precoAtual").getAsBigDecimal());
+        SerieDiaria serie = lida.get();
+        assertNotNull(serie);
+        assertEquals(2, serie.getTamanho());
+        assertEquals(20240102, serie.getDatas()[0]);
+        assertEquals(101_235, serie.getAbertura()[0]);
+        assertEquals(117_500, serie.getFechamento()[1]);
+        assertEquals(300, serie.getVolume()[1]);
+        assertFalse(dados.has("erro"));
+    }
+
+    private JsonObject executar(String acao, JsonObject conteudo) {
+        return servico.executar(new Mensagem(acao, "cliente", "servidor", conteudo)).getConteudo();
+    }
+
+    private static JsonObject consulta(String simboloAcao) {
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("simboloAcao", simboloAcao);
+        return conteudo;
+    }
+}
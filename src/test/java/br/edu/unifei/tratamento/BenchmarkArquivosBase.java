@@ -0,0 +1,183 @@
+package br.edu.unifei.tratamento;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+import br.edu.unifei.utils.FileUtils;
+import br.edu.unifei.utils.MedidorDesempenho;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Compara a extração de mensagens {@code ARQUIVOS_BASE} com arquivos ZIP de 1 MB a 500 MB entre o caminho anterior
+ * (base64 extraído do {@code JsonObject}, decodificado para um {@code byte[]} e descompactado com buffer de 1 KB) e o
+ * caminho em streaming usado pelo {@link TratadorArquivosBase}. Para cada caso são exibidos o tempo, os bytes
+ * alocados pela thread e o pico de uso do heap acima do payload já recebido.
+ * <p>
+ * Os tamanhos, em MB, podem ser informados como argumentos. Para os casos maiores, executar com {@code -Xmx4g}; quando
+ * o caminho anterior não couber no heap, o caso é reportado como sem memória.
+ * </p>
+ */
+public class BenchmarkArquivosBase {
+
+    private static final int TAMANHO_ENTRADA = 16 * 1024 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        int[] tamanhosMb = args.length > 0
+                ? Stream.of(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1, 10, 100, 500};
+
+        Path diretorio = Files.createTempDirectory("benchmark-arquivos-base");
+        try {
+            for (int tamanhoMb : tamanhosMb) {
+                byte[] payload = gerarPayload(diretorio, tamanhoMb * 1024L * 1024L);
+                System.out.printf("ARQUIVOS_BASE com ZIP de %d MB (payload de %d MB)%n",
+                        tamanhoMb, payload.length / (1024 * 1024));
+
+                medir("  caminho anterior", () -> extrairComoAntes(
+                        Mensagem.fromJson(payload), diretorio.resolve("anterior").toFile()));
+                medir("  streaming", () -> FileUtils.extractZip(diretorio.resolve("streaming").toFile(),
+                        Base64.getDecoder().wrap(Mensagem.fromJson(payload).abrirCampoTexto("resposta")))
+                        .getBytesLidos());
+                System.out.println();
+            }
+        } finally {
+            try (Stream<Path> caminhos = Files.walk(diretorio)) {
+                caminhos.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private interface Extracao {
+        long executar() throws IOException;
+    }
+
+    private static void medir(String cenario, Extracao extracao) {
+        System.gc();
+        long heapInicial = getHeapUsado();
+        getPoolsHeap().forEach(MemoryPoolMXBean::resetPeakUsage);
+        long alocadoInicial = MedidorDesempenho.getBytesAlocados();
+        long inicio = System.nanoTime();
+        try {
+            long bytes = extracao.executar();
+            long duracao = System.nanoTime() - inicio;
+            long pico = getPoolsHeap().stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+            System.out.printf("%-20s %8.1f ms %10.1f MB/s %10.1f MB alocados %10.1f MB de pico no heap%n",
+                    cenario, duracao / 1e6, bytes / 1e6 / (duracao / 1e9),
+                    (MedidorDesempenho.getBytesAlocados() - alocadoInicial) / 1e6,
+                    Math.max(0, pico - heapInicial) / 1e6);
+        } catch (OutOfMemoryError e) {
+            System.out.printf("%-20s sem memória (%s)%n", cenario, e.getMessage());
+        } catch (IOException e) {
+            System.out.printf("%-20s erro: %s%n", cenario, e.getMessage());
+        }
+    }
+
+    /**
+     * Reproduz o caminho anterior: todo o base64 em uma {@link String}, decodificado para um {@code byte[]} e lido de
+     * um {@link ByteArrayInputStream} com buffer de 1 KB.
+     */
+    private static long extrairComoAntes(Mensagem mensagem, File destino) throws IOException {
+        String bytecode = mensagem.getConteudo().get("resposta").getAsString();
+        byte[] zipBytes = Base64.getDecoder().decode(bytecode);
+        long bytesGravados = 0;
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+            ZipEntry zipEntry;
+            while ((zipEntry = zis.getNextEntry()) != null) {
+                File arquivo = new File(destino, zipEntry.getName());
+                arquivo.getParentFile().mkdirs();
+                try (FileOutputStream fos = new FileOutputStream(arquivo)) {
+                    byte[] buffer = new byte[1024];
+                    int length;
+                    while ((length = zis.read(buffer)) > 0) {
+                        fos.write(buffer, 0, length);
+                        bytesGravados += length;
+                    }
+                }
+            }
+        }
+        return bytesGravados;
+    }
+
+    /**
+     * Gera o JSON de uma mensagem {@code ARQUIVOS_BASE} com um ZIP do tamanho informado. O ZIP é montado em disco e
+     * codificado em base64 diretamente no array do payload, para que a preparação não ocupe o heap da medição.
+     */
+    private static byte[] gerarPayload(Path diretorio, long tamanhoZip) throws IOException {
+        Path zip = diretorio.resolve("entrada.zip");
+        try (ZipOutputStream saida = new ZipOutputStream(Files.newOutputStream(zip))) {
+            saida.setLevel(Deflater.NO_COMPRESSION);
+            byte[] bloco = new byte[TAMANHO_ENTRADA];
+            new Random(42).nextBytes(bloco);
+            for (long escrito = 0, i = 0; escrito < tamanhoZip; i++) {
+                int tamanho = (int) Math.min(bloco.length, tamanhoZip - escrito);
+                saida.putNextEntry(new ZipEntry(String.format("modelos/parte%04d.bin", i)));
+                saida.write(bloco, 0, tamanho);
+                saida.closeEntry();
+                escrito += tamanho;
+            }
+        }
+
+        long tamanhoArquivo = Files.size(zip);
+        byte[] prefixo = ("{\"acao\":\"ARQUIVOS_BASE\",\"origem\":\"topico/barramento\",\"destino\":\"topico/servidor\","
+                + "\"conteudo\":{\"resposta\":\"").getBytes(StandardCharsets.UTF_8);
+        byte[] sufixo = "\"},\"metadata\":{}}".getBytes(StandardCharsets.UTF_8);
+        long tamanhoBase64 = 4 * ((tamanhoArquivo + 2) / 3);
+        byte[] payload = new byte[Math.toIntExact(prefixo.length + tamanhoBase64 + sufixo.length)];
+        System.arraycopy(prefixo, 0, payload, 0, prefixo.length);
+
+        int[] posicao = {prefixo.length};
+        OutputStream destino = new OutputStream() {
+            @Override
+            public void write(int b) {
+                payload[posicao[0]++] = (byte) b;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                System.arraycopy(b, off, payload, posicao[0], len);
+                posicao[0] += len;
+            }
+        };
+        try (InputStream entrada = Files.newInputStream(zip);
+             OutputStream base64 = Base64.getEncoder().wrap(destino)) {
+            entrada.transferTo(base64);
+        }
+        System.arraycopy(sufixo, 0, payload, posicao[0], sufixo.length);
+        Files.delete(zip);
+        return payload;
+    }
+
+    private static List<MemoryPoolMXBean> getPoolsHeap() {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+
+    private static long getHeapUsado() {
+        return getPoolsHeap().stream().mapToLong(pool -> pool.getUsage().getUsed()).sum();
+    }
+}
@@ -0,0 +1,80 @@
+package br.edu.unifei.tratamento;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+import br.edu.unifei.servicos.ServicoAlphaVantageAPI;
+import br.edu.unifei.servicos.ServicosParaTeste;
+import br.edu.unifei.utils.MedidorDesempenho;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+
+/**
+ * Compara o custo de despacho e a alocação por mensagem do registro de tratadores com a fábrica anterior, que criava
+ * um novo tratador (e um novo {@link ServicoAlphaVantageAPI} ou {@link Gson}) a cada mensagem.
+ * <p>
+ * A reprodução da fábrica anterior cria um novo tratador por mensagem, mas reaproveita um único
+ * {@link ServicoAlphaVantageAPI}, sem armazém: o serviço hoje abre arquivos ao ser construído, e criá-lo a cada
+ * iteração mediria o disco, não o despacho. O custo da fábrica anterior fica, portanto, subestimado.
+ * </p>
+ */
+public class BenchmarkTratadorMensagemFactory {
+
+    private static final int AQUECIMENTO = 200_000;
+    private static final int ITERACOES = 1_000_000;
+    private static final String[] ACOES = {
+            "ARQUIVOS_BASE", "RESULTADO_BUSCA", "CONSULTAR_ACAO", "CONSULTAR_MOEDA", "ENVIAR_MENSAGEM", "DESCONHECIDA"
+    };
+
+    private static final ServicoAlphaVantageAPI SERVICO = ServicosParaTeste.alphaVantageSemApi();
+
+    public static void main(String[] args) {
+        TratadorMensagemFactory.registrarConsultas(SERVICO);
+        int[] indice = new int[1];
+
+        MedidorDesempenho.medir("getTratador (fábrica anterior)", AQUECIMENTO, ITERACOES,
+                () -> getTratadorAnterior(ACOES[indice[0]++ % ACOES.length]));
+        MedidorDesempenho.medir("getTratador (registro)", AQUECIMENTO, ITERACOES,
+                () -> TratadorMensagemFactory.getTratador(ACOES[indice[0]++ % ACOES.length]));
+
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("texto", "Olá, servidor!");
+        Mensagem mensagem = new Mensagem("ENVIAR_MENSAGEM", "topico/cliente", "topico/servidor", conteudo);
+
+        MedidorDesempenho.medir("ENVIAR_MENSAGEM completo (fábrica anterior)", AQUECIMENTO / 10, ITERACOES / 10,
+                () -> getTratadorAnterior("ENVIAR_MENSAGEM").processar(mensagem));
+        MedidorDesempenho.medir("ENVIAR_MENSAGEM completo (registro)", AQUECIMENTO / 10, ITERACOES / 10,
+                () -> TratadorMensagemFactory.getTratador("ENVIAR_MENSAGEM").processar(mensagem));
+        SERVICO.close();
+    }
+
+    /**
+     * Reprodução da fábrica anterior, que alocava um tratador por mensagem.
+     */
+    private static TratadorMensagem getTratadorAnterior(String acao) {
+        switch (acao) {
+            case "ARQUIVOS_BASE":
+                return new TratadorArquivosBase();
+            case "RESULTADO_BUSCA":
+                return new TratadorResultadoBusca();
+            case "CONSULTAR_ACAO":
+                return new TratadorConsultarAcaoAPI(SERVICO);
+            case "CONSULTAR_MOEDA":
+                return new TratadorConsultarMoedaAPI(SERVICO);
+            case "ENVIAR_MENSAGEM":
+                return mensagem -> {
+                    String conteudo = mensagem.getConteudo().toString();
+                    Gson gson = new GsonBuilder().setPrettyPrinting().create();
+                    JsonObject json = gson.fromJson(conteudo, JsonObject.class);
+                    return "Mensagem recebida de '" + mensagem.getOrigem() + "'. " +
+                            "Conteúdo da mensagem:\n" + gson.toJson(json);
+                };
+            default:
+                return mensagem -> {
+                    JsonObject conteudo = mensagem.getConteudo();
+                    return conteudo.has("resultado")
+                            ? conteudo.get("resultado").getAsString()
+                            : String.format("A ação %s não possui tratamento definido.", mensagem.getAcao());
+                };
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package br.edu.unifei.tratamento;
+
+import br.edu.unifei.modelos.mensagem.Mensagem;
+import br.edu.unifei.servicos.ServicoAlphaVantageAPI;
+import br.edu.unifei.servicos.ServicosParaTeste;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TesteTratadorMensagemFactory {
+
+    @Test
+    public void registroInicialNaoDependeDeServicos() {
+        JsonObject conteudo = new JsonObject();
+        conteudo.addProperty("texto", "Olá");
+        Mensagem mensagem = new Mensagem("ENVIAR_MENSAGEM", "topico/cliente", "topico/servidor", conteudo);
+
+        String resposta = TratadorMensagemFactory.getTratador("ENVIAR_MENSAGEM").processar(mensagem);
+
+        assertTrue(resposta.contains("topico/cliente"));
+        assertTrue(TratadorMensagemFactory.getTratador("ARQUIVOS_BASE") instanceof TratadorArquivosBase);
+    }
+
+    @Test
+    public void consultasSaoRegistradasSobreOServicoInformado() {
+        TratadorMensagem envio = TratadorMensagemFactory.getTratador("ENVIAR_MENSAGEM");
+        ServicoAlphaVantageAPI servico = ServicosParaTeste.alphaVantageSemApi();
+        try {
+            TratadorMensagemFactory.registrarConsultas(servico);
+
+            assertTrue(TratadorMensagemFactory.getTratador("CONSULTAR_ACAO") instanceof TratadorConsultarAcaoAPI);
+            assertTrue(TratadorMensagemFactory.getTratador("CONSULTAR_INDICADOR")
+                    instanceof TratadorConsultarIndicador);
+            assertSame(TratadorMensagemFactory.getTratador("CONSULTAR_ACAO_LOTE"),
+                    TratadorMensagemFactory.getTratador("CONSULTAR_MOEDA_LOTE"));
+            assertSame(envio, TratadorMensagemFactory.getTratador("ENVIAR_MENSAGEM"));
+        } finally {
+            servico.close();
+        }
+    }
+}
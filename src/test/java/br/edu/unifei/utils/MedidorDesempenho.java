@@ -0,0 +1,65 @@
+package br.edu.unifei.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+/**
+ * Utilitário usado pelos benchmarks para medir o tempo médio por operação, a vazão e a quantidade de bytes alocados
+ * por operação na thread atual.
+ * <p>
+ * A alocação é obtida pelo {@code com.sun.management.ThreadMXBean}, disponível nas JVMs HotSpot e OpenJ9. Em outras
+ * JVMs, a coluna de alocação é exibida como {@code n/d}.
+ * </p>
+ */
+public class MedidorDesempenho {
+
+    private static final java.lang.management.ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Evita que o JIT elimine o resultado das operações medidas.
+     */
+    private static volatile Object sumidouro;
+
+    /**
+     * Executa a operação durante o aquecimento e depois mede as iterações, imprimindo o resultado.
+     *
+     * @param cenario    Nome do cenário medido.
+     * @param aquecimento Quantidade de execuções descartadas antes da medição.
+     * @param iteracoes  Quantidade de execuções medidas.
+     * @param operacao   A operação medida. O retorno é consumido para não ser eliminado pelo JIT.
+     * @return O tempo médio por operação, em nanossegundos.
+     */
+    public static double medir(String cenario, int aquecimento, int iteracoes, Supplier<?> operacao) {
+        for (int i = 0; i < aquecimento; i++) {
+            sumidouro = operacao.get();
+        }
+
+        long alocadoInicio = getBytesAlocados();
+        long inicio = System.nanoTime();
+        for (int i = 0; i < iteracoes; i++) {
+            sumidouro = operacao.get();
+        }
+        long duracao = System.nanoTime() - inicio;
+        long alocadoFim = getBytesAlocados();
+
+        double nanosPorOperacao = (double) duracao / iteracoes;
+        String bytesPorOperacao = alocadoInicio < 0
+                ? "n/d"
+                : String.format("%.0f", (double) (alocadoFim - alocadoInicio) / iteracoes);
+
+        System.out.printf("%-48s %14.1f ns/op %14.1f ops/s %14s B/op%n",
+                cenario, nanosPorOperacao, 1e9 / nanosPorOperacao, bytesPorOperacao);
+        return nanosPorOperacao;
+    }
+
+    /**
+     * @return o total de bytes alocados pela thread atual, ou {@code -1} se a JVM não fornecer essa medida.
+     */
+    public static long getBytesAlocados() {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,97 @@
+package br.edu.unifei.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class TesteCacheTTL {
+
+    private final AtomicLong agora = new AtomicLong();
+
+    @Test
+    public void capacidadeRemoveAEntradaUsadaHaMaisTempo() {
+        CacheTTL<String, Integer> cache = new CacheTTL<>(2, 60_000, agora::get);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+        cache.put("c", 3);
+
+        assertNull(cache.get("b"));
+        assertEquals(Integer.valueOf(1), cache.get("a").getValor());
+        assertEquals(Integer.valueOf(3), cache.get("c").getValor());
+        assertEquals(1, cache.getRemocoes());
+        assertEquals(2, cache.getTamanho());
+    }
+
+    @Test
+    public void espiarEIdadeNaoContamComoUso() {
+        CacheTTL<String, Integer> cache = new CacheTTL<>(2, 60_000, agora::get);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        assertNotNull(cache.espiar("a"));
+        assertEquals(0, cache.getIdadeMillis("a"));
+        cache.put("c", 3);
+
+        // "a" continua sendo a usada há mais tempo, mesmo depois das consultas auxiliares
+        assertNull(cache.espiar("a"));
+        assertEquals(Integer.valueOf(2), cache.espiar("b").getValor());
+        assertEquals(0, cache.getAcertos());
+        assertEquals(0, cache.getFalhas());
+    }
+
+    @Test
+    public void entradasExpiramNoTtl() {
+        CacheTTL<String, Integer> cache = new CacheTTL<>(10, 1_000, agora::get);
+        cache.put("a", 1);
+        avancar(999);
+
+        CacheTTL.Valor<Integer> valor = cache.get("a");
+        assertEquals(999, valor.getIdadeMillis());
+        assertEquals(999, cache.getIdadeMillis("a"));
+
+        avancar(1);
+        assertEquals(-1, cache.getIdadeMillis("a"));
+        assertNull(cache.espiar("a"));
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.getExpiracoes());
+        assertEquals(0, cache.getTamanho());
+    }
+
+    @Test
+    public void putComIdadeContaOTtlDesdeAObtencao() {
+        CacheTTL<String, Integer> cache = new CacheTTL<>(10, 1_000, agora::get);
+        cache.put("a", 1, 800);
+
+        assertEquals(800, cache.get("a").getIdadeMillis());
+        avancar(200);
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void contadoresDeAcertosFalhasERemocoes() {
+        CacheTTL<String, Integer> cache = new CacheTTL<>(1, 1_000, agora::get);
+        cache.put("a", 1);
+        cache.get("a");
+        cache.get("a");
+        cache.get("x");
+        cache.put("b", 2);
+        cache.put("c", 3);
+        avancar(1_000);
+        cache.removerExpiradas();
+
+        assertEquals(2, cache.getAcertos());
+        assertEquals(1, cache.getFalhas());
+        assertEquals(2, cache.getRemocoes());
+        assertEquals(1, cache.getExpiracoes());
+        assertEquals(0, cache.getTamanho());
+    }
+
+    private void avancar(long millis) {
+        agora.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
@@ -0,0 +1,154 @@
+package br.edu.unifei.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TesteExtratorZip {
+
+    // Entradas acima de 256 bytes são gravadas em streaming pela thread de leitura
+    private static final int MAX_BYTES_EM_MEMORIA = 1024;
+
+    private Path diretorio;
+    private File saida;
+    private ExtratorZip extrator;
+
+    @BeforeEach
+    public void criarDiretorio() throws IOException {
+        diretorio = Files.createTempDirectory("extrator-zip");
+        saida = diretorio.resolve("saida").toFile();
+        extrator = new ExtratorZip(2, MAX_BYTES_EM_MEMORIA);
+    }
+
+    @AfterEach
+    public void removerDiretorio() throws IOException {
+        try (Stream<Path> caminhos = Files.walk(diretorio)) {
+            caminhos.sorted(Comparator.reverseOrder()).forEach(caminho -> caminho.toFile().delete());
+        }
+    }
+
+    @Test
+    public void entradasForaDoDiretorioSaoRecusadas() {
+        for (String nome : new String[]{"../x", "a/../../x", "/tmp/x", "\\x"}) {
+            assertThrows(IOException.class, () -> extrator.extrair(zip(Map.of(nome, "conteudo")), saida), nome);
+        }
+        assertFalse(diretorio.resolve("x").toFile().exists());
+    }
+
+    @Test
+    public void reextrairOMesmoZipIgnoraOsArquivos() throws IOException {
+        Map<String, String> entradas = entradas("v1");
+
+        RelatorioExtracao primeira = extrator.extrair(zip(entradas), saida);
+        RelatorioExtracao segunda = extrator.extrair(zip(entradas), saida);
+
+        assertEquals(3, primeira.getArquivosGravados());
+        assertEquals(0, primeira.getArquivosIgnorados());
+        assertEquals(0, segunda.getArquivosGravados());
+        assertEquals(3, segunda.getArquivosIgnorados());
+        assertEquals(0, segunda.getBytesGravados());
+        assertEquals(primeira.getBytesLidos(), segunda.getBytesLidos());
+        assertConteudo(entradas);
+    }
+
+    @Test
+    public void entradaAlteradaSubstituiOArquivoSemDeixarTemporarios() throws IOException {
+        extrator.extrair(zip(entradas("v1")), saida);
+        Map<String, String> alteradas = entradas("v2");
+        // A entrada pequena não muda; as outras mudam de conteúdo mantendo o tamanho
+        alteradas.put("leia-me.txt", entradas("v1").get("leia-me.txt"));
+
+        RelatorioExtracao relatorio = extrator.extrair(zip(alteradas), saida);
+
+        assertEquals(2, relatorio.getArquivosGravados());
+        assertEquals(1, relatorio.getArquivosIgnorados());
+        assertConteudo(alteradas);
+        try (Stream<Path> caminhos = Files.walk(diretorio)) {
+            assertEquals(0, caminhos.filter(caminho -> caminho.toString().endsWith(".tmp")).count());
+        }
+    }
+
+    @Test
+    public void extracoesSimultaneasNaoDisputamAMemoriaAteTravar() throws Exception {
+        // Limite de 256 KiB por entrada: entradas de 200 KB sem tamanho declarado passam do buffer inicial de 64 KiB
+        ExtratorZip compartilhado = new ExtratorZip(2, 1024 * 1024);
+        Map<String, String> entradas = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            entradas.put("dados/" + i + ".csv", (i + ";").repeat(200_000 / (String.valueOf(i).length() + 1)));
+        }
+        ExecutorService extracoes = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<RelatorioExtracao>> relatorios = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                File destino = new File(saida, "extracao-" + i);
+                relatorios.add(extracoes.submit(() -> compartilhado.extrair(zip(entradas), destino)));
+            }
+            for (Future<RelatorioExtracao> relatorio : relatorios) {
+                assertEquals(entradas.size(), relatorio.get(10, TimeUnit.SECONDS).getArquivosGravados());
+            }
+        } finally {
+            extracoes.shutdownNow();
+        }
+        for (int i = 0; i < 16; i++) {
+            for (Map.Entry<String, String> entrada : entradas.entrySet()) {
+                assertArrayEquals(entrada.getValue().getBytes(StandardCharsets.UTF_8),
+                        Files.readAllBytes(saida.toPath().resolve("extracao-" + i).resolve(entrada.getKey())));
+            }
+        }
+    }
+
+    /**
+     * Uma entrada pequena, gravada pelas threads do extrator, e uma grande, gravada em streaming.
+     */
+    private static Map<String, String> entradas(String versao) {
+        Map<String, String> entradas = new LinkedHashMap<>();
+        entradas.put("leia-me.txt", "arquivo " + versao);
+        entradas.put("dados/pequeno.csv", "data,valor\n2024-01-02," + versao + "\n");
+        entradas.put("dados/grande.csv", (versao + ";").repeat(2_000));
+        return entradas;
+    }
+
+    private void assertConteudo(Map<String, String> entradas) throws IOException {
+        for (Map.Entry<String, String> entrada : entradas.entrySet()) {
+            assertArrayEquals(entrada.getValue().getBytes(StandardCharsets.UTF_8),
+                    Files.readAllBytes(saida.toPath().resolve(entrada.getKey())), entrada.getKey());
+        }
+    }
+
+    private static ByteArrayInputStream zip(Map<String, String> entradas) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (Map.Entry<String, String> entrada : entradas.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entrada.getKey()));
+                zip.write(entrada.getValue().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return new ByteArrayInputStream(bytes.toByteArray());
+    }
+}
@@ -0,0 +1,149 @@
+package br.edu.unifei.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Os testes avançam um relógio falso e chamam {@link LimitadorCota#verificarFila()}; os prazos e as reposições são de
+ * segundos ou mais, para que a verificação agendada em tempo real não interfira.
+ */
+public class TesteLimitadorCota {
+
+    private static final long PRAZO_LONGO_MS = TimeUnit.HOURS.toMillis(6);
+
+    private final AtomicLong agora = new AtomicLong(TimeUnit.DAYS.toNanos(365));
+
+    @Test
+    public void pedidosSemFichasSaoLiberadosNaOrdemDeChegada() {
+        LimitadorCota limitador = new LimitadorCota(2, 1_000, agora::get);
+        assertTrue(limitador.reservar(PRAZO_LONGO_MS).isDone());
+        assertTrue(limitador.reservar(PRAZO_LONGO_MS).isDone());
+
+        CompletableFuture<Void> a = limitador.reservar(PRAZO_LONGO_MS);
+        CompletableFuture<Void> b = limitador.reservar(PRAZO_LONGO_MS);
+        CompletableFuture<Void> c = limitador.reservar(PRAZO_LONGO_MS);
+        assertEquals(3, limitador.getTamanhoFila());
+        assertFalse(a.isDone());
+
+        // Duas fichas por minuto: uma a cada 30 s
+        avancar(30_000);
+        limitador.verificarFila();
+        assertTrue(a.isDone());
+        assertFalse(b.isDone());
+        assertFalse(c.isDone());
+
+        avancar(30_000);
+        limitador.verificarFila();
+        assertTrue(b.isDone());
+        assertFalse(c.isDone());
+
+        avancar(30_000);
+        limitador.verificarFila();
+        assertTrue(c.isDone());
+        assertEquals(5, limitador.getConcedidas());
+        assertEquals(0, limitador.getTamanhoFila());
+        assertEquals(90_000, limitador.getEsperaMaximaMillis(), 1e-6);
+        assertEquals(36_000, limitador.getEsperaMediaMillis(), 1e-6);
+    }
+
+    @Test
+    public void pedidoRecusadoNoPrazoNaoConsomeCota() {
+        LimitadorCota limitador = new LimitadorCota(1, 1_000, agora::get);
+        limitador.reservar(PRAZO_LONGO_MS);
+        CompletableFuture<Void> atrasado = limitador.reservar(1_000);
+
+        avancar(1_000);
+        limitador.verificarFila();
+
+        ExecutionException erro = assertThrows(ExecutionException.class, atrasado::get);
+        assertTrue(erro.getCause() instanceof IOException);
+        assertEquals(1, limitador.getRecusadas());
+        assertEquals(0, limitador.getTamanhoFila());
+        avancar(59_000);
+        assertEquals(1, limitador.getRestantesMinuto());
+    }
+
+    @Test
+    public void pedidoNovoNaoPassaNaFrenteDeQuemJaEspera() {
+        LimitadorCota limitador = new LimitadorCota(1, 1_000, agora::get);
+        limitador.reservar(PRAZO_LONGO_MS);
+        CompletableFuture<Void> primeiro = limitador.reservar(PRAZO_LONGO_MS);
+
+        avancar(60_000);
+        CompletableFuture<Void> segundo = limitador.reservar(PRAZO_LONGO_MS);
+
+        // A ficha reposta vai para quem já estava na fila
+        assertTrue(primeiro.isDone());
+        assertFalse(segundo.isDone());
+    }
+
+    @Test
+    public void disponiveisContamAsFichasDosDoisBaldesEZeramComFila() {
+        LimitadorCota limitador = new LimitadorCota(3, 2, agora::get);
+        assertEquals(2, limitador.getDisponiveis());
+
+        limitador.reservar(PRAZO_LONGO_MS);
+        limitador.reservar(PRAZO_LONGO_MS);
+        limitador.reservar(PRAZO_LONGO_MS);
+        assertEquals(0, limitador.getDisponiveis());
+
+        // Com alguém na fila, a ficha reposta já tem dono
+        avancar(12 * 60 * 60 * 1_000L);
+        assertEquals(1, limitador.getTamanhoFila());
+        assertEquals(0, limitador.getDisponiveis());
+    }
+
+    @Test
+    public void limiteInformadoPelaApiEsvaziaOBalde() {
+        LimitadorCota limitador = new LimitadorCota(5, 1_000, agora::get);
+        assertEquals(5, limitador.getRestantesMinuto());
+
+        limitador.registrarLimiteExcedido(false);
+        assertEquals(0, limitador.getRestantesMinuto());
+        assertEquals(1_000, limitador.getRestantesDia());
+        CompletableFuture<Void> pedido = limitador.reservar(PRAZO_LONGO_MS);
+        assertFalse(pedido.isDone());
+
+        // Cinco fichas por minuto: uma a cada 12 s
+        avancar(11_999);
+        limitador.verificarFila();
+        assertFalse(pedido.isDone());
+        avancar(1);
+        limitador.verificarFila();
+        assertTrue(pedido.isDone());
+        assertEquals(1, limitador.getLimitesInformados());
+    }
+
+    @Test
+    public void limiteDiarioInformadoSegueAReposicaoDiaria() {
+        LimitadorCota limitador = new LimitadorCota(5, 10, agora::get);
+        limitador.registrarLimiteExcedido(true);
+        CompletableFuture<Void> pedido = limitador.reservar(PRAZO_LONGO_MS);
+
+        // O balde de minuto está cheio, mas o diário repõe uma ficha a cada 2,4 h
+        avancar(TimeUnit.MINUTES.toMillis(1));
+        limitador.verificarFila();
+        assertFalse(pedido.isDone());
+        avancar(TimeUnit.MINUTES.toMillis(142));
+        limitador.verificarFila();
+        assertFalse(pedido.isDone());
+        avancar(TimeUnit.MINUTES.toMillis(2));
+        limitador.verificarFila();
+        assertTrue(pedido.isDone());
+        assertEquals(4, limitador.getRestantesMinuto());
+    }
+
+    private void avancar(long millis) {
+        agora.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}